@@ -2,28 +2,163 @@ package Controller;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.sse.SseHandler;
 
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.util.component.Graceful;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-import DAO.AccountDaoH2;
-import DAO.MessageDaoH2;
+import DAO.AccountDao;
+import DAO.BackupManager;
+import DAO.DaoFactory;
+import DAO.FollowDao;
+import DAO.IdempotencyDao;
+import DAO.MessageDao;
+import DAO.MessageDaoOffHeapCached;
+import DAO.MessageDaoSingleFlight;
+import DAO.MessageDaoTimelineIndexed;
+import DAO.ReplicaSet;
 import Exception.AccountAlreadyExistsException;
 import Exception.AccountDoesNotExistException;
+import Exception.InvalidFollowException;
 import Exception.InvalidMessageTextException;
 import Exception.InvalidNewAccountInputException;
 import Exception.MessageDoesNotExistException;
 import Model.Account;
+import Model.IdempotentResponse;
 import Model.Message;
+import Model.MessageEvent;
+import Model.MessageField;
+import Model.TrendingMessage;
+import Service.MessageStream;
 import Service.SocialMediaService;
+import Util.AppConfig;
+import Util.ConcurrencyLimiter;
 import Util.ConnectionUtil;
+import Util.IdempotencyStore;
+import Util.PartialMessageSerializer;
+import Util.RateLimiter;
 
 public class SocialMediaController {
 
-    private static final SocialMediaService SOCIAL_MEDIA_SERVICE = 
-    new SocialMediaService(
-        new AccountDaoH2(ConnectionUtil.getConnection()), 
-        new MessageDaoH2(ConnectionUtil.getConnection()));
+    private final SocialMediaService socialMediaService;
+    private final MessageDaoSingleFlight messageDaoSingleFlight;
+    private final MessageDaoOffHeapCached offHeapCache;
+    private final RateLimiter<Integer> messagesPerAccount;
+    private final RateLimiter<String> messagesPerIp;
+    private final RateLimiter<String> loginsPerUsername;
+    private final RateLimiter<String> loginsPerIp;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final BackupManager backupManager;
+    private final IdempotencyStore idempotencyStore;
+    private volatile boolean ready = true;
+    private volatile boolean draining = false;
+    private Javalin app;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocialMediaController.class);
+
+    /**
+     * Creates the controller and its service over the DAOs chosen by the settings, with the backups they configure;
+     *  see DaoFactory.
+     */
+    public SocialMediaController() {
+        this(
+            DaoFactory.createAccountDao(), DaoFactory.createMessageDao(), DaoFactory.createFollowDao(), true,
+            DaoFactory.getBackupManager().orElse(null), DaoFactory.createIdempotencyDao().orElse(null));
+    }
+
+    /**
+     * Creates the controller and its service over the provided DAOs, e.g. a scratch database.
+     * 
+     * @param accountDao The DAO used to store accounts.
+     * @param messageDao The DAO used to store messages.
+     * @param followDao The DAO used to store who follows whom.
+     */
+    public SocialMediaController(AccountDao accountDao, MessageDao messageDao, FollowDao followDao) {
+        this(accountDao, messageDao, followDao, true, null, null);
+    }
+
+    /**
+     * Creates the controller and its service over the provided DAOs, without backups, and keeping the responses to
+     *  idempotency keys in memory only.
+     * 
+     * @param accountDao The DAO used to store accounts.
+     * @param messageDao The DAO used to store messages.
+     * @param followDao The DAO used to store who follows whom.
+     * @param enforceRateLimits False to let every request thru the rate limiters, e.g. for synthetic warm-up traffic.
+     */
+    SocialMediaController(AccountDao accountDao, MessageDao messageDao, FollowDao followDao,
+     boolean enforceRateLimits) {
+        this(accountDao, messageDao, followDao, enforceRateLimits, null, null);
+    }
+
+    /**
+     * Creates the controller and its service.  The in-process indexes over the stored data are built here, so that
+     *  every new controller starts from what is currently in storage.
+     * Identical message reads made at the same time share one query, and wait at most
+     *  "socialmedia.singleFlight.timeoutMillis" (default 5000) for it.
+     * Messages read by ID are cached off the heap in up to "socialmedia.offHeapCache.capacityBytes" (default 67108864,
+     *  64 MiB; 0 for no cache) bytes, allocated in slabs of "socialmedia.offHeapCache.slabBytes" (default 1048576).
+     * Also creates the rate limiters for posting messages and logging in; see createRateLimiter for their settings.
+     * The concurrency limiter in front of the service starts at "socialmedia.concurrency.initialLimit" (default 50)
+     *  requests at once and adapts between "socialmedia.concurrency.minLimit" (default 8) and
+     *  "socialmedia.concurrency.maxLimit" (default 200).
+     * Responses to requests with an Idempotency-Key header are replayed for "socialmedia.idempotency.ttlMillis"
+     *  (default 86400000, a day), at most "socialmedia.idempotency.maxKeys" (default 100000) kept in memory; a retry
+     *  waits at most "socialmedia.idempotency.waitMillis" (default 5000) for the original request.
+     * 
+     * @param accountDao The DAO used to store accounts.
+     * @param messageDao The DAO used to store messages.
+     * @param followDao The DAO used to store who follows whom.
+     * @param enforceRateLimits False to let every request thru the rate limiters, e.g. for synthetic warm-up traffic.
+     * @param backupManager Takes the backups triggered thru POST /admin/backup, or null for no backups.
+     * @param idempotencyDao Stores the responses to idempotency keys for every node, or null to keep them in memory.
+     */
+    private SocialMediaController(AccountDao accountDao, MessageDao messageDao, FollowDao followDao,
+     boolean enforceRateLimits, BackupManager backupManager, IdempotencyDao idempotencyDao) {
+        this.backupManager = backupManager;
+        this.idempotencyStore = new IdempotencyStore(
+            idempotencyDao,
+            AppConfig.getLong("idempotency.ttlMillis", TimeUnit.DAYS.toMillis(1)),
+            AppConfig.getInt("idempotency.maxKeys", 100_000),
+            AppConfig.getLong("idempotency.waitMillis", 5000));
+
+        long offHeapCapacityBytes = AppConfig.getLong("offHeapCache.capacityBytes", 64L * 1024 * 1024);
+        offHeapCache = offHeapCapacityBytes > 0
+            ? new MessageDaoOffHeapCached(
+                messageDao, offHeapCapacityBytes, AppConfig.getInt("offHeapCache.slabBytes", 1024 * 1024))
+            : null;
+
+        try {
+            messageDaoSingleFlight = new MessageDaoSingleFlight(
+                new MessageDaoTimelineIndexed(offHeapCache != null ? offHeapCache : messageDao),
+                AppConfig.getLong("singleFlight.timeoutMillis", 5000));
+            socialMediaService = new SocialMediaService(accountDao, messageDaoSingleFlight, followDao);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not build the in-process indexes over stored messages.", e);
+        }
+
+        messagesPerAccount = createRateLimiter("messages.perAccount", 10, 50, enforceRateLimits);
+        messagesPerIp = createRateLimiter("messages.perIp", 50, 200, enforceRateLimits);
+        loginsPerUsername = createRateLimiter("login.perUsername", 5, 20, enforceRateLimits);
+        loginsPerIp = createRateLimiter("login.perIp", 20, 100, enforceRateLimits);
+        concurrencyLimiter = new ConcurrencyLimiter(
+            AppConfig.getInt("concurrency.initialLimit", 50),
+            AppConfig.getInt("concurrency.minLimit", 8),
+            AppConfig.getInt("concurrency.maxLimit", 200));
+    }
 
     /**
      * Starts the API using Javalin.
@@ -33,15 +168,54 @@ public class SocialMediaController {
      */
     public Javalin startAPI() {
         Javalin app = Javalin.create();
+        this.app = app;
+
+        if (DaoFactory.getReplicaSet().isPresent()) {
+            // Lets the replica set give each client read-your-writes consistency.
+            app.before(
+                (context) -> ReplicaSet.setCurrentClient(
+                    context.header("X-Client-Id") != null ? context.header("X-Client-Id") : context.ip()));
+            app.after((context) -> ReplicaSet.clearCurrentClient());
+        }
 
-        app.post("/register", this::addAccountHandler);
-        app.post("/login", this::loginAccountHandler);
-        app.post("/messages", this::createMessageHandler);
-        app.get("/messages", this::getAllMessagesHandler);
-        app.get("/messages/{message_id}", this::getMessageByIdHandler);
-        app.delete("/messages/{message_id}", this::deleteMessageByIdHandler);
-        app.patch("/messages/{message_id}", this::patchMessageByIdHandler);
-        app.get("/accounts/{account_id}/messages", this::getAllMessagesFromUserHandler);
+        // Logging in and posting are shed last; reading every message is shed first.
+        app.post("/register", limited(ConcurrencyLimiter.Priority.HIGH, idempotent(this::addAccountHandler)));
+        app.post("/login", limited(ConcurrencyLimiter.Priority.HIGH, this::loginAccountHandler));
+        app.post("/messages", limited(ConcurrencyLimiter.Priority.HIGH, idempotent(this::createMessageHandler)));
+        app.get("/messages", limited(ConcurrencyLimiter.Priority.LOW, this::getAllMessagesHandler));
+        app.get("/messages/search", limited(ConcurrencyLimiter.Priority.NORMAL, this::searchMessagesHandler));
+        app.get("/messages/count", limited(ConcurrencyLimiter.Priority.NORMAL, this::getMessageCountHandler));
+        app.get("/messages/trending", limited(ConcurrencyLimiter.Priority.NORMAL, this::getTrendingMessagesHandler));
+        app.get("/messages/stream", this::streamMessagesHandler);
+        app.get("/messages/{message_id}", limited(ConcurrencyLimiter.Priority.NORMAL, this::getMessageByIdHandler));
+        app.delete(
+            "/messages/{message_id}", limited(ConcurrencyLimiter.Priority.NORMAL, this::deleteMessageByIdHandler));
+        app.patch(
+            "/messages/{message_id}", limited(ConcurrencyLimiter.Priority.NORMAL, this::patchMessageByIdHandler));
+        app.get("/accounts/search", limited(ConcurrencyLimiter.Priority.NORMAL, this::searchUsernamesHandler));
+        app.get("/accounts/top", limited(ConcurrencyLimiter.Priority.NORMAL, this::getTopAccountsHandler));
+        app.get(
+            "/accounts/available", limited(ConcurrencyLimiter.Priority.NORMAL, this::usernameAvailableHandler));
+        app.get(
+            "/accounts/{account_id}/messages",
+            limited(ConcurrencyLimiter.Priority.NORMAL, this::getAllMessagesFromUserHandler));
+        app.get(
+            "/accounts/{account_id}/messages/count",
+            limited(ConcurrencyLimiter.Priority.NORMAL, this::getMessageCountFromUserHandler));
+        app.post(
+            "/accounts/{account_id}/following/{followee_id}",
+            limited(ConcurrencyLimiter.Priority.NORMAL, this::followAccountHandler));
+        app.delete(
+            "/accounts/{account_id}/following/{followee_id}",
+            limited(ConcurrencyLimiter.Priority.NORMAL, this::unfollowAccountHandler));
+        app.get("/accounts/{account_id}/feed", limited(ConcurrencyLimiter.Priority.NORMAL, this::getFeedHandler));
+        app.get("/metrics", this::getMetricsHandler);
+        app.get("/ready", this::readyHandler);
+        if (backupManager != null) {
+            app.post("/admin/backup", this::backupHandler);
+        }
+
+        app.events((event) -> event.serverStopped(socialMediaService::close));
 
         return app;
     }
@@ -60,7 +234,7 @@ public class SocialMediaController {
         Account unregisteredAccount = context.bodyAsClass(Account.class);
 
         try {
-            Account registeredAccount = SOCIAL_MEDIA_SERVICE.addAccount(unregisteredAccount);
+            Account registeredAccount = socialMediaService.addAccount(unregisteredAccount);
             context.status(200);
             context.json(registeredAccount);
         } catch (InvalidNewAccountInputException | AccountAlreadyExistsException e) {
@@ -70,10 +244,40 @@ public class SocialMediaController {
         }
     }
 
+    /**
+     * Checks whether the "username" query parameter is free to register, e.g. GET /accounts/available?username=ab.
+     *  Most free usernames are answered without touching the database; see SocialMediaService.isUsernameAvailable.
+     * Returns the username and whether it is available, e.g. {"username": "ab", "available": true}, thru the context.
+     * If the username is missing or empty, a HTTP response code of 400 is returned.
+     * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
+     * 
+     * @param context Contains the username query parameter.  Sends back the availability in JSON.
+     */
+    private void usernameAvailableHandler(Context context) {
+        String username = context.queryParam("username");
+
+        if (username == null || username.isEmpty()) {
+            context.status(400);
+            return;
+        }
+
+        try {
+            Map<String, Object> availability = new LinkedHashMap<>();
+            availability.put("username", username);
+            availability.put("available", socialMediaService.isUsernameAvailable(username));
+            context.status(200);
+            context.json(availability);
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
     /**
      * Attempts to log in a user by looking up an account record in the database.
      * The correct account with ID is returned thru the API.
      * If the password is incorrect or if the account does not exist, a HTTP response code of 401 is returned.
+     * If the client's IP address or the username has made too many login attempts recently, a HTTP response code of
+     *  429 is returned, with a Retry-After header giving the seconds to wait.
      * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
      * 
      * @param context Contains an account in JSON that has username and password only.  Sends back the correct matching
@@ -82,8 +286,13 @@ public class SocialMediaController {
     private void loginAccountHandler(Context context) {
         Account account = context.bodyAsClass(Account.class);
 
+        if (isRateLimited(context, loginsPerIp, context.ip())
+         || isRateLimited(context, loginsPerUsername, String.valueOf(account.getUsername()))) {
+            return;
+        }
+
         try {
-            Account registeredAccount = SOCIAL_MEDIA_SERVICE.loginAccount(account);
+            Account registeredAccount = socialMediaService.loginAccount(account);
             context.status(200);
             context.json(registeredAccount);
         } catch (IllegalArgumentException e) {
@@ -93,11 +302,42 @@ public class SocialMediaController {
         }
     }
 
+    /**
+     * Finds usernames that start with the "prefix" query parameter, e.g. GET /accounts/search?prefix=ab&limit=10, for
+     *  autocompleting mentions.
+     * Returns a list of matching usernames in alphabetical order, thru the context.  The optional "limit" query
+     *  parameter caps the number of usernames; it defaults to 10 and can be at most 50.
+     * If the prefix is missing or empty, or the limit is not acceptable, a HTTP response code of 400 is returned.
+     * 
+     * @param context Contains the prefix and limit query parameters.  Sends back a list of usernames in JSON.
+     */
+    private void searchUsernamesHandler(Context context) {
+        String prefix = context.queryParam("prefix");
+        int limit;
+
+        try {
+            limit = getIntQueryParam(context, "limit", 10);
+        } catch (NumberFormatException e) {
+            context.status(400);
+            return;
+        }
+
+        if (prefix == null || prefix.isEmpty() || limit < 1 || limit > 50) {
+            context.status(400);
+            return;
+        }
+
+        context.status(200);
+        context.json(socialMediaService.searchUsernames(prefix, limit));
+    }
+
     /**
      * Adds a message that contains poster ID, message text, and time of posting to the message database table.
      * A message with a message ID is returned thru the API.
      * If the message text is empty or is too long, or if the poster does not have an account, then a HTTP response code
      *  of 400 is returned.
+     * If the client's IP address or the poster has posted too many messages recently, a HTTP response code of 429 is
+     *  returned, with a Retry-After header giving the seconds to wait.
      * 
      * @param context Contains a Message object in JSON, only without a message ID.  Sends back a Message object with
      *  the same fields but with ID included, in JSON.
@@ -105,8 +345,17 @@ public class SocialMediaController {
     private void createMessageHandler(Context context) {
         Message message = context.bodyAsClass(Message.class);
 
+        if (isRateLimited(context, messagesPerIp, context.ip())
+         || isRateLimited(context, messagesPerAccount, message.getPosted_by())) {
+            return;
+        }
+
         try {
-            Message submittedMessage = SOCIAL_MEDIA_SERVICE.createMessage(message);
+            long start = System.nanoTime();
+            Message submittedMessage = socialMediaService.createMessage(message);
+            if (backupManager != null) {
+                backupManager.recordWrite(System.nanoTime() - start);
+            }
             context.status(200);
             context.json(submittedMessage);
         } catch (InvalidMessageTextException | AccountDoesNotExistException e) {
@@ -120,24 +369,135 @@ public class SocialMediaController {
      * Gets all messages stored in the database.
      * Returns messages thru the context.
      * If there are no messages, then the list of retrieved messages from the database will be empty.
+     * If any of the "since", "until", "offset", or "limit" query parameters are provided, one page of the messages
+     *  posted in a time range is returned instead; see getMessagesInRange.
+     * If the "fields" query parameter is provided, only those fields of each message are read and returned; see
+     *  getFieldsQueryParam.
      * 
      * @param context Does not contain anything from the client, but will contain messages, if any, from the database.
      */
     private void getAllMessagesHandler(Context context) {
+        if (hasTimeRangeParams(context)) {
+            getMessagesInRange(context, null);
+            return;
+        }
+
+        Set<MessageField> fields;
         try {
-            List<Message> retrievedMessages = SOCIAL_MEDIA_SERVICE.getAllMessages();
+            fields = getFieldsQueryParam(context);
+        } catch (IllegalArgumentException e) {
+            context.status(400);
+            return;
+        }
+
+        try {
+            List<Message> retrievedMessages = fields == null
+                ? socialMediaService.getAllMessages()
+                : socialMediaService.getAllMessages(fields);
+            context.status(200);
+            sendMessages(context, retrievedMessages, fields);
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Searches messages for the words in the "q" query parameter, e.g. GET /messages/search?q=hello%20world.
+     * Returns a page of messages containing every word, newest first, thru the context.  The optional "offset" and
+     *  "limit" query parameters select the page; by default the first 20 matches are returned, and at most 100 are
+     *  returned per page.
+     * If the query is missing or the paging parameters are not acceptable, a HTTP response code of 400 is returned.
+     * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
+     * 
+     * @param context Contains the query and paging parameters.  Sends back a list of Messages in JSON.
+     */
+    private void searchMessagesHandler(Context context) {
+        String query = context.queryParam("q");
+        int offset;
+        int limit;
+
+        try {
+            offset = getIntQueryParam(context, "offset", 0);
+            limit = getIntQueryParam(context, "limit", 20);
+        } catch (NumberFormatException e) {
+            context.status(400);
+            return;
+        }
+
+        if (query == null || query.isBlank() || offset < 0 || limit < 1 || limit > 100) {
+            context.status(400);
+            return;
+        }
+
+        try {
+            List<Message> matchingMessages = socialMediaService.searchMessages(query, offset, limit);
             context.status(200);
-            context.json(retrievedMessages);
+            context.json(matchingMessages);
         } catch (SQLException e) {
             context.status(500);
         }
     }
 
+    /**
+     * Streams changes to messages as they happen, as Server-Sent Events, e.g. GET /messages/stream?posted_by=1 with an
+     *  "Accept: text/event-stream" header.
+     * Each created, updated, or deleted message is sent as a "created", "updated", or "deleted" event whose data is a
+     *  MessageEvent in JSON and whose ID is the event's sequence.  If the client falls too far behind, a "missed" event
+     *  carries the number of events it missed, or the stream is closed, depending on the slow consumer policy.  The
+     *  optional "posted_by" query parameter limits the stream to messages posted by one account.
+     * If posted_by is not a number, a HTTP response code of 400 is returned.
+     * 
+     * @param context Contains the optional posted_by query parameter.  Sends back a stream of events.
+     */
+    private void streamMessagesHandler(Context context) throws Exception {
+        Integer postedBy;
+
+        try {
+            postedBy = context.queryParam("posted_by") == null
+                ? null
+                : Integer.valueOf(context.queryParam("posted_by"));
+        } catch (NumberFormatException e) {
+            context.status(400);
+            return;
+        }
+
+        new SseHandler(
+            (client) -> {
+                client.keepAlive();
+
+                MessageStream.Subscription subscription = socialMediaService.subscribeToMessages(
+                    postedBy,
+                    new MessageStream.Subscriber() {
+                        @Override
+                        public void onEvent(MessageEvent event) {
+                            client.sendEvent(
+                                event.getType().name().toLowerCase(), event, String.valueOf(event.getSequence()));
+                        }
+
+                        @Override
+                        public void onEventsMissed(long count) {
+                            client.sendEvent("missed", count);
+                        }
+
+                        @Override
+                        public void onDisconnect() {
+                            client.close();
+                        }
+                    });
+
+                client.onClose(subscription::close);
+            }).handle(context);
+    }
+
     /**
      * Gets all messages in the database that belong to a particular user.  The account ID is provided in the URL and
      *  stored in the context.
      * Returns a list of messages thru the context.
      * If there are no messages or if the account doesn't exist, then the returned list will be empty.
+     * If any of the "since", "until", "offset", or "limit" query parameters are provided, one page of the user's
+     *  messages posted in a time range is returned instead; see getMessagesInRange.
+     * If the "fields" query parameter is provided, only those fields of each message are read and returned; see
+     *  getFieldsQueryParam.
      * 
      * @param context Contains the account ID of the user of the messages to retrieve.
      */
@@ -145,10 +505,270 @@ public class SocialMediaController {
         int accountId = Integer.parseInt(
             context.pathParam("account_id"));
 
+        if (hasTimeRangeParams(context)) {
+            getMessagesInRange(context, accountId);
+            return;
+        }
+
+        Set<MessageField> fields;
+        try {
+            fields = getFieldsQueryParam(context);
+        } catch (IllegalArgumentException e) {
+            context.status(400);
+            return;
+        }
+
+        try {
+            List<Message> retrievedMessages = fields == null
+                ? socialMediaService.getAllMessages(accountId)
+                : socialMediaService.getAllMessages(accountId, fields);
+            context.status(200);
+            sendMessages(context, retrievedMessages, fields);
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Counts all messages, without reading them.
+     * Returns the count thru the context, e.g. {"count": 3}.
+     * 
+     * @param context Does not contain anything from the client.  Sends back the number of messages, in JSON.
+     */
+    private void getMessageCountHandler(Context context) {
+        try {
+            long count = socialMediaService.getMessageCount();
+            context.status(200);
+            context.json(Map.of("count", count));
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Counts the messages that belong to a particular user, without reading them.  The account ID is provided in the
+     *  URL and stored in the context.
+     * Returns the count thru the context, e.g. {"count": 3}.  If the account doesn't exist, the count is 0.
+     * 
+     * @param context Contains the account ID of the user whose messages to count.  Sends back the number of messages,
+     *  in JSON.
+     */
+    private void getMessageCountFromUserHandler(Context context) {
+        int accountId = Integer.parseInt(
+            context.pathParam("account_id"));
+
+        try {
+            long count = socialMediaService.getMessageCount(accountId);
+            context.status(200);
+            context.json(Map.of("count", count));
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Makes the account in the URL follow another account, e.g. POST /accounts/1/following/2 for account 1 to follow
+     *  account 2.  Following an account that is already followed does nothing.
+     * If the account tries to follow itself, or either account does not exist, a HTTP response code of 400 is
+     *  returned.
+     * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
+     * 
+     * @param context Contains the account IDs of the follower and the account to follow.
+     */
+    private void followAccountHandler(Context context) {
+        int accountId = Integer.parseInt(
+            context.pathParam("account_id"));
+        int followeeId = Integer.parseInt(
+            context.pathParam("followee_id"));
+
+        try {
+            socialMediaService.followAccount(accountId, followeeId);
+            context.status(200);
+        } catch (InvalidFollowException | AccountDoesNotExistException e) {
+            context.status(400);
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Makes the account in the URL stop following another account, e.g. DELETE /accounts/1/following/2.  Unfollowing
+     *  an account that is not followed does nothing.
+     * If the account tries to unfollow itself, or either account does not exist, a HTTP response code of 400 is
+     *  returned.
+     * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
+     * 
+     * @param context Contains the account IDs of the follower and the account to stop following.
+     */
+    private void unfollowAccountHandler(Context context) {
+        int accountId = Integer.parseInt(
+            context.pathParam("account_id"));
+        int followeeId = Integer.parseInt(
+            context.pathParam("followee_id"));
+
+        try {
+            socialMediaService.unfollowAccount(accountId, followeeId);
+            context.status(200);
+        } catch (InvalidFollowException | AccountDoesNotExistException e) {
+            context.status(400);
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Gets the home feed of the account in the URL, e.g. GET /accounts/1/feed?limit=20: the newest messages posted by
+     *  the accounts it follows, newest first.  The optional "limit" query parameter caps the number of messages; it
+     *  defaults to 50 and can be at most the feed timeline size.
+     * If the account follows no one who has posted, or doesn't exist, then the returned list will be empty.
+     * If the limit is not acceptable, a HTTP response code of 400 is returned.
+     * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
+     * 
+     * @param context Contains the account ID and the limit query parameter.  Sends back a list of Messages in JSON.
+     */
+    private void getFeedHandler(Context context) {
+        int accountId = Integer.parseInt(
+            context.pathParam("account_id"));
+        int maxLimit = SocialMediaService.getFeedTimelineSize();
+        int limit;
+
+        try {
+            limit = getIntQueryParam(context, "limit", Math.min(50, maxLimit));
+        } catch (NumberFormatException e) {
+            context.status(400);
+            return;
+        }
+
+        if (limit < 1 || limit > maxLimit) {
+            context.status(400);
+            return;
+        }
+
         try {
-            List<Message> retrievedMessages = SOCIAL_MEDIA_SERVICE.getAllMessages(accountId);
+            List<Message> feed = socialMediaService.getFeed(accountId, limit);
             context.status(200);
-            context.json(retrievedMessages);
+            context.json(feed);
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Gets the messages read most often recently, e.g. GET /messages/trending?limit=10; see
+     *  SocialMediaService.getTrendingMessages.
+     * Returns a list of objects with the message and its estimated reads, most read first, e.g.
+     *  [{"message": {...}, "count": 42}], thru the context.  The optional "limit" query parameter caps the number of
+     *  messages; it defaults to 10 and can be at most 50.
+     * If the limit is not acceptable, a HTTP response code of 400 is returned.
+     * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
+     * 
+     * @param context Contains the limit query parameter.  Sends back a list of trending messages in JSON.
+     */
+    private void getTrendingMessagesHandler(Context context) {
+        int limit;
+
+        try {
+            limit = getIntQueryParam(context, "limit", 10);
+        } catch (NumberFormatException e) {
+            context.status(400);
+            return;
+        }
+
+        if (limit < 1 || limit > 50) {
+            context.status(400);
+            return;
+        }
+
+        try {
+            List<TrendingMessage> trendingMessages = socialMediaService.getTrendingMessages(limit);
+            context.status(200);
+            context.json(trendingMessages);
+        } catch (SQLException e) {
+            context.status(500);
+        }
+    }
+
+    /**
+     * Gets the accounts that posted the most messages recently, e.g. GET /accounts/top?limit=10; see
+     *  SocialMediaService.getTopAccounts.
+     * Returns a list of account IDs and their estimated posts, most posts first, e.g. [{"account_id": 1, "count": 7}],
+     *  thru the context.  The optional "limit" query parameter caps the number of accounts; it defaults to 10 and can
+     *  be at most 50.
+     * If the limit is not acceptable, a HTTP response code of 400 is returned.
+     * 
+     * @param context Contains the limit query parameter.  Sends back a list of top accounts in JSON.
+     */
+    private void getTopAccountsHandler(Context context) {
+        int limit;
+
+        try {
+            limit = getIntQueryParam(context, "limit", 10);
+        } catch (NumberFormatException e) {
+            context.status(400);
+            return;
+        }
+
+        if (limit < 1 || limit > 50) {
+            context.status(400);
+            return;
+        }
+
+        context.status(200);
+        context.json(socialMediaService.getTopAccounts(limit));
+    }
+
+    /**
+     * Gets one page of the messages posted in a time range, e.g. GET /messages?since=1669940000&until=1669943600 for
+     *  one hour, oldest first.  "since" is the earliest time of posting included and "until" the time of posting
+     *  excluded, both in epoch seconds; either may be left out to leave that end open.  The optional "offset" and
+     *  "limit" query parameters select the page; by default the first 100 messages are returned, and at most 1000 are
+     *  returned per page.
+     * If the "fields" query parameter is provided, only those fields of each message are read and returned; see
+     *  getFieldsQueryParam.
+     * If a parameter is not a number, since is after until, the paging parameters are not acceptable, or a field is
+     *  not a Message field, a HTTP response code of 400 is returned.
+     * If there is an issue interacting with the database, a HTTP response code of 500 is returned to the client.
+     * 
+     * @param context Contains the time range, paging, and fields parameters.  Sends back a list of Messages in JSON.
+     * @param accountId The account ID of the user whose messages to get, or null for every user's messages.
+     */
+    private void getMessagesInRange(Context context, Integer accountId) {
+        long since;
+        long until;
+        int offset;
+        int limit;
+
+        Set<MessageField> fields;
+
+        try {
+            since = getLongQueryParam(context, "since", Long.MIN_VALUE);
+            until = getLongQueryParam(context, "until", Long.MAX_VALUE);
+            offset = getIntQueryParam(context, "offset", 0);
+            limit = getIntQueryParam(context, "limit", 100);
+            fields = getFieldsQueryParam(context);
+        } catch (IllegalArgumentException e) {
+            context.status(400);
+            return;
+        }
+
+        if (since > until || offset < 0 || limit < 1 || limit > 1000) {
+            context.status(400);
+            return;
+        }
+
+        try {
+            List<Message> retrievedMessages;
+            if (fields == null) {
+                retrievedMessages = accountId == null
+                    ? socialMediaService.getMessagesInRange(since, until, offset, limit)
+                    : socialMediaService.getMessagesInRange(accountId, since, until, offset, limit);
+            } else {
+                retrievedMessages = accountId == null
+                    ? socialMediaService.getMessagesInRange(since, until, offset, limit, fields)
+                    : socialMediaService.getMessagesInRange(accountId, since, until, offset, limit, fields);
+            }
+            context.status(200);
+            sendMessages(context, retrievedMessages, fields);
         } catch (SQLException e) {
             context.status(500);
         }
@@ -158,6 +778,8 @@ public class SocialMediaController {
      * Gets a message from the database by using the message ID provided in the URL, which is stored inside the context.
      * Returns a Message object in JSON, with ID, poster ID, message text, and time of posting, thru the context.
      * If the message does not exist, an empty response body is returned to the client.
+     * If the "fields" query parameter is provided, only those fields of the message are read and returned; see
+     *  getFieldsQueryParam.
      * 
      * @param context Contains an ID from the URL path parameter.  Sends back a Message object in JSON.
      */
@@ -165,10 +787,20 @@ public class SocialMediaController {
         int messageId = Integer.parseInt(
             context.pathParam("message_id"));
 
+        Set<MessageField> fields;
         try {
-            SOCIAL_MEDIA_SERVICE.getMessage(messageId)
-                .ifPresent(
-                    (retrievedMessage) -> context.json(retrievedMessage));
+            fields = getFieldsQueryParam(context);
+        } catch (IllegalArgumentException e) {
+            context.status(400);
+            return;
+        }
+
+        try {
+            Optional<Message> retrievedMessage = fields == null
+                ? socialMediaService.getMessage(messageId)
+                : socialMediaService.getMessage(messageId, fields);
+            retrievedMessage.ifPresent(
+                (message) -> sendMessage(context, message, fields));
             context.status(200);
         } catch (SQLException e) {
             context.status(500);
@@ -188,7 +820,7 @@ public class SocialMediaController {
             context.pathParam("message_id"));
 
         try {
-            SOCIAL_MEDIA_SERVICE.deleteMessage(messageId)
+            socialMediaService.deleteMessage(messageId)
                 .ifPresent(
                     (deletedMessage) -> context.json(deletedMessage));
             context.status(200);
@@ -213,7 +845,7 @@ public class SocialMediaController {
         String messageText = context.bodyAsClass(Message.class).getMessage_text();
         
         try {
-            Message updatedMessage = SOCIAL_MEDIA_SERVICE.updateMessage(messageId, messageText);
+            Message updatedMessage = socialMediaService.updateMessage(messageId, messageText);
             context.status(200);
             context.json(updatedMessage);
         } catch (InvalidMessageTextException | MessageDoesNotExistException e) {
@@ -223,4 +855,404 @@ public class SocialMediaController {
         }
     }
 
+    /**
+     * Reports the application's operational metrics: how many message reads shared another read's query, the state of
+     *  the concurrency limiter, the username Bloom filter's memory and false positive rates, and the off-heap message
+     *  cache's hit ratio and memory.
+     * Returns a JSON object from metric name to value, thru the context.
+     * 
+     * @param context Does not contain anything from the client.  Sends back the metrics in JSON.
+     */
+    private void getMetricsHandler(Context context) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("singleFlight.calls", messageDaoSingleFlight.getCallCount());
+        metrics.put("singleFlight.sharedCalls", messageDaoSingleFlight.getSharedCallCount());
+        metrics.put("singleFlight.coalescingRatio", messageDaoSingleFlight.getCoalescingRatio());
+        metrics.put("concurrency.limit", concurrencyLimiter.getLimit());
+        metrics.put("concurrency.inFlight", concurrencyLimiter.getInFlight());
+        metrics.put("concurrency.rejected", concurrencyLimiter.getRejectedCount());
+        socialMediaService.getUsernameFilterStats().forEach(
+            (name, value) -> metrics.put("usernameFilter." + name, value));
+        if (offHeapCache != null) {
+            offHeapCache.getStats().forEach((name, value) -> metrics.put("offHeapCache." + name, value));
+        }
+
+        context.status(200);
+        context.json(metrics);
+    }
+
+    /**
+     * Takes a hot backup of the storage while requests continue to be served; see BackupManager.
+     * If the "socialmedia.admin.token" setting is provided, the request's X-Admin-Token header must match it, or a HTTP
+     *  response code of 401 is returned.
+     * If a backup is already running, a HTTP response code of 409 is returned.
+     * If the backup fails, a HTTP response code of 500 is returned.
+     * 
+     * @param context Does not contain anything from the client.  Sends back the backup's result, in JSON.
+     */
+    private void backupHandler(Context context) {
+        String adminToken = AppConfig.getString("admin.token", null);
+
+        if (adminToken != null && !adminToken.equals(context.header("X-Admin-Token"))) {
+            context.status(401);
+            return;
+        }
+
+        try {
+            BackupManager.Result result = backupManager.backup();
+            context.status(200);
+            context.json(result);
+        } catch (IllegalStateException e) {
+            context.status(409);
+        } catch (SQLException | IOException e) {
+            LOGGER.error("Backup failed", e);
+            context.status(500);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            context.status(500);
+        }
+    }
+
+    /**
+     * Tells a load balancer whether to send traffic here: a HTTP response code of 200 once the application is ready,
+     *  e.g. after warming up, and 503 before that.
+     * 
+     * @param context Does not contain anything from the client.
+     */
+    private void readyHandler(Context context) {
+        context.status(ready ? 200 : 503);
+    }
+
+    /**
+     * Sets whether GET /ready reports the application as ready for traffic.  Ready unless set otherwise.
+     * 
+     * @param ready True once the application is ready.
+     */
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * Runs each read path of the service once with arguments that match nothing, so that the database has planned its
+     *  queries and the in-process indexes have been touched before real traffic arrives.  Nothing is changed.
+     * 
+     * @throws SQLException If there is an issue with the database.
+     */
+    void primeReadPaths() throws SQLException {
+        socialMediaService.getMessage(0);
+        socialMediaService.getAllMessages(0);
+        socialMediaService.getMessagesInRange(0, 0, 0, 1);
+        socialMediaService.getMessagesInRange(0, 0, 0, 0, 1);
+        socialMediaService.searchMessages("warmup", 0, 1);
+        socialMediaService.searchUsernames("warmup", 1);
+        socialMediaService.isUsernameAvailable("warmup");
+        socialMediaService.getFeed(0, 1);
+        socialMediaService.getTrendingMessages(1);
+        socialMediaService.getTopAccounts(1);
+    }
+
+    /**
+     * Writes the snapshots of in-process indexes to disk, so that the next start can load them instead of rebuilding
+     *  them.  Meant to be called when the application shuts down.
+     */
+    public void saveSnapshots() {
+        try {
+            socialMediaService.saveSearchIndexSnapshot();
+        } catch (IOException e) {
+            LOGGER.error("Could not save the search index snapshot", e);
+        }
+    }
+
+    /**
+     * Shuts the application down without losing acknowledged writes.  In order:
+     *  GET /ready reports 503 and the server stops accepting connections;
+     *  requests already running are given until the deadline to finish, while new requests on open connections get a
+     *   HTTP response code of 503;
+     *  the server is stopped, which also closes the message stream;
+     *  the snapshots are saved, and the storage backends are flushed and closed; see DaoFactory.closeAll;
+     *  H2 is checkpointed and its connection closed, so that the next start does not need to recover it.
+     * Every step runs even if an earlier step fails.
+     * 
+     * @param drainTimeoutMillis How long to wait for running requests to finish.
+     * @return True if every running request finished before the deadline.
+     */
+    public boolean shutdown(long drainTimeoutMillis) {
+        LOGGER.info("Shutting down, draining running requests for up to {} ms", drainTimeoutMillis);
+
+        ready = false;
+        draining = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        boolean drained = true;
+
+        if (app != null) {
+            for (Connector connector : app.jettyServer().server().getConnectors()) {
+                if (connector instanceof Graceful) {
+                    ((Graceful) connector).shutdown();
+                }
+            }
+
+            try {
+                while (concurrencyLimiter.getInFlight() > 0) {
+                    if (System.nanoTime() - deadline >= 0) {
+                        LOGGER.error("Shutting down with {} requests still running",
+                         concurrencyLimiter.getInFlight());
+                        drained = false;
+                        break;
+                    }
+                    Thread.sleep(10);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                drained = false;
+            }
+
+            app.stop();
+        } else {
+            socialMediaService.close();
+        }
+
+        saveSnapshots();
+        DaoFactory.closeAll(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        ConnectionUtil.closeConnection();
+
+        LOGGER.info("Shut down");
+        return drained;
+    }
+
+    /**
+     * Wraps a handler so that it only runs if the concurrency limiter admits it.  A request that is shed, or that
+     *  arrives while shutting down, gets a HTTP response code of 503.  The handler's latency feeds the limiter, except
+     *  for requests answered with a 4xx code, e.g. 400 or 429, which are mostly rejected before they reach the
+     *  database; during a burst of them, their near-zero latency would otherwise pull the short average down and raise
+     *  the limit just as load arrives.
+     * 
+     * @param priority The priority of the handler's requests.
+     * @param handler The handler.
+     * @return The wrapped handler.
+     */
+    private Handler limited(ConcurrencyLimiter.Priority priority, Handler handler) {
+        return (context) -> {
+            if (draining) {
+                // Sends clients on kept alive connections to another instance.
+                context.header("Connection", "close");
+                context.status(503);
+                return;
+            }
+
+            ConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(priority);
+
+            if (permit == null) {
+                LOGGER.info("Shedding {} {}, concurrency limit is {}", context.method(), context.path(),
+                 concurrencyLimiter.getLimit());
+                context.status(503);
+                return;
+            }
+
+            try {
+                handler.handle(context);
+            } finally {
+                if (context.statusCode() >= 400 && context.statusCode() < 500) {
+                    permit.releaseWithoutSample();
+                } else {
+                    permit.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a handler so that requests with an Idempotency-Key header run once per key, and retries get the original
+     *  response, with an "Idempotent-Replayed: true" header, without running the handler again; see IdempotencyStore.
+     *  Keys are scoped to the request's path.
+     * If the key is empty or longer than 255 characters, a HTTP response code of 400 is returned.  If the key was used
+     *  for a request with a different body, a HTTP response code of 422 is returned.  If the key's original request is
+     *  still running after the wait, a HTTP response code of 409 is returned.
+     * 
+     * @param handler The handler.
+     * @return The wrapped handler.
+     */
+    private Handler idempotent(Handler handler) {
+        return (context) -> {
+            String key = context.header("Idempotency-Key");
+
+            if (key == null) {
+                handler.handle(context);
+                return;
+            }
+
+            if (key.isEmpty() || key.length() > 255) {
+                context.status(400);
+                return;
+            }
+
+            long requestHash = IdempotencyStore.hash(context.bodyAsBytes());
+            IdempotencyStore.Claim claim;
+
+            try {
+                claim = idempotencyStore.claim(context.path() + " " + key, requestHash);
+            } catch (IllegalArgumentException e) {
+                context.status(422);
+                return;
+            } catch (IllegalStateException e) {
+                context.status(409);
+                return;
+            } catch (SQLException e) {
+                context.status(500);
+                return;
+            }
+
+            IdempotentResponse replayedResponse = claim.getReplayedResponse();
+
+            if (replayedResponse != null) {
+                context.status(replayedResponse.getStatus());
+                if (replayedResponse.getContentType() != null) {
+                    context.contentType(replayedResponse.getContentType());
+                }
+                context.header("Idempotent-Replayed", "true");
+                context.result(replayedResponse.getBody());
+                return;
+            }
+
+            IdempotentResponse response = null;
+            try {
+                handler.handle(context);
+
+                String body = context.result();
+                response = new IdempotentResponse(
+                    requestHash,
+                    context.statusCode(),
+                    context.res().getContentType(),
+                    body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8));
+            } finally {
+                claim.complete(response);
+            }
+        };
+    }
+
+    /**
+     * Creates a rate limiter from the "socialmedia.rateLimit.{name}.perSecond" and "socialmedia.rateLimit.{name}.burst"
+     *  settings.  Each limiter tracks at most "socialmedia.rateLimit.maxKeys" (default 100000) keys.
+     * 
+     * @param name The limiter's name in the settings.
+     * @param defaultPerSecond The sustained rate allowed per key when not provided.
+     * @param defaultBurst The burst allowed per key when not provided.
+     * @param enforce False for a limiter that never rejects, but still does the same work per request.
+     * @return The rate limiter.
+     */
+    private static <K> RateLimiter<K> createRateLimiter(String name, double defaultPerSecond, int defaultBurst,
+     boolean enforce) {
+        if (!enforce) {
+            return new RateLimiter<>(1e9, Integer.MAX_VALUE, AppConfig.getInt("rateLimit.maxKeys", 100_000));
+        }
+
+        return new RateLimiter<>(
+            AppConfig.getDouble("rateLimit." + name + ".perSecond", defaultPerSecond),
+            AppConfig.getInt("rateLimit." + name + ".burst", defaultBurst),
+            AppConfig.getInt("rateLimit.maxKeys", 100_000));
+    }
+
+    /**
+     * Takes a permit for a key from a rate limiter.  If there is none, sets a HTTP response code of 429 and a
+     *  Retry-After header with the whole seconds to wait.
+     * 
+     * @param context The request context.
+     * @param rateLimiter The rate limiter.
+     * @param key The key to limit, e.g. an account ID or IP address.
+     * @return True if the request was rejected.
+     */
+    private static <K> boolean isRateLimited(Context context, RateLimiter<K> rateLimiter, K key) {
+        long waitNanos = rateLimiter.tryAcquire(key);
+
+        if (waitNanos == 0) {
+            return false;
+        }
+
+        LOGGER.info("Rate limited {} {} for {} ns", context.path(), key, waitNanos);
+        context.status(429);
+        long retryAfterSeconds = TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1);
+        context.header("Retry-After", String.valueOf(retryAfterSeconds));
+        return true;
+    }
+
+    /**
+     * @param context The request context.
+     * @return True if the request has any of the time range or paging query parameters.
+     */
+    private static boolean hasTimeRangeParams(Context context) {
+        return context.queryParam("since") != null || context.queryParam("until") != null
+         || context.queryParam("offset") != null || context.queryParam("limit") != null;
+    }
+
+    /**
+     * Reads the optional "fields" query parameter, a comma separated list of the Message fields to return, e.g.
+     *  ?fields=message_id,message_text.  Only those fields are read from the database and sent back, which shrinks
+     *  both the query and the response.
+     * 
+     * @param context The request context.
+     * @return The requested fields, or null if the parameter is not provided.
+     * @throws IllegalArgumentException If the list is empty or names something that is not a Message field.
+     */
+    private static Set<MessageField> getFieldsQueryParam(Context context) {
+        String value = context.queryParam("fields");
+        return value == null ? null : MessageField.parseList(value);
+    }
+
+    /**
+     * Sends a message in JSON, with only the requested fields if any are provided.
+     * 
+     * @param context The request context.
+     * @param message The message.
+     * @param fields The fields to send, or null for every field.
+     */
+    private static void sendMessage(Context context, Message message, Set<MessageField> fields) {
+        if (fields == null) {
+            context.json(message);
+        } else {
+            context.contentType("application/json").result(PartialMessageSerializer.toJson(message, fields));
+        }
+    }
+
+    /**
+     * Sends a list of messages in JSON, with only the requested fields of each if any are provided.
+     * 
+     * @param context The request context.
+     * @param messages The messages.
+     * @param fields The fields to send, or null for every field.
+     */
+    private static void sendMessages(Context context, List<Message> messages, Set<MessageField> fields) {
+        if (fields == null) {
+            context.json(messages);
+        } else {
+            context.contentType("application/json").result(PartialMessageSerializer.toJson(messages, fields));
+        }
+    }
+
+    /**
+     * Reads an optional long query parameter.
+     * 
+     * @param context The request context.
+     * @param name The name of the query parameter.
+     * @param defaultValue The value to use when the parameter is not provided.
+     * @return The parameter's value or the default value.
+     * @throws NumberFormatException If the parameter is not a long.
+     */
+    private static long getLongQueryParam(Context context, String name, long defaultValue) {
+        String value = context.queryParam(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    /**
+     * Reads an optional int query parameter.
+     * 
+     * @param context The request context.
+     * @param name The name of the query parameter.
+     * @param defaultValue The value to use when the parameter is not provided.
+     * @return The parameter's value or the default value.
+     * @throws NumberFormatException If the parameter is not an int.
+     */
+    private static int getIntQueryParam(Context context, String name, int defaultValue) {
+        String value = context.queryParam(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
 }
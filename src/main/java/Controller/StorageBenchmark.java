@@ -0,0 +1,365 @@
+package Controller;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.h2.tools.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.AccountDaoH2;
+import DAO.FollowDaoH2;
+import DAO.MessageDaoH2;
+import Util.AppConfig;
+import Util.SchemaMigrator;
+import Util.StorageProfile;
+import io.javalin.Javalin;
+
+/**
+ * Runs the same API workload over different H2 storage profiles, so that the database settings can be chosen from
+ *  data.
+ *
+ * For each profile a scratch controller is started over a new database on a free port, like in WarmUp.  Each client
+ *  registers an account, and then the clients post, read, list, update, and delete messages over HTTP at the same
+ *  time.  The result gives the throughput, the latency percentiles over every request, and the size of the database
+ *  files once the database is closed.
+ *
+ * Run the main method to compare the built-in profiles, e.g.
+ *  java -Dsocialmedia.benchmark.clients=8 -cp ... Controller.StorageBenchmark
+ */
+public class StorageBenchmark {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StorageBenchmark.class);
+
+    private StorageBenchmark() {
+    }
+
+    /**
+     * Compares in-memory, file, tuned file, and server storage with "socialmedia.benchmark.requestsPerClient"
+     *  (default 2000) requests from each of "socialmedia.benchmark.clients" (default 4) clients, and prints a table of
+     *  the results.  An in-memory run that is not reported goes first, to warm up.  The databases are created in a
+     *  temporary directory, which is deleted afterwards.
+     */
+    public static void main(String[] args) throws Exception {
+        int requestsPerClient = AppConfig.getInt("benchmark.requestsPerClient", 2000);
+        int clients = AppConfig.getInt("benchmark.clients", 4);
+        Path directory = Files.createTempDirectory("storage-benchmark");
+        List<Result> results = new ArrayList<>();
+
+        try {
+            // Compiles the request paths first, so that the first profile measured is not penalized for it.
+            run("warm-up", memProfile(), null, requestsPerClient, clients);
+
+            results.add(run("mem", memProfile(), null, requestsPerClient, clients));
+
+            Map<String, Map<String, String>> fileTunings = new LinkedHashMap<>();
+            fileTunings.put("file", Map.of());
+            fileTunings.put("file, 256 MiB cache", Map.of("CACHE_SIZE", "262144"));
+            fileTunings.put("file, no write delay", Map.of("WRITE_DELAY", "0"));
+            fileTunings.put("file, 1s lock timeout", Map.of("LOCK_TIMEOUT", "1000"));
+
+            int fileNumber = 0;
+            for (Map.Entry<String, Map<String, String>> tuning : fileTunings.entrySet()) {
+                Path fileDirectory = directory.resolve("file" + fileNumber++);
+                results.add(run(
+                    tuning.getKey(), fileProfile(fileDirectory, tuning.getValue()), fileDirectory, requestsPerClient,
+                    clients));
+            }
+
+            Path serverDirectory = directory.resolve("server");
+            Server server = Server.createTcpServer(
+                "-tcpPort", String.valueOf(getFreePort()), "-baseDir", serverDirectory.toString(), "-ifNotExists")
+                .start();
+            try {
+                StorageProfile serverProfile = new StorageProfile(
+                    "server", "localhost:" + server.getPort() + "/benchmark", Map.of(), "sa", "sa");
+                results.add(run("server", serverProfile, serverDirectory, requestsPerClient, clients));
+            } finally {
+                server.stop();
+            }
+
+        } finally {
+            deleteRecursively(directory);
+        }
+
+        System.out.println(String.format(
+            "%-22s %10s %8s %10s %10s %10s %12s",
+            "profile", "requests", "failed", "req/s", "p50 us", "p99 us", "disk bytes"));
+        for (Result result : results) {
+            System.out.println(String.format(
+                "%-22s %10d %8d %10.0f %10d %10d %12d",
+                result.getName(), result.getRequests(), result.getFailedRequests(), result.getRequestsPerSecond(),
+                result.getP50Micros(), result.getP99Micros(), result.getDiskBytes()));
+        }
+    }
+
+    /**
+     * Runs the workload over one storage profile.  The database is shut down afterwards, so that its files hold
+     *  everything written.
+     *
+     * @param name The profile's name in the result.
+     * @param profile The storage profile, which must point at a new database.
+     * @param dataDirectory The directory holding the database's files, or null if it is not stored in files.
+     * @param requestsPerClient The number of requests each client sends, after registering.
+     * @param clients The number of clients sending requests at the same time.
+     * @return The result.
+     * @throws SQLException If there is an issue with the database.
+     * @throws IOException If the database's files can not be measured.
+     * @throws InterruptedException If the thread is interrupted while the clients run.
+     */
+    public static Result run(String name, StorageProfile profile, Path dataDirectory, int requestsPerClient,
+     int clients) throws SQLException, IOException, InterruptedException {
+        LOGGER.info("Benchmarking storage profile {}: {}", name, profile);
+
+        long[] latencyNanos;
+        int failedRequests = 0;
+        long elapsedNanos;
+
+        try (Connection connection =
+                 DriverManager.getConnection(profile.getUrl(), profile.getUsername(), profile.getPassword())) {
+            new SchemaMigrator("db/migration").migrate(connection);
+
+            SocialMediaController controller = new SocialMediaController(
+                new AccountDaoH2(connection),
+                new MessageDaoH2(connection),
+                new FollowDaoH2(connection),
+                false);
+            Javalin app = controller.startAPI().start(0);
+            ExecutorService executor = Executors.newFixedThreadPool(clients);
+
+            try {
+                List<Future<long[]>> futures = new ArrayList<>();
+                long start = System.nanoTime();
+
+                for (int client = 0; client < clients; client++) {
+                    int clientNumber = client;
+                    futures.add(executor.submit(
+                        () -> runClient(new WarmUp.Client(app.port()), clientNumber, requestsPerClient)));
+                }
+
+                latencyNanos = new long[clients * requestsPerClient];
+                int next = 0;
+                for (Future<long[]> future : futures) {
+                    // Failed requests are recorded as negative latencies.
+                    for (long nanos : future.get()) {
+                        if (nanos < 0) {
+                            failedRequests++;
+                        }
+                        latencyNanos[next++] = Math.abs(nanos);
+                    }
+                }
+
+                elapsedNanos = System.nanoTime() - start;
+
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A benchmark client failed.", e.getCause());
+            } finally {
+                executor.shutdownNow();
+                app.stop();
+            }
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+
+        Result result = new Result(name, latencyNanos, failedRequests, elapsedNanos, getDiskBytes(dataDirectory));
+        LOGGER.info("Benchmarked storage profile {}: {}", name, result);
+        return result;
+    }
+
+    /**
+     * Registers an account and then sends requests in cycles: post a message, read it, list the latest messages,
+     *  update it, and either delete it, every fourth cycle, or log in.
+     *
+     * @return Each request's latency in nanoseconds, negated if the request did not succeed.
+     */
+    private static long[] runClient(WarmUp.Client client, int clientNumber, int requests)
+     throws IOException, InterruptedException {
+        String account = "{\"username\": \"benchmark" + clientNumber + "\", \"password\": \"password\"}";
+        HttpResponse<String> registered = client.send("POST", "/register", account);
+        String accountId = registered.body().replaceAll(".*\"account_id\":(\\d+).*", "$1");
+
+        long[] latencyNanos = new long[requests];
+        String messageId = "0";
+
+        for (int i = 0; i < requests; i++) {
+            int cycle = i / 5;
+            long start = System.nanoTime();
+            HttpResponse<String> response;
+
+            switch (i % 5) {
+                case 0:
+                    response = client.send(
+                        "POST",
+                        "/messages",
+                        "{\"posted_by\": " + accountId + ", \"message_text\": \"benchmark message " + i + "\"," +
+                        " \"time_posted_epoch\": " + (1669947792 + i) + "}");
+                    messageId = response.body().replaceAll(".*\"message_id\":(\\d+).*", "$1");
+                    break;
+                case 1:
+                    response = client.send("GET", "/messages/" + messageId, null);
+                    break;
+                case 2:
+                    response = client.send("GET", "/messages?limit=20", null);
+                    break;
+                case 3:
+                    response = client.send(
+                        "PATCH", "/messages/" + messageId, "{\"message_text\": \"benchmarked " + i + "\"}");
+                    break;
+                default:
+                    response = cycle % 4 == 3
+                        ? client.send("DELETE", "/messages/" + messageId, null)
+                        : client.send("POST", "/login", account);
+                    break;
+            }
+
+            long nanos = Math.max(1, System.nanoTime() - start);
+            latencyNanos[i] = client.failed(response) == 0 ? nanos : -nanos;
+        }
+
+        return latencyNanos;
+    }
+
+    private static StorageProfile memProfile() {
+        return new StorageProfile("mem", "benchmark" + System.nanoTime(), Map.of(), "sa", "sa");
+    }
+
+    private static StorageProfile fileProfile(Path directory, Map<String, String> h2Settings) {
+        return new StorageProfile(
+            "file", directory.resolve("benchmark").toAbsolutePath().toString(), new LinkedHashMap<>(h2Settings),
+            "sa", "sa");
+    }
+
+    private static int getFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long getDiskBytes(Path directory) throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong((file) -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted((a, b) -> b.compareTo(a)).toArray(Path[]::new)) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * How one storage profile did under the workload.
+     */
+    public static final class Result {
+        private final String name;
+        private final int requests;
+        private final int failedRequests;
+        private final double requestsPerSecond;
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long maxMicros;
+        private final long diskBytes;
+
+        private Result(String name, long[] latencyNanos, int failedRequests, long elapsedNanos, long diskBytes) {
+            long[] sorted = latencyNanos.clone();
+            Arrays.sort(sorted);
+
+            this.name = name;
+            this.requests = sorted.length;
+            this.failedRequests = failedRequests;
+            this.requestsPerSecond = sorted.length * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(1, elapsedNanos);
+            this.p50Micros = percentileMicros(sorted, 0.50);
+            this.p99Micros = percentileMicros(sorted, 0.99);
+            this.maxMicros = sorted.length == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(sorted[sorted.length - 1]);
+            this.diskBytes = diskBytes;
+        }
+
+        private static long percentileMicros(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+
+            return TimeUnit.NANOSECONDS.toMicros(sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)]);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRequests() {
+            return requests;
+        }
+
+        public int getFailedRequests() {
+            return failedRequests;
+        }
+
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "StorageBenchmark.Result{" +
+                    "name='" + name + '\'' +
+                    ", requests=" + requests +
+                    ", failedRequests=" + failedRequests +
+                    ", requestsPerSecond=" + requestsPerSecond +
+                    ", p50Micros=" + p50Micros +
+                    ", p99Micros=" + p99Micros +
+                    ", maxMicros=" + maxMicros +
+                    ", diskBytes=" + diskBytes +
+                    '}';
+        }
+    }
+
+}
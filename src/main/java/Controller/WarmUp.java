@@ -0,0 +1,262 @@
+package Controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.AccountDaoH2;
+import DAO.FollowDaoH2;
+import DAO.MessageDaoH2;
+import Util.SchemaMigrator;
+import io.javalin.Javalin;
+
+/**
+ * Warms up the application before it takes traffic, so that the first real requests don't run interpreted code against
+ *  cold caches.
+ *
+ * A scratch controller is started over a new in-memory database on a free port, and every route is called over HTTP
+ *  in rounds: register, log in, follow, post, read, search, update, and delete.  This compiles the same code paths real
+ *  requests take, from Jetty to H2.  Then the real controller's read paths are run once with arguments that match
+ *  nothing, so that its own database session has planned its queries.
+ *
+ * The report gives each round's latency and how long it took for rounds to settle at their steady state latency,
+ *  which is the median of the last tenth of the rounds.  Rounds count as settled from the first window of 10 rounds
+ *  whose median is within 20% of it.
+ */
+public class WarmUp {
+
+    private static final int SETTLE_WINDOW = 10;
+    private static final double SETTLE_TOLERANCE = 1.2;
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+
+    private WarmUp() {
+    }
+
+    /**
+     * Warms up the application.
+     *
+     * @param controller The controller that will take the real traffic.
+     * @param rounds The number of rounds of calls to every route.
+     * @return The report of how latency settled.
+     * @throws SQLException If there is an issue with the scratch or the real database.
+     * @throws IOException If a call to the scratch controller fails.
+     * @throws InterruptedException If the thread is interrupted while warming up.
+     */
+    public static Report run(SocialMediaController controller, int rounds)
+     throws SQLException, IOException, InterruptedException {
+        LOGGER.info("Warming up with {} rounds of synthetic requests", rounds);
+
+        long start = System.nanoTime();
+        long[] roundNanos = new long[rounds];
+        long[] roundEndNanos = new long[rounds];
+        int failedRequests = 0;
+
+        try (Connection scratchConnection = DriverManager.getConnection("jdbc:h2:mem:warmup", "sa", "sa")) {
+            new SchemaMigrator("db/migration").migrate(scratchConnection);
+
+            SocialMediaController scratchController = new SocialMediaController(
+                new AccountDaoH2(scratchConnection),
+                new MessageDaoH2(scratchConnection),
+                new FollowDaoH2(scratchConnection),
+                false);
+            Javalin scratchApp = scratchController.startAPI().start(0);
+
+            try {
+                Client client = new Client(scratchApp.port());
+
+                for (int round = 0; round < rounds; round++) {
+                    long roundStart = System.nanoTime();
+                    failedRequests += runRound(client, round);
+                    roundEndNanos[round] = System.nanoTime();
+                    roundNanos[round] = roundEndNanos[round] - roundStart;
+                }
+
+            } finally {
+                scratchApp.stop();
+            }
+        }
+
+        controller.primeReadPaths();
+
+        Report report = new Report(start, roundNanos, roundEndNanos, failedRequests);
+        LOGGER.info("Warm-up done: {}", report);
+        return report;
+    }
+
+    /**
+     * Calls every route once.
+     *
+     * @return The number of calls that did not succeed.
+     */
+    private static int runRound(Client client, int round) throws IOException, InterruptedException {
+        String username = "warmup" + round;
+        String account = "{\"username\": \"" + username + "\", \"password\": \"password\"}";
+        int failed = 0;
+
+        HttpResponse<String> registered = client.send("POST", "/register", account);
+        failed += client.failed(registered);
+        failed += client.failed(client.send("POST", "/login", account));
+
+        String accountId = registered.body().replaceAll(".*\"account_id\":(\\d+).*", "$1");
+        if (round > 0) {
+            // Each scratch account follows the one before it.
+            String followPath = "/accounts/" + accountId + "/following/" + (Integer.parseInt(accountId) - 1);
+            failed += client.failed(client.send("POST", followPath, null));
+        }
+
+        HttpResponse<String> posted = client.send(
+            "POST",
+            "/messages",
+            "{\"posted_by\": " + accountId + ", \"message_text\": \"warm up message " + round + "\"," +
+            " \"time_posted_epoch\": " + (1669947792 + round) + "}");
+        failed += client.failed(posted);
+
+        String messageId = posted.body().replaceAll(".*\"message_id\":(\\d+).*", "$1");
+        failed += client.failed(client.send("GET", "/messages?limit=20", null));
+        failed += client.failed(client.send("GET", "/messages/" + messageId, null));
+        failed += client.failed(client.send("GET", "/accounts/" + accountId + "/messages", null));
+        failed += client.failed(client.send("GET", "/accounts/" + accountId + "/messages?since=1669947792", null));
+        failed += client.failed(client.send("GET", "/accounts/" + accountId + "/feed", null));
+        failed += client.failed(client.send("GET", "/messages/search?q=warm%20message", null));
+        failed += client.failed(client.send("GET", "/accounts/search?prefix=warm", null));
+        failed += client.failed(client.send("GET", "/messages/trending", null));
+        failed += client.failed(client.send("GET", "/accounts/top", null));
+        failed += client.failed(client.send("GET", "/accounts/available?username=" + username, null));
+        failed += client.failed(
+            client.send("PATCH", "/messages/" + messageId, "{\"message_text\": \"warmed up " + round + "\"}"));
+
+        // Keep a bounded number of scratch messages, so that later rounds don't read ever longer lists.
+        if (round >= 20) {
+            failed += client.failed(client.send("DELETE", "/messages/" + (Integer.parseInt(messageId) - 20), null));
+        }
+
+        return failed;
+    }
+
+    /**
+     * Calls a scratch controller over HTTP.
+     */
+    static final class Client {
+        private final HttpClient httpClient = HttpClient.newHttpClient();
+        private final String baseUrl;
+
+        Client(int port) {
+            this.baseUrl = "http://localhost:" + port;
+        }
+
+        HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(baseUrl + path))
+                    .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                    .header("Content-Type", "application/json")
+                    .build();
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        }
+
+        int failed(HttpResponse<String> response) {
+            return response.statusCode() == 200 ? 0 : 1;
+        }
+    }
+
+    /**
+     * How request latency settled during a warm-up.
+     */
+    public static final class Report {
+        private final int rounds;
+        private final int failedRequests;
+        private final long totalMillis;
+        private final long firstRoundMicros;
+        private final long steadyStateRoundMicros;
+        private final int roundsToSteadyState;
+        private final long millisToSteadyState;
+
+        private Report(long startNanos, long[] roundNanos, long[] roundEndNanos, int failedRequests) {
+            this.rounds = roundNanos.length;
+            this.failedRequests = failedRequests;
+            this.totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+            if (rounds == 0) {
+                firstRoundMicros = 0;
+                steadyStateRoundMicros = 0;
+                roundsToSteadyState = 0;
+                millisToSteadyState = 0;
+                return;
+            }
+
+            long steadyStateNanos = median(roundNanos, Math.max(0, rounds - Math.max(1, rounds / 10)), rounds);
+            int settledRound = rounds - 1;
+
+            for (int round = 0; round + SETTLE_WINDOW <= rounds; round++) {
+                if (median(roundNanos, round, round + SETTLE_WINDOW) <= steadyStateNanos * SETTLE_TOLERANCE) {
+                    settledRound = round;
+                    break;
+                }
+            }
+
+            firstRoundMicros = TimeUnit.NANOSECONDS.toMicros(roundNanos[0]);
+            steadyStateRoundMicros = TimeUnit.NANOSECONDS.toMicros(steadyStateNanos);
+            roundsToSteadyState = settledRound + 1;
+            millisToSteadyState = TimeUnit.NANOSECONDS.toMillis(roundEndNanos[settledRound] - startNanos);
+        }
+
+        private static long median(long[] values, int from, int to) {
+            long[] window = Arrays.copyOfRange(values, from, to);
+            Arrays.sort(window);
+            return window[window.length / 2];
+        }
+
+        public int getRounds() {
+            return rounds;
+        }
+
+        public int getFailedRequests() {
+            return failedRequests;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        public long getFirstRoundMicros() {
+            return firstRoundMicros;
+        }
+
+        public long getSteadyStateRoundMicros() {
+            return steadyStateRoundMicros;
+        }
+
+        public int getRoundsToSteadyState() {
+            return roundsToSteadyState;
+        }
+
+        public long getMillisToSteadyState() {
+            return millisToSteadyState;
+        }
+
+        @Override
+        public String toString() {
+            return "WarmUp.Report{" +
+                    "rounds=" + rounds +
+                    ", failedRequests=" + failedRequests +
+                    ", totalMillis=" + totalMillis +
+                    ", firstRoundMicros=" + firstRoundMicros +
+                    ", steadyStateRoundMicros=" + steadyStateRoundMicros +
+                    ", roundsToSteadyState=" + roundsToSteadyState +
+                    ", millisToSteadyState=" + millisToSteadyState +
+                    '}';
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package DAO;
 
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Optional;
 
 import Model.Account;
@@ -35,4 +36,12 @@ public interface AccountDao {
      * @throws SQLException If there is an issue with the database.
      */
     Optional<Account> getAccount(int accountId) throws SQLException;
+
+    /**
+     * Retrieves every account from a database.  If there are no accounts, then the list is empty.
+     * 
+     * @return List containing every Account in the database.
+     * @throws SQLException If there is an issue with the database.
+     */
+    List<Account> getAllAccounts() throws SQLException;
 }
@@ -5,6 +5,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import org.slf4j.Logger;
@@ -71,6 +73,34 @@ public class AccountDaoH2 implements AccountDao {
     }
 
 
+    @Override
+    public List<Account> getAllAccounts() throws SQLException {
+        LOGGER.info("Retrieving all accounts from database");
+
+        List<Account> accounts = new ArrayList<>();
+
+        String sql = "SELECT * FROM account;";
+
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(sql);
+
+            while (resultSet.next()) {
+                accounts.add(
+                    new Account(
+                        resultSet.getInt("account_id"),
+                        resultSet.getString("username"),
+                        resultSet.getString("password")));
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when getting all accounts.");
+            throw e;
+        }
+
+        return accounts;
+    }
+
+
     /**
      * Helper method used to store common code from the getAccount methods.
      * 
@@ -0,0 +1,53 @@
+package DAO;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+import Model.Account;
+
+/**
+ * Sends account writes to the primary AccountDao and publishes them to the replicas of a ReplicaSet, and serves account
+ *  reads from a replica whenever the ReplicaSet considers one fresh enough.
+ */
+public class AccountDaoReplicated implements AccountDao {
+
+    private final AccountDao accountDao;
+    private final ReplicaSet replicaSet;
+
+    /**
+     * @param accountDao The primary's AccountDao.
+     * @param replicaSet The replicas to publish writes to and read from.
+     */
+    public AccountDaoReplicated(AccountDao accountDao, ReplicaSet replicaSet) {
+        this.accountDao = accountDao;
+        this.replicaSet = replicaSet;
+    }
+
+
+    @Override
+    public Account addAccount(Account account) throws SQLException {
+        return replicaSet.write(
+            () -> accountDao.addAccount(account),
+            ReplicaSet.Change.accountAdded());
+    }
+
+
+    @Override
+    public Optional<Account> getAccount(String username) throws SQLException {
+        return replicaSet.read(accountDao, H2Replica::getAccountDao, (dao) -> dao.getAccount(username));
+    }
+
+
+    @Override
+    public Optional<Account> getAccount(int accountId) throws SQLException {
+        return replicaSet.read(accountDao, H2Replica::getAccountDao, (dao) -> dao.getAccount(accountId));
+    }
+
+
+    @Override
+    public List<Account> getAllAccounts() throws SQLException {
+        return replicaSet.read(accountDao, H2Replica::getAccountDao, AccountDao::getAllAccounts);
+    }
+
+}
@@ -0,0 +1,347 @@
+package DAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.h2.tools.Restore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Takes hot backups of the application's storage while it keeps serving writes, and restores them.
+ *
+ * Each backup is a directory named backup-{timestamp} holding h2.zip, made with H2's online BACKUP TO on a connection
+ *  of its own, and, if messages are stored in the mapped log, an mlog directory with a throttled snapshot of its
+ *  segments.  Only the newest backups are kept.  Messages stored in shards are not backed up, so DaoFactory does not
+ *  create a BackupManager for the sharded store.
+ *
+ * Writes report their latency to recordWrite, so that each backup's result can compare the latency of the writes made
+ *  while it ran with that of the writes made while no backup was running.
+ */
+public class BackupManager implements Closeable {
+
+    private static final String H2_BACKUP_FILE = "h2.zip";
+    private static final String MAPPED_LOG_BACKUP_DIRECTORY = "mlog";
+    private static final DateTimeFormatter BACKUP_NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final ConnectionOpener connectionOpener;
+    private final MessageDaoMappedLog mappedLog;
+    private final Path directory;
+    private final long bytesPerSecond;
+    private final int retainedBackups;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder writesDuringBackup = new LongAdder();
+    private final LongAdder writeNanosDuringBackup = new LongAdder();
+    private final LongAdder writesOutsideBackup = new LongAdder();
+    private final LongAdder writeNanosOutsideBackup = new LongAdder();
+    private ScheduledExecutorService scheduler;
+    private volatile Result lastResult;
+    private static final Logger LOGGER = LoggerFactory.getLogger(BackupManager.class);
+
+    /**
+     * Opens a connection to the database to back up.
+     */
+    @FunctionalInterface
+    public interface ConnectionOpener {
+        Connection open() throws SQLException;
+    }
+
+    /**
+     * @param connectionOpener Opens a new connection to the H2 database for each backup.
+     * @param mappedLog The mapped log that stores messages, or null if messages are stored elsewhere.
+     * @param directory The directory to keep backups in.  It is created if it doesn't exist.
+     * @param bytesPerSecond The most bytes per second to copy from the mapped log.  Zero or less is unlimited.
+     * @param retainedBackups The number of newest backups to keep.
+     */
+    public BackupManager(ConnectionOpener connectionOpener, MessageDaoMappedLog mappedLog, Path directory,
+     long bytesPerSecond, int retainedBackups) {
+        this.connectionOpener = connectionOpener;
+        this.mappedLog = mappedLog;
+        this.directory = directory;
+        this.bytesPerSecond = bytesPerSecond;
+        this.retainedBackups = retainedBackups;
+    }
+
+    /**
+     * Takes a backup now.
+     *
+     * @return What was backed up, how long it took, and how writes fared meanwhile.
+     * @throws IllegalStateException If a backup is already running.
+     * @throws SQLException If H2 can not write its backup.
+     * @throws IOException If the mapped log can not be copied, or an old backup can not be deleted.
+     * @throws InterruptedException If the thread is interrupted while the copy is throttled.
+     */
+    public Result backup() throws SQLException, IOException, InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A backup is already running.");
+        }
+
+        long writesBefore = writesDuringBackup.sum();
+        long writeNanosBefore = writeNanosDuringBackup.sum();
+        long start = System.nanoTime();
+        String name = "backup-" + LocalDateTime.now().format(BACKUP_NAME_FORMAT);
+        Path backupDirectory = directory.resolve(name);
+        for (int i = 1; Files.exists(backupDirectory); i++) {
+            backupDirectory = directory.resolve(name + "-" + i);
+        }
+
+        LOGGER.info("Backing up to {}", backupDirectory);
+
+        try {
+            Files.createDirectories(backupDirectory);
+            Path h2Backup = backupDirectory.resolve(H2_BACKUP_FILE);
+
+            try (Connection connection = connectionOpener.open();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("BACKUP TO '" + h2Backup.toString().replace("'", "''") + "';");
+            }
+
+            long bytes = Files.size(h2Backup);
+            if (mappedLog != null) {
+                bytes += mappedLog.snapshot(backupDirectory.resolve(MAPPED_LOG_BACKUP_DIRECTORY), bytesPerSecond);
+            }
+
+            long writes = writesDuringBackup.sum() - writesBefore;
+            Result result = new Result(
+                backupDirectory.getFileName().toString(),
+                bytes,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                writes,
+                meanMicros(writeNanosDuringBackup.sum() - writeNanosBefore, writes),
+                meanMicros(writeNanosOutsideBackup.sum(), writesOutsideBackup.sum()));
+
+            lastResult = result;
+            LOGGER.info("Backed up: {}", result);
+
+            deleteOldBackups();
+            return result;
+
+        } catch (SQLException | IOException | InterruptedException | RuntimeException e) {
+            LOGGER.error("Backup to {} failed", backupDirectory);
+            throw e;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Takes a backup every interval, in the background, until closed.
+     *
+     * @param intervalMillis The time between the end of one backup and the start of the next.
+     */
+    public synchronized void schedule(long intervalMillis) {
+        if (scheduler != null) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+            (runnable) -> {
+                Thread thread = new Thread(runnable, "backup-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        scheduler.scheduleWithFixedDelay(this::backupQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records how long a write took, for comparing write latency during backups with write latency outside them.
+     *
+     * @param nanos The write's latency.
+     */
+    public void recordWrite(long nanos) {
+        if (running.get()) {
+            writesDuringBackup.increment();
+            writeNanosDuringBackup.add(nanos);
+        } else {
+            writesOutsideBackup.increment();
+            writeNanosOutsideBackup.add(nanos);
+        }
+    }
+
+    /**
+     * @return True while a backup is running.
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return The result of the last backup that succeeded, or null if none has.
+     */
+    public Result getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Stops scheduled backups.  A backup that is running is left to finish.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Restores a backup, so that a node can be started from it.  The database files and the mapped log directory must
+     *  not be in use.
+     *
+     * @param backupDirectory The backup-{timestamp} directory of the backup.
+     * @param h2Directory The directory of the H2 database, e.g. "./h2" for the URL jdbc:h2:./h2/db.
+     * @param databaseName The name of the H2 database, e.g. "db" for the URL jdbc:h2:./h2/db.
+     * @param mappedLogDirectory The directory to restore the mapped log to, or null to not restore it.
+     * @throws IOException If the mapped log's segment files can not be copied, or already exist.
+     */
+    public static void restore(Path backupDirectory, Path h2Directory, String databaseName, Path mappedLogDirectory)
+     throws IOException {
+        LOGGER.info("Restoring {} to database {} in {}", backupDirectory, databaseName, h2Directory);
+
+        Files.createDirectories(h2Directory);
+        Restore.execute(backupDirectory.resolve(H2_BACKUP_FILE).toString(), h2Directory.toString(), databaseName);
+
+        Path mappedLogBackup = backupDirectory.resolve(MAPPED_LOG_BACKUP_DIRECTORY);
+        if (mappedLogDirectory != null && Files.isDirectory(mappedLogBackup)) {
+            Files.createDirectories(mappedLogDirectory);
+
+            try (DirectoryStream<Path> segments = Files.newDirectoryStream(mappedLogBackup)) {
+                for (Path segment : segments) {
+                    Files.copy(segment, mappedLogDirectory.resolve(segment.getFileName()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores a backup from the command line.
+     *
+     * @param args {backup directory} {H2 directory} {database name} [{mapped log directory}]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 4) {
+            System.err.println(
+                "Usage: BackupManager {backup directory} {H2 directory} {database name} [{mapped log directory}]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        restore(Paths.get(args[0]), Paths.get(args[1]), args[2], args.length == 4 ? Paths.get(args[3]) : null);
+        System.out.println("Restored in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    private void backupQuietly() {
+        try {
+            backup();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException | IOException | RuntimeException e) {
+            LOGGER.error("Scheduled backup failed", e);
+        }
+    }
+
+    /**
+     * Deletes all but the newest backups.  Backup names sort in the order they were taken.
+     */
+    private void deleteOldBackups() throws IOException {
+        List<Path> backups = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "backup-*")) {
+            stream.forEach(backups::add);
+        }
+
+        backups.sort(null);
+
+        for (Path backup : backups.subList(0, Math.max(0, backups.size() - retainedBackups))) {
+            LOGGER.info("Deleting old backup {}", backup);
+
+            try (var paths = Files.walk(backup)) {
+                List<Path> contents = new ArrayList<>();
+                paths.forEach(contents::add);
+
+                // Children before their directories.
+                for (int i = contents.size() - 1; i >= 0; i--) {
+                    Files.delete(contents.get(i));
+                }
+            }
+        }
+    }
+
+    private static long meanMicros(long nanos, long count) {
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(nanos / count);
+    }
+
+    /**
+     * What a backup wrote, how long it took, and how writes fared meanwhile.
+     */
+    public static final class Result {
+        private final String name;
+        private final long bytes;
+        private final long millis;
+        private final long writesDuringBackup;
+        private final long meanWriteMicrosDuringBackup;
+        private final long meanWriteMicrosOutsideBackup;
+
+        private Result(String name, long bytes, long millis, long writesDuringBackup, long meanWriteMicrosDuringBackup,
+         long meanWriteMicrosOutsideBackup) {
+            this.name = name;
+            this.bytes = bytes;
+            this.millis = millis;
+            this.writesDuringBackup = writesDuringBackup;
+            this.meanWriteMicrosDuringBackup = meanWriteMicrosDuringBackup;
+            this.meanWriteMicrosOutsideBackup = meanWriteMicrosOutsideBackup;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getWritesDuringBackup() {
+            return writesDuringBackup;
+        }
+
+        public long getMeanWriteMicrosDuringBackup() {
+            return meanWriteMicrosDuringBackup;
+        }
+
+        public long getMeanWriteMicrosOutsideBackup() {
+            return meanWriteMicrosOutsideBackup;
+        }
+
+        @Override
+        public String toString() {
+            return "BackupManager.Result{" +
+                    "name='" + name + '\'' +
+                    ", bytes=" + bytes +
+                    ", millis=" + millis +
+                    ", writesDuringBackup=" + writesDuringBackup +
+                    ", meanWriteMicrosDuringBackup=" + meanWriteMicrosDuringBackup +
+                    ", meanWriteMicrosOutsideBackup=" + meanWriteMicrosOutsideBackup +
+                    '}';
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+package DAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Util.AppConfig;
+import Util.ConnectionUtil;
+
+/**
+ * Builds the DAOs the application runs on, as chosen by settings.  Storage backends are created on first use and then
+ *  shared by every caller in the process, like the connection in ConnectionUtil.
+ */
+public class DaoFactory {
+
+    private static MessageDao messageStore = null;
+    private static ReplicaSet replicaSet = null;
+    private static boolean replicaSetCreated = false;
+    private static BackupManager backupManager = null;
+    private static boolean backupManagerCreated = false;
+    private static final Logger LOGGER = LoggerFactory.getLogger(DaoFactory.class);
+
+    private DaoFactory() {
+    }
+
+    /**
+     * @return The AccountDao for the primary database, routed thru the read replicas if any are configured.
+     */
+    public static synchronized AccountDao createAccountDao() {
+        AccountDao accountDao = new AccountDaoH2(ConnectionUtil.getConnection());
+
+        return getReplicaSet()
+            .<AccountDao>map((replicas) -> new AccountDaoReplicated(accountDao, replicas))
+            .orElse(accountDao);
+    }
+
+    /**
+     * @return The MessageDao for the message storage backend, routed thru the read replicas if any are configured.
+     */
+    public static synchronized MessageDao createMessageDao() {
+        MessageDao messageDao = getMessageStore();
+
+        return getReplicaSet()
+            .<MessageDao>map((replicas) -> new MessageDaoReplicated(messageDao, replicas))
+            .orElse(messageDao);
+    }
+
+    /**
+     * @return The FollowDao for the primary database.  Follows are always read from the primary, since a feed must
+     *  reflect a follow as soon as it is acknowledged.
+     */
+    public static synchronized FollowDao createFollowDao() {
+        return new FollowDaoH2(ConnectionUtil.getConnection());
+    }
+
+    /**
+     * @return The IdempotencyDao for the primary database if the "socialmedia.idempotency.persistent" setting is true,
+     *  so that every node replays the responses to idempotency keys, or an empty Optional to keep them in memory.
+     */
+    public static synchronized Optional<IdempotencyDao> createIdempotencyDao() {
+        if (!AppConfig.getBoolean("idempotency.persistent", false)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new IdempotencyDaoH2(ConnectionUtil.getConnection()));
+    }
+
+    /**
+     * Gets the read replicas listed in the "socialmedia.replicas.urls" setting, a comma separated list of H2 JDBC URLs,
+     *  creating them and copying the primary's rows to them on first use.  Replicas are read from only while they are
+     *  at most "socialmedia.replicas.maxStalenessMillis" (default 1000) behind the primary.
+     *
+     * @return The replica set, or an empty Optional if no replicas are configured.
+     */
+    public static synchronized Optional<ReplicaSet> getReplicaSet() {
+        if (!replicaSetCreated) {
+            replicaSet = createReplicaSet();
+            replicaSetCreated = true;
+        }
+
+        return Optional.ofNullable(replicaSet);
+    }
+
+    /**
+     * Gets the backup manager that keeps backups in the directory named by the "socialmedia.backup.directory" setting,
+     *  creating it on first use.  The mapped log, if messages are stored in it, is copied at no more than
+     *  "socialmedia.backup.bytesPerSecond" (default 32 MiB) bytes per second, and the newest
+     *  "socialmedia.backup.retain" (default 5) backups are kept.  If "socialmedia.backup.intervalMillis" is provided,
+     *  a backup is also taken every interval.
+     * Backups cover the H2 database and the mapped log, not the shards, so a backup directory can not be configured
+     *  together with the sharded message store; back up each shard's database instead.
+     *
+     * @return The backup manager, or an empty Optional if no backup directory is configured.
+     * @throws IllegalArgumentException If a backup directory is configured and messages are stored in shards.
+     */
+    public static synchronized Optional<BackupManager> getBackupManager() {
+        if (!backupManagerCreated) {
+            String directory = AppConfig.getString("backup.directory", null);
+
+            if (directory != null) {
+                if (AppConfig.getString("messageStore", "h2").equals("sharded")) {
+                    throw new IllegalArgumentException(
+                        "Setting 'socialmedia.backup.directory' is not supported for the sharded message store, whose"
+                         + " shards would be left out of the backups.");
+                }
+
+                MessageDao store = getMessageStore();
+                backupManager = new BackupManager(
+                    ConnectionUtil::openConnection,
+                    store instanceof MessageDaoMappedLog ? (MessageDaoMappedLog) store : null,
+                    Paths.get(directory),
+                    AppConfig.getLong("backup.bytesPerSecond", 32L * 1024 * 1024),
+                    AppConfig.getInt("backup.retain", 5));
+
+                long intervalMillis = AppConfig.getLong("backup.intervalMillis", 0);
+                if (intervalMillis > 0) {
+                    backupManager.schedule(intervalMillis);
+                }
+            }
+
+            backupManagerCreated = true;
+        }
+
+        return Optional.ofNullable(backupManager);
+    }
+
+    /**
+     * Flushes and closes the shared storage backends, e.g. when the application shuts down.  Scheduled backups are
+     *  stopped, and the read replicas are given up to the timeout to apply every change made on the primary before
+     *  they are closed; the message store is then closed, which for the mapped log forces every segment to the storage
+     *  device.  The next call to a create method creates new backends.
+     *
+     * @param replicationTimeoutMillis How long to wait for the read replicas to catch up.
+     */
+    public static synchronized void closeAll(long replicationTimeoutMillis) {
+        if (backupManager != null) {
+            backupManager.close();
+        }
+        backupManager = null;
+        backupManagerCreated = false;
+
+        if (replicaSet != null) {
+            try {
+                if (!replicaSet.awaitReplication(replicationTimeoutMillis)) {
+                    LOGGER.error("Closing read replicas that are behind the primary");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            replicaSet.close();
+        }
+        replicaSet = null;
+        replicaSetCreated = false;
+
+        if (messageStore instanceof Closeable) {
+            try {
+                ((Closeable) messageStore).close();
+            } catch (IOException e) {
+                LOGGER.error("Could not close the message store", e);
+            }
+        }
+        messageStore = null;
+    }
+
+    /**
+     * @return The shared message storage backend, creating it on first use.
+     */
+    private static MessageDao getMessageStore() {
+        if (messageStore == null) {
+            messageStore = createMessageStore();
+        }
+
+        return messageStore;
+    }
+
+    /**
+     * Creates the message storage backend chosen by the "socialmedia.messageStore" setting.  "h2", the default, stores
+     *  messages in the H2 database.  "mapped-log" stores them in memory-mapped segment files under the
+     *  "socialmedia.mappedLog.directory" directory, for write-heavy deployments.  "sharded" spreads them across the H2
+     *  databases listed in "socialmedia.shards.urls".
+     *
+     * @return The MessageDao to use for the message storage backend.
+     */
+    private static MessageDao createMessageStore() {
+        String messageStore = AppConfig.getString("messageStore", "h2");
+
+        switch (messageStore) {
+            case "h2":
+                return new MessageDaoH2(ConnectionUtil.getConnection());
+            case "mapped-log":
+                try {
+                    return new MessageDaoMappedLog(
+                        Paths.get(AppConfig.getString("mappedLog.directory", "./mlog")),
+                        AppConfig.getInt("mappedLog.segmentBytes", 64 * 1024 * 1024),
+                        AppConfig.getDouble("mappedLog.compactionLiveRatio", 0.5),
+                        AppConfig.getLong("mappedLog.compactionIntervalMillis", 60_000));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not open the mapped message log.", e);
+                }
+            case "sharded":
+                return createShardedStore();
+            default:
+                throw new IllegalArgumentException(
+                    String.format(
+                        "Setting 'socialmedia.messageStore' is not a recognized store: %s", messageStore));
+        }
+    }
+
+    /**
+     * Creates a sharded message store over the H2 databases in the "socialmedia.shards.urls" setting, a comma separated
+     *  list of JDBC URLs in shard order.  Each shard gets a pool of at most "socialmedia.shards.poolSize" (default 8)
+     *  connections.
+     */
+    private static MessageDao createShardedStore() {
+        String urls = AppConfig.getString("shards.urls", null);
+
+        if (urls == null) {
+            throw new IllegalArgumentException("Setting 'socialmedia.shards.urls' is required for the sharded store.");
+        }
+
+        List<JdbcConnectionPool> pools = new ArrayList<>();
+
+        for (String url : urls.split(",")) {
+            JdbcConnectionPool pool = JdbcConnectionPool.create(
+                url.trim(),
+                AppConfig.getString("shards.username", "sa"),
+                AppConfig.getString("shards.password", "sa"));
+            pool.setMaxConnections(AppConfig.getInt("shards.poolSize", 8));
+            pools.add(pool);
+        }
+
+        try {
+            MessageDaoSharded shardedStore = new MessageDaoSharded(pools);
+            LOGGER.info("Created sharded message store with {} shards", pools.size());
+            return shardedStore;
+
+        } catch (SQLException e) {
+            pools.forEach(JdbcConnectionPool::dispose);
+            throw new IllegalStateException("Could not set up the message shards: " + urls, e);
+        }
+    }
+
+    private static ReplicaSet createReplicaSet() {
+        String urls = AppConfig.getString("replicas.urls", null);
+
+        if (urls == null) {
+            return null;
+        }
+
+        List<H2Replica> replicas = new ArrayList<>();
+
+        try {
+            for (String url : urls.split(",")) {
+                replicas.add(
+                    new H2Replica(
+                        url.trim(),
+                        DriverManager.getConnection(
+                            url.trim(),
+                            AppConfig.getString("replicas.username", "sa"),
+                            AppConfig.getString("replicas.password", "sa"))));
+            }
+
+            ReplicaSet newReplicaSet = new ReplicaSet(replicas, AppConfig.getLong("replicas.maxStalenessMillis", 1000));
+            newReplicaSet.synchronize(new AccountDaoH2(ConnectionUtil.getConnection()), getMessageStore());
+
+            LOGGER.info("Created {} read replicas", replicas.size());
+            return newReplicaSet;
+
+        } catch (SQLException e) {
+            replicas.forEach(H2Replica::close);
+            throw new IllegalStateException("Could not set up the read replicas: " + urls, e);
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package DAO;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+public interface FollowDao {
+
+    /**
+     * Makes one account follow another in a database.  If it already follows it, nothing happens.
+     * 
+     * @param followerId The account ID of the follower.
+     * @param followeeId The account ID of the account to follow.
+     * @return True if the follow was added, false if it already existed.
+     * @throws SQLException If there is an issue with the database, e.g. either account does not exist.
+     */
+    boolean addFollow(int followerId, int followeeId) throws SQLException;
+
+    /**
+     * Makes one account stop following another in a database.  If it doesn't follow it, nothing happens.
+     * 
+     * @param followerId The account ID of the follower.
+     * @param followeeId The account ID of the account to stop following.
+     * @return True if the follow was removed, false if it didn't exist.
+     * @throws SQLException If there is an issue with the database.
+     */
+    boolean removeFollow(int followerId, int followeeId) throws SQLException;
+
+    /**
+     * Gets the accounts that an account follows.
+     * 
+     * @param followerId The account ID of the follower.
+     * @return The account IDs of the accounts it follows, in ascending order.  Empty if it follows none.
+     * @throws SQLException If there is an issue with the database.
+     */
+    int[] getFolloweeIds(int followerId) throws SQLException;
+
+    /**
+     * Gets the accounts that follow an account.
+     * 
+     * @param followeeId The account ID of the account that is followed.
+     * @return The account IDs of its followers, in ascending order.  Empty if it has none.
+     * @throws SQLException If there is an issue with the database.
+     */
+    int[] getFollowerIds(int followeeId) throws SQLException;
+
+    /**
+     * Counts the followers of each account, e.g. to load counts kept in memory.
+     * 
+     * @return The number of followers of each account ID that has any.
+     * @throws SQLException If there is an issue with the database.
+     */
+    Map<Integer, Integer> countFollowersByAccount() throws SQLException;
+}
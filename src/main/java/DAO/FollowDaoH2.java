@@ -0,0 +1,136 @@
+package DAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class FollowDaoH2 implements FollowDao {
+
+    private final Connection connection;
+    private static final Logger LOGGER = LoggerFactory.getLogger(FollowDaoH2.class);
+
+    public FollowDaoH2(Connection connection) {
+        this.connection = connection;
+    }
+
+
+    @Override
+    public boolean addFollow(int followerId, int followeeId) throws SQLException {
+        LOGGER.info("Adding follow to database, follower ID: {}, followee ID: {}", followerId, followeeId);
+
+        String sql = "INSERT INTO follow(follower_id, followee_id) SELECT ?, ? WHERE NOT EXISTS" +
+         " (SELECT 1 FROM follow WHERE follower_id = ? AND followee_id = ?);";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setInt(1, followerId);
+            preparedStatement.setInt(2, followeeId);
+            preparedStatement.setInt(3, followerId);
+            preparedStatement.setInt(4, followeeId);
+
+            return preparedStatement.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when adding follow, follower ID: {}, followee ID: {}", followerId, followeeId);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public boolean removeFollow(int followerId, int followeeId) throws SQLException {
+        LOGGER.info("Removing follow from database, follower ID: {}, followee ID: {}", followerId, followeeId);
+
+        String sql = "DELETE FROM follow WHERE follower_id = ? AND followee_id = ?;";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setInt(1, followerId);
+            preparedStatement.setInt(2, followeeId);
+
+            return preparedStatement.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when removing follow, follower ID: {}, followee ID: {}",
+             followerId, followeeId);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public int[] getFolloweeIds(int followerId) throws SQLException {
+        LOGGER.info("Getting accounts followed by account ID: {}", followerId);
+
+        return getIds(
+            "SELECT followee_id FROM follow WHERE follower_id = ? ORDER BY followee_id;", followerId);
+    }
+
+
+    @Override
+    public int[] getFollowerIds(int followeeId) throws SQLException {
+        LOGGER.info("Getting followers of account ID: {}", followeeId);
+
+        return getIds(
+            "SELECT follower_id FROM follow WHERE followee_id = ? ORDER BY follower_id;", followeeId);
+    }
+
+
+    @Override
+    public Map<Integer, Integer> countFollowersByAccount() throws SQLException {
+        LOGGER.info("Counting followers in database by account");
+
+        Map<Integer, Integer> counts = new HashMap<>();
+
+        try {
+            ResultSet resultSet = connection.createStatement().executeQuery(
+                "SELECT followee_id, COUNT(*) FROM follow GROUP BY followee_id;");
+
+            while (resultSet.next()) {
+                counts.put(resultSet.getInt(1), resultSet.getInt(2));
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when counting followers by account");
+            throw e;
+        }
+
+        return counts;
+    }
+
+    private int[] getIds(String sql, int accountId) throws SQLException {
+        int[] ids = new int[16];
+        int numIds = 0;
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setInt(1, accountId);
+
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                if (numIds == ids.length) {
+                    ids = Arrays.copyOf(ids, numIds * 2);
+                }
+                ids[numIds++] = resultSet.getInt(1);
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when getting follows for account ID: {}", accountId);
+            throw e;
+        }
+
+        return Arrays.copyOf(ids, numIds);
+    }
+
+}
@@ -0,0 +1,259 @@
+package DAO;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Account;
+import Model.Message;
+
+/**
+ * A read replica kept in a separate H2 database.  Changes published by a ReplicaSet are queued and applied in order by
+ *  a background thread, and the replica's DAOs serve read-only queries from its own connection.
+ */
+public class H2Replica implements Closeable {
+
+    private final String name;
+    private final Connection connection;
+    private final AccountDao accountDao;
+    private final MessageDao messageDao;
+    private final BlockingQueue<ReplicaSet.Change> pendingChanges = new LinkedBlockingQueue<>();
+    private final Thread applier;
+    private volatile ReplicaSet.Change applyingChange;
+    private volatile long appliedSequence;
+    private volatile boolean healthy = true;
+    private static final Logger LOGGER = LoggerFactory.getLogger(H2Replica.class);
+
+    /**
+     * Creates the replica's tables if they don't exist and starts the background thread that applies changes.
+     *
+     * @param name A name for the replica, used in logging.
+     * @param connection The connection to the replica's database.
+     * @throws SQLException If the replica's tables can not be created.
+     */
+    public H2Replica(String name, Connection connection) throws SQLException {
+        this.name = name;
+        this.connection = connection;
+        this.accountDao = new AccountDaoH2(connection);
+        this.messageDao = new MessageDaoH2(connection);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS account (" +
+                " account_id int primary key auto_increment, username varchar(255) unique, password varchar(255));");
+            statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS message (" +
+                " message_id int primary key auto_increment, posted_by int, message_text varchar(255)," +
+                " time_posted_epoch bigint);");
+            statement.executeUpdate(
+                "CREATE INDEX IF NOT EXISTS message_posted_by_time_posted ON message(posted_by, time_posted_epoch);");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS message_time_posted ON message(time_posted_epoch);");
+        }
+
+        applier = new Thread(this::applyChanges, "replica-applier-" + name);
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    /**
+     * @return The DAO that reads accounts from this replica.
+     */
+    public AccountDao getAccountDao() {
+        return accountDao;
+    }
+
+    /**
+     * @return The DAO that reads messages from this replica.
+     */
+    public MessageDao getMessageDao() {
+        return messageDao;
+    }
+
+    /**
+     * @return The sequence number of the last change applied to this replica.
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return How long the oldest change that has not been applied yet has been waiting, in milliseconds.  Zero if the
+     *  replica is caught up.
+     */
+    public long getLagMillis() {
+        ReplicaSet.Change oldest = applyingChange;
+
+        if (oldest == null) {
+            oldest = pendingChanges.peek();
+        }
+
+        return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.publishedAtNanos);
+    }
+
+    /**
+     * @return False once applying a change has failed.  An unhealthy replica is never read from again.
+     */
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * Replaces the replica's contents with a full copy of the primary's rows.
+     *
+     * @param accounts Every account in the primary.
+     * @param messages Every message in the primary.
+     * @param sequence The sequence number of the last change already reflected in the copy.
+     * @throws SQLException If there is an issue with the replica's database.
+     */
+    void synchronize(List<Account> accounts, List<Message> messages, long sequence) throws SQLException {
+        LOGGER.info("Copying {} accounts and {} messages to replica {}", accounts.size(), messages.size(), name);
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (Statement statement = connection.createStatement();
+             PreparedStatement insertAccount = connection.prepareStatement(
+                "INSERT INTO account(account_id, username, password) VALUES (?, ?, ?);");
+             PreparedStatement insertMessage = connection.prepareStatement(
+                "INSERT INTO message(message_id, posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?, ?);")) {
+            statement.executeUpdate("DELETE FROM message;");
+            statement.executeUpdate("DELETE FROM account;");
+
+            for (Account account : accounts) {
+                insertAccount.setInt(1, account.getAccount_id());
+                insertAccount.setString(2, account.getUsername());
+                insertAccount.setString(3, account.getPassword());
+                insertAccount.addBatch();
+            }
+            insertAccount.executeBatch();
+
+            for (Message message : messages) {
+                insertMessage.setInt(1, message.getMessage_id());
+                insertMessage.setInt(2, message.getPosted_by());
+                insertMessage.setString(3, message.getMessage_text());
+                insertMessage.setLong(4, message.getTime_posted_epoch());
+                insertMessage.addBatch();
+            }
+            insertMessage.executeBatch();
+
+            connection.commit();
+            pendingChanges.clear();
+            appliedSequence = sequence;
+
+        } catch (SQLException e) {
+            connection.rollback();
+            LOGGER.error("Database error when copying primary rows to replica {}", name);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Queues a change to be applied by the background thread.
+     */
+    void enqueue(ReplicaSet.Change change) {
+        pendingChanges.add(change);
+    }
+
+    private void applyChanges() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ReplicaSet.Change change = pendingChanges.take();
+
+                if (change.sequence <= appliedSequence) {
+                    continue;
+                }
+
+                applyingChange = change;
+                apply(change);
+                appliedSequence = change.sequence;
+                applyingChange = null;
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (SQLException e) {
+                LOGGER.error("Replica {} could not apply a change and will no longer be read from", name, e);
+                healthy = false;
+                return;
+            }
+        }
+    }
+
+    private void apply(ReplicaSet.Change change) throws SQLException {
+        switch (change.type) {
+            case ACCOUNT_ADDED:
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "MERGE INTO account KEY(account_id) VALUES (?, ?, ?);")) {
+                    statement.setInt(1, change.account.getAccount_id());
+                    statement.setString(2, change.account.getUsername());
+                    statement.setString(3, change.account.getPassword());
+                    statement.executeUpdate();
+                }
+                break;
+            case MESSAGE_ADDED:
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "MERGE INTO message KEY(message_id) VALUES (?, ?, ?, ?);")) {
+                    statement.setInt(1, change.message.getMessage_id());
+                    statement.setInt(2, change.message.getPosted_by());
+                    statement.setString(3, change.message.getMessage_text());
+                    statement.setLong(4, change.message.getTime_posted_epoch());
+                    statement.executeUpdate();
+                }
+                break;
+            case MESSAGE_UPDATED:
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "UPDATE message SET message_text = ? WHERE message_id = ?;")) {
+                    statement.setString(1, change.message.getMessage_text());
+                    statement.setInt(2, change.message.getMessage_id());
+                    statement.executeUpdate();
+                }
+                break;
+            case MESSAGE_DELETED:
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "DELETE FROM message WHERE message_id = ?;")) {
+                    statement.setInt(1, change.message.getMessage_id());
+                    statement.executeUpdate();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown change type: " + change.type);
+        }
+    }
+
+    /**
+     * Stops applying changes and closes the replica's connection.
+     */
+    @Override
+    public void close() {
+        applier.interrupt();
+
+        try {
+            applier.join(TimeUnit.SECONDS.toMillis(5));
+            connection.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException e) {
+            LOGGER.error("Could not close the connection of replica {}", name, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "H2Replica{" +
+                "name='" + name + '\'' +
+                ", appliedSequence=" + appliedSequence +
+                ", healthy=" + healthy +
+                '}';
+    }
+
+}
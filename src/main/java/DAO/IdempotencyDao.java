@@ -0,0 +1,38 @@
+package DAO;
+
+import java.sql.SQLException;
+import java.util.Optional;
+
+import Model.IdempotentResponse;
+
+public interface IdempotencyDao {
+
+    /**
+     * Gets the response stored for an idempotency key.
+     * 
+     * @param key The idempotency key, scoped to the request's path.
+     * @return The stored response, or an empty Optional if there is none.
+     * @throws SQLException If there is an issue with the database.
+     */
+    Optional<IdempotentResponse> getResponse(String key) throws SQLException;
+
+    /**
+     * Stores the response for an idempotency key, unless one is already stored for it.
+     * 
+     * @param key The idempotency key, scoped to the request's path.
+     * @param response The response.
+     * @param createdMillis When the response was made, in epoch milliseconds.
+     * @return True if the response was stored, false if one was already stored for the key.
+     * @throws SQLException If there is an issue with the database.
+     */
+    boolean addResponse(String key, IdempotentResponse response, long createdMillis) throws SQLException;
+
+    /**
+     * Deletes the responses made before a time, e.g. once their keys have expired.
+     * 
+     * @param createdMillis The time, in epoch milliseconds.
+     * @return The number of responses deleted.
+     * @throws SQLException If there is an issue with the database.
+     */
+    int deleteResponsesBefore(long createdMillis) throws SQLException;
+}
@@ -0,0 +1,102 @@
+package DAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.IdempotentResponse;
+
+public class IdempotencyDaoH2 implements IdempotencyDao {
+
+    private final Connection connection;
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyDaoH2.class);
+
+    public IdempotencyDaoH2(Connection connection) {
+        this.connection = connection;
+    }
+
+
+    @Override
+    public Optional<IdempotentResponse> getResponse(String key) throws SQLException {
+        LOGGER.info("Getting idempotent response from database, key: {}", key);
+
+        String sql = "SELECT request_hash, status, content_type, body FROM idempotency_key WHERE idempotency_key = ?;";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setString(1, key);
+
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            if (resultSet.next()) {
+                return Optional.of(
+                    new IdempotentResponse(
+                        resultSet.getLong("request_hash"),
+                        resultSet.getInt("status"),
+                        resultSet.getString("content_type"),
+                        resultSet.getBytes("body")));
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when getting idempotent response, key: {}", key);
+            throw e;
+        }
+
+        return Optional.empty();
+    }
+
+
+    @Override
+    public boolean addResponse(String key, IdempotentResponse response, long createdMillis) throws SQLException {
+        LOGGER.info("Adding idempotent response to database, key: {}, response: {}", key, response);
+
+        String sql = "INSERT INTO idempotency_key(idempotency_key, request_hash, status, content_type, body," +
+         " created_millis) SELECT ?, ?, ?, ?, ?, ? WHERE NOT EXISTS" +
+         " (SELECT 1 FROM idempotency_key WHERE idempotency_key = ?);";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setString(1, key);
+            preparedStatement.setLong(2, response.getRequestHash());
+            preparedStatement.setInt(3, response.getStatus());
+            preparedStatement.setString(4, response.getContentType());
+            preparedStatement.setBytes(5, response.getBody());
+            preparedStatement.setLong(6, createdMillis);
+            preparedStatement.setString(7, key);
+
+            return preparedStatement.executeUpdate() > 0;
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when adding idempotent response, key: {}", key);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public int deleteResponsesBefore(long createdMillis) throws SQLException {
+        LOGGER.info("Deleting idempotent responses from database made before: {}", createdMillis);
+
+        String sql = "DELETE FROM idempotency_key WHERE created_millis < ?;";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setLong(1, createdMillis);
+
+            return preparedStatement.executeUpdate();
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when deleting idempotent responses made before: {}", createdMillis);
+            throw e;
+        }
+    }
+
+}
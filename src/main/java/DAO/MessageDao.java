@@ -1,10 +1,14 @@
 package DAO;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import Model.Message;
+import Model.MessageField;
 
 public interface MessageDao {
 
@@ -44,6 +48,179 @@ public interface MessageDao {
      */
     Optional<Message> getMessage(int messageId) throws SQLException;
 
+    /**
+     * Gets the messages with the provided message IDs from a database.  IDs of messages that do not exist are skipped.
+     * 
+     * @param messageIds The message IDs of the messages to retrieve, in ascending order.
+     * @return List containing the Messages that exist, in ascending message ID order.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getMessages(int[] messageIds) throws SQLException {
+        List<Message> messages = new ArrayList<>(messageIds.length);
+
+        for (int messageId : messageIds) {
+            getMessage(messageId).ifPresent(messages::add);
+        }
+
+        return messages;
+    }
+
+    /**
+     * Gets all messages from a database, reading only some of their fields, e.g. to shrink a list of messages.
+     *  Implementations may read more fields than asked for; fields not read are left at their default values.
+     * 
+     * @param fields The fields to read.
+     * @return List containing Messages that exist in the database, with at least the requested fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
+        return getAllMessages();
+    }
+
+    /**
+     * Gets all messages from a database that belong to a particular user, reading only some of their fields; see
+     *  getAllMessages(Set).
+     * 
+     * @param accountId The account ID of the user of the messages to retrieve.
+     * @param fields The fields to read.
+     * @return List containing Messages from a particular user, with at least the requested fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
+        return getAllMessages(accountId);
+    }
+
+    /**
+     * Gets a message from a database by using message ID, reading only some of its fields; see getAllMessages(Set).
+     * 
+     * @param messageId The message ID of the message to retrieve.
+     * @param fields The fields to read.
+     * @return A Message object with at least the requested fields, or an empty Optional if it does not exist.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
+        return getMessage(messageId);
+    }
+
+    /**
+     * Gets the messages with the provided message IDs from a database, reading only some of their fields; see
+     *  getAllMessages(Set).
+     * 
+     * @param messageIds The message IDs of the messages to retrieve, in ascending order.
+     * @param fields The fields to read.
+     * @return List containing the Messages that exist, in ascending message ID order, with at least the requested
+     *  fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getMessages(int[] messageIds, Set<MessageField> fields) throws SQLException {
+        return getMessages(messageIds);
+    }
+
+    /**
+     * Gets one page of the messages from a database posted within a time range, oldest first.  Messages posted at the
+     *  same time are ordered by message ID.
+     * 
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @return List containing one page of the Messages posted in the range.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        return pageByTimePosted(getAllMessages(), since, until, offset, limit);
+    }
+
+    /**
+     * Gets one page of the messages from a database that belong to a particular user and were posted within a time
+     *  range, oldest first.  Messages posted at the same time are ordered by message ID.
+     * 
+     * @param accountId The account ID of the user of the messages to retrieve.
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @return List containing one page of the user's Messages posted in the range.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        return pageByTimePosted(getAllMessages(accountId), since, until, offset, limit);
+    }
+
+    /**
+     * Gets one page of the messages from a database posted within a time range, reading only some of their fields;
+     *  see getMessagesInRange(long, long, int, int) and getAllMessages(Set).
+     * 
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @param fields The fields to read.
+     * @return List containing one page of the Messages posted in the range, with at least the requested fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        return getMessagesInRange(since, until, offset, limit);
+    }
+
+    /**
+     * Gets one page of the messages from a database that belong to a particular user and were posted within a time
+     *  range, reading only some of their fields; see getMessagesInRange(int, long, long, int, int) and
+     *  getAllMessages(Set).
+     * 
+     * @param accountId The account ID of the user of the messages to retrieve.
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @param fields The fields to read.
+     * @return List containing one page of the user's Messages posted in the range, with at least the requested
+     *  fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        return getMessagesInRange(accountId, since, until, offset, limit);
+    }
+
+    /**
+     * Gets the latest messages from a database that belong to a particular user, newest first.  Since IDs are handed
+     *  out in increasing order, these are the messages with the greatest IDs.
+     * 
+     * @param accountId The account ID of the user of the messages to retrieve.
+     * @param limit The maximum number of messages to return.
+     * @return List containing the user's latest Messages, in descending message ID order.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default List<Message> getLatestMessages(int accountId, int limit) throws SQLException {
+        List<Message> messages = new ArrayList<>(getAllMessages(accountId));
+        messages.sort(Comparator.comparingInt(Message::getMessage_id).reversed());
+        return new ArrayList<>(messages.subList(0, Math.min(limit, messages.size())));
+    }
+
+    /**
+     * Counts the messages in a database that belong to a particular user.
+     * 
+     * @param accountId The account ID of the user whose messages to count.
+     * @return The number of messages posted by the user.  Zero if the account doesn't exist.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default int getMessageCount(int accountId) throws SQLException {
+        return getAllMessages(accountId).size();
+    }
+
+    /**
+     * Counts every message in a database.
+     * 
+     * @return The number of messages.
+     * @throws SQLException If there is an issue with the database.
+     */
+    default int getMessageCount() throws SQLException {
+        return getAllMessages().size();
+    }
+
     /**
      * Deletes a message from a database by using message ID.  If the message doesn't exist, nothing happens.
      * 
@@ -61,4 +238,36 @@ public interface MessageDao {
      * @throws SQLException If there is an issue with the database.
      */
     void updateMessage(int messageId, String messageText) throws SQLException;
+
+    /**
+     * Gets the version of the stored messages that reads made on the current thread must reflect, e.g. the replica
+     *  sequence number of the current client's last write.  Reads made with different versions may see different
+     *  results, so they must not share them.
+     * 
+     * @return The read version for the current thread, or 0 if every read sees every acknowledged write.
+     */
+    default long getReadVersion() {
+        return 0;
+    }
+
+    /**
+     * Sorts messages by time of posting and then ID, and returns one page of those posted within a time range.
+     */
+    private static List<Message> pageByTimePosted(List<Message> messages, long since, long until, int offset,
+     int limit) {
+        List<Message> inRange = new ArrayList<>();
+
+        for (Message message : messages) {
+            if (message.getTime_posted_epoch() >= since && message.getTime_posted_epoch() < until) {
+                inRange.add(message);
+            }
+        }
+
+        inRange.sort(
+            Comparator.comparingLong(Message::getTime_posted_epoch).thenComparingInt(Message::getMessage_id));
+
+        int from = (int) Math.min(inRange.size(), (long) offset);
+        int to = (int) Math.min(inRange.size(), (long) from + limit);
+        return new ArrayList<>(inRange.subList(from, to));
+    }
 }
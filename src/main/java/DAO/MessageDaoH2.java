@@ -8,11 +8,13 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import Model.Message;
+import Model.MessageField;
 
 public class MessageDaoH2 implements MessageDao {
 
@@ -64,23 +66,23 @@ public class MessageDaoH2 implements MessageDao {
 
     @Override
     public List<Message> getAllMessages() throws SQLException {
+        return getAllMessages(MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
         LOGGER.info("Getting all messages from database");
 
         List<Message> messages = new ArrayList<>();
 
-        String sql = "SELECT * FROM message;";
+        String sql = "SELECT " + MessageField.toColumnList(fields) + " FROM message;";
 
         try {
             ResultSet resultSet = connection.createStatement().executeQuery(sql);
 
             while (resultSet.next()) {
-                messages.add(
-                    new Message(
-                        resultSet.getInt("message_id"),
-                        resultSet.getInt("posted_by"),
-                        resultSet.getString("message_text"),
-                        resultSet.getLong("time_posted_epoch"))
-                );
+                messages.add(readMessage(resultSet, fields));
             }
 
         } catch (SQLException e) {
@@ -94,11 +96,17 @@ public class MessageDaoH2 implements MessageDao {
 
     @Override
     public List<Message> getAllMessages(int accountId) throws SQLException {
+        return getAllMessages(accountId, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
         LOGGER.info("Getting all messages from user with account ID: {}", accountId);
 
         List<Message> messages = new ArrayList<>();
 
-        String sql = "SELECT * FROM message WHERE posted_by = ?;";
+        String sql = "SELECT " + MessageField.toColumnList(fields) + " FROM message WHERE posted_by = ?;";
 
         try {
             PreparedStatement preparedStatement =
@@ -108,13 +116,7 @@ public class MessageDaoH2 implements MessageDao {
             ResultSet resultSet = preparedStatement.executeQuery();
 
             while (resultSet.next()) {
-                messages.add(
-                    new Message(
-                        resultSet.getInt("message_id"),
-                        resultSet.getInt("posted_by"),
-                        resultSet.getString("message_text"),
-                        resultSet.getLong("time_posted_epoch"))
-                );
+                messages.add(readMessage(resultSet, fields));
             }
 
         } catch (SQLException e) {
@@ -128,9 +130,15 @@ public class MessageDaoH2 implements MessageDao {
 
     @Override
     public Optional<Message> getMessage(int messageId) throws SQLException {
+        return getMessage(messageId, MessageField.ALL);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
         LOGGER.info("Getting message from database with ID: {}", messageId);
 
-        String sql = "SELECT * FROM message WHERE message_id = ?;";
+        String sql = "SELECT " + MessageField.toColumnList(fields) + " FROM message WHERE message_id = ?;";
 
         try {
             PreparedStatement preparedStatement =
@@ -140,12 +148,7 @@ public class MessageDaoH2 implements MessageDao {
             ResultSet resultSet = preparedStatement.executeQuery();
 
             if (resultSet.next()) {
-                return Optional.of(
-                    new Message(
-                        resultSet.getInt("message_id"), 
-                        resultSet.getInt("posted_by"), 
-                        resultSet.getString("message_text"),
-                        resultSet.getLong("time_posted_epoch")));
+                return Optional.of(readMessage(resultSet, fields));
             }
 
         } catch (SQLException e) {
@@ -157,6 +160,170 @@ public class MessageDaoH2 implements MessageDao {
     }
 
 
+    @Override
+    public List<Message> getMessages(int[] messageIds) throws SQLException {
+        return getMessages(messageIds, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds, Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Getting {} messages from database by ID", messageIds.length);
+
+        List<Message> messages = new ArrayList<>(messageIds.length);
+
+        if (messageIds.length == 0) {
+            return messages;
+        }
+
+        String sql = "SELECT " + MessageField.toColumnList(fields) +
+         " FROM message WHERE message_id = ANY(?) ORDER BY message_id;";
+
+        try {
+            Integer[] boxedMessageIds = new Integer[messageIds.length];
+            for (int i = 0; i < messageIds.length; i++) {
+                boxedMessageIds[i] = messageIds[i];
+            }
+
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setArray(1, connection.createArrayOf("INTEGER", boxedMessageIds));
+
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                messages.add(readMessage(resultSet, fields));
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when getting {} messages by ID", messageIds.length);
+            throw e;
+        }
+
+        return messages;
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        return getMessagesInRange(since, until, offset, limit, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        LOGGER.info("Getting messages from database posted from: {} until: {}, offset: {}, limit: {}",
+         since, until, offset, limit);
+
+        List<Message> messages = new ArrayList<>();
+
+        String sql = "SELECT " + MessageField.toColumnList(fields) +
+         " FROM message WHERE time_posted_epoch >= ? AND time_posted_epoch < ?" +
+         " ORDER BY time_posted_epoch, message_id LIMIT ? OFFSET ?;";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setLong(1, since);
+            preparedStatement.setLong(2, until);
+            preparedStatement.setInt(3, limit);
+            preparedStatement.setInt(4, offset);
+
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                messages.add(readMessage(resultSet, fields));
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when getting messages posted from: {} until: {}", since, until);
+            throw e;
+        }
+
+        return messages;
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        return getMessagesInRange(accountId, since, until, offset, limit, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Getting messages from database for user with account ID: {} posted from: {} until: {}," +
+         " offset: {}, limit: {}", accountId, since, until, offset, limit);
+
+        List<Message> messages = new ArrayList<>();
+
+        String sql = "SELECT " + MessageField.toColumnList(fields) +
+         " FROM message WHERE posted_by = ? AND time_posted_epoch >= ? AND time_posted_epoch < ?" +
+         " ORDER BY time_posted_epoch, message_id LIMIT ? OFFSET ?;";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setInt(1, accountId);
+            preparedStatement.setLong(2, since);
+            preparedStatement.setLong(3, until);
+            preparedStatement.setInt(4, limit);
+            preparedStatement.setInt(5, offset);
+
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                messages.add(readMessage(resultSet, fields));
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when getting messages for account ID: {} posted from: {} until: {}",
+             accountId, since, until);
+            throw e;
+        }
+
+        return messages;
+    }
+
+
+    @Override
+    public List<Message> getLatestMessages(int accountId, int limit) throws SQLException {
+        LOGGER.info("Getting latest {} messages from database for user with account ID: {}", limit, accountId);
+
+        List<Message> messages = new ArrayList<>();
+
+        String sql = "SELECT * FROM message WHERE posted_by = ? ORDER BY message_id DESC LIMIT ?;";
+
+        try {
+            PreparedStatement preparedStatement =
+             connection.prepareStatement(sql);
+            preparedStatement.setInt(1, accountId);
+            preparedStatement.setInt(2, limit);
+
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                messages.add(
+                    new Message(
+                        resultSet.getInt("message_id"),
+                        resultSet.getInt("posted_by"),
+                        resultSet.getString("message_text"),
+                        resultSet.getLong("time_posted_epoch"))
+                );
+            }
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when getting latest messages for account ID: {}", accountId);
+            throw e;
+        }
+
+        return messages;
+    }
+
+
     @Override
     public void deleteMessage(int messageId) throws SQLException {
         LOGGER.info("Deleting message from database with ID: {}", messageId);
@@ -182,7 +349,7 @@ public class MessageDaoH2 implements MessageDao {
     public void updateMessage (int messageId, String messageText) throws SQLException {
         LOGGER.info("Updating message with ID: {} from database, with text: {}", messageId, messageText);
 
-        String sql = "UPDATE message SET message_text = '?' WHERE message_id = ?;";
+        String sql = "UPDATE message SET message_text = ? WHERE message_id = ?;";
 
         try {
             PreparedStatement preparedStatement =
@@ -199,4 +366,27 @@ public class MessageDaoH2 implements MessageDao {
         }
     }
 
+    /**
+     * Reads the requested fields of the message at the result set's current row.  Fields not requested are left at
+     *  their default values.
+     */
+    static Message readMessage(ResultSet resultSet, Set<MessageField> fields) throws SQLException {
+        Message message = new Message();
+
+        if (fields.contains(MessageField.MESSAGE_ID)) {
+            message.setMessage_id(resultSet.getInt("message_id"));
+        }
+        if (fields.contains(MessageField.POSTED_BY)) {
+            message.setPosted_by(resultSet.getInt("posted_by"));
+        }
+        if (fields.contains(MessageField.MESSAGE_TEXT)) {
+            message.setMessage_text(resultSet.getString("message_text"));
+        }
+        if (fields.contains(MessageField.TIME_POSTED_EPOCH)) {
+            message.setTime_posted_epoch(resultSet.getLong("time_posted_epoch"));
+        }
+
+        return message;
+    }
+
 }
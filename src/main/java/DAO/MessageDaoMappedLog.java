@@ -0,0 +1,728 @@
+package DAO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Util.IntLongHashMap;
+
+/**
+ * Stores messages in an append-only log made of fixed-size, memory-mapped segment files, for write-heavy deployments.
+ *
+ * Each segment starts with an 8 byte header (magic number, next message ID when the segment was created) followed by
+ *  length-prefixed records: [int length][byte type][int message_id][int posted_by][long time_posted_epoch][UTF-8
+ *  message_text].  An update appends a new version of the record and a delete appends a tombstone.  An in-memory index
+ *  maps each live message ID to the segment and offset of its latest version, and is rebuilt by replaying the segments
+ *  on startup.
+ *
+ * A background task compacts the oldest sealed segments once most of their bytes are dead, by re-appending their live
+ *  records to the active segment and deleting the segment file once the copies are on disk.  Segments are only
+ *  compacted oldest first, so a tombstone is never dropped while an older segment could still hold the record it
+ *  deletes.
+ *
+ * Since written bytes are never changed, a snapshot copies each segment up to its write offset at the start of the
+ *  snapshot while writes keep appending after it; compaction waits until the snapshot is done.
+ */
+public class MessageDaoMappedLog implements MessageDao, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageDaoMappedLog.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int SEGMENT_MAGIC = 0x4D4C4F47;
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int LENGTH_PREFIX_BYTES = 4;
+    /** type + message_id + posted_by + time_posted_epoch */
+    private static final int RECORD_FIXED_BYTES = 1 + 4 + 4 + 8;
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_TOMBSTONE = 2;
+    private static final long NO_LOCATION = -1L;
+    private static final int SNAPSHOT_CHUNK_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final double compactionLiveRatio;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final IntLongHashMap index = new IntLongHashMap(1024, NO_LOCATION);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactor;
+    private Segment activeSegment;
+    private int nextMessageId = 1;
+    private int snapshotsRunning = 0;
+
+    /**
+     * Opens the log in a directory, replaying any existing segments to rebuild the index.
+     *
+     * @param directory The directory that holds the segment files.  It is created if it doesn't exist.
+     * @param segmentBytes The size of each new segment file.
+     * @param compactionLiveRatio Sealed segments whose fraction of live bytes is below this ratio are compacted.
+     * @param compactionIntervalMillis How often background compaction runs.  Zero or less disables it.
+     * @throws IOException If the segment files can not be created, opened, or mapped.
+     */
+    public MessageDaoMappedLog(
+        Path directory, int segmentBytes, double compactionLiveRatio, long compactionIntervalMillis)
+         throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.compactionLiveRatio = compactionLiveRatio;
+
+        Files.createDirectories(directory);
+        recover();
+
+        if (compactionIntervalMillis > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(
+                (runnable) -> {
+                    Thread thread = new Thread(runnable, "mapped-log-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            compactor.scheduleWithFixedDelay(
+                this::compactQuietly, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+
+    @Override
+    public Message addMessage(Message message) throws SQLException {
+        LOGGER.info("Adding new message to mapped log: {}", message);
+
+        lock.writeLock().lock();
+        try {
+            int messageId = nextMessageId++;
+            append(TYPE_PUT, messageId, message.getPosted_by(), message.getTime_posted_epoch(),
+             message.getMessage_text().getBytes(StandardCharsets.UTF_8));
+            message.setMessage_id(messageId);
+            return message;
+
+        } catch (IOException e) {
+            LOGGER.error("Mapped log error when adding message: {}", message);
+            throw new SQLException("Could not append message to mapped log.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    @Override
+    public List<Message> getAllMessages() throws SQLException {
+        LOGGER.info("Getting all messages from mapped log");
+
+        return scan(false, 0);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId) throws SQLException {
+        LOGGER.info("Getting all messages from mapped log for user with account ID: {}", accountId);
+
+        return scan(true, accountId);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId) throws SQLException {
+        LOGGER.info("Getting message from mapped log with ID: {}", messageId);
+
+        lock.readLock().lock();
+        try {
+            long location = index.get(messageId);
+
+            if (location == NO_LOCATION) {
+                return Optional.empty();
+            }
+
+            Segment segment = segments.get(segmentNumber(location));
+            return Optional.of(
+                decode(segment.buffer.duplicate(), offset(location), new byte[0]));
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds) throws SQLException {
+        LOGGER.info("Getting {} messages from mapped log by ID", messageIds.length);
+
+        List<Message> messages = new ArrayList<>(messageIds.length);
+
+        lock.readLock().lock();
+        try {
+            byte[] scratch = new byte[1024];
+
+            for (int messageId : messageIds) {
+                long location = index.get(messageId);
+
+                if (location != NO_LOCATION) {
+                    messages.add(
+                        decode(segments.get(segmentNumber(location)).buffer.duplicate(), offset(location), scratch));
+                }
+            }
+
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return messages;
+    }
+
+
+    @Override
+    public void deleteMessage(int messageId) throws SQLException {
+        LOGGER.info("Deleting message from mapped log with ID: {}", messageId);
+
+        lock.writeLock().lock();
+        try {
+            if (index.containsKey(messageId)) {
+                append(TYPE_TOMBSTONE, messageId, 0, 0L, new byte[0]);
+            }
+
+        } catch (IOException e) {
+            LOGGER.error("Mapped log error when deleting message for ID: {}", messageId);
+            throw new SQLException("Could not append tombstone to mapped log.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    @Override
+    public void updateMessage(int messageId, String messageText) throws SQLException {
+        LOGGER.info("Updating message with ID: {} in mapped log, with text: {}", messageId, messageText);
+
+        lock.writeLock().lock();
+        try {
+            long location = index.get(messageId);
+
+            if (location != NO_LOCATION) {
+                ByteBuffer buffer = segments.get(segmentNumber(location)).buffer;
+                int recordStart = offset(location) + LENGTH_PREFIX_BYTES;
+                append(TYPE_PUT, messageId, buffer.getInt(recordStart + 5), buffer.getLong(recordStart + 9),
+                 messageText.getBytes(StandardCharsets.UTF_8));
+            }
+
+        } catch (IOException e) {
+            LOGGER.error("Mapped log error when updating message with ID: {}", messageId);
+            throw new SQLException("Could not append updated message to mapped log.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Rewrites the oldest sealed segments whose fraction of live bytes has dropped below the compaction ratio.  Their
+     *  live records are re-appended to the active segment and the segment files are deleted.  Compaction stops at the
+     *  first sealed segment that is still dense enough.
+     *
+     * Reads and appends carry on while a segment is compacted.  Its live records are copied out under the read lock,
+     *  and the write lock is only taken to append the copies and point the index at them, skipping any record that was
+     *  updated or deleted in the meantime.  The copies are forced to the storage device before the segment file is
+     *  deleted, so that a crash in between replays the records from one or the other.
+     *
+     * Does nothing while a snapshot is being copied.
+     *
+     * @return The number of segments that were compacted.
+     * @throws IOException If a new segment can not be created while re-appending records.
+     */
+    public synchronized int compact() throws IOException {
+        int numCompacted = 0;
+
+        while (true) {
+            Segment oldest;
+            ByteBuffer liveRecords;
+            List<long[]> moves = new ArrayList<>();
+
+            lock.readLock().lock();
+            try {
+                if (snapshotsRunning > 0) {
+                    LOGGER.info("Skipping mapped log compaction while a snapshot is running");
+                    break;
+                }
+
+                if (segments.size() <= 1) {
+                    break;
+                }
+
+                oldest = segments.firstEntry().getValue();
+                int usedBytes = oldest.writeOffset - SEGMENT_HEADER_BYTES;
+
+                if (oldest == activeSegment
+                 || (usedBytes > 0 && (double) oldest.liveBytes / usedBytes >= compactionLiveRatio)) {
+                    break;
+                }
+
+                LOGGER.info("Compacting mapped log segment {} with {} of {} bytes live",
+                 oldest.number, oldest.liveBytes, usedBytes);
+
+                liveRecords = copyLiveRecords(oldest, moves);
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            Segment destination;
+
+            lock.writeLock().lock();
+            try {
+                for (long[] move : moves) {
+                    int messageId = (int) move[0];
+                    int start = (int) move[1];
+                    int length = (int) move[2];
+
+                    // Records updated or deleted since they were copied are already dead.
+                    if (index.get(messageId) == location(oldest.number, (int) move[3])) {
+                        liveRecords.limit(start + length).position(start);
+                        appendRaw(messageId, liveRecords);
+                    }
+                }
+
+                destination = activeSegment;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            // Segments filled while appending were forced as they were sealed.
+            destination.buffer.force();
+
+            lock.writeLock().lock();
+            try {
+                if (snapshotsRunning > 0) {
+                    // The snapshot may still be copying the segment; it is deleted, fully dead, by the next run.
+                    LOGGER.info("Keeping compacted mapped log segment {} while a snapshot is running", oldest.number);
+                    break;
+                }
+
+                segments.remove(oldest.number);
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            oldest.channel.close();
+            Files.delete(oldest.path);
+            numCompacted++;
+        }
+
+        return numCompacted;
+    }
+
+    /**
+     * Copies the log's current contents into a directory, while writes continue.  The log is only locked to note each
+     *  segment's write offset; the bytes before it are then copied at no more than the given rate, so that the copy
+     *  does not starve writes of I/O.  Opening the directory as a mapped log gives the messages as of the snapshot.
+     *
+     * @param targetDirectory The directory to copy the segment files to.  It is created if it doesn't exist.
+     * @param bytesPerSecond The most bytes to copy per second.  Zero or less copies as fast as possible.
+     * @return The number of bytes copied.
+     * @throws IOException If a segment file can not be written.
+     * @throws InterruptedException If the thread is interrupted while throttled.
+     */
+    public long snapshot(Path targetDirectory, long bytesPerSecond) throws IOException, InterruptedException {
+        Map<Segment, Integer> writeOffsets = new LinkedHashMap<>();
+
+        lock.writeLock().lock();
+        try {
+            segments.values().forEach((segment) -> writeOffsets.put(segment, segment.writeOffset));
+            snapshotsRunning++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        LOGGER.info("Snapshotting {} mapped log segments to {}", writeOffsets.size(), targetDirectory);
+
+        long start = System.nanoTime();
+        long copiedBytes = 0;
+
+        try {
+            Files.createDirectories(targetDirectory);
+
+            for (Map.Entry<Segment, Integer> entry : writeOffsets.entrySet()) {
+                Segment segment = entry.getKey();
+                ByteBuffer source = segment.buffer.duplicate();
+
+                try (FileChannel target = FileChannel.open(
+                        targetDirectory.resolve(segment.path.getFileName()),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    for (int offset = 0; offset < entry.getValue(); offset += SNAPSHOT_CHUNK_BYTES) {
+                        source.limit(Math.min(entry.getValue(), offset + SNAPSHOT_CHUNK_BYTES)).position(offset);
+                        copiedBytes += target.write(source);
+                        throttle(start, copiedBytes, bytesPerSecond);
+                    }
+                    // Zeroes after the last record end the segment when it is replayed.
+                    target.write(ByteBuffer.allocate(1), source.capacity() - 1);
+                    target.force(true);
+                }
+            }
+
+        } finally {
+            lock.writeLock().lock();
+            try {
+                snapshotsRunning--;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        return copiedBytes;
+    }
+
+    /**
+     * Forces the active segment's written bytes out to the storage device.
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            activeSegment.buffer.force();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of live bytes in each segment, keyed by segment number.  Used for monitoring.
+     */
+    public Map<Integer, Integer> getSegmentLiveBytes() {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Integer> liveBytes = new TreeMap<>();
+            segments.forEach((number, segment) -> liveBytes.put(number, segment.liveBytes));
+            return liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stops background compaction, forces every segment to the storage device, and closes the segment files.
+     *
+     * @throws IOException If a segment file can not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Reads every live record in log order and decodes the ones that match the filter.  Non-matching and dead records
+     *  are skipped by reading their fixed-size fields straight from the mapped buffer, without creating objects.
+     *
+     * @param filterByAccount Whether to only return messages posted by the account ID.
+     * @param accountId The poster's account ID to filter by.
+     * @return The matching messages, sorted by message ID.
+     */
+    private List<Message> scan(boolean filterByAccount, int accountId) {
+        List<Message> messages = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            byte[] scratch = new byte[1024];
+
+            for (Segment segment : segments.values()) {
+                ByteBuffer view = segment.buffer.duplicate();
+                int offset = SEGMENT_HEADER_BYTES;
+
+                while (offset < segment.writeOffset) {
+                    int length = view.getInt(offset);
+                    int recordStart = offset + LENGTH_PREFIX_BYTES;
+
+                    if (view.get(recordStart) == TYPE_PUT
+                     && (!filterByAccount || view.getInt(recordStart + 5) == accountId)
+                     && index.get(view.getInt(recordStart + 1)) == location(segment.number, offset)) {
+                        messages.add(decode(view, offset, scratch));
+                    }
+
+                    offset = recordStart + length;
+                }
+            }
+
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        messages.sort(Comparator.comparingInt(Message::getMessage_id));
+        return messages;
+    }
+
+    /**
+     * Copies a segment's live records into one heap buffer.  Must be called with the read lock held.
+     *
+     * @param segment The segment to copy from.
+     * @param moves Receives, for each copied record, its message ID, its start and length in the returned buffer, and
+     *  its offset in the segment.
+     * @return The copied records, back to back.
+     */
+    private ByteBuffer copyLiveRecords(Segment segment, List<long[]> moves) {
+        ByteBuffer source = segment.buffer.duplicate();
+        ByteBuffer copy = ByteBuffer.allocate(segment.liveBytes);
+        int offset = SEGMENT_HEADER_BYTES;
+
+        while (offset < segment.writeOffset) {
+            int length = source.getInt(offset);
+            int messageId = source.getInt(offset + LENGTH_PREFIX_BYTES + 1);
+
+            if (index.get(messageId) == location(segment.number, offset)) {
+                moves.add(new long[] {messageId, copy.position(), LENGTH_PREFIX_BYTES + length, offset});
+                source.limit(offset + LENGTH_PREFIX_BYTES + length).position(offset);
+                copy.put(source);
+                source.clear();
+            }
+
+            offset += LENGTH_PREFIX_BYTES + length;
+        }
+
+        return copy;
+    }
+
+    /**
+     * Decodes the record at an offset.  The scratch array is used to copy out the text if it is large enough.
+     */
+    private Message decode(ByteBuffer view, int offset, byte[] scratch) {
+        int recordStart = offset + LENGTH_PREFIX_BYTES;
+        int textLength = view.getInt(offset) - RECORD_FIXED_BYTES;
+
+        byte[] text = scratch.length >= textLength ? scratch : new byte[textLength];
+
+        view.position(recordStart + RECORD_FIXED_BYTES);
+        view.get(text, 0, textLength);
+
+        return new Message(
+            view.getInt(recordStart + 1),
+            view.getInt(recordStart + 5),
+            new String(text, 0, textLength, StandardCharsets.UTF_8),
+            view.getLong(recordStart + 9));
+    }
+
+    private void append(byte type, int messageId, int postedBy, long timePostedEpoch, byte[] text)
+     throws IOException {
+        int length = RECORD_FIXED_BYTES + text.length;
+        ByteBuffer buffer = reserve(LENGTH_PREFIX_BYTES + length);
+        int offset = activeSegment.writeOffset;
+
+        buffer.position(offset + LENGTH_PREFIX_BYTES);
+        buffer.put(type).putInt(messageId).putInt(postedBy).putLong(timePostedEpoch).put(text);
+        // The length is written last, so a scan never reads a partially written record.
+        buffer.putInt(offset, length);
+
+        commit(type, messageId, LENGTH_PREFIX_BYTES + length);
+    }
+
+    private void appendRaw(int messageId, ByteBuffer record) throws IOException {
+        int recordBytes = record.remaining();
+        ByteBuffer buffer = reserve(recordBytes);
+
+        buffer.position(activeSegment.writeOffset);
+        buffer.put(record);
+
+        commit(TYPE_PUT, messageId, recordBytes);
+    }
+
+    /**
+     * Makes sure the active segment has room for a record, rolling over to a new segment if it doesn't.
+     */
+    private ByteBuffer reserve(int recordBytes) throws IOException {
+        if (recordBytes > segmentBytes - SEGMENT_HEADER_BYTES) {
+            throw new IOException(
+                String.format(
+                    "Record of %d bytes does not fit in a segment of %d bytes.", recordBytes, segmentBytes));
+        }
+
+        if (activeSegment.writeOffset + recordBytes > activeSegment.buffer.capacity()) {
+            activeSegment.buffer.force();
+            activeSegment = createSegment(activeSegment.number + 1);
+        }
+
+        return activeSegment.buffer;
+    }
+
+    /**
+     * Points the index at a record that was just written to the end of the active segment, and updates the live byte
+     *  counts of the segments involved.
+     */
+    private void commit(byte type, int messageId, int recordBytes) {
+        long location = location(activeSegment.number, activeSegment.writeOffset);
+        long previous = type == TYPE_PUT ? index.put(messageId, location) : index.remove(messageId);
+
+        if (previous != NO_LOCATION) {
+            release(previous);
+        }
+
+        if (type == TYPE_PUT) {
+            activeSegment.liveBytes += recordBytes;
+        }
+
+        activeSegment.writeOffset += recordBytes;
+    }
+
+    private void release(long location) {
+        Segment segment = segments.get(segmentNumber(location));
+        segment.liveBytes -= LENGTH_PREFIX_BYTES + segment.buffer.getInt(offset(location));
+    }
+
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+
+        paths.sort(Comparator.naturalOrder());
+
+        for (Path path : paths) {
+            String fileName = path.getFileName().toString();
+            Segment segment = openSegment(
+                Integer.parseInt(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length())), path);
+            replay(segment);
+        }
+
+        if (segments.isEmpty()) {
+            activeSegment = createSegment(0);
+        } else {
+            activeSegment = segments.lastEntry().getValue();
+        }
+
+        LOGGER.info("Recovered mapped log with {} segments and {} messages", segments.size(), index.size());
+    }
+
+    private void replay(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer;
+
+        if (buffer.getInt(0) != SEGMENT_MAGIC) {
+            throw new IOException("Not a mapped log segment: " + segment.path);
+        }
+
+        nextMessageId = Math.max(nextMessageId, buffer.getInt(4));
+        segment.writeOffset = SEGMENT_HEADER_BYTES;
+
+        while (segment.writeOffset + LENGTH_PREFIX_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(segment.writeOffset);
+
+            if (length < RECORD_FIXED_BYTES
+             || segment.writeOffset + LENGTH_PREFIX_BYTES + length > buffer.capacity()) {
+                break;
+            }
+
+            int recordStart = segment.writeOffset + LENGTH_PREFIX_BYTES;
+            byte type = buffer.get(recordStart);
+            int messageId = buffer.getInt(recordStart + 1);
+
+            nextMessageId = Math.max(nextMessageId, messageId + 1);
+            commit(type, messageId, LENGTH_PREFIX_BYTES + length);
+        }
+    }
+
+    private Segment createSegment(int number) throws IOException {
+        Segment segment = openSegment(number, directory.resolve(String.format("%010d%s", number, SEGMENT_SUFFIX)));
+
+        segment.buffer.putInt(0, SEGMENT_MAGIC);
+        segment.buffer.putInt(4, nextMessageId);
+        segment.writeOffset = SEGMENT_HEADER_BYTES;
+
+        return segment;
+    }
+
+    private Segment openSegment(int number, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size() > 0 ? channel.size() : segmentBytes;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        Segment segment = new Segment(number, path, channel, buffer);
+        segments.put(number, segment);
+        activeSegment = segment;
+        return segment;
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Mapped log compaction failed", e);
+        }
+    }
+
+    /**
+     * Sleeps until copying the bytes so far would have taken at least as long as the rate allows.
+     */
+    private static void throttle(long startNanos, long copiedBytes, long bytesPerSecond) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+
+        long dueNanos = startNanos + (long) (copiedBytes * (1e9 / bytesPerSecond));
+        long waitNanos = dueNanos - System.nanoTime();
+
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private static long location(int segmentNumber, int offset) {
+        return ((long) segmentNumber << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentNumber(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int offset(long location) {
+        return (int) location;
+    }
+
+    /**
+     * One memory-mapped segment file and its bookkeeping.
+     */
+    private static class Segment {
+        private final int number;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+        private int liveBytes;
+
+        private Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+}
@@ -0,0 +1,458 @@
+package DAO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Model.MessageField;
+import Util.IntLongHashMap;
+
+/**
+ * Wraps another MessageDao with a cache of recently read and added messages that is kept outside the Java heap, so
+ *  that a large hot set does not fill the old generation with Message objects and their Strings.
+ *
+ * Messages are encoded into fixed-size direct ByteBuffer slabs as records: [int length][int message_id][int posted_by]
+ *  [long time_posted_epoch][UTF-8 message_text].  An index maps each cached message ID to the slab and offset of its
+ *  record, and a Message is only decoded when it is read, and only the fields the reader asked for.  Records are
+ *  appended to one slab at a time; once every slab has been used, the oldest slab is emptied and reused, evicting
+ *  whatever records in it are still live.  An update or delete drops the message from the index, and its dead bytes
+ *  are reclaimed when its slab is reused.
+ *
+ * Messages by ID, and lists of messages by ID, e.g. the per-user timelines and home feeds, are served from the cache,
+ *  and only the misses are read from the wrapped MessageDao.  Scans by time or over every message go to the wrapped
+ *  MessageDao.  Like the other in-process indexes, the cache only sees writes made through this object.
+ */
+public class MessageDaoOffHeapCached implements MessageDao {
+
+    /** length + message_id + posted_by + time_posted_epoch */
+    private static final int RECORD_FIXED_BYTES = 4 + 4 + 4 + 8;
+    private static final long NO_LOCATION = -1L;
+
+    private final MessageDao messageDao;
+    private final int slabBytes;
+    private final ByteBuffer[] slabs;
+    private final int[] slabWriteOffsets;
+    private final IntLongHashMap index = new IntLongHashMap(1024, NO_LOCATION);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int activeSlab = 0;
+    private long liveBytes = 0;
+    /** Bumped by every update and delete, so that a miss read before one is not cached after it. */
+    private long invalidations = 0;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageDaoOffHeapCached.class);
+
+    /**
+     * @param messageDao The MessageDao that stores the messages.
+     * @param capacityBytes The most off-heap memory the cache uses, rounded down to whole slabs.
+     * @param slabBytes The size of each slab.  Slabs are allocated as they are first needed.
+     */
+    public MessageDaoOffHeapCached(MessageDao messageDao, long capacityBytes, int slabBytes) {
+        if (slabBytes < 1024 || capacityBytes / slabBytes < 2 || capacityBytes / slabBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Capacity must hold at least two slabs of at least 1024 bytes: %d, %d", capacityBytes, slabBytes));
+        }
+
+        this.messageDao = messageDao;
+        this.slabBytes = slabBytes;
+        this.slabs = new ByteBuffer[(int) (capacityBytes / slabBytes)];
+        this.slabWriteOffsets = new int[slabs.length];
+    }
+
+    /**
+     * @return The cache's hit and miss counts, the messages and bytes it holds, and its off-heap memory in use.
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+
+        lock.readLock().lock();
+        try {
+            int allocatedSlabs = 0;
+            for (ByteBuffer slab : slabs) {
+                if (slab != null) {
+                    allocatedSlabs++;
+                }
+            }
+
+            stats.put("messages", index.size());
+            stats.put("liveBytes", liveBytes);
+            stats.put("allocatedBytes", (long) allocatedSlabs * slabBytes);
+            stats.put("capacityBytes", (long) slabs.length * slabBytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return stats;
+    }
+
+
+    @Override
+    public Message addMessage(Message message) throws SQLException {
+        Message addedMessage = messageDao.addMessage(message);
+        put(addedMessage);
+        return addedMessage;
+    }
+
+
+    @Override
+    public List<Message> getAllMessages() throws SQLException {
+        return messageDao.getAllMessages();
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
+        return messageDao.getAllMessages(fields);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId) throws SQLException {
+        return messageDao.getAllMessages(accountId);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
+        return messageDao.getAllMessages(accountId, fields);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId) throws SQLException {
+        return getMessage(messageId, MessageField.ALL);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
+        lock.readLock().lock();
+        try {
+            long location = index.get(messageId);
+
+            if (location != NO_LOCATION) {
+                hits.increment();
+                return Optional.of(decode(location, fields));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Misses read every field, so that the message can be cached.
+        misses.increment();
+        long invalidationsBefore = getInvalidations();
+        Optional<Message> message = messageDao.getMessage(messageId);
+
+        if (message.isPresent()) {
+            putIfValid(List.of(message.get()), invalidationsBefore);
+        }
+
+        return message;
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds) throws SQLException {
+        return getMessages(messageIds, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds, Set<MessageField> fields) throws SQLException {
+        Message[] found = new Message[messageIds.length];
+        int[] missingIds = new int[messageIds.length];
+        int missingCount = 0;
+
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < messageIds.length; i++) {
+                long location = index.get(messageIds[i]);
+
+                if (location != NO_LOCATION) {
+                    found[i] = decode(location, fields);
+                } else {
+                    missingIds[missingCount++] = messageIds[i];
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.add(messageIds.length - missingCount);
+
+        if (missingCount > 0) {
+            misses.add(missingCount);
+            long invalidationsBefore = getInvalidations();
+            List<Message> loaded = messageDao.getMessages(Arrays.copyOf(missingIds, missingCount));
+            putIfValid(loaded, invalidationsBefore);
+
+            // Both the requested and the loaded IDs are ascending, so the loaded messages fill the gaps in order.
+            int next = 0;
+            for (int i = 0; i < messageIds.length && next < loaded.size(); i++) {
+                if (found[i] == null && loaded.get(next).getMessage_id() == messageIds[i]) {
+                    found[i] = loaded.get(next++);
+                }
+            }
+        }
+
+        List<Message> messages = new ArrayList<>(messageIds.length);
+        for (Message message : found) {
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+
+        return messages;
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        return messageDao.getMessagesInRange(since, until, offset, limit);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        return messageDao.getMessagesInRange(since, until, offset, limit, fields);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit, fields);
+    }
+
+
+    @Override
+    public List<Message> getLatestMessages(int accountId, int limit) throws SQLException {
+        return messageDao.getLatestMessages(accountId, limit);
+    }
+
+
+    @Override
+    public int getMessageCount(int accountId) throws SQLException {
+        return messageDao.getMessageCount(accountId);
+    }
+
+
+    @Override
+    public void deleteMessage(int messageId) throws SQLException {
+        try {
+            messageDao.deleteMessage(messageId);
+        } finally {
+            // Also stops a read that began before the write from caching what it read.
+            invalidate(messageId);
+        }
+    }
+
+
+    @Override
+    public void updateMessage(int messageId, String messageText) throws SQLException {
+        try {
+            messageDao.updateMessage(messageId, messageText);
+        } finally {
+            // Also stops a read that began before the write from caching what it read.
+            invalidate(messageId);
+        }
+    }
+
+
+    @Override
+    public long getReadVersion() {
+        return messageDao.getReadVersion();
+    }
+
+    private long getInvalidations() {
+        lock.readLock().lock();
+        try {
+            return invalidations;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void invalidate(int messageId) {
+        lock.writeLock().lock();
+        try {
+            invalidations++;
+            long location = index.remove(messageId);
+
+            if (location != NO_LOCATION) {
+                liveBytes -= recordLength(location);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void put(Message message) {
+        lock.writeLock().lock();
+        try {
+            append(message);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Caches messages read from the wrapped MessageDao, unless a message was updated or deleted since the read began,
+     *  in which case they may be stale.
+     */
+    private void putIfValid(List<Message> messages, long invalidationsBefore) {
+        lock.writeLock().lock();
+        try {
+            if (invalidations != invalidationsBefore) {
+                return;
+            }
+
+            for (Message message : messages) {
+                if (!index.containsKey(message.getMessage_id())) {
+                    append(message);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a message's record to the active slab, moving on to the next slab if it does not fit.  Must be called
+     *  with the write lock held.
+     */
+    private void append(Message message) {
+        byte[] text = message.getMessage_text().getBytes(StandardCharsets.UTF_8);
+        int recordBytes = RECORD_FIXED_BYTES + text.length;
+
+        if (recordBytes > slabBytes) {
+            return;
+        }
+
+        if (slabs[activeSlab] == null) {
+            slabs[activeSlab] = ByteBuffer.allocateDirect(slabBytes);
+        } else if (slabWriteOffsets[activeSlab] + recordBytes > slabBytes) {
+            activeSlab = (activeSlab + 1) % slabs.length;
+
+            if (slabs[activeSlab] == null) {
+                slabs[activeSlab] = ByteBuffer.allocateDirect(slabBytes);
+            } else {
+                evict(activeSlab);
+            }
+        }
+
+        ByteBuffer slab = slabs[activeSlab];
+        int offset = slabWriteOffsets[activeSlab];
+
+        slab.position(offset);
+        slab.putInt(recordBytes)
+            .putInt(message.getMessage_id())
+            .putInt(message.getPosted_by())
+            .putLong(message.getTime_posted_epoch())
+            .put(text);
+        slabWriteOffsets[activeSlab] = offset + recordBytes;
+
+        long previous = index.put(message.getMessage_id(), location(activeSlab, offset));
+        if (previous != NO_LOCATION) {
+            liveBytes -= recordLength(previous);
+        }
+        liveBytes += recordBytes;
+    }
+
+    /**
+     * Empties a slab so it can be reused, dropping the records in it that are still the latest for their message.
+     */
+    private void evict(int slabNumber) {
+        ByteBuffer slab = slabs[slabNumber];
+        int offset = 0;
+        int evicted = 0;
+
+        while (offset < slabWriteOffsets[slabNumber]) {
+            int recordBytes = slab.getInt(offset);
+            int messageId = slab.getInt(offset + 4);
+
+            if (index.get(messageId) == location(slabNumber, offset)) {
+                index.remove(messageId);
+                liveBytes -= recordBytes;
+                evicted++;
+            }
+
+            offset += recordBytes;
+        }
+
+        slabWriteOffsets[slabNumber] = 0;
+        evictions.add(evicted);
+        LOGGER.info("Reused off-heap cache slab {}, evicting {} messages", slabNumber, evicted);
+    }
+
+    /**
+     * Decodes the requested fields of the record at a location; the text is only copied out of the slab if it is
+     *  requested.  Only absolute reads are used, so any number of readers can share a slab.
+     */
+    private Message decode(long location, Set<MessageField> fields) {
+        ByteBuffer slab = slabs[(int) (location >>> 32)];
+        int offset = (int) location;
+        Message message = new Message();
+
+        if (fields.contains(MessageField.MESSAGE_ID)) {
+            message.setMessage_id(slab.getInt(offset + 4));
+        }
+        if (fields.contains(MessageField.POSTED_BY)) {
+            message.setPosted_by(slab.getInt(offset + 8));
+        }
+        if (fields.contains(MessageField.TIME_POSTED_EPOCH)) {
+            message.setTime_posted_epoch(slab.getLong(offset + 12));
+        }
+        if (fields.contains(MessageField.MESSAGE_TEXT)) {
+            int textLength = slab.getInt(offset) - RECORD_FIXED_BYTES;
+
+            byte[] text = new byte[textLength];
+            for (int i = 0; i < textLength; i++) {
+                text[i] = slab.get(offset + RECORD_FIXED_BYTES + i);
+            }
+            message.setMessage_text(new String(text, StandardCharsets.UTF_8));
+        }
+
+        return message;
+    }
+
+    private int recordLength(long location) {
+        return slabs[(int) (location >>> 32)].getInt((int) location);
+    }
+
+    private static long location(int slabNumber, int offset) {
+        return ((long) slabNumber << 32) | offset;
+    }
+
+}
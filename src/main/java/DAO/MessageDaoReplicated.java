@@ -0,0 +1,159 @@
+package DAO;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import Model.Message;
+import Model.MessageField;
+
+/**
+ * Sends message writes to the primary MessageDao and publishes them to the replicas of a ReplicaSet, and serves message
+ *  reads from a replica whenever the ReplicaSet considers one fresh enough.
+ */
+public class MessageDaoReplicated implements MessageDao {
+
+    private final MessageDao messageDao;
+    private final ReplicaSet replicaSet;
+
+    /**
+     * @param messageDao The primary's MessageDao.
+     * @param replicaSet The replicas to publish writes to and read from.
+     */
+    public MessageDaoReplicated(MessageDao messageDao, ReplicaSet replicaSet) {
+        this.messageDao = messageDao;
+        this.replicaSet = replicaSet;
+    }
+
+
+    @Override
+    public Message addMessage(Message message) throws SQLException {
+        return replicaSet.write(
+            () -> messageDao.addMessage(message),
+            ReplicaSet.Change.messageAdded());
+    }
+
+
+    @Override
+    public List<Message> getAllMessages() throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, MessageDao::getAllMessages);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, (dao) -> dao.getAllMessages(fields));
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId) throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, (dao) -> dao.getAllMessages(accountId));
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, (dao) -> dao.getAllMessages(accountId, fields));
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId) throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, (dao) -> dao.getMessage(messageId));
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, (dao) -> dao.getMessage(messageId, fields));
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds) throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, (dao) -> dao.getMessages(messageIds));
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds, Set<MessageField> fields) throws SQLException {
+        return replicaSet.read(messageDao, H2Replica::getMessageDao, (dao) -> dao.getMessages(messageIds, fields));
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        return replicaSet.read(
+            messageDao, H2Replica::getMessageDao, (dao) -> dao.getMessagesInRange(since, until, offset, limit));
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        return replicaSet.read(
+            messageDao,
+            H2Replica::getMessageDao,
+            (dao) -> dao.getMessagesInRange(since, until, offset, limit, fields));
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        return replicaSet.read(
+            messageDao,
+            H2Replica::getMessageDao,
+            (dao) -> dao.getMessagesInRange(accountId, since, until, offset, limit));
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        return replicaSet.read(
+            messageDao,
+            H2Replica::getMessageDao,
+            (dao) -> dao.getMessagesInRange(accountId, since, until, offset, limit, fields));
+    }
+
+
+    @Override
+    public List<Message> getLatestMessages(int accountId, int limit) throws SQLException {
+        return replicaSet.read(
+            messageDao,
+            H2Replica::getMessageDao,
+            (dao) -> dao.getLatestMessages(accountId, limit));
+    }
+
+
+    @Override
+    public void deleteMessage(int messageId) throws SQLException {
+        replicaSet.write(
+            () -> {
+                messageDao.deleteMessage(messageId);
+                return null;
+            },
+            ReplicaSet.Change.messageDeleted(messageId));
+    }
+
+
+    @Override
+    public void updateMessage(int messageId, String messageText) throws SQLException {
+        replicaSet.write(
+            () -> {
+                messageDao.updateMessage(messageId, messageText);
+                return null;
+            },
+            ReplicaSet.Change.messageUpdated(messageId, messageText));
+    }
+
+
+    @Override
+    public long getReadVersion() {
+        return replicaSet.getRequiredSequence();
+    }
+
+}
@@ -0,0 +1,589 @@
+package DAO;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Model.MessageField;
+
+/**
+ * Partitions messages by poster across several H2 databases (shards), each with its own connection pool, so that write
+ *  throughput grows with the number of shards.
+ *
+ * A message is stored in shard (posted_by mod N).  Message IDs come from one sequence shared by every shard, so that
+ *  they increase in the order messages are added, as getLatestMessages and the home timelines expect.  Each message
+ *  gets the next ID above the last one handed out for which (message_id - 1) mod N is its shard, so the ID also names
+ *  the shard that holds the message, at the cost of skipping up to N - 1 IDs.  Per-user reads and reads, updates, and
+ *  deletes by ID therefore touch a single shard.  Reads across every message query all shards in parallel and k-way
+ *  merge the results by message ID.
+ *
+ * The sequence is kept in memory and IDs are reserved ahead in blocks in shard 0, so that an ID is not reused after a
+ *  restart even if the message that had it was deleted.
+ *
+ * Because IDs encode the shard, the number of shards can not change once messages are stored.  Each shard records the
+ *  shard count it was created with and startup fails if it does not match.
+ */
+public class MessageDaoSharded implements MessageDao, Closeable {
+
+    /** The number of message IDs reserved in shard 0 at a time. */
+    private static final int ID_RESERVATION_BLOCK = 1024;
+    private static final Comparator<Message> BY_ID = Comparator.comparingInt(Message::getMessage_id);
+    private static final Comparator<Message> BY_TIME_POSTED =
+        Comparator.comparingLong(Message::getTime_posted_epoch).thenComparingInt(Message::getMessage_id);
+
+    private final List<JdbcConnectionPool> shards;
+    private final ExecutorService scatterExecutor;
+    /** The last message ID handed out, and the ID up to which IDs are reserved in shard 0, guarded by this. */
+    private int lastMessageId;
+    private int reservedUntil;
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageDaoSharded.class);
+
+    /**
+     * Creates each shard's tables if they don't exist.
+     *
+     * @param shards The connection pools of the shards, in shard index order.
+     * @throws SQLException If a shard's tables can not be created or the shard was created with a different shard
+     *  count.
+     */
+    public MessageDaoSharded(List<JdbcConnectionPool> shards) throws SQLException {
+        this.shards = List.copyOf(shards);
+
+        for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+            createSchema(shardIndex);
+        }
+
+        lastMessageId = Math.max(getMaxMessageId(), getReservedUntil() - 1);
+        reservedUntil = lastMessageId + 1;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        scatterExecutor = Executors.newFixedThreadPool(
+            shards.size(),
+            (runnable) -> {
+                Thread thread = new Thread(runnable, "shard-query-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+
+    @Override
+    public Message addMessage(Message message) throws SQLException {
+        int shardIndex = shardForAccount(message.getPosted_by());
+        LOGGER.info("Adding new message to shard {}: {}", shardIndex, message);
+
+        String sql = "INSERT INTO message(message_id, posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?, ?);";
+
+        // The ID is handed out before a connection is taken, since a new reservation block needs one of shard 0's.
+        int messageId = nextMessageId(shardIndex);
+
+        try (Connection connection = shards.get(shardIndex).getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setInt(1, messageId);
+            preparedStatement.setInt(2, message.getPosted_by());
+            preparedStatement.setString(3, message.getMessage_text());
+            preparedStatement.setLong(4, message.getTime_posted_epoch());
+            preparedStatement.executeUpdate();
+
+            message.setMessage_id(messageId);
+            return message;
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error when adding message to shard {}: {}", shardIndex, message);
+            throw e;
+        }
+    }
+
+
+    @Override
+    public List<Message> getAllMessages() throws SQLException {
+        return getAllMessages(MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Getting all messages from {} shards", shards.size());
+
+        // The message ID is always read, to merge by.
+        Set<MessageField> readFields = withFields(fields, MessageField.MESSAGE_ID);
+
+        return scatterGather(
+            (shardIndex) -> query(
+                shardIndex,
+                "SELECT " + MessageField.toColumnList(readFields) + " FROM message ORDER BY message_id;",
+                (statement) -> { },
+                readFields));
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId) throws SQLException {
+        return getAllMessages(accountId, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
+        int shardIndex = shardForAccount(accountId);
+        LOGGER.info("Getting all messages from shard {} for user with account ID: {}", shardIndex, accountId);
+
+        return query(
+            shardIndex,
+            "SELECT " + MessageField.toColumnList(fields) + " FROM message WHERE posted_by = ? ORDER BY message_id;",
+            (statement) -> statement.setInt(1, accountId),
+            fields);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId) throws SQLException {
+        return getMessage(messageId, MessageField.ALL);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Getting message with ID: {} from shard {}", messageId, shardForMessage(messageId));
+
+        if (messageId < 1) {
+            return Optional.empty();
+        }
+
+        List<Message> messages = query(
+            shardForMessage(messageId),
+            "SELECT " + MessageField.toColumnList(fields) + " FROM message WHERE message_id = ?;",
+            (statement) -> statement.setInt(1, messageId),
+            fields);
+
+        return messages.stream().findFirst();
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds) throws SQLException {
+        return getMessages(messageIds, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds, Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Getting {} messages by ID from {} shards", messageIds.length, shards.size());
+
+        Set<MessageField> readFields = withFields(fields, MessageField.MESSAGE_ID);
+        int[][] idsByShard = new int[shards.size()][];
+        int[] counts = new int[shards.size()];
+
+        for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+            idsByShard[shardIndex] = new int[messageIds.length];
+        }
+        for (int messageId : messageIds) {
+            if (messageId > 0) {
+                int shardIndex = shardForMessage(messageId);
+                idsByShard[shardIndex][counts[shardIndex]++] = messageId;
+            }
+        }
+
+        return scatterGather(
+            (shardIndex) -> {
+                if (counts[shardIndex] == 0) {
+                    return new ArrayList<>();
+                }
+
+                Integer[] shardIds = Arrays.stream(idsByShard[shardIndex], 0, counts[shardIndex])
+                    .boxed()
+                    .toArray(Integer[]::new);
+
+                try (Connection connection = shards.get(shardIndex).getConnection()) {
+                    return query(
+                        connection,
+                        "SELECT " + MessageField.toColumnList(readFields) +
+                        " FROM message WHERE message_id = ANY(?) ORDER BY message_id;",
+                        (statement) -> statement.setArray(1, connection.createArrayOf("INTEGER", shardIds)),
+                        readFields);
+                }
+            });
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        return getMessagesInRange(since, until, offset, limit, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        LOGGER.info("Getting messages posted from: {} until: {} from {} shards, offset: {}, limit: {}",
+         since, until, shards.size(), offset, limit);
+
+        // Any shard may hold the whole page, so each returns its first offset + limit messages in the range.
+        int shardLimit = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        // The time of posting and message ID are always read, to merge by.
+        Set<MessageField> readFields = withFields(fields, MessageField.TIME_POSTED_EPOCH, MessageField.MESSAGE_ID);
+
+        List<Message> merged = scatterGather(
+            (shardIndex) -> query(
+                shardIndex,
+                "SELECT " + MessageField.toColumnList(readFields) +
+                " FROM message WHERE time_posted_epoch >= ? AND time_posted_epoch < ?" +
+                " ORDER BY time_posted_epoch, message_id LIMIT ?;",
+                (statement) -> {
+                    statement.setLong(1, since);
+                    statement.setLong(2, until);
+                    statement.setInt(3, shardLimit);
+                },
+                readFields),
+            BY_TIME_POSTED);
+
+        int from = Math.min(offset, merged.size());
+        return new ArrayList<>(merged.subList(from, (int) Math.min(merged.size(), (long) from + limit)));
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        return getMessagesInRange(accountId, since, until, offset, limit, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        int shardIndex = shardForAccount(accountId);
+        LOGGER.info("Getting messages from shard {} for user with account ID: {} posted from: {} until: {}",
+         shardIndex, accountId, since, until);
+
+        return query(
+            shardIndex,
+            "SELECT " + MessageField.toColumnList(fields) +
+            " FROM message WHERE posted_by = ? AND time_posted_epoch >= ? AND time_posted_epoch < ?" +
+            " ORDER BY time_posted_epoch, message_id LIMIT ? OFFSET ?;",
+            (statement) -> {
+                statement.setInt(1, accountId);
+                statement.setLong(2, since);
+                statement.setLong(3, until);
+                statement.setInt(4, limit);
+                statement.setInt(5, offset);
+            },
+            fields);
+    }
+
+
+    @Override
+    public List<Message> getLatestMessages(int accountId, int limit) throws SQLException {
+        int shardIndex = shardForAccount(accountId);
+        LOGGER.info("Getting latest {} messages from shard {} for user with account ID: {}",
+         limit, shardIndex, accountId);
+
+        return query(
+            shardIndex,
+            "SELECT * FROM message WHERE posted_by = ? ORDER BY message_id DESC LIMIT ?;",
+            (statement) -> {
+                statement.setInt(1, accountId);
+                statement.setInt(2, limit);
+            },
+            MessageField.ALL);
+    }
+
+
+    @Override
+    public void deleteMessage(int messageId) throws SQLException {
+        LOGGER.info("Deleting message with ID: {} from shard {}", messageId, shardForMessage(messageId));
+
+        update(messageId, "DELETE FROM message WHERE message_id = ?;", (statement) -> statement.setInt(1, messageId));
+    }
+
+
+    @Override
+    public void updateMessage(int messageId, String messageText) throws SQLException {
+        LOGGER.info("Updating message with ID: {} in shard {}, with text: {}",
+         messageId, shardForMessage(messageId), messageText);
+
+        update(
+            messageId,
+            "UPDATE message SET message_text = ? WHERE message_id = ?;",
+            (statement) -> {
+                statement.setString(1, messageText);
+                statement.setInt(2, messageId);
+            });
+    }
+
+
+    /**
+     * Stops the scatter-gather threads and closes every shard's connection pool.
+     */
+    @Override
+    public void close() {
+        scatterExecutor.shutdownNow();
+        shards.forEach(JdbcConnectionPool::dispose);
+    }
+
+    /**
+     * @return The number of shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @param accountId The poster's account ID.
+     * @return The index of the shard that stores the poster's messages.
+     */
+    public int shardForAccount(int accountId) {
+        return Math.floorMod(accountId, shards.size());
+    }
+
+    /**
+     * @param messageId The message ID.
+     * @return The index of the shard that stores the message.
+     */
+    public int shardForMessage(int messageId) {
+        return Math.floorMod(messageId - 1, shards.size());
+    }
+
+    private void createSchema(int shardIndex) throws SQLException {
+        try (Connection connection = shards.get(shardIndex).getConnection();
+             Statement statement = connection.createStatement()) {
+            // IDs are handed out by nextMessageId and passed in on insert.
+            statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS message (" +
+                " message_id int PRIMARY KEY, posted_by int, message_text varchar(255), time_posted_epoch bigint);");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS message_posted_by ON message(posted_by);");
+            statement.executeUpdate(
+                "CREATE INDEX IF NOT EXISTS message_posted_by_time_posted ON message(posted_by, time_posted_epoch);");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS message_time_posted ON message(time_posted_epoch);");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS shard_info (shard_index int, shard_count int);");
+
+            ResultSet resultSet = statement.executeQuery("SELECT shard_index, shard_count FROM shard_info;");
+
+            if (!resultSet.next()) {
+                statement.executeUpdate(
+                    String.format(
+                        "INSERT INTO shard_info VALUES (%d, %d);", shardIndex, shards.size()));
+            } else if (resultSet.getInt("shard_index") != shardIndex
+             || resultSet.getInt("shard_count") != shards.size()) {
+                LOGGER.error("Shard {} was created as shard {} of {}",
+                 shardIndex, resultSet.getInt("shard_index"), resultSet.getInt("shard_count"));
+                throw new SQLException(
+                    String.format(
+                        "Shard %d of %d was created as shard %d of %d.  Message IDs would be routed to the wrong shard.",
+                         shardIndex, shards.size(), resultSet.getInt("shard_index"), resultSet.getInt("shard_count")));
+            }
+        }
+    }
+
+    /**
+     * Hands out the next message ID for a shard, reserving another block of IDs in shard 0 when the reserved ones run
+     *  out.
+     */
+    private synchronized int nextMessageId(int shardIndex) throws SQLException {
+        int messageId = lastMessageId + 1;
+        messageId += Math.floorMod(shardIndex - (messageId - 1), shards.size());
+
+        if (messageId >= reservedUntil) {
+            int newReservedUntil = messageId + ID_RESERVATION_BLOCK;
+
+            try (Connection connection = shards.get(0).getConnection();
+                 PreparedStatement preparedStatement =
+                  connection.prepareStatement("UPDATE message_id_reservation SET reserved_until = ?;")) {
+                preparedStatement.setInt(1, newReservedUntil);
+                preparedStatement.executeUpdate();
+            }
+
+            reservedUntil = newReservedUntil;
+        }
+
+        lastMessageId = messageId;
+        return messageId;
+    }
+
+    private int getMaxMessageId() throws SQLException {
+        int maxMessageId = 0;
+
+        for (JdbcConnectionPool shard : shards) {
+            try (Connection connection = shard.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT MAX(message_id) FROM message;")) {
+                if (resultSet.next()) {
+                    maxMessageId = Math.max(maxMessageId, resultSet.getInt(1));
+                }
+            }
+        }
+
+        return maxMessageId;
+    }
+
+    private int getReservedUntil() throws SQLException {
+        try (Connection connection = shards.get(0).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS message_id_reservation (reserved_until int);");
+
+            ResultSet resultSet = statement.executeQuery("SELECT reserved_until FROM message_id_reservation;");
+
+            if (resultSet.next()) {
+                return resultSet.getInt(1);
+            }
+
+            statement.executeUpdate("INSERT INTO message_id_reservation VALUES (1);");
+            return 1;
+        }
+    }
+
+    private void update(int messageId, String sql, StatementBinder binder) throws SQLException {
+        if (messageId < 1) {
+            return;
+        }
+
+        int shardIndex = shardForMessage(messageId);
+
+        try (Connection connection = shards.get(shardIndex).getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            binder.bind(preparedStatement);
+            int numMessagesChanged = preparedStatement.executeUpdate();
+            LOGGER.debug("Number of messages changed in shard {}: {}", shardIndex, numMessagesChanged);
+
+        } catch (SQLException e) {
+            LOGGER.error("Database error in shard {} for message ID: {}", shardIndex, messageId);
+            throw e;
+        }
+    }
+
+    private List<Message> query(int shardIndex, String sql, StatementBinder binder, Set<MessageField> fields)
+     throws SQLException {
+        try (Connection connection = shards.get(shardIndex).getConnection()) {
+            return query(connection, sql, binder, fields);
+        } catch (SQLException e) {
+            LOGGER.error("Database error when querying shard {}", shardIndex);
+            throw e;
+        }
+    }
+
+    private static List<Message> query(
+        Connection connection, String sql, StatementBinder binder, Set<MessageField> fields) throws SQLException {
+        List<Message> messages = new ArrayList<>();
+
+        try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            binder.bind(preparedStatement);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            while (resultSet.next()) {
+                messages.add(MessageDaoH2.readMessage(resultSet, fields));
+            }
+        }
+
+        return messages;
+    }
+
+    private static Set<MessageField> withFields(Set<MessageField> fields, MessageField... moreFields) {
+        Set<MessageField> allFields = EnumSet.copyOf(fields);
+        allFields.addAll(Arrays.asList(moreFields));
+        return allFields;
+    }
+
+    /**
+     * Runs a query against every shard in parallel and merges the per-shard results, which must each be sorted by
+     *  message ID, into one list sorted by message ID.
+     */
+    private List<Message> scatterGather(ShardQuery shardQuery) throws SQLException {
+        return scatterGather(shardQuery, BY_ID);
+    }
+
+    /**
+     * Runs a query against every shard in parallel and k-way merges the per-shard results, which must each be sorted by
+     *  the given order, into one list sorted by that order.
+     */
+    private List<Message> scatterGather(ShardQuery shardQuery, Comparator<Message> order) throws SQLException {
+        List<Future<List<Message>>> futures = new ArrayList<>(shards.size());
+
+        for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+            int index = shardIndex;
+            futures.add(scatterExecutor.submit((Callable<List<Message>>) () -> shardQuery.run(index)));
+        }
+
+        List<List<Message>> results = new ArrayList<>(shards.size());
+        int total = 0;
+
+        try {
+            for (Future<List<Message>> future : futures) {
+                List<Message> result = future.get();
+                results.add(result);
+                total += result.size();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach((future) -> future.cancel(true));
+            throw new SQLException("Interrupted while querying shards.", e);
+        } catch (ExecutionException e) {
+            futures.forEach((future) -> future.cancel(true));
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Shard query failed.", e.getCause());
+        }
+
+        return merge(results, total, order);
+    }
+
+    private static List<Message> merge(List<List<Message>> sortedLists, int total, Comparator<Message> order) {
+        List<Message> merged = new ArrayList<>(total);
+
+        // Each heap entry is {list index, position in list}, ordered by the message at that position.
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+            Math.max(sortedLists.size(), 1),
+            (a, b) -> order.compare(sortedLists.get(a[0]).get(a[1]), sortedLists.get(b[0]).get(b[1])));
+
+        for (int i = 0; i < sortedLists.size(); i++) {
+            if (!sortedLists.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<Message> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+
+        return merged;
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ShardQuery {
+        List<Message> run(int shardIndex) throws SQLException;
+    }
+
+}
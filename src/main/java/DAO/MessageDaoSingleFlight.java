@@ -0,0 +1,237 @@
+package DAO;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Model.MessageField;
+import Util.SingleFlight;
+
+/**
+ * Wraps another MessageDao so that identical reads made at the same time share one query: a message by ID, a user's
+ *  messages, and every message.  Each caller gets its own copies of the shared Messages, since callers may change them.
+ *
+ * A write made thru this object stops later reads from joining queries that started before it, so that a caller
+ *  always reads its own writes.  Reads only share a query with reads made at the same read version of the wrapped
+ *  MessageDao, since a query is routed by the version of the caller that started it; e.g. behind read replicas, a
+ *  client that has just written never joins a query that another client started on a replica without its write.
+ *
+ * Only reads that join a query wait with a timeout.  The read that started the query waits for as long as the wrapped
+ *  MessageDao takes.
+ */
+public class MessageDaoSingleFlight implements MessageDao {
+
+    private final MessageDao messageDao;
+    private final SingleFlight<Entry<Integer, Long>, Optional<Message>> messageFlights;
+    private final SingleFlight<Entry<Integer, Long>, List<Message>> accountFlights;
+    private final SingleFlight<Long, List<Message>> allMessagesFlights;
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageDaoSingleFlight.class);
+
+    /**
+     * @param messageDao The MessageDao that stores the messages.
+     * @param timeoutMillis How long a read waits for a query started by another read before failing.
+     */
+    public MessageDaoSingleFlight(MessageDao messageDao, long timeoutMillis) {
+        this.messageDao = messageDao;
+        this.messageFlights = new SingleFlight<>(timeoutMillis);
+        this.accountFlights = new SingleFlight<>(timeoutMillis);
+        this.allMessagesFlights = new SingleFlight<>(timeoutMillis);
+    }
+
+
+    @Override
+    public Message addMessage(Message message) throws SQLException {
+        Message addedMessage = messageDao.addMessage(message);
+        messageFlights.forgetIf((key) -> key.getKey() == addedMessage.getMessage_id());
+        accountFlights.forgetIf((key) -> key.getKey() == addedMessage.getPosted_by());
+        allMessagesFlights.forgetAll();
+        return addedMessage;
+    }
+
+
+    @Override
+    public List<Message> getAllMessages() throws SQLException {
+        return copy(execute(allMessagesFlights, messageDao.getReadVersion(), messageDao::getAllMessages));
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
+        // Projected reads are cheap and rarely identical, so they are not shared.
+        return messageDao.getAllMessages(fields);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId) throws SQLException {
+        return copy(execute(accountFlights, versioned(accountId), () -> messageDao.getAllMessages(accountId)));
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
+        return messageDao.getAllMessages(accountId, fields);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId) throws SQLException {
+        return execute(messageFlights, versioned(messageId), () -> messageDao.getMessage(messageId))
+            .map(MessageDaoSingleFlight::copy);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
+        return messageDao.getMessage(messageId, fields);
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds) throws SQLException {
+        return messageDao.getMessages(messageIds);
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds, Set<MessageField> fields) throws SQLException {
+        return messageDao.getMessages(messageIds, fields);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        return messageDao.getMessagesInRange(since, until, offset, limit);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        return messageDao.getMessagesInRange(since, until, offset, limit, fields);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit, fields);
+    }
+
+
+    @Override
+    public int getMessageCount() throws SQLException {
+        return messageDao.getMessageCount();
+    }
+
+
+    @Override
+    public int getMessageCount(int accountId) throws SQLException {
+        return messageDao.getMessageCount(accountId);
+    }
+
+
+    @Override
+    public List<Message> getLatestMessages(int accountId, int limit) throws SQLException {
+        return messageDao.getLatestMessages(accountId, limit);
+    }
+
+
+    @Override
+    public long getReadVersion() {
+        return messageDao.getReadVersion();
+    }
+
+
+    @Override
+    public void deleteMessage(int messageId) throws SQLException {
+        messageDao.deleteMessage(messageId);
+        forgetMessage(messageId);
+    }
+
+
+    @Override
+    public void updateMessage(int messageId, String messageText) throws SQLException {
+        messageDao.updateMessage(messageId, messageText);
+        forgetMessage(messageId);
+    }
+
+
+    /**
+     * @return The number of coalesced reads made thru this object.
+     */
+    public long getCallCount() {
+        return messageFlights.getCallCount() + accountFlights.getCallCount() + allMessagesFlights.getCallCount();
+    }
+
+    /**
+     * @return The number of reads that shared another read's query instead of running their own.
+     */
+    public long getSharedCallCount() {
+        return messageFlights.getSharedCallCount() + accountFlights.getSharedCallCount()
+         + allMessagesFlights.getSharedCallCount();
+    }
+
+    /**
+     * @return The fraction of reads that shared another read's query, or 0 if there have been no reads.
+     */
+    public double getCoalescingRatio() {
+        long calls = getCallCount();
+        return calls == 0 ? 0 : (double) getSharedCallCount() / calls;
+    }
+
+    private void forgetMessage(int messageId) {
+        // The poster isn't known here, so every user's running reads are forgotten.
+        messageFlights.forgetIf((key) -> key.getKey() == messageId);
+        accountFlights.forgetAll();
+        allMessagesFlights.forgetAll();
+    }
+
+    private Entry<Integer, Long> versioned(int id) {
+        return Map.entry(id, messageDao.getReadVersion());
+    }
+
+    private static <K, V> V execute(SingleFlight<K, V> flights, K key, SingleFlight.Call<V, SQLException> query)
+     throws SQLException {
+        try {
+            return flights.execute(key, query);
+        } catch (TimeoutException e) {
+            LOGGER.error("Timed out waiting for a shared query for key: {}", key);
+            throw new SQLTimeoutException("Timed out waiting for a shared query for key: " + key, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shared query for key: " + key, e);
+        }
+    }
+
+    private static List<Message> copy(List<Message> messages) {
+        List<Message> copies = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            copies.add(copy(message));
+        }
+        return copies;
+    }
+
+    private static Message copy(Message message) {
+        return new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+         message.getTime_posted_epoch());
+    }
+
+}
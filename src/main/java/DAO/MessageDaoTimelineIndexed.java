@@ -0,0 +1,195 @@
+package DAO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Model.MessageField;
+import Util.IntTimelineIndex;
+
+/**
+ * Wraps another MessageDao with an in-process index from each account ID to the sorted IDs of the messages the account
+ *  posted.  Per-user timelines are then looked up by primary key instead of filtering the message table by poster, and
+ *  per-user and total counts are answered without touching the message table at all.
+ *
+ * The index is built from the wrapped MessageDao when this object is created, and is kept up to date as messages are
+ *  added and deleted through this object.  Messages written around it, e.g. by another node, are only seen after a
+ *  rebuild.
+ */
+public class MessageDaoTimelineIndexed implements MessageDao {
+
+    private final MessageDao messageDao;
+    private final IntTimelineIndex timelineIndex = new IntTimelineIndex();
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageDaoTimelineIndexed.class);
+
+    /**
+     * @param messageDao The MessageDao that stores the messages.
+     * @throws SQLException If the messages can not be read to build the index.
+     */
+    public MessageDaoTimelineIndexed(MessageDao messageDao) throws SQLException {
+        this.messageDao = messageDao;
+        rebuild();
+    }
+
+    /**
+     * Discards the index and builds it again from every message in the wrapped MessageDao.
+     *
+     * @throws SQLException If there is an issue with the database.
+     */
+    public void rebuild() throws SQLException {
+        LOGGER.info("Building per-author timeline index");
+
+        List<Message> messages = messageDao.getAllMessages();
+
+        timelineIndex.clear();
+        for (Message message : messages) {
+            timelineIndex.add(message.getPosted_by(), message.getMessage_id());
+        }
+
+        LOGGER.info("Built per-author timeline index with {} messages", timelineIndex.size());
+    }
+
+
+    @Override
+    public Message addMessage(Message message) throws SQLException {
+        Message addedMessage = messageDao.addMessage(message);
+        timelineIndex.add(addedMessage.getPosted_by(), addedMessage.getMessage_id());
+        return addedMessage;
+    }
+
+
+    @Override
+    public List<Message> getAllMessages() throws SQLException {
+        return messageDao.getAllMessages();
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
+        return messageDao.getAllMessages(fields);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId) throws SQLException {
+        return getAllMessages(accountId, MessageField.ALL);
+    }
+
+
+    @Override
+    public List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Getting all messages from user with account ID: {}, using the timeline index", accountId);
+
+        int[] messageIds = timelineIndex.get(accountId);
+
+        if (messageIds.length == 0) {
+            return new ArrayList<>();
+        }
+
+        return messageDao.getMessages(messageIds, fields);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId) throws SQLException {
+        return messageDao.getMessage(messageId);
+    }
+
+
+    @Override
+    public Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
+        return messageDao.getMessage(messageId, fields);
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds) throws SQLException {
+        return messageDao.getMessages(messageIds);
+    }
+
+
+    @Override
+    public List<Message> getMessages(int[] messageIds, Set<MessageField> fields) throws SQLException {
+        return messageDao.getMessages(messageIds, fields);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        return messageDao.getMessagesInRange(since, until, offset, limit);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        return messageDao.getMessagesInRange(since, until, offset, limit, fields);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit);
+    }
+
+
+    @Override
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit, fields);
+    }
+
+
+    @Override
+    public int getMessageCount() {
+        return timelineIndex.size();
+    }
+
+
+    @Override
+    public int getMessageCount(int accountId) {
+        return timelineIndex.count(accountId);
+    }
+
+
+    @Override
+    public List<Message> getLatestMessages(int accountId, int limit) throws SQLException {
+        int[] messageIds = timelineIndex.getLatest(accountId, limit);
+
+        if (messageIds.length == 0) {
+            return new ArrayList<>();
+        }
+
+        List<Message> messages = messageDao.getMessages(messageIds);
+        Collections.reverse(messages);
+        return messages;
+    }
+
+
+    @Override
+    public void deleteMessage(int messageId) throws SQLException {
+        messageDao.deleteMessage(messageId);
+        timelineIndex.remove(messageId);
+    }
+
+
+    @Override
+    public void updateMessage(int messageId, String messageText) throws SQLException {
+        messageDao.updateMessage(messageId, messageText);
+    }
+
+
+    @Override
+    public long getReadVersion() {
+        return messageDao.getReadVersion();
+    }
+
+}
@@ -0,0 +1,294 @@
+package DAO;
+
+import java.io.Closeable;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Account;
+import Model.Message;
+
+/**
+ * Routes reads between a primary database and its read replicas, and feeds the replicas a stream of the changes made
+ *  thru the primary.
+ *
+ * Every write goes to the primary and is then published as a numbered Change to each replica, in the same order the
+ *  primary applied them.  A read may use a replica only if the replica is healthy, its oldest unapplied change is no
+ *  older than the staleness bound, and it has applied the last change written by the current client, so that a
+ *  client always reads its own writes.  Otherwise the read goes to the primary.
+ *
+ * The current client is tracked per thread with setCurrentClient, which the controller calls for every request.
+ */
+public class ReplicaSet implements Closeable {
+
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+    private static final ThreadLocal<String> CURRENT_CLIENT = new ThreadLocal<>();
+
+    private final List<H2Replica> replicas;
+    private final long maxStalenessMillis;
+    private final Object writeLock = new Object();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Map<String, Long> clientWriteSequences =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > MAX_TRACKED_CLIENTS;
+            }
+        };
+    private volatile long publishedSequence;
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaSet.class);
+
+    /**
+     * @param replicas The read replicas.
+     * @param maxStalenessMillis How far behind the primary, in milliseconds, a replica may be and still serve reads.
+     */
+    public ReplicaSet(List<H2Replica> replicas, long maxStalenessMillis) {
+        this.replicas = List.copyOf(replicas);
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * Sets the client on whose behalf the current thread is reading and writing.
+     *
+     * @param clientKey Identifies the client, e.g. by IP address.
+     */
+    public static void setCurrentClient(String clientKey) {
+        CURRENT_CLIENT.set(clientKey);
+    }
+
+    /**
+     * Clears the current thread's client, once a request is done.
+     */
+    public static void clearCurrentClient() {
+        CURRENT_CLIENT.remove();
+    }
+
+    /**
+     * Copies every row of the primary to each replica, so that they can follow the change stream from here on.  Writes
+     *  are held off until the copy is done.
+     *
+     * @param accountDao The primary's account DAO.
+     * @param messageDao The primary's message DAO.
+     * @throws SQLException If there is an issue with the primary's or a replica's database.
+     */
+    public void synchronize(AccountDao accountDao, MessageDao messageDao) throws SQLException {
+        synchronized (writeLock) {
+            List<Account> accounts = accountDao.getAllAccounts();
+            List<Message> messages = messageDao.getAllMessages();
+
+            for (H2Replica replica : replicas) {
+                replica.synchronize(accounts, messages, publishedSequence);
+            }
+        }
+    }
+
+    /**
+     * Runs a write against the primary and publishes the resulting change to every replica.  Writes are serialized, so
+     *  replicas see changes in the order the primary applied them.
+     *
+     * @param primaryWrite The write to run against the primary.
+     * @param toChange Describes the change made by the write, given the write's result.
+     * @return The write's result.
+     * @throws SQLException If there is an issue with the primary's database.  Nothing is published in that case.
+     */
+    <T> T write(SqlSupplier<T> primaryWrite, ChangeFactory<T> toChange) throws SQLException {
+        synchronized (writeLock) {
+            T result = primaryWrite.get();
+            Change change = toChange.create(result, publishedSequence + 1, System.nanoTime());
+
+            publishedSequence = change.sequence;
+            for (H2Replica replica : replicas) {
+                replica.enqueue(change);
+            }
+
+            String client = CURRENT_CLIENT.get();
+            if (client != null) {
+                synchronized (clientWriteSequences) {
+                    clientWriteSequences.put(client, change.sequence);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Runs a read against a replica that is fresh enough for the current client, falling back to the primary if there
+     *  is none or if the replica's read fails.
+     *
+     * @param primary The primary's DAO.
+     * @param replicaDao Picks the same kind of DAO from a replica.
+     * @param read The read to run against the chosen DAO.
+     * @return The read's result.
+     * @throws SQLException If there is an issue with the primary's database.
+     */
+    <D, T> T read(D primary, ReplicaDaoSelector<D> replicaDao, SqlFunction<D, T> read) throws SQLException {
+        Optional<H2Replica> replica = chooseReplica();
+
+        if (replica.isPresent()) {
+            try {
+                return read.apply(replicaDao.select(replica.get()));
+            } catch (SQLException e) {
+                LOGGER.error("Read from {} failed, reading from the primary instead", replica.get(), e);
+            }
+        }
+
+        return read.apply(primary);
+    }
+
+    /**
+     * Picks the next replica, round robin, that is healthy, within the staleness bound, and has applied the current
+     *  client's last write.
+     *
+     * @return The chosen replica, or an empty Optional if reads should go to the primary.
+     */
+    public Optional<H2Replica> chooseReplica() {
+        long requiredSequence = getRequiredSequence();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(replicas.size(), 1));
+
+        for (int i = 0; i < replicas.size(); i++) {
+            H2Replica replica = replicas.get((start + i) % replicas.size());
+
+            if (replica.isHealthy()
+             && replica.getAppliedSequence() >= requiredSequence
+             && replica.getLagMillis() <= maxStalenessMillis) {
+                return Optional.of(replica);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * @return The sequence number of the current client's last write, which a replica must have applied to serve the
+     *  client's reads, or 0 if the client has not written or no client is set.
+     */
+    public long getRequiredSequence() {
+        String client = CURRENT_CLIENT.get();
+
+        if (client == null) {
+            return 0;
+        }
+
+        synchronized (clientWriteSequences) {
+            return clientWriteSequences.getOrDefault(client, 0L);
+        }
+    }
+
+    /**
+     * Waits until every healthy replica has applied every change published so far.
+     *
+     * @param timeoutMillis The longest time to wait.
+     * @return True if the replicas caught up in time.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public boolean awaitReplication(long timeoutMillis) throws InterruptedException {
+        long target = publishedSequence;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        for (H2Replica replica : replicas) {
+            while (replica.isHealthy() && replica.getAppliedSequence() < target) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The sequence number of the last change published to the replicas.
+     */
+    public long getPublishedSequence() {
+        return publishedSequence;
+    }
+
+    /**
+     * @return The replicas in this set.
+     */
+    public List<H2Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Stops every replica and closes their connections.
+     */
+    @Override
+    public void close() {
+        replicas.forEach(H2Replica::close);
+    }
+
+    /**
+     * A change made thru the primary, in the form the replicas apply it.
+     */
+    static class Change {
+        enum Type { ACCOUNT_ADDED, MESSAGE_ADDED, MESSAGE_UPDATED, MESSAGE_DELETED }
+
+        final Type type;
+        final long sequence;
+        final long publishedAtNanos;
+        final Account account;
+        final Message message;
+
+        private Change(Type type, long sequence, long publishedAtNanos, Account account, Message message) {
+            this.type = type;
+            this.sequence = sequence;
+            this.publishedAtNanos = publishedAtNanos;
+            this.account = account;
+            this.message = message;
+        }
+
+        static ChangeFactory<Account> accountAdded() {
+            return (account, sequence, publishedAtNanos) -> new Change(
+                Type.ACCOUNT_ADDED, sequence, publishedAtNanos,
+                new Account(account.getAccount_id(), account.getUsername(), account.getPassword()), null);
+        }
+
+        static ChangeFactory<Message> messageAdded() {
+            return (message, sequence, publishedAtNanos) -> new Change(
+                Type.MESSAGE_ADDED, sequence, publishedAtNanos, null,
+                new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                 message.getTime_posted_epoch()));
+        }
+
+        static ChangeFactory<Void> messageUpdated(int messageId, String messageText) {
+            return (ignored, sequence, publishedAtNanos) -> new Change(
+                Type.MESSAGE_UPDATED, sequence, publishedAtNanos, null, new Message(messageId, 0, messageText, 0));
+        }
+
+        static ChangeFactory<Void> messageDeleted(int messageId) {
+            return (ignored, sequence, publishedAtNanos) -> new Change(
+                Type.MESSAGE_DELETED, sequence, publishedAtNanos, null, new Message(messageId, 0, null, 0));
+        }
+    }
+
+    @FunctionalInterface
+    interface ChangeFactory<T> {
+        Change create(T writeResult, long sequence, long publishedAtNanos);
+    }
+
+    @FunctionalInterface
+    interface SqlSupplier<T> {
+        T get() throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface SqlFunction<D, T> {
+        T apply(D dao) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface ReplicaDaoSelector<D> {
+        D select(H2Replica replica);
+    }
+
+}
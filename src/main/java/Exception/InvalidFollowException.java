@@ -0,0 +1,23 @@
+package Exception;
+
+public class InvalidFollowException extends Exception {
+
+    public InvalidFollowException() {
+        super();
+    }
+
+    public InvalidFollowException(String s) {
+        super(s);
+    }
+
+    public InvalidFollowException(Throwable cause) {
+        super(cause);
+    }
+
+    public InvalidFollowException(String s, Throwable cause) {
+        super(s, cause);
+    }
+
+    @java.io.Serial
+    private static final long serialVersionUID = 1L;
+}
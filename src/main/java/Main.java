@@ -1,14 +1,30 @@
 import Controller.SocialMediaController;
+import Controller.WarmUp;
+import Util.AppConfig;
 import io.javalin.Javalin;
 
 /**
  * This class is provided with a main method to allow you to manually run and test your application. This class will not
  * affect your program in any way and you may write whatever code you like here.
+ *
+ * With socialmedia.warmup.enabled=true, GET /ready answers 503 until the warm-up is done, so a load balancer can hold
+ *  traffic back until then.  On SIGTERM the running requests are drained for up to
+ *  socialmedia.shutdown.drainTimeoutMillis before the stores are flushed and closed.
  */
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         SocialMediaController controller = new SocialMediaController();
         Javalin app = controller.startAPI();
+        Runtime.getRuntime().addShutdownHook(
+            new Thread(() -> controller.shutdown(AppConfig.getLong("shutdown.drainTimeoutMillis", 10_000))));
+
+        boolean warmUp = AppConfig.getBoolean("warmup.enabled", false);
+        controller.setReady(!warmUp);
         app.start(8080);
+
+        if (warmUp) {
+            WarmUp.run(controller, AppConfig.getInt("warmup.rounds", 200));
+            controller.setReady(true);
+        }
     }
 }
@@ -0,0 +1,52 @@
+package Model;
+
+/**
+ * The response to a request made with an Idempotency-Key header, kept so that retries of the request get the same
+ *  response without running it again.
+ */
+public class IdempotentResponse {
+
+    private final long requestHash;
+    private final int status;
+    private final String contentType;
+    private final byte[] body;
+
+    /**
+     * @param requestHash The hash of the request's body, to tell a retry from a different request reusing the key.
+     * @param status The HTTP response code.
+     * @param contentType The response's Content-Type, or null if it had none.
+     * @param body The response's body.
+     */
+    public IdempotentResponse(long requestHash, int status, String contentType, byte[] body) {
+        this.requestHash = requestHash;
+        this.status = status;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    public long getRequestHash() {
+        return requestHash;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotentResponse{" +
+                "requestHash=" + requestHash +
+                ", status=" + status +
+                ", contentType='" + contentType + '\'' +
+                ", body=" + body.length + " bytes" +
+                '}';
+    }
+}
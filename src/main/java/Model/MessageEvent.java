@@ -0,0 +1,48 @@
+package Model;
+
+/**
+ * A change to a message, as pushed to clients of the live message stream.
+ */
+public class MessageEvent {
+
+    /**
+     * What happened to the message.
+     */
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private final Type type;
+    private final long sequence;
+    private final Message message;
+
+    /**
+     * @param type What happened to the message.
+     * @param sequence The position of the event in the stream, starting at 1.
+     * @param message The message after the change, or before it for a deleted message.
+     */
+    public MessageEvent(Type type, long sequence, Message message) {
+        this.type = type;
+        this.sequence = sequence;
+        this.message = message;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageEvent{" +
+                "type=" + type +
+                ", sequence=" + sequence +
+                ", message=" + message +
+                '}';
+    }
+}
@@ -0,0 +1,80 @@
+package Model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * A field of a Message that a client can ask for, e.g. with GET /messages?fields=message_id,message_text.  Each field's
+ *  name is both its JSON property and its column in the message table.
+ */
+public enum MessageField {
+    MESSAGE_ID("message_id"),
+    POSTED_BY("posted_by"),
+    MESSAGE_TEXT("message_text"),
+    TIME_POSTED_EPOCH("time_posted_epoch");
+
+    /** Every field, as read when no projection is asked for. */
+    public static final Set<MessageField> ALL = Collections.unmodifiableSet(EnumSet.allOf(MessageField.class));
+
+    private static final String ALL_COLUMNS = "message_id, posted_by, message_text, time_posted_epoch";
+
+    private final String name;
+
+    MessageField(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The field's JSON property and column name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Parses a comma separated list of field names, e.g. "message_id,message_text".
+     *
+     * @param names The field names.
+     * @return The fields, in declaration order.
+     * @throws IllegalArgumentException If the list is empty or a name is not a field.
+     */
+    public static Set<MessageField> parseList(String names) {
+        Set<MessageField> fields = EnumSet.noneOf(MessageField.class);
+
+        for (String name : names.split(",")) {
+            fields.add(fromName(name.trim()));
+        }
+
+        return fields;
+    }
+
+    /**
+     * @param fields The fields to select.
+     * @return The fields' columns, comma separated, for a SELECT statement.
+     */
+    public static String toColumnList(Set<MessageField> fields) {
+        if (fields.size() == ALL.size()) {
+            return ALL_COLUMNS;
+        }
+
+        StringJoiner columns = new StringJoiner(", ");
+
+        for (MessageField field : fields) {
+            columns.add(field.name);
+        }
+
+        return columns.toString();
+    }
+
+    private static MessageField fromName(String name) {
+        for (MessageField field : values()) {
+            if (field.name.equals(name)) {
+                return field;
+            }
+        }
+
+        throw new IllegalArgumentException(String.format("'%s' is not a message field.", name));
+    }
+}
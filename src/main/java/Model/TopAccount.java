@@ -0,0 +1,35 @@
+package Model;
+
+/**
+ * An account that posted often recently, as returned by GET /accounts/top.
+ */
+public class TopAccount {
+
+    private final int account_id;
+    private final long count;
+
+    /**
+     * @param account_id The account's ID.
+     * @param count The estimated number of messages it posted in the trending window.
+     */
+    public TopAccount(int account_id, long count) {
+        this.account_id = account_id;
+        this.count = count;
+    }
+
+    public int getAccount_id() {
+        return account_id;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "TopAccount{" +
+                "account_id=" + account_id +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,35 @@
+package Model;
+
+/**
+ * A message that was read often recently, as returned by GET /messages/trending.
+ */
+public class TrendingMessage {
+
+    private final Message message;
+    private final long count;
+
+    /**
+     * @param message The message.
+     * @param count The estimated number of times it was read in the trending window.
+     */
+    public TrendingMessage(Message message, long count) {
+        this.message = message;
+        this.count = count;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "TrendingMessage{" +
+                "message=" + message +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,242 @@
+package Service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.FollowDao;
+import DAO.MessageDao;
+import Model.Message;
+
+/**
+ * Serves home feeds, the newest messages from the accounts an account follows, without joining the follow and
+ *  message tables per request.
+ *
+ * Each follower's feed is a bounded timeline of message IDs, kept in memory once the feed has been read.  A timeline
+ *  is built from the latest messages of each account followed, and from then on filled by fan-out on write: a new
+ *  message's ID is pushed into the timelines of its poster's followers.  Posters with more followers than the fan-out
+ *  threshold are not fanned out to, since one of their messages would touch too many timelines; their latest messages
+ *  are instead read and merged in when a follower's feed is read.
+ *
+ * Timelines only hold IDs.  Messages are read from the MessageDao, which stays the source of truth, so updated text is
+ *  always current and deleted messages drop out of feeds.
+ */
+public class HomeTimelines {
+
+    private final FollowDao followDao;
+    private final MessageDao messageDao;
+    private final int timelineSize;
+    private final int fanOutThreshold;
+    private final int maxTimelines;
+    private final ConcurrentHashMap<Integer, Timeline> timelines = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, AtomicInteger> followerCounts = new ConcurrentHashMap<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(HomeTimelines.class);
+
+    /**
+     * Loads the number of followers of each account.
+     *
+     * @param followDao The DAO that stores who follows whom.
+     * @param messageDao The DAO that stores the messages.
+     * @param timelineSize The most message IDs kept in each follower's timeline.
+     * @param fanOutThreshold Posters with more followers than this are merged in on read instead of fanned out to.
+     * @param maxTimelines The most timelines kept in memory.  When full, a timeline is dropped and rebuilt when read.
+     * @throws SQLException If there is an issue with the database while counting followers.
+     */
+    public HomeTimelines(FollowDao followDao, MessageDao messageDao, int timelineSize, int fanOutThreshold,
+     int maxTimelines) throws SQLException {
+        this.followDao = followDao;
+        this.messageDao = messageDao;
+        this.timelineSize = timelineSize;
+        this.fanOutThreshold = fanOutThreshold;
+        this.maxTimelines = maxTimelines;
+
+        followDao.countFollowersByAccount().forEach(
+            (accountId, count) -> followerCounts.put(accountId, new AtomicInteger(count)));
+    }
+
+    /**
+     * Fans a new message out to the timelines in memory of its poster's followers.  A failure is logged and drops every
+     *  timeline, so that none is left missing the message; they are rebuilt from storage when read.
+     *
+     * @param message The message that was just stored.
+     */
+    public void onMessageCreated(Message message) {
+        int followers = getFollowerCount(message.getPosted_by());
+
+        if (followers == 0 || followers > fanOutThreshold || timelines.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (int followerId : followDao.getFollowerIds(message.getPosted_by())) {
+                Timeline timeline = timelines.get(followerId);
+                if (timeline != null) {
+                    timeline.add(message.getMessage_id());
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.error("Could not fan out message {}, dropping every timeline", message.getMessage_id(), e);
+            timelines.clear();
+        }
+    }
+
+    /**
+     * Records that one account started or stopped following another.  The follower's timeline is dropped, to be
+     *  rebuilt when read.  If the followee crossed the fan-out threshold, every timeline is dropped, since its messages
+     *  move between being fanned out and being merged in on read.
+     *
+     * @param followerId The account ID of the follower.
+     * @param followeeId The account ID of the account followed or unfollowed.
+     * @param followed True if the follow was added, false if it was removed.
+     */
+    public void onFollowChanged(int followerId, int followeeId, boolean followed) {
+        int count = followerCounts.computeIfAbsent(followeeId, (key) -> new AtomicInteger())
+            .addAndGet(followed ? 1 : -1);
+
+        if (followed ? count == fanOutThreshold + 1 : count == fanOutThreshold) {
+            timelines.clear();
+        } else {
+            timelines.remove(followerId);
+        }
+    }
+
+    /**
+     * Gets the newest messages from the accounts an account follows.
+     *
+     * @param accountId The account ID of the follower.
+     * @param limit The most messages to return.  At most the timeline size are returned.
+     * @return The messages, newest first.  Empty if the account follows no one who has posted.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getFeed(int accountId, int limit) throws SQLException {
+        int[] followeeIds = followDao.getFolloweeIds(accountId);
+        Timeline timeline = getTimeline(accountId, followeeIds);
+
+        int[] messageIds = timeline.getNewest(limit);
+        Arrays.sort(messageIds);
+
+        List<Message> feed = new ArrayList<>(messageDao.getMessages(messageIds));
+        Set<Integer> seen = new HashSet<>();
+        feed.forEach((message) -> seen.add(message.getMessage_id()));
+
+        // Fan-out on read for the posters too popular to fan out on write.
+        for (int followeeId : followeeIds) {
+            if (getFollowerCount(followeeId) > fanOutThreshold) {
+                for (Message message : messageDao.getLatestMessages(followeeId, limit)) {
+                    if (seen.add(message.getMessage_id())) {
+                        feed.add(message);
+                    }
+                }
+            }
+        }
+
+        feed.sort(Comparator.comparingInt(Message::getMessage_id).reversed());
+        return new ArrayList<>(feed.subList(0, Math.min(limit, feed.size())));
+    }
+
+    /**
+     * @return The number of timelines in memory.
+     */
+    public int getTimelineCount() {
+        return timelines.size();
+    }
+
+    private int getFollowerCount(int accountId) {
+        AtomicInteger count = followerCounts.get(accountId);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Gets a follower's timeline, building it if it is not in memory.  The empty timeline is published before it is
+     *  filled, so that messages fanned out while it is being built are not missed.
+     */
+    private Timeline getTimeline(int accountId, int[] followeeIds) throws SQLException {
+        Timeline timeline = timelines.get(accountId);
+
+        if (timeline != null) {
+            return timeline;
+        }
+
+        if (timelines.size() >= maxTimelines) {
+            Iterator<Integer> iterator = timelines.keySet().iterator();
+            if (iterator.hasNext()) {
+                timelines.remove(iterator.next());
+            }
+        }
+
+        Timeline newTimeline = new Timeline(timelineSize);
+        timeline = timelines.putIfAbsent(accountId, newTimeline);
+
+        if (timeline != null) {
+            return timeline;
+        }
+
+        LOGGER.info("Building home timeline of account ID: {} from {} followed accounts", accountId,
+         followeeIds.length);
+
+        try {
+            for (int followeeId : followeeIds) {
+                if (getFollowerCount(followeeId) <= fanOutThreshold) {
+                    for (Message message : messageDao.getLatestMessages(followeeId, timelineSize)) {
+                        newTimeline.add(message.getMessage_id());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            timelines.remove(accountId, newTimeline);
+            throw e;
+        }
+
+        return newTimeline;
+    }
+
+    /**
+     * The newest message IDs of a follower's feed, sorted, keeping at most a fixed number.
+     */
+    private static final class Timeline {
+        private final int[] messageIds;
+        private int size;
+
+        Timeline(int capacity) {
+            messageIds = new int[capacity];
+        }
+
+        synchronized void add(int messageId) {
+            int position = Arrays.binarySearch(messageIds, 0, size, messageId);
+
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+
+            if (size == messageIds.length) {
+                if (position == 0) {
+                    // Older than everything kept.
+                    return;
+                }
+                System.arraycopy(messageIds, 1, messageIds, 0, position - 1);
+                messageIds[position - 1] = messageId;
+                return;
+            }
+
+            System.arraycopy(messageIds, position, messageIds, position + 1, size - position);
+            messageIds[position] = messageId;
+            size++;
+        }
+
+        synchronized int[] getNewest(int limit) {
+            return Arrays.copyOfRange(messageIds, Math.max(0, size - limit), size);
+        }
+    }
+
+}
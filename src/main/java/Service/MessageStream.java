@@ -0,0 +1,341 @@
+package Service;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Model.Message;
+import Model.MessageEvent;
+import Util.EventRingBuffer;
+
+/**
+ * Pushes message changes to live subscribers.
+ *
+ * Publishing only stores the event in a ring buffer and wakes the dispatcher thread, so its cost does not depend on
+ *  the number of subscribers.  The dispatcher hands every subscriber that is behind to a pool of delivery threads,
+ *  which send it the events between its cursor and the newest event.  A subscriber that falls more than the ring's
+ *  capacity behind is a slow consumer: depending on the policy, it is either told how many events it missed and moved
+ *  up to the oldest event still kept, or disconnected.
+ *
+ * A subscriber whose socket stops draining would block a delivery thread in a write, and with it every subscriber
+ *  queued behind it on that thread.  So a subscriber that spends longer than the send timeout in one call is
+ *  disconnected by the dispatcher, and its delivery thread is interrupted, which fails the blocked write.  Subscribers
+ *  must therefore let an interrupt end a blocked call.
+ */
+public class MessageStream implements Closeable {
+
+    /**
+     * What to do with a subscriber that has fallen so far behind that events it has not received were overwritten.
+     */
+    public enum SlowConsumerPolicy { DROP, DISCONNECT }
+
+    private final EventRingBuffer<MessageEvent> ring;
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final long sendTimeoutNanos;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService deliveryExecutor;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageStream.class);
+
+    /**
+     * Starts the dispatcher and delivery threads.
+     *
+     * @param capacity The number of recent events kept for subscribers that are behind.
+     * @param slowConsumerPolicy What to do with a subscriber that has missed events.
+     * @param deliveryThreads The number of threads that send events to subscribers.
+     * @param sendTimeoutMillis How long one call to a subscriber may take before the subscriber is disconnected.  Zero
+     *  or less never times out.
+     */
+    public MessageStream(int capacity, SlowConsumerPolicy slowConsumerPolicy, int deliveryThreads,
+     long sendTimeoutMillis) {
+        this.ring = new EventRingBuffer<>(capacity);
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMillis);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        deliveryExecutor = Executors.newFixedThreadPool(
+            deliveryThreads,
+            (runnable) -> {
+                Thread thread = new Thread(runnable, "message-stream-delivery-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        dispatcher = new Thread(this::dispatch, "message-stream-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Publishes a message change to every subscriber.  Callers are serialized, since the ring buffer has a single
+     *  producer.
+     *
+     * @param type What happened to the message.
+     * @param message The message; a copy is published, so the caller may keep changing it.
+     */
+    public synchronized void publish(MessageEvent.Type type, Message message) {
+        if (closed) {
+            return;
+        }
+
+        ring.publish(
+            new MessageEvent(
+                type,
+                ring.getPublishedSequence() + 1,
+                new Message(message.getMessage_id(), message.getPosted_by(), message.getMessage_text(),
+                 message.getTime_posted_epoch())));
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Subscribes to the changes published from now on.
+     *
+     * @param postedBy Only changes to messages posted by this account are sent, or every change if null.
+     * @param subscriber Receives the changes, on a delivery thread.
+     * @return The subscription, which is closed to unsubscribe.
+     */
+    public Subscription subscribe(Integer postedBy, Subscriber subscriber) {
+        Subscription subscription = new Subscription(postedBy, subscriber, ring.getPublishedSequence());
+        subscriptions.add(subscription);
+
+        LOGGER.info("Message stream subscriber added, now {} subscribers", subscriptions.size());
+        return subscription;
+    }
+
+    /**
+     * @return The number of current subscribers.
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Disconnects every subscriber and stops the dispatcher and delivery threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        deliveryExecutor.shutdownNow();
+
+        for (Subscription subscription : subscriptions) {
+            subscription.disconnect();
+        }
+    }
+
+    private void dispatch() {
+        long dispatchedSequence = 0;
+
+        while (!closed) {
+            if (sendTimeoutNanos > 0) {
+                long now = System.nanoTime();
+                for (Subscription subscription : subscriptions) {
+                    subscription.expireSend(now);
+                }
+            }
+
+            long publishedSequence = ring.getPublishedSequence();
+
+            if (publishedSequence == dispatchedSequence) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+                if (Thread.interrupted()) {
+                    return;
+                }
+                continue;
+            }
+
+            for (Subscription subscription : subscriptions) {
+                if (subscription.cursor < publishedSequence) {
+                    schedule(subscription);
+                }
+            }
+            dispatchedSequence = publishedSequence;
+        }
+    }
+
+    private void schedule(Subscription subscription) {
+        if (subscription.scheduled.compareAndSet(false, true)) {
+            try {
+                deliveryExecutor.execute(() -> deliver(subscription));
+            } catch (RuntimeException e) {
+                subscription.scheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Sends a subscriber every event after its cursor.  Only one delivery thread runs this per subscriber at a time.
+     */
+    private void deliver(Subscription subscription) {
+        try {
+            long publishedSequence;
+
+            while (!subscription.closed.get()
+             && subscription.cursor < (publishedSequence = ring.getPublishedSequence())) {
+                long oldestKept = Math.max(publishedSequence - ring.getCapacity() + 1, 1);
+
+                if (subscription.cursor + 1 < oldestKept) {
+                    if (!handleSlowConsumer(subscription, oldestKept)) {
+                        return;
+                    }
+                    continue;
+                }
+
+                long sequence = subscription.cursor + 1;
+                MessageEvent event = ring.get(sequence);
+
+                if (event == null) {
+                    // Overwritten since publishedSequence was read; the next pass treats it as missed.
+                    continue;
+                }
+
+                if (subscription.postedBy == null || subscription.postedBy == event.getMessage().getPosted_by()) {
+                    subscription.beginSend();
+                    try {
+                        subscription.subscriber.onEvent(event);
+                    } finally {
+                        subscription.endSend();
+                    }
+                }
+                subscription.cursor = sequence;
+            }
+
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not send message event, disconnecting subscriber", e);
+            subscription.disconnect();
+        } finally {
+            subscription.scheduled.set(false);
+        }
+
+        // An event published after the loop's last check but before scheduled was cleared would otherwise wait for the
+        //  next publish.
+        if (!subscription.closed.get() && subscription.cursor < ring.getPublishedSequence()) {
+            schedule(subscription);
+        }
+    }
+
+    /**
+     * @return True if the subscriber should keep receiving events.
+     */
+    private boolean handleSlowConsumer(Subscription subscription, long oldestKept) {
+        long missed = oldestKept - subscription.cursor - 1;
+
+        if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+            LOGGER.info("Disconnecting slow message stream subscriber that missed {} events", missed);
+            subscription.disconnect();
+            return false;
+        }
+
+        LOGGER.info("Message stream subscriber missed {} events", missed);
+        subscription.cursor = oldestKept - 1;
+        subscription.beginSend();
+        try {
+            subscription.subscriber.onEventsMissed(missed);
+        } finally {
+            subscription.endSend();
+        }
+        return true;
+    }
+
+    /**
+     * Receives the changes sent by a MessageStream.  Methods are called on delivery threads, one at a time per
+     *  subscriber.
+     */
+    public interface Subscriber {
+        /**
+         * @param event A message change.
+         */
+        void onEvent(MessageEvent event);
+
+        /**
+         * Called instead of onEvent for events that were overwritten before they could be sent.
+         *
+         * @param count The number of events missed.
+         */
+        void onEventsMissed(long count);
+
+        /**
+         * Called once if the stream disconnects the subscriber, e.g. when it is a slow consumer or the stream closes.
+         */
+        void onDisconnect();
+    }
+
+    /**
+     * A subscriber's registration and its position in the stream.
+     */
+    public final class Subscription implements Closeable {
+        private final Integer postedBy;
+        private final Subscriber subscriber;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long cursor;
+        private Thread sendingThread;
+        private long sendStartedNanos;
+
+        private Subscription(Integer postedBy, Subscriber subscriber, long cursor) {
+            this.postedBy = postedBy;
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Unsubscribes, without calling the subscriber's onDisconnect.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+            }
+        }
+
+        private void disconnect() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                subscriber.onDisconnect();
+            }
+        }
+
+        private synchronized void beginSend() {
+            sendingThread = Thread.currentThread();
+            sendStartedNanos = System.nanoTime();
+        }
+
+        private synchronized void endSend() {
+            sendingThread = null;
+        }
+
+        /**
+         * Disconnects the subscriber if the call it is in has taken longer than the send timeout, and interrupts the
+         *  delivery thread making the call.
+         */
+        private void expireSend(long now) {
+            long blockedNanos;
+
+            synchronized (this) {
+                blockedNanos = now - sendStartedNanos;
+                if (sendingThread == null || blockedNanos < sendTimeoutNanos) {
+                    return;
+                }
+
+                // Interrupted while still holding the lock, so that the thread can't have moved on to another call.
+                sendingThread.interrupt();
+                sendingThread = null;
+            }
+
+            LOGGER.info("Disconnecting message stream subscriber that blocked a delivery thread for {} ms",
+             TimeUnit.NANOSECONDS.toMillis(blockedNanos));
+            disconnect();
+        }
+    }
+
+}
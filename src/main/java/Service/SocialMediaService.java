@@ -1,31 +1,131 @@
 package Service;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import DAO.AccountDao;
+import DAO.FollowDao;
 import DAO.MessageDao;
 import Exception.AccountAlreadyExistsException;
 import Exception.AccountDoesNotExistException;
+import Exception.InvalidFollowException;
 import Exception.InvalidMessageTextException;
 import Exception.InvalidNewAccountInputException;
 import Exception.MessageDoesNotExistException;
 import Model.Account;
 import Model.Message;
-
-public class SocialMediaService {
+import Model.MessageEvent;
+import Model.MessageField;
+import Model.TopAccount;
+import Model.TrendingMessage;
+import Util.AppConfig;
+import Util.ConnectionUtil;
+import Util.InvertedIndex;
+import Util.RadixTrie;
+import Util.ScalableBloomFilter;
+import Util.SlidingHeavyHitters;
+
+public class SocialMediaService implements Closeable {
     
     private AccountDao accountDao;
     private MessageDao messageDao;
+    private FollowDao followDao;
+    private final InvertedIndex searchIndex = new InvertedIndex();
+    private final Path searchIndexSnapshotPath;
+    /** Serializes the updates and deletes of each message with the search index changes they make. */
+    private final Object[] messageLocks = new Object[64];
+    private final RadixTrie usernameIndex = new RadixTrie();
+    private final ScalableBloomFilter usernameFilter;
+    private final LongAdder usernameFilterMisses = new LongAdder();
+    private final LongAdder usernameFilterFalsePositives = new LongAdder();
+    private final LongAdder usernameFilterMissedAccounts = new LongAdder();
+    private final boolean usernameFilterAuthoritative;
+    private final MessageStream messageStream;
+    private final HomeTimelines homeTimelines;
+    private final SlidingHeavyHitters messageReads;
+    private final SlidingHeavyHitters messagesPosted;
     private static final Logger LOGGER = LoggerFactory.getLogger(SocialMediaService.class);
 
-    public SocialMediaService(AccountDao accountDao, MessageDao messageDao) {
+    /**
+     * Creates the service and builds its in-process indexes: the username prefix index and the username Bloom filter
+     *  from every account, and the message search index.  In production mode, if the "socialmedia.search.snapshotPath"
+     *  setting names an existing snapshot file, the search index is loaded from it and only messages added since are
+     *  indexed; see buildSearchIndex.  Otherwise every message is indexed.
+     * Also starts the live message stream, which keeps the last "socialmedia.stream.bufferSize" (default 4096) changes
+     *  for subscribers that fall behind.  The "socialmedia.stream.slowConsumerPolicy" setting, "drop" (default) or
+     *  "disconnect", decides what happens to a subscriber that falls further behind than that.  A subscriber whose
+     *  connection blocks a delivery thread for longer than "socialmedia.stream.sendTimeoutMillis" (default 5000) is
+     *  disconnected.
+     * Home feeds keep the newest "socialmedia.feed.timelineSize" (default 200) message IDs of at most
+     *  "socialmedia.feed.maxTimelines" (default 100000) followers in memory.  Messages from accounts with more than
+     *  "socialmedia.feed.fanOutThreshold" (default 1000) followers are merged into feeds when read instead; see
+     *  HomeTimelines.
+     * The username Bloom filter is sized for "socialmedia.usernameFilter.initialCapacity" (default 100000) usernames
+     *  at a false positive rate of "socialmedia.usernameFilter.falsePositiveRate" (default 0.01), and grows past that;
+     *  see ScalableBloomFilter.  It only knows the accounts this process has read or registered, so usernames it rules
+     *  out are still looked up unless "socialmedia.usernameFilter.authoritative" is true; see findAccount.
+     * Trending messages and top accounts are counted over the last "socialmedia.trending.windowMillis" (default
+     *  300000), in "socialmedia.trending.slices" (default 10) slices; see createHeavyHitters for the sketch settings.
+     * 
+     * @param accountDao The DAO used to store accounts.
+     * @param messageDao The DAO used to store messages.
+     * @param followDao The DAO used to store who follows whom.
+     * @throws SQLException If there is an issue with the database while building the indexes.
+     */
+    public SocialMediaService(AccountDao accountDao, MessageDao messageDao, FollowDao followDao) throws SQLException {
         this.accountDao = accountDao;
         this.messageDao = messageDao;
+        this.followDao = followDao;
+
+        String snapshotPath = AppConfig.getString("search.snapshotPath", null);
+        this.searchIndexSnapshotPath = snapshotPath == null ? null : Paths.get(snapshotPath);
+
+        for (int i = 0; i < messageLocks.length; i++) {
+            messageLocks[i] = new Object();
+        }
+
+        this.usernameFilter = new ScalableBloomFilter(
+            AppConfig.getInt("usernameFilter.initialCapacity", 100_000),
+            AppConfig.getDouble("usernameFilter.falsePositiveRate", 0.01));
+        this.usernameFilterAuthoritative = AppConfig.getBoolean("usernameFilter.authoritative", false);
+
+        for (Account account : accountDao.getAllAccounts()) {
+            usernameIndex.add(account.getUsername());
+            usernameFilter.add(account.getUsername());
+        }
+
+        buildSearchIndex();
+
+        this.messageStream = new MessageStream(
+            AppConfig.getInt("stream.bufferSize", 4096),
+            MessageStream.SlowConsumerPolicy.valueOf(
+                AppConfig.getString("stream.slowConsumerPolicy", "drop").toUpperCase()),
+            AppConfig.getInt("stream.deliveryThreads", 4),
+            AppConfig.getLong("stream.sendTimeoutMillis", 5000));
+        this.homeTimelines = new HomeTimelines(
+            followDao,
+            messageDao,
+            getFeedTimelineSize(),
+            AppConfig.getInt("feed.fanOutThreshold", 1000),
+            AppConfig.getInt("feed.maxTimelines", 100_000));
+        this.messageReads = createHeavyHitters();
+        this.messagesPosted = createHeavyHitters();
     }
 
     /**
@@ -54,7 +154,7 @@ public class SocialMediaService {
                      account));
         }
 
-        if (accountDao.getAccount(account.getUsername()).isPresent()) {
+        if (findAccount(account.getUsername()).isPresent()) {
             LOGGER.error("Account already exists for username: {}", account.getUsername());
             throw new AccountAlreadyExistsException(
                 String.format(
@@ -62,7 +162,65 @@ public class SocialMediaService {
                      account.getUsername()));
         }
 
-        return accountDao.addAccount(account);
+        Account addedAccount = accountDao.addAccount(account);
+        usernameIndex.add(addedAccount.getUsername());
+        usernameFilter.add(addedAccount.getUsername());
+
+        return addedAccount;
+    }
+
+    /**
+     * Checks whether a username is free to register.  If the username Bloom filter is authoritative, most free
+     *  usernames are answered from it without touching the database; see findAccount.
+     * 
+     * @param username The username to check.
+     * @return True if no account has the username.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public boolean isUsernameAvailable(String username) throws SQLException {
+        LOGGER.info("Social media service is checking if username is available: {}", username);
+
+        return findAccount(username).isEmpty();
+    }
+
+    /**
+     * Reports the username Bloom filter's size, memory, and false positive rates: the rate estimated from its bits,
+     *  and the rate observed, as the share of lookups it could not rule out that found no account.  Also reports the
+     *  lookups it ruled out that found an account anyway, i.e. one added by another writer; while that count stays at
+     *  zero, the filter is safe to make authoritative.
+     * 
+     * @return The statistics, by name.
+     */
+    public Map<String, Object> getUsernameFilterStats() {
+        long misses = usernameFilterMisses.sum();
+        long falsePositives = usernameFilterFalsePositives.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("usernames", usernameFilter.size());
+        stats.put("stages", usernameFilter.getStageCount());
+        stats.put("memoryBytes", usernameFilter.getMemoryBytes());
+        stats.put("estimatedFalsePositiveRate", usernameFilter.getEstimatedFalsePositiveRate());
+        stats.put("definiteMisses", misses);
+        stats.put("falsePositives", falsePositives);
+        stats.put("missedAccounts", usernameFilterMissedAccounts.sum());
+        stats.put("observedFalsePositiveRate",
+            misses + falsePositives == 0 ? 0.0 : (double) falsePositives / (misses + falsePositives));
+        return stats;
+    }
+
+    /**
+     * Finds usernames that start with a prefix, for example to autocomplete a mention.  The lookup is answered from an
+     *  in-process index, without touching the database.
+     * Returns the matching usernames in alphabetical order.  If nothing matches, the list is empty.
+     * 
+     * @param prefix The case-sensitive start of the usernames to find.
+     * @param limit The maximum number of usernames to return.
+     * @return List containing up to limit matching usernames.
+     */
+    public List<String> searchUsernames(String prefix, int limit) {
+        LOGGER.info("Social media service is searching usernames with prefix: {}, limit: {}", prefix, limit);
+
+        return usernameIndex.findByPrefix(prefix, limit);
     }
 
     /**
@@ -81,7 +239,7 @@ public class SocialMediaService {
      throws IllegalArgumentException, SQLException {
         LOGGER.info("Social media service is logging into an account: {}", account);
 
-        Optional<Account> retrievedAccount = accountDao.getAccount(account.getUsername());
+        Optional<Account> retrievedAccount = findAccount(account.getUsername());
         LOGGER.debug("Retrieved account: {}", retrievedAccount);
 
         return retrievedAccount
@@ -131,7 +289,79 @@ public class SocialMediaService {
                      message.getPosted_by()));
         }
 
-        return messageDao.addMessage(message);
+        Message addedMessage = messageDao.addMessage(message);
+        searchIndex.add(
+            addedMessage.getMessage_id(), addedMessage.getMessage_text(), addedMessage.getTime_posted_epoch());
+        homeTimelines.onMessageCreated(addedMessage);
+        messagesPosted.add(addedMessage.getPosted_by());
+        messageStream.publish(MessageEvent.Type.CREATED, addedMessage);
+
+        return addedMessage;
+    }
+
+    /**
+     * Makes one account follow another, so that the followee's messages appear in the follower's feed.  Following an
+     *  account that is already followed does nothing.
+     * 
+     * @param followerId The account ID of the follower.
+     * @param followeeId The account ID of the account to follow.
+     * @throws InvalidFollowException If the account tries to follow itself.
+     * @throws AccountDoesNotExistException If either account does not exist.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public void followAccount(int followerId, int followeeId)
+     throws InvalidFollowException, AccountDoesNotExistException, SQLException {
+        LOGGER.info("Social media service is making account ID: {} follow account ID: {}", followerId, followeeId);
+
+        checkFollow(followerId, followeeId);
+
+        if (followDao.addFollow(followerId, followeeId)) {
+            homeTimelines.onFollowChanged(followerId, followeeId, true);
+        }
+    }
+
+    /**
+     * Makes one account stop following another, so that the followee's messages leave the follower's feed.
+     *  Unfollowing an account that is not followed does nothing.
+     * 
+     * @param followerId The account ID of the follower.
+     * @param followeeId The account ID of the account to stop following.
+     * @throws InvalidFollowException If the account tries to unfollow itself.
+     * @throws AccountDoesNotExistException If either account does not exist.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public void unfollowAccount(int followerId, int followeeId)
+     throws InvalidFollowException, AccountDoesNotExistException, SQLException {
+        LOGGER.info("Social media service is making account ID: {} unfollow account ID: {}", followerId, followeeId);
+
+        checkFollow(followerId, followeeId);
+
+        if (followDao.removeFollow(followerId, followeeId)) {
+            homeTimelines.onFollowChanged(followerId, followeeId, false);
+        }
+    }
+
+    /**
+     * Gets an account's home feed: the newest messages posted by the accounts it follows.
+     * Returns a list of messages, newest first.  If the account follows no one who has posted, or doesn't exist, then
+     *  the list is empty.
+     * 
+     * @param accountId The account ID of the follower.
+     * @param limit The maximum number of messages to return.
+     * @return List containing the newest Messages from the followed accounts.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getFeed(int accountId, int limit) throws SQLException {
+        LOGGER.info("Social media service is getting the feed of account ID: {}, limit: {}", accountId, limit);
+
+        return homeTimelines.getFeed(accountId, limit);
+    }
+
+    /**
+     * @return The most messages a feed returns: the "socialmedia.feed.timelineSize" setting (default 200).
+     */
+    public static int getFeedTimelineSize() {
+        return AppConfig.getInt("feed.timelineSize", 200);
     }
 
     /**
@@ -147,6 +377,20 @@ public class SocialMediaService {
         return messageDao.getAllMessages();
     }
 
+    /**
+     * Gets all messages stored in the database, reading only some of their fields; fields not read are left at their
+     *  default values.
+     * 
+     * @param fields The fields to read.
+     * @return List containing every Message, with at least the requested fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getAllMessages(Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Social media service is getting all messages, fields: {}", fields);
+
+        return messageDao.getAllMessages(fields);
+    }
+
     /**
      * Gets all messages in the database that belong to a particular user.
      * Returns a list of messages.
@@ -162,6 +406,126 @@ public class SocialMediaService {
         return messageDao.getAllMessages(accountId);
     }
 
+    /**
+     * Gets all messages in the database that belong to a particular user, reading only some of their fields; see
+     *  getAllMessages(Set).
+     * 
+     * @param accountId The account ID of the user of the messages to retrieve.
+     * @param fields The fields to read.
+     * @return List containing Messages from a particular user, with at least the requested fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getAllMessages(int accountId, Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Social media service is getting all messages from user with account ID: {}, fields: {}",
+         accountId, fields);
+
+        return messageDao.getAllMessages(accountId, fields);
+    }
+
+    /**
+     * Counts all messages.  Behind the timeline index the count is answered from memory, without touching the
+     *  database; see MessageDaoTimelineIndexed.
+     * 
+     * @return The number of messages.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public long getMessageCount() throws SQLException {
+        return messageDao.getMessageCount();
+    }
+
+    /**
+     * Counts the messages that belong to a particular user.  Behind the timeline index the count is answered from
+     *  memory, without touching the database; see MessageDaoTimelineIndexed.
+     * 
+     * @param accountId The account ID of the user whose messages to count.
+     * @return The number of messages posted by the user.  Zero if the account doesn't exist.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public long getMessageCount(int accountId) throws SQLException {
+        return messageDao.getMessageCount(accountId);
+    }
+
+    /**
+     * Gets one page of the messages posted within a time range, oldest first.
+     * If there are no messages in the range, then the list is empty.
+     * 
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @return List containing one page of the Messages posted in the range.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit) throws SQLException {
+        LOGGER.info("Social media service is getting messages posted from: {} until: {}, offset: {}, limit: {}",
+         since, until, offset, limit);
+
+        return messageDao.getMessagesInRange(since, until, offset, limit);
+    }
+
+    /**
+     * Gets one page of the messages posted within a time range, oldest first, reading only some of their fields; see
+     *  getAllMessages(Set).
+     * 
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @param fields The fields to read.
+     * @return List containing one page of the Messages posted in the range, with at least the requested fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getMessagesInRange(long since, long until, int offset, int limit, Set<MessageField> fields)
+     throws SQLException {
+        LOGGER.info("Social media service is getting messages posted from: {} until: {}, offset: {}, limit: {}," +
+         " fields: {}", since, until, offset, limit, fields);
+
+        return messageDao.getMessagesInRange(since, until, offset, limit, fields);
+    }
+
+    /**
+     * Gets one page of the messages that belong to a particular user and were posted within a time range, oldest
+     *  first.
+     * If there are no messages in the range or if the account doesn't exist, then the list is empty.
+     * 
+     * @param accountId The account ID of the user of the messages to retrieve.
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @return List containing one page of the user's Messages posted in the range.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit)
+     throws SQLException {
+        LOGGER.info("Social media service is getting messages from user with account ID: {} posted from: {} until: {}," +
+         " offset: {}, limit: {}", accountId, since, until, offset, limit);
+
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit);
+    }
+
+    /**
+     * Gets one page of the messages that belong to a particular user and were posted within a time range, oldest
+     *  first, reading only some of their fields; see getAllMessages(Set).
+     * 
+     * @param accountId The account ID of the user of the messages to retrieve.
+     * @param since The earliest time of posting to include, in epoch seconds.
+     * @param until The time of posting to stop before, in epoch seconds.
+     * @param offset The number of messages in the range to skip.
+     * @param limit The maximum number of messages to return.
+     * @param fields The fields to read.
+     * @return List containing one page of the user's Messages posted in the range, with at least the requested
+     *  fields.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> getMessagesInRange(int accountId, long since, long until, int offset, int limit,
+     Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Social media service is getting messages from user with account ID: {} posted from: {}" +
+         " until: {}, offset: {}, limit: {}, fields: {}", accountId, since, until, offset, limit, fields);
+
+        return messageDao.getMessagesInRange(accountId, since, until, offset, limit, fields);
+    }
+
     /**
      * Gets a message from the database by using message ID.  If the message does not exist, return an empty Optional.
      * 
@@ -172,7 +536,86 @@ public class SocialMediaService {
     public Optional<Message> getMessage(int messageId) throws SQLException {
         LOGGER.info("Social media service is getting message with ID: {}", messageId);
 
-        return messageDao.getMessage(messageId);
+        Optional<Message> message = messageDao.getMessage(messageId);
+        if (message.isPresent()) {
+            messageReads.add(messageId);
+        }
+
+        return message;
+    }
+
+    /**
+     * Gets a message from the database by using message ID, reading only some of its fields; see getAllMessages(Set).
+     *  The read counts toward the trending messages like any other.
+     * 
+     * @param messageId The message ID of the message to retrieve.
+     * @param fields The fields to read.
+     * @return An Optional containing the Message with at least the requested fields, or empty if it does not exist.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public Optional<Message> getMessage(int messageId, Set<MessageField> fields) throws SQLException {
+        LOGGER.info("Social media service is getting message with ID: {}, fields: {}", messageId, fields);
+
+        Optional<Message> message = messageDao.getMessage(messageId, fields);
+        if (message.isPresent()) {
+            messageReads.add(messageId);
+        }
+
+        return message;
+    }
+
+    /**
+     * Gets the messages read most often recently, by GET /messages/{message_id}.  The reads are counted in memory, in
+     *  fixed space, without writing to the database; see SlidingHeavyHitters.  Counts are estimates and may be a little
+     *  high.
+     * Returns the messages, most read first.  Messages deleted since are left out.
+     * 
+     * @param limit The maximum number of messages to return.
+     * @return List containing the trending messages and their estimated reads.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<TrendingMessage> getTrendingMessages(int limit) throws SQLException {
+        LOGGER.info("Social media service is getting trending messages, limit: {}", limit);
+
+        List<SlidingHeavyHitters.Entry> top = messageReads.getTop(limit);
+        int[] messageIds = new int[top.size()];
+        for (int i = 0; i < messageIds.length; i++) {
+            messageIds[i] = top.get(i).getKey();
+        }
+        Arrays.sort(messageIds);
+
+        Map<Integer, Message> messagesById = new HashMap<>();
+        for (Message message : messageDao.getMessages(messageIds)) {
+            messagesById.put(message.getMessage_id(), message);
+        }
+
+        List<TrendingMessage> trendingMessages = new ArrayList<>(top.size());
+        for (SlidingHeavyHitters.Entry entry : top) {
+            Message message = messagesById.get(entry.getKey());
+            if (message != null) {
+                trendingMessages.add(new TrendingMessage(message, entry.getCount()));
+            }
+        }
+
+        return trendingMessages;
+    }
+
+    /**
+     * Gets the accounts that posted the most messages recently.  The posts are counted in memory, in fixed space; see
+     *  SlidingHeavyHitters.  Counts are estimates and may be a little high.
+     * 
+     * @param limit The maximum number of accounts to return.
+     * @return List containing the top accounts and their estimated posts, most posts first.
+     */
+    public List<TopAccount> getTopAccounts(int limit) {
+        LOGGER.info("Social media service is getting top accounts, limit: {}", limit);
+
+        List<TopAccount> topAccounts = new ArrayList<>();
+        for (SlidingHeavyHitters.Entry entry : messagesPosted.getTop(limit)) {
+            topAccounts.add(new TopAccount(entry.getKey(), entry.getCount()));
+        }
+
+        return topAccounts;
     }
 
     /**
@@ -188,13 +631,17 @@ public class SocialMediaService {
     public Optional<Message> deleteMessage(int messageId) throws SQLException {
         LOGGER.info("Social media service is deleting message with ID: {}", messageId);
 
-        Optional<Message> retrievedMessage = messageDao.getMessage(messageId);
+        synchronized (messageLock(messageId)) {
+            Optional<Message> retrievedMessage = messageDao.getMessage(messageId);
 
-        if (retrievedMessage.isPresent()) {
-            messageDao.deleteMessage(messageId);
-        }
+            if (retrievedMessage.isPresent()) {
+                messageDao.deleteMessage(messageId);
+                searchIndex.remove(messageId, retrievedMessage.get().getMessage_text());
+                messageStream.publish(MessageEvent.Type.DELETED, retrievedMessage.get());
+            }
 
-        return retrievedMessage;
+            return retrievedMessage;
+        }
     }
 
     /**
@@ -225,20 +672,257 @@ public class SocialMediaService {
                      messageId, messageText));
         }
 
-        Message retrievedMessage = messageDao.getMessage(messageId)
-            .orElseThrow(
-                () -> {
-                    LOGGER.error("Message does not exist for ID: {}", messageId);
-                    return new MessageDoesNotExistException(
-                        String.format(
-                            "Can not update message with ID: %s.  Message does not exist.",
-                             messageId));
-                }
-            );
+        // Two updates of the same message must not interleave, or the index would keep the terms of the one that lost.
+        synchronized (messageLock(messageId)) {
+            Message retrievedMessage = messageDao.getMessage(messageId)
+                .orElseThrow(
+                    () -> {
+                        LOGGER.error("Message does not exist for ID: {}", messageId);
+                        return new MessageDoesNotExistException(
+                            String.format(
+                                "Can not update message with ID: %s.  Message does not exist.",
+                                 messageId));
+                    }
+                );
+
+            messageDao.updateMessage(messageId, messageText);
+            searchIndex.update(messageId, retrievedMessage.getMessage_text(), messageText);
+            retrievedMessage.setMessage_text(messageText);
+            messageStream.publish(MessageEvent.Type.UPDATED, retrievedMessage);
+
+            return retrievedMessage;
+        }
+    }
+
+    /**
+     * Searches the text of every message for all of the words in a query.
+     * Returns one page of matching messages, newest first by time of posting.  If nothing matches, the list is empty.
+     * 
+     * @param query The words to search for.
+     * @param offset The number of matching messages to skip.
+     * @param limit The maximum number of messages to return.
+     * @return List containing one page of matching Messages, newest first.
+     * @throws SQLException If there is an issue with the database.
+     */
+    public List<Message> searchMessages(String query, int offset, int limit) throws SQLException {
+        LOGGER.info("Social media service is searching messages for: {}, offset: {}, limit: {}",
+         query, offset, limit);
+
+        int[] messageIds = searchIndex.search(query, offset, limit);
+
+        if (messageIds.length == 0) {
+            return new ArrayList<>();
+        }
+
+        // The search index returns IDs in rank order, but the DAO needs them in ascending order.
+        int[] sortedMessageIds = messageIds.clone();
+        Arrays.sort(sortedMessageIds);
+
+        Map<Integer, Message> messagesById = new HashMap<>();
+        for (Message message : messageDao.getMessages(sortedMessageIds)) {
+            messagesById.put(message.getMessage_id(), message);
+        }
+
+        List<Message> rankedMessages = new ArrayList<>(messageIds.length);
+        for (int messageId : messageIds) {
+            Message message = messagesById.get(messageId);
+            if (message != null) {
+                rankedMessages.add(message);
+            }
+        }
+
+        return rankedMessages;
+    }
+
+    /**
+     * Subscribes to changes to messages as they happen: created, updated, and deleted messages.
+     * 
+     * @param postedBy Only changes to messages posted by this account are sent, or every change if null.
+     * @param subscriber Receives the changes.
+     * @return The subscription, which is closed to unsubscribe.
+     */
+    public MessageStream.Subscription subscribeToMessages(Integer postedBy, MessageStream.Subscriber subscriber) {
+        LOGGER.info("Social media service is subscribing to messages posted by: {}", postedBy);
+
+        return messageStream.subscribe(postedBy, subscriber);
+    }
+
+    /**
+     * Disconnects every live message stream subscriber, and stops the stream's threads.
+     */
+    @Override
+    public void close() {
+        messageStream.close();
+    }
+
+    /**
+     * Writes the message search index to the snapshot file named by the "socialmedia.search.snapshotPath" setting, so
+     *  that the next start can load it instead of indexing every message.  Does nothing if the setting is not provided,
+     *  or outside of production mode, where the stored messages do not outlive the process.
+     * 
+     * @throws IOException If the snapshot file can not be written.
+     */
+    public void saveSearchIndexSnapshot() throws IOException {
+        if (searchIndexSnapshotPath == null || !ConnectionUtil.isProductionMode()) {
+            return;
+        }
+
+        LOGGER.info("Social media service is saving the search index snapshot to: {}", searchIndexSnapshotPath);
+
+        searchIndex.writeSnapshot(searchIndexSnapshotPath);
+    }
+
+    /**
+     * Looks up an account by username.  The username Bloom filter only holds the accounts that this process has read
+     *  or registered, so it misses accounts added by anything else: other application processes or nodes sharing the
+     *  database, a restored backup, or a bulk import.  A username it rules out is therefore still looked up, and a
+     *  found account is added to it.  Only if the "socialmedia.usernameFilter.authoritative" setting is true, for
+     *  deployments where this process is the only writer of accounts, does a username it rules out skip the lookup,
+     *  which spares the database the lookups of registration and login attempts with made up usernames.
+     * 
+     * @param username The username.
+     * @return The account, or an empty Optional if there is none.
+     * @throws SQLException If there is an issue with the database.
+     */
+    private Optional<Account> findAccount(String username) throws SQLException {
+        if (username == null || !usernameFilter.mightContain(username)) {
+            usernameFilterMisses.increment();
+
+            if (username == null || usernameFilterAuthoritative) {
+                return Optional.empty();
+            }
+
+            Optional<Account> account = accountDao.getAccount(username);
+            if (account.isPresent()) {
+                usernameFilterMissedAccounts.increment();
+                usernameFilter.add(username);
+            }
+
+            return account;
+        }
+
+        Optional<Account> account = accountDao.getAccount(username);
+        if (account.isEmpty()) {
+            usernameFilterFalsePositives.increment();
+        }
+
+        return account;
+    }
+
+    /**
+     * Creates a sliding window counter for trending keys.  Each slice has a CountMinSketch of
+     *  "socialmedia.trending.sketchDepth" (default 4) rows of "socialmedia.trending.sketchWidth" (default 2048)
+     *  counters, and remembers the "socialmedia.trending.capacity" (default 64) keys most likely to be counted most.
+     */
+    private static SlidingHeavyHitters createHeavyHitters() {
+        return new SlidingHeavyHitters(
+            AppConfig.getLong("trending.windowMillis", 300_000),
+            AppConfig.getInt("trending.slices", 10),
+            AppConfig.getInt("trending.sketchDepth", 4),
+            AppConfig.getInt("trending.sketchWidth", 2048),
+            AppConfig.getInt("trending.capacity", 64));
+    }
 
-        retrievedMessage.setMessage_text(messageText);
+    /**
+     * Checks that a follow or unfollow is between two different accounts that exist.
+     */
+    private void checkFollow(int followerId, int followeeId)
+     throws InvalidFollowException, AccountDoesNotExistException, SQLException {
+        if (followerId == followeeId) {
+            LOGGER.error("Account can not follow itself, account ID: {}", followerId);
+            throw new InvalidFollowException(
+                String.format(
+                    "Can not follow or unfollow.  Account with ID '%s' can not follow itself.",
+                     followerId));
+        }
+
+        for (int accountId : new int[] {followerId, followeeId}) {
+            if (!accountDao.getAccount(accountId).isPresent()) {
+                LOGGER.error("Account does not exist for account ID: {}", accountId);
+                throw new AccountDoesNotExistException(
+                    String.format(
+                        "Can not follow or unfollow.  Account with ID '%s' does not exist.",
+                         accountId));
+            }
+        }
+    }
+
+    /**
+     * Fills the search index, from the snapshot file if there is a valid one and from the database otherwise.
+     *
+     * Only production mode keeps the stored messages between runs, so the snapshot is only loaded in production mode.
+     *  It is deleted once read, so that a crash before the next save does not load it again.  Every stored message is
+     *  read either way, since the snapshot is only trusted if the checksum it was saved with matches the IDs and texts
+     *  of the stored messages up to its highest message ID; a message edited or deleted after the snapshot was saved,
+     *  e.g. by another node, or an ID reused by a reset database, makes the index be rebuilt.  So the snapshot saves
+     *  tokenizing the messages and building the postings lists, not reading them.  With a valid snapshot only the
+     *  messages added since are indexed.
+     * 
+     * @throws SQLException If there is an issue with the database.
+     */
+    private void buildSearchIndex() throws SQLException {
+        List<Message> messages = messageDao.getAllMessages();
+        int indexedUpTo = 0;
+
+        if (searchIndexSnapshotPath != null && ConnectionUtil.isProductionMode()
+         && Files.exists(searchIndexSnapshotPath) && loadSearchIndexSnapshot(messages)) {
+            indexedUpTo = searchIndex.getMaxDocumentId();
+        } else {
+            searchIndex.clear();
+        }
+
+        for (Message message : messages) {
+            if (message.getMessage_id() > indexedUpTo) {
+                searchIndex.add(message.getMessage_id(), message.getMessage_text(), message.getTime_posted_epoch());
+            }
+        }
+
+        LOGGER.info("Search index contains {} messages", searchIndex.size());
+    }
+
+    /**
+     * Reads the search index snapshot file into the search index, deletes the file, and checks the snapshot against the
+     *  stored messages.
+     * 
+     * @param messages Every stored message.
+     * @return true if the snapshot was read and matches the stored messages.
+     */
+    private boolean loadSearchIndexSnapshot(List<Message> messages) {
+        try {
+            searchIndex.readSnapshot(searchIndexSnapshotPath);
+        } catch (IOException e) {
+            LOGGER.error("Could not read search index snapshot, rebuilding the index: {}", searchIndexSnapshotPath, e);
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(searchIndexSnapshotPath);
+            } catch (IOException e) {
+                LOGGER.error("Could not delete search index snapshot: {}", searchIndexSnapshotPath, e);
+            }
+        }
+
+        int maxDocumentId = searchIndex.getMaxDocumentId();
+        long storedChecksum = 0;
+
+        for (Message message : messages) {
+            if (message.getMessage_id() <= maxDocumentId) {
+                storedChecksum ^= InvertedIndex.documentChecksum(message.getMessage_id(), message.getMessage_text());
+            }
+        }
+
+        if (storedChecksum != searchIndex.getChecksum()) {
+            LOGGER.warn("Search index snapshot does not match the stored messages, rebuilding the index: {}",
+             searchIndexSnapshotPath);
+            return false;
+        }
+
+        LOGGER.info("Loaded search index snapshot with {} messages from: {}",
+         searchIndex.size(), searchIndexSnapshotPath);
+        return true;
+    }
 
-        return retrievedMessage;
+    private Object messageLock(int messageId) {
+        return messageLocks[Math.floorMod(messageId, messageLocks.length)];
     }
 
 }
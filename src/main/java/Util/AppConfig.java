@@ -0,0 +1,107 @@
+package Util;
+
+/**
+ * The AppConfig class reads the application's tunable settings.  Every setting is a JVM system property whose name is
+ *  prefixed with "socialmedia.", e.g. -Dsocialmedia.messageStore=mapped-log.  A setting that is not provided falls
+ *  back to the default value given by the caller.
+ */
+public class AppConfig {
+
+    private static final String PREFIX = "socialmedia.";
+
+    private AppConfig() {
+    }
+
+    /**
+     * Gets a setting as text.
+     *
+     * @param key The name of the setting, without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is not provided.
+     * @return The provided value or the default value.
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(PREFIX + key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Gets a setting as an int.
+     *
+     * @param key The name of the setting, without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is not provided.
+     * @return The provided value or the default value.
+     * @throws IllegalArgumentException If the provided value is not a number, or does not fit in an int.
+     */
+    public static int getInt(String key, int defaultValue) {
+        long value = getLong(key, defaultValue);
+
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Setting '%s%s' is out of range for an int: %d", PREFIX, key, value));
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Gets a setting as a long.
+     *
+     * @param key The name of the setting, without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is not provided.
+     * @return The provided value or the default value.
+     * @throws IllegalArgumentException If the provided value is not a number.
+     */
+    public static long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Setting '%s%s' is not a number: %s", PREFIX, key, value), e);
+        }
+    }
+
+    /**
+     * Gets a setting as a double.
+     *
+     * @param key The name of the setting, without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is not provided.
+     * @return The provided value or the default value.
+     * @throws IllegalArgumentException If the provided value is not a number.
+     */
+    public static double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Setting '%s%s' is not a number: %s", PREFIX, key, value), e);
+        }
+    }
+
+    /**
+     * Gets a setting as a boolean.  Only "true" (ignoring case) is treated as true.
+     *
+     * @param key The name of the setting, without the "socialmedia." prefix.
+     * @param defaultValue The value to use when the setting is not provided.
+     * @return The provided value or the default value.
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+}
@@ -0,0 +1,373 @@
+package Util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Streams the rows of the account and message tables to and from files, for moving data in and out without replaying
+ *  the API.  A file holds one table, either as CSV with a header row or as NDJSON, one JSON object per line with the
+ *  same fields as the API's JSON.  Rows keep their IDs, and after an import the table's ID sequence is restarted
+ *  after the largest ID.
+ *
+ * CSV is read and written by H2 itself with CSVREAD and CSVWRITE.  NDJSON is parsed and generated one token at a
+ *  time, and imported with batched inserts that are committed every batch, so memory use does not depend on the size
+ *  of the file.  Rows bypass the DAOs, and so are neither logged one by one nor seen by the in-process indexes of a
+ *  running application; import before starting it.
+ *
+ * Run from the command line with: {import|export} {account|message} {file.csv|file.ndjson}.  The command line works
+ *  on the database in ConnectionUtil as it is, without resetting or migrating it, so run the application against it
+ *  once first.
+ */
+public class BulkTransfer {
+
+    private static final Map<String, String[]> TABLE_COLUMNS = Map.of(
+        "account", new String[] {"account_id", "username", "password"},
+        "message", new String[] {"message_id", "posted_by", "message_text", "time_posted_epoch"});
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Connection connection;
+    private final int batchSize;
+    private final long progressIntervalRows;
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkTransfer.class);
+
+    /**
+     * @param connection The connection to the database.
+     * @param batchSize The number of NDJSON rows inserted and committed together.
+     * @param progressIntervalRows How many NDJSON rows to transfer between progress reports.
+     * @throws IllegalArgumentException If the batch size or progress interval is less than 1.
+     */
+    public BulkTransfer(Connection connection, int batchSize, long progressIntervalRows) {
+        if (batchSize < 1 || progressIntervalRows < 1) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Bulk batch size and progress interval must be at least 1: %d, %d",
+                     batchSize, progressIntervalRows));
+        }
+
+        this.connection = connection;
+        this.batchSize = batchSize;
+        this.progressIntervalRows = progressIntervalRows;
+    }
+
+    /**
+     * Imports a table's rows from a file, as CSV or NDJSON depending on the file's extension.
+     *
+     * @param table "account" or "message".  Accounts must be imported before the messages they posted.
+     * @param file The file to read.
+     * @return The number of rows imported and how fast.
+     * @throws SQLException If a row can not be inserted, e.g. because its ID is taken.  Batches committed before the
+     *  failure stay imported.
+     * @throws IOException If the file can not be read or is not valid.
+     */
+    public Result importTable(String table, Path file) throws SQLException, IOException {
+        String[] columns = getColumns(table);
+        LOGGER.info("Importing {} rows from {}", table, file);
+
+        long start = System.nanoTime();
+        long rows = isCsv(file) ? importCsv(table, columns, file) : importNdjson(table, columns, file);
+        restartIdentity(table, columns[0]);
+
+        Result result = new Result(rows, System.nanoTime() - start);
+        LOGGER.info("Imported {} {} rows: {}", rows, table, result);
+        return result;
+    }
+
+    /**
+     * Exports a table's rows to a file in ID order, as CSV or NDJSON depending on the file's extension.
+     *
+     * @param table "account" or "message".
+     * @param file The file to write, replacing it if it exists.
+     * @return The number of rows exported and how fast.
+     * @throws SQLException If there is an issue with the database.
+     * @throws IOException If the file can not be written.
+     */
+    public Result exportTable(String table, Path file) throws SQLException, IOException {
+        String[] columns = getColumns(table);
+        LOGGER.info("Exporting {} rows to {}", table, file);
+
+        long start = System.nanoTime();
+        long rows = isCsv(file) ? exportCsv(table, columns, file) : exportNdjson(table, columns, file);
+
+        Result result = new Result(rows, System.nanoTime() - start);
+        LOGGER.info("Exported {} {} rows: {}", rows, table, result);
+        return result;
+    }
+
+    private long importCsv(String table, String[] columns, Path file) throws SQLException {
+        String columnList = String.join(", ", columns);
+
+        // H2 reads a table function's columns when preparing the statement, so the file name can't be a parameter.
+        try (Statement statement = connection.createStatement()) {
+            return statement.executeUpdate(
+                "INSERT INTO " + table + "(" + columnList + ") SELECT " + columnList +
+                " FROM CSVREAD('" + file.toString().replace("'", "''") + "', NULL, 'charset=UTF-8');");
+        }
+    }
+
+    private long exportCsv(String table, String[] columns, Path file) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "CALL CSVWRITE(?, ?, 'charset=UTF-8');")) {
+            statement.setString(1, file.toString());
+            statement.setString(
+                2, "SELECT " + String.join(", ", columns) + " FROM " + table + " ORDER BY " + columns[0]);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private long importNdjson(String table, String[] columns, Path file) throws SQLException, IOException {
+        String placeholders = String.join(", ", Collections.nCopies(columns.length, "?"));
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        long start = System.nanoTime();
+        long rows = 0;
+
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+             JsonParser parser = JSON_FACTORY.createParser(reader);
+             PreparedStatement statement = connection.prepareStatement(
+                 "INSERT INTO " + table + "(" + String.join(", ", columns) + ") VALUES (" + placeholders + ");")) {
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                readRow(parser, columns, statement);
+                statement.addBatch();
+                rows++;
+
+                if (rows % batchSize == 0) {
+                    statement.executeBatch();
+                    connection.commit();
+                }
+                if (rows % progressIntervalRows == 0) {
+                    LOGGER.info("Imported {} {} rows so far: {}", rows, table,
+                     new Result(rows, System.nanoTime() - start));
+                }
+            }
+
+            if (parser.currentToken() != null) {
+                throw new IOException("Expected a JSON object per row at " + parser.getCurrentLocation());
+            }
+
+            statement.executeBatch();
+            connection.commit();
+
+        } catch (SQLException | IOException e) {
+            connection.rollback();
+            LOGGER.error("Import of {} rows stopped after {} rows", table, rows - rows % batchSize);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Reads one JSON object's fields into the insert's parameters.  Fields that are not columns are ignored.
+     */
+    private static void readRow(JsonParser parser, String[] columns, PreparedStatement statement)
+     throws SQLException, IOException {
+        boolean[] present = new boolean[columns.length];
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            int index = indexOf(columns, field);
+
+            if (index < 0) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (value == JsonToken.VALUE_NUMBER_INT) {
+                statement.setLong(index + 1, parser.getLongValue());
+            } else if (value == JsonToken.VALUE_STRING) {
+                statement.setString(index + 1, parser.getText());
+            } else if (value == JsonToken.VALUE_NULL) {
+                statement.setNull(index + 1, Types.NULL);
+            } else {
+                throw new IOException("Field " + field + " is not a number or text at " + parser.getCurrentLocation());
+            }
+            present[index] = true;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            if (!present[i]) {
+                throw new IOException("Row is missing field " + columns[i] + " at " + parser.getCurrentLocation());
+            }
+        }
+    }
+
+    private long exportNdjson(String table, String[] columns, Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+
+        try (Statement statement = connection.createStatement();
+             Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.setRootValueSeparator(null);
+            statement.setFetchSize(batchSize);
+
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT " + String.join(", ", columns) + " FROM " + table + " ORDER BY " + columns[0] + ";")) {
+                while (resultSet.next()) {
+                    generator.writeStartObject();
+                    for (int i = 0; i < columns.length; i++) {
+                        Object value = resultSet.getObject(i + 1);
+
+                        if (value == null) {
+                            generator.writeNullField(columns[i]);
+                        } else if (value instanceof Number) {
+                            generator.writeNumberField(columns[i], ((Number) value).longValue());
+                        } else {
+                            generator.writeStringField(columns[i], value.toString());
+                        }
+                    }
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                    rows++;
+
+                    if (rows % progressIntervalRows == 0) {
+                        LOGGER.info("Exported {} {} rows so far: {}", rows, table,
+                         new Result(rows, System.nanoTime() - start));
+                    }
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Restarts the table's ID sequence after its largest ID, so that rows added later don't collide with imported ones.
+     */
+    private void restartIdentity(String table, String idColumn) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            long nextId;
+
+            try (ResultSet resultSet = statement.executeQuery(
+                    "SELECT COALESCE(MAX(" + idColumn + "), 0) + 1 FROM " + table + ";")) {
+                resultSet.next();
+                nextId = resultSet.getLong(1);
+            }
+
+            statement.executeUpdate(
+                "ALTER TABLE " + table + " ALTER COLUMN " + idColumn + " RESTART WITH " + nextId + ";");
+        }
+    }
+
+    private static String[] getColumns(String table) {
+        String[] columns = TABLE_COLUMNS.get(table);
+
+        if (columns == null) {
+            throw new IllegalArgumentException("Table is not account or message: " + table);
+        }
+
+        return columns;
+    }
+
+    private static int indexOf(String[] columns, String field) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(field)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isCsv(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".csv");
+    }
+
+    /**
+     * Imports or exports a table from the command line, using the database in ConnectionUtil.  The batch size is the
+     *  "socialmedia.bulk.batchSize" setting (default 10000), and progress is reported every
+     *  "socialmedia.bulk.progressIntervalRows" (default 100000) rows.
+     * Messages can only be transferred while they are stored in that database, i.e. while the
+     *  "socialmedia.messageStore" setting is "h2"; the mapped log and the shards are not reachable thru it.
+     *
+     * @param args {import|export} {account|message} {file.csv|file.ndjson}
+     */
+    public static void main(String[] args) throws SQLException, IOException {
+        if (args.length != 3 || !(args[0].equals("import") || args[0].equals("export"))) {
+            System.err.println("Usage: BulkTransfer {import|export} {account|message} {file.csv|file.ndjson}");
+            System.exit(2);
+        }
+
+        String messageStore = AppConfig.getString("messageStore", "h2");
+        if (args[1].equals("message") && !messageStore.equals("h2")) {
+            System.err.println("Messages are not stored in the H2 database, but in the message store: " + messageStore);
+            System.exit(2);
+        }
+
+        // A connection of its own, since ConnectionUtil.getConnection resets the tables outside production mode.
+        try (Connection connection = ConnectionUtil.openConnection()) {
+            BulkTransfer bulkTransfer = new BulkTransfer(
+                connection,
+                AppConfig.getInt("bulk.batchSize", 10_000),
+                AppConfig.getLong("bulk.progressIntervalRows", 100_000));
+            Path file = Paths.get(args[2]);
+
+            Result result = args[0].equals("import")
+                ? bulkTransfer.importTable(args[1], file)
+                : bulkTransfer.exportTable(args[1], file);
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * How many rows were transferred and how fast.
+     */
+    public static final class Result {
+        private final long rows;
+        private final long millis;
+
+        private Result(long rows, long nanos) {
+            this.rows = rows;
+            this.millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getRowsPerSecond() {
+            return millis == 0 ? rows * 1000 : rows * 1000 / millis;
+        }
+
+        @Override
+        public String toString() {
+            return rows + " rows in " + millis + " ms, " + getRowsPerSecond() + " rows/s";
+        }
+    }
+
+}
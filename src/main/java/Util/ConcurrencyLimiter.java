@@ -0,0 +1,185 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how many requests run at once, adapting the limit to the latency the requests see, and sheds the requests
+ *  over the limit rather than letting them queue.
+ *
+ * The limit follows a gradient algorithm.  Two moving averages of request latency are kept: a short one that follows
+ *  the current latency and a long one that stands for the latency when nothing is queued.  After each request, the
+ *  limit is scaled by their ratio (between 0.5 and 1), so that it shrinks as soon as requests start queueing in the
+ *  database, and then a headroom of sqrt(limit) is added so that it grows again once latency recovers.  The limit only
+ *  grows while at least half of it is in use, so an idle service doesn't drift to its maximum.
+ *
+ * Each request has a priority.  High priority requests may use the whole limit, normal ones 90% of it, and low ones
+ *  half of it, so that when the service is overloaded, cheap and important requests keep being served while
+ *  expensive ones are shed first.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * How important a request is, and so how much of the limit it may use.
+     */
+    public enum Priority {
+        HIGH(1.0), NORMAL(0.9), LOW(0.5);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    private static final double SMOOTHING = 0.2;
+    private static final double TOLERANCE = 1.5;
+    private static final int SHORT_WINDOW = 10;
+    private static final int LONG_WINDOW = 600;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private volatile int limit;
+    private double estimatedLimit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    /**
+     * @param initialLimit The limit to start with.
+     * @param minLimit The lowest the limit may go.
+     * @param maxLimit The highest the limit may go.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this(initialLimit, minLimit, maxLimit, System::nanoTime);
+    }
+
+    /**
+     * @param initialLimit The limit to start with.
+     * @param minLimit The lowest the limit may go.
+     * @param maxLimit The highest the limit may go.
+     * @param nanoClock The source of the current time in nanoseconds.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, LongSupplier nanoClock) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Limits must satisfy 1 <= min <= initial <= max: %d, %d, %d", minLimit, initialLimit, maxLimit));
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.nanoClock = nanoClock;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * Admits a request if its priority's share of the limit is not used up.
+     *
+     * @param priority The request's priority.
+     * @return A permit that must be released when the request is done, or null if the request should be shed.
+     */
+    public Permit tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * priority.share));
+
+        while (true) {
+            int current = inFlight.get();
+
+            if (current >= allowed) {
+                rejected.increment();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1, nanoClock.getAsLong());
+            }
+        }
+    }
+
+    /**
+     * @return The current limit.
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The number of requests running.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return The number of requests shed since the limiter was created.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+        } else {
+            shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+            longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        }
+
+        // After a long overload the long average has drifted up; let it fall back towards the current latency.
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+
+        if (inFlightAtStart < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+
+        estimatedLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    /**
+     * An admitted request's hold on the limit.
+     */
+    public final class Permit {
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long startNanos) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the permit and counts the request's latency towards the limit.
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                inFlight.decrementAndGet();
+                onSample(nanoClock.getAsLong() - startNanos, inFlightAtStart);
+            }
+        }
+
+        /**
+         * Releases the permit without counting the request's latency, e.g. when the request failed before it did its
+         *  real work.
+         */
+        public void releaseWithoutSample() {
+            if (!released) {
+                released = true;
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+}
@@ -4,9 +4,11 @@ import org.h2.tools.RunScript;
 
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * The ConnectionUtil class will be utilized to create an active connection to our database. This class utilizes the singleton design pattern.
@@ -17,17 +19,11 @@ import java.sql.SQLException;
 public class ConnectionUtil {
 
     /**
-     * url will represent our connection string. Since this is an in-memory db, we will represent a file location to store the data
+     * profile decides the connection string, username, and password.  By default the data is stored in the file
+     * ./h2/db, with username and password sa; see StorageProfile.fromSettings for the settings that change it.  It is
+     * read from the settings whenever a new shared connection is opened.
      */
-    private static String url = "jdbc:h2:./h2/db";
-    /**
-     * Default username for connecting to h2
-     */
-    private static String username = "sa";
-    /**
-     * Default password for connecting to h2
-     */
-    private static String password = "sa";
+    private static StorageProfile profile = null;
     /**
      * a static object which represents the connection to h2. Because it is static, any DAO interacting
      * with this connection object is referring to the same object.
@@ -35,20 +31,72 @@ public class ConnectionUtil {
     private static Connection connection = null;
     /**
      * @return an active connection to the database and set up the database tables if this is the first time the
-     * Connection has been established
+     * Connection has been established.  In production mode (-Dsocialmedia.mode=production) the stored data is kept
+     * and only the schema migrations that have not been applied yet are run; otherwise the tables are reset.
      */
     public static Connection getConnection(){
         if(connection == null){
+            profile = StorageProfile.fromSettings();
             try {
-                connection = DriverManager.getConnection(url, username, password);
-                resetTestDatabase();
+                connection = DriverManager.getConnection(
+                    profile.getUrl(), profile.getUsername(), profile.getPassword());
             } catch (SQLException e) {
                 e.printStackTrace();
+                return null;
+            }
+
+            if (isProductionMode()) {
+                try {
+                    new SchemaMigrator("db/migration").migrate(connection);
+                } catch (SQLException | IOException e) {
+                    throw new IllegalStateException("Could not migrate the database schema.", e);
+                }
+            } else {
+                resetTestDatabase();
             }
         }
 
         return connection;
     }
+    /**
+     * Opens a separate connection to the same database, for long running work such as backups that should not hold up
+     * the statements on the shared connection.  The caller closes it.
+     *
+     * @return a new connection to the database.
+     * @throws SQLException if the connection can not be opened.
+     */
+    public static Connection openConnection() throws SQLException {
+        StorageProfile current = profile != null ? profile : StorageProfile.fromSettings();
+        return DriverManager.getConnection(current.getUrl(), current.getUsername(), current.getPassword());
+    }
+    /**
+     * Checkpoints the database and closes the connection, so that the next start does not have to recover the database
+     * from its transaction log.  The next call to getConnection opens a new connection.
+     */
+    public static void closeConnection(){
+        if(connection == null){
+            return;
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CHECKPOINT SYNC");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        connection = null;
+    }
+    /**
+     * @return true if the "socialmedia.mode" setting is "production"
+     */
+    public static boolean isProductionMode(){
+        return AppConfig.getString("mode", "test").equals("production");
+    }
     /**
      * For the purpose of testing, we will need to drop and recreate our database tables to keep it consistent across
      * all tests. The method will read the sql file in resources. This will be performed before every test.
@@ -0,0 +1,88 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estimates how often each int key was counted, in fixed memory however many distinct keys there are.
+ *
+ * The sketch is depth rows of width counters.  Counting a key increments one counter per row, chosen by a different
+ *  hash per row; a key's estimate is the smallest of its counters.  Estimates are never below the true count, and
+ *  exceed it by at most about 2/width of the total count in all but about 1/2^depth of cases.
+ *
+ * The counters are an AtomicLongArray, so counting takes no locks and any number of threads may count at once.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int widthMask;
+    private final AtomicLongArray counters;
+
+    /**
+     * @param depth The number of rows, i.e. hashes per key.
+     * @param width The number of counters per row.  Rounded up to a power of two.
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1) {
+            throw new IllegalArgumentException(
+                String.format("Depth and width must be positive: %d, %d", depth, width));
+        }
+
+        this.depth = depth;
+        int roundedWidth = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.widthMask = roundedWidth - 1;
+        this.counters = new AtomicLongArray(depth * roundedWidth);
+    }
+
+    /**
+     * Counts a key.
+     *
+     * @param key The key.
+     * @param count The amount to count it by.
+     */
+    public void add(int key, long count) {
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(index(row, key), count);
+        }
+    }
+
+    /**
+     * @param key The key.
+     * @return An estimate of the key's count, never below it.
+     */
+    public long estimate(int key) {
+        long estimate = Long.MAX_VALUE;
+
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(row, key)));
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Sets every counter back to zero.  Counts made at the same time may be kept or lost.
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+
+    private int index(int row, int key) {
+        return row * (widthMask + 1) + (hash(key, row) & widthMask);
+    }
+
+    /**
+     * Mixes a key with a row's seed, with the finalizer of MurmurHash3, so that each row spreads keys differently.
+     */
+    private static int hash(int key, int row) {
+        int h = key ^ (0x9E3779B9 * (row + 1));
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+}
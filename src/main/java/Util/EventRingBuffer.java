@@ -0,0 +1,86 @@
+package Util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed-size ring of the most recently published events, for fanning events out to many readers that each track
+ *  their own position (cursor).
+ *
+ * Events are numbered by sequence, starting at 1.  Publishing stores the event in slot (sequence mod capacity), so it
+ *  costs the same no matter how many readers there are, and overwrites the event published capacity sequences
+ *  earlier.  A reader that falls more than capacity events behind has missed events, which it can detect by comparing
+ *  its cursor with getPublishedSequence.
+ *
+ * There must be a single producer: publish must not be called by two threads at the same time.  Any number of threads
+ *  may read.
+ */
+public class EventRingBuffer<T> {
+
+    private final AtomicReferenceArray<Slot<T>> slots;
+    private final int mask;
+    private volatile long publishedSequence;
+
+    /**
+     * @param capacity The number of events kept, rounded up to a power of two.
+     */
+    public EventRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Stores an event, overwriting the oldest one if the ring is full.
+     *
+     * @param event The event.
+     * @return The event's sequence.
+     */
+    public long publish(T event) {
+        long sequence = publishedSequence + 1;
+        slots.set((int) (sequence & mask), new Slot<>(sequence, event));
+        publishedSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * @param sequence The sequence of the event to get.
+     * @return The event, or null if it has not been published yet or has already been overwritten.
+     */
+    public T get(long sequence) {
+        Slot<T> slot = slots.get((int) (sequence & mask));
+        return slot != null && slot.sequence == sequence ? slot.event : null;
+    }
+
+    /**
+     * @return The sequence of the last published event, or 0 if nothing has been published.
+     */
+    public long getPublishedSequence() {
+        return publishedSequence;
+    }
+
+    /**
+     * @return The number of events kept.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    private static final class Slot<T> {
+        final long sequence;
+        final T event;
+
+        Slot(long sequence, T event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+
+}
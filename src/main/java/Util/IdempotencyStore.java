@@ -0,0 +1,286 @@
+package Util;
+
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import DAO.IdempotencyDao;
+import Model.IdempotentResponse;
+
+/**
+ * Remembers the responses to requests made with an idempotency key, so that a client retrying a request, e.g. after a
+ *  timeout, gets the original response instead of running the request again.
+ *
+ * A request claims its key before it runs.  The first claim runs the request and completes the claim with the
+ *  response; a claim for a key that is already completed replays the stored response, and a claim for a key whose
+ *  request is still running waits for it.  Responses worth replaying are kept in memory for a fixed time, at most a
+ *  fixed number at once, oldest evicted first.  Responses to requests that may succeed if retried, e.g. 429, 503, or
+ *  500, are not kept, so a retry runs the request again.
+ *
+ * If an IdempotencyDao is provided, responses are also stored in the database, so that a retry that reaches another
+ *  node, or this node after a restart, is replayed too.  The database is only read for keys not in memory.
+ */
+public class IdempotencyStore {
+
+    private final IdempotencyDao idempotencyDao;
+    private final long ttlNanos;
+    private final int maxKeys;
+    private final long waitMillis;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Entry> completedEntries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicLong nextPurgeNanos;
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    /**
+     * @param idempotencyDao The DAO to also store responses in, or null to keep them in memory only.
+     * @param ttlMillis How long a response is replayed for.
+     * @param maxKeys The most responses kept in memory at once.
+     * @param waitMillis How long a claim waits for the same key's running request.
+     */
+    public IdempotencyStore(IdempotencyDao idempotencyDao, long ttlMillis, int maxKeys, long waitMillis) {
+        this(idempotencyDao, ttlMillis, maxKeys, waitMillis, System::nanoTime);
+    }
+
+    /**
+     * @param idempotencyDao The DAO to also store responses in, or null to keep them in memory only.
+     * @param ttlMillis How long a response is replayed for.
+     * @param maxKeys The most responses kept in memory at once.
+     * @param waitMillis How long a claim waits for the same key's running request.
+     * @param nanoClock The source of the current time in nanoseconds.
+     */
+    public IdempotencyStore(IdempotencyDao idempotencyDao, long ttlMillis, int maxKeys, long waitMillis,
+     LongSupplier nanoClock) {
+        if (ttlMillis < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException(
+                String.format("Time to live and max keys must be positive: %d, %d", ttlMillis, maxKeys));
+        }
+
+        this.idempotencyDao = idempotencyDao;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxKeys = maxKeys;
+        this.waitMillis = waitMillis;
+        this.nanoClock = nanoClock;
+        this.nextPurgeNanos = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Claims a key for a request.
+     *
+     * @param key The idempotency key, scoped to the request's path.
+     * @param requestHash The hash of the request's body; see hash.
+     * @return The claim.  Either it holds the response to replay, or the caller must run the request and complete it.
+     * @throws IllegalArgumentException If the key was used for a request with a different body.
+     * @throws IllegalStateException If the key's request is still running after the wait.
+     * @throws SQLException If there is an issue with the database.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public Claim claim(String key, long requestHash) throws SQLException, InterruptedException {
+        while (true) {
+            long now = nanoClock.getAsLong();
+            Entry entry = new Entry(key, requestHash);
+            Entry existing = entries.putIfAbsent(key, entry);
+
+            if (existing == null) {
+                Optional<IdempotentResponse> stored;
+                try {
+                    stored = idempotencyDao == null ? Optional.empty() : idempotencyDao.getResponse(key);
+                } catch (SQLException e) {
+                    abandon(entry);
+                    throw e;
+                }
+
+                if (stored.isPresent()) {
+                    complete(entry, stored.get());
+                    return replay(key, stored.get(), requestHash);
+                }
+
+                return new Claim(entry, null);
+            }
+
+            if (existing.isExpired(now)) {
+                entries.remove(key, existing);
+                continue;
+            }
+
+            // A completed key is checked against its response, which may have come from the database.
+            if (!existing.response.isDone() && existing.requestHash != requestHash) {
+                throw new IllegalArgumentException(
+                    String.format("Idempotency key '%s' was used for a different request.", key));
+            }
+
+            IdempotentResponse response;
+            try {
+                response = existing.response.get(waitMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException(
+                    String.format("The request with idempotency key '%s' is still running.", key), e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+
+            if (response != null) {
+                return replay(key, response, requestHash);
+            }
+            // The running request's response was not kept, so this request runs again.
+        }
+    }
+
+    /**
+     * @return The number of responses kept in memory.
+     */
+    public int size() {
+        return completedCount.get();
+    }
+
+    /**
+     * Hashes a request's body with 64 bit FNV-1a.
+     *
+     * @param body The body.
+     * @return The hash.
+     */
+    public static long hash(byte[] body) {
+        long hash = 0xCBF29CE484222325L;
+
+        for (byte b : body) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+
+        return hash;
+    }
+
+    /**
+     * @param status A HTTP response code.
+     * @return True if a request that got it should get the same response when retried.
+     */
+    private static boolean isReplayable(int status) {
+        return status < 500 && status != 408 && status != 429;
+    }
+
+    private Claim replay(String key, IdempotentResponse response, long requestHash) {
+        if (response.getRequestHash() != requestHash) {
+            throw new IllegalArgumentException(
+                String.format("Idempotency key '%s' was used for a different request.", key));
+        }
+
+        LOGGER.info("Replaying the response to idempotency key: {}", key);
+        return new Claim(null, response);
+    }
+
+    private void complete(Entry entry, IdempotentResponse response) {
+        long now = nanoClock.getAsLong();
+        entry.expiresAtNanos = now + ttlNanos;
+        entry.response.complete(response);
+        completedEntries.add(entry);
+        completedCount.incrementAndGet();
+
+        // Entries complete in the order they expire, so the oldest is always first.
+        Entry oldest;
+        while ((oldest = completedEntries.peek()) != null
+         && (completedCount.get() > maxKeys || oldest.isExpired(now))) {
+            if (completedEntries.remove(oldest)) {
+                completedCount.decrementAndGet();
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+
+    private void store(Entry entry, IdempotentResponse response) {
+        complete(entry, response);
+
+        if (idempotencyDao == null) {
+            return;
+        }
+
+        long now = nanoClock.getAsLong();
+        long nextPurge = nextPurgeNanos.get();
+
+        try {
+            idempotencyDao.addResponse(entry.key, response, System.currentTimeMillis());
+
+            if (now - nextPurge >= 0 && nextPurgeNanos.compareAndSet(nextPurge, now + ttlNanos / 10)) {
+                idempotencyDao.deleteResponsesBefore(
+                    System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(ttlNanos));
+            }
+        } catch (SQLException e) {
+            // The response is still replayed from memory.
+            LOGGER.error("Could not store the response to idempotency key: {}", entry.key, e);
+        }
+    }
+
+    private void abandon(Entry entry) {
+        entries.remove(entry.key, entry);
+        entry.response.complete(null);
+    }
+
+    /**
+     * A key claimed for a request.
+     */
+    public final class Claim {
+        private final Entry entry;
+        private final IdempotentResponse replayedResponse;
+
+        private Claim(Entry entry, IdempotentResponse replayedResponse) {
+            this.entry = entry;
+            this.replayedResponse = replayedResponse;
+        }
+
+        /**
+         * @return The stored response to send instead of running the request, or null if the request must run.
+         */
+        public IdempotentResponse getReplayedResponse() {
+            return replayedResponse;
+        }
+
+        /**
+         * Completes the claim with the response the request got, which is kept if it is worth replaying.  Claims that
+         *  were not completed, e.g. because the request failed, must be completed with null, so that retries run.
+         *
+         * @param response The response, or null if there is none.
+         */
+        public void complete(IdempotentResponse response) {
+            if (entry == null) {
+                return;
+            }
+
+            if (response != null && isReplayable(response.getStatus())) {
+                store(entry, response);
+            } else {
+                abandon(entry);
+            }
+        }
+    }
+
+    /**
+     * A claimed key: the response once its request completes, and when it expires.
+     */
+    private static final class Entry {
+        private final String key;
+        private final long requestHash;
+        private final CompletableFuture<IdempotentResponse> response = new CompletableFuture<>();
+        private volatile long expiresAtNanos;
+
+        Entry(String key, long requestHash) {
+            this.key = key;
+            this.requestHash = requestHash;
+        }
+
+        boolean isExpired(long nowNanos) {
+            return response.isDone() && expiresAtNanos - nowNanos <= 0;
+        }
+    }
+
+}
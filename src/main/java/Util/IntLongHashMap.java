@@ -0,0 +1,197 @@
+package Util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from int keys to long values that stores both in primitive arrays, so that neither lookups nor updates
+ *  allocate.  Uses open addressing with linear probing.  Integer.MIN_VALUE is reserved and can not be used as a key.
+ *
+ * This class is not thread safe.
+ */
+public class IntLongHashMap {
+
+    private static final int FREE_KEY = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final long missingValue;
+    private int[] keys;
+    private long[] values;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * @param initialCapacity The number of entries expected, used to size the backing arrays.
+     * @param missingValue The value returned by get and remove when a key is not in the map.
+     */
+    public IntLongHashMap(int initialCapacity, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(tableSizeFor(initialCapacity));
+    }
+
+    /**
+     * @param key The key to look up.
+     * @return The value stored for the key, or the missing value if the key is not in the map.
+     */
+    public long get(int key) {
+        int slot = findSlot(key);
+        return keys[slot] == FREE_KEY ? missingValue : values[slot];
+    }
+
+    /**
+     * @param key The key to look up.
+     * @return True if the key is in the map.
+     */
+    public boolean containsKey(int key) {
+        return keys[findSlot(key)] != FREE_KEY;
+    }
+
+    /**
+     * Stores a value for a key, replacing any previous value.
+     *
+     * @param key The key, which must not be Integer.MIN_VALUE.
+     * @param value The value to store.
+     * @return The previous value, or the missing value if the key was not in the map.
+     */
+    public long put(int key, long value) {
+        int slot = findSlot(checkKey(key));
+
+        if (keys[slot] != FREE_KEY) {
+            long previous = values[slot];
+            values[slot] = value;
+            return previous;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (++size > resizeThreshold) {
+            rehash(keys.length * 2);
+        }
+
+        return missingValue;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key The key to remove.
+     * @return The value that was stored, or the missing value if the key was not in the map.
+     */
+    public long remove(int key) {
+        int slot = findSlot(key);
+
+        if (keys[slot] == FREE_KEY) {
+            return missingValue;
+        }
+
+        long previous = values[slot];
+        keys[slot] = FREE_KEY;
+        size--;
+
+        // Shift later entries of the same probe run back, so that lookups never stop early at the emptied slot.
+        int mask = keys.length - 1;
+        int emptied = slot;
+        int next = (slot + 1) & mask;
+
+        while (keys[next] != FREE_KEY) {
+            int home = hash(keys[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - emptied) & mask)) {
+                keys[emptied] = keys[next];
+                values[emptied] = values[next];
+                keys[next] = FREE_KEY;
+                emptied = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        return previous;
+    }
+
+    /**
+     * @return The number of keys in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key from the map.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        size = 0;
+    }
+
+    /**
+     * Calls the consumer once for each entry, in no particular order.  The map must not be modified meanwhile.
+     *
+     * @param consumer Receives each key and value.
+     */
+    public void forEach(IntLongConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE_KEY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Receives one entry of the map.
+     */
+    @FunctionalInterface
+    public interface IntLongConsumer {
+        void accept(int key, long value);
+    }
+
+    private int findSlot(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (keys[slot] != FREE_KEY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void rehash(int newLength) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(newLength);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE_KEY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int length) {
+        keys = new int[length];
+        values = new long[length];
+        Arrays.fill(keys, FREE_KEY);
+        resizeThreshold = (int) (length * LOAD_FACTOR);
+    }
+
+    private static int checkKey(int key) {
+        if (key == FREE_KEY) {
+            throw new IllegalArgumentException("Integer.MIN_VALUE can not be used as a key.");
+        }
+        return key;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int needed = (int) Math.ceil(Math.max(capacity, 2) / LOAD_FACTOR);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+}
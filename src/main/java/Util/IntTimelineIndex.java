@@ -0,0 +1,202 @@
+package Util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Maps an int owner key (e.g. an account ID) to a sorted set of int IDs (e.g. the IDs of the messages the account
+ *  posted).  Every owner's IDs are kept in a sorted primitive int array, so that neither the keys nor the IDs are
+ *  boxed.  A reverse mapping from each ID to its owner allows an ID to be removed without knowing its owner.
+ *
+ * This class is thread safe.
+ */
+public class IntTimelineIndex {
+
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final int[] EMPTY = new int[0];
+
+    private final IntLongHashMap ownerSlots = new IntLongHashMap(256, NO_VALUE);
+    private final IntLongHashMap idOwners = new IntLongHashMap(1024, NO_VALUE);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[][] slotIds = new int[16][];
+    private int[] slotSizes = new int[16];
+    private int numSlots;
+
+    /**
+     * Adds an ID to an owner's set.  If the ID currently belongs to another owner, it is moved.
+     *
+     * @param owner The owner key.
+     * @param id The ID to add.
+     */
+    public void add(int owner, int id) {
+        lock.writeLock().lock();
+        try {
+            long previousOwner = idOwners.put(id, owner);
+
+            if (previousOwner != NO_VALUE && previousOwner != owner) {
+                removeFromSlot((int) ownerSlots.get((int) previousOwner), id);
+            }
+
+            insertIntoSlot(slotFor(owner), id);
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an ID from whichever owner's set it belongs to.
+     *
+     * @param id The ID to remove.
+     * @return True if the ID was in the index.
+     */
+    public boolean remove(int id) {
+        lock.writeLock().lock();
+        try {
+            long owner = idOwners.remove(id);
+
+            if (owner == NO_VALUE) {
+                return false;
+            }
+
+            removeFromSlot((int) ownerSlots.get((int) owner), id);
+            return true;
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param owner The owner key.
+     * @return A copy of the owner's IDs in ascending order.  Empty if the owner has none.
+     */
+    public int[] get(int owner) {
+        lock.readLock().lock();
+        try {
+            long slot = ownerSlots.get(owner);
+            return slot == NO_VALUE ? EMPTY : Arrays.copyOf(slotIds[(int) slot], slotSizes[(int) slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param owner The owner key.
+     * @param limit The most IDs to return.
+     * @return A copy of the owner's greatest IDs, at most limit of them, in ascending order.  Empty if the owner has
+     *  none.
+     */
+    public int[] getLatest(int owner, int limit) {
+        lock.readLock().lock();
+        try {
+            long slot = ownerSlots.get(owner);
+
+            if (slot == NO_VALUE) {
+                return EMPTY;
+            }
+
+            int size = slotSizes[(int) slot];
+            return Arrays.copyOfRange(slotIds[(int) slot], Math.max(0, size - limit), size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param owner The owner key.
+     * @return The number of IDs the owner has.
+     */
+    public int count(int owner) {
+        lock.readLock().lock();
+        try {
+            long slot = ownerSlots.get(owner);
+            return slot == NO_VALUE ? 0 : slotSizes[(int) slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of IDs in the index, across every owner.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return idOwners.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every owner and ID from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            ownerSlots.clear();
+            idOwners.clear();
+            slotIds = new int[16][];
+            slotSizes = new int[16];
+            numSlots = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int slotFor(int owner) {
+        long slot = ownerSlots.get(owner);
+
+        if (slot != NO_VALUE) {
+            return (int) slot;
+        }
+
+        if (numSlots == slotIds.length) {
+            slotIds = Arrays.copyOf(slotIds, numSlots * 2);
+            slotSizes = Arrays.copyOf(slotSizes, numSlots * 2);
+        }
+
+        slotIds[numSlots] = new int[4];
+        ownerSlots.put(owner, numSlots);
+        return numSlots++;
+    }
+
+    private void insertIntoSlot(int slot, int id) {
+        int[] ids = slotIds[slot];
+        int size = slotSizes[slot];
+
+        // IDs are usually handed out in increasing order, so the common case is an append.
+        int position = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+
+        if (position >= 0 && position < size) {
+            return;
+        }
+
+        if (position < 0) {
+            position = -position - 1;
+        }
+
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            slotIds[slot] = ids;
+        }
+
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        ids[position] = id;
+        slotSizes[slot] = size + 1;
+    }
+
+    private void removeFromSlot(int slot, int id) {
+        int[] ids = slotIds[slot];
+        int size = slotSizes[slot];
+        int position = Arrays.binarySearch(ids, 0, size, id);
+
+        if (position >= 0) {
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            slotSizes[slot] = size - 1;
+        }
+    }
+
+}
@@ -0,0 +1,585 @@
+package Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-memory full-text index from terms to the int IDs of the documents that contain them.
+ *
+ * Text is split into lower-cased runs of letters and digits.  Each term's postings list is kept sorted and compressed
+ *  as the varint-encoded gaps between consecutive IDs, so appending a new, larger ID is a few bytes at the end of an
+ *  array.  Every document also has a long rank (e.g. its posting time) used to order search results, newest first.
+ *
+ * The index can be written to and read back from a snapshot file, so that it does not have to be rebuilt from the
+ *  documents on restart.  The index keeps a checksum of the IDs and texts it was given, an XOR of documentChecksum
+ *  over its documents, which is saved with the snapshot so that the snapshot can be checked against the documents
+ *  before it is trusted.
+ *
+ * This class is thread safe.
+ */
+public class InvertedIndex {
+
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final long NO_RANK = Long.MIN_VALUE;
+
+    private final Map<String, Postings> postingsByTerm = new HashMap<>();
+    private final IntLongHashMap documentRanks = new IntLongHashMap(1024, NO_RANK);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int maxDocumentId = 0;
+    private long checksum = 0;
+
+    /**
+     * Adds a document to the index.
+     *
+     * @param documentId The document's ID.
+     * @param text The document's text.
+     * @param rank The document's rank.  Documents with a higher rank come first in search results.
+     */
+    public void add(int documentId, String text, long rank) {
+        Set<String> terms = tokenize(text);
+
+        lock.writeLock().lock();
+        try {
+            documentRanks.put(documentId, rank);
+            maxDocumentId = Math.max(maxDocumentId, documentId);
+            checksum ^= documentChecksum(documentId, text);
+
+            for (String term : terms) {
+                postingsByTerm.computeIfAbsent(term, (t) -> new Postings()).add(documentId);
+            }
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the text of a document that is already in the index.  Its rank is kept.
+     *
+     * @param documentId The document's ID.
+     * @param oldText The text the document was indexed with.
+     * @param newText The document's new text.
+     */
+    public void update(int documentId, String oldText, String newText) {
+        Set<String> oldTerms = tokenize(oldText);
+        Set<String> newTerms = tokenize(newText);
+
+        lock.writeLock().lock();
+        try {
+            checksum ^= documentChecksum(documentId, oldText) ^ documentChecksum(documentId, newText);
+
+            for (String term : oldTerms) {
+                if (!newTerms.contains(term)) {
+                    removePosting(term, documentId);
+                }
+            }
+
+            for (String term : newTerms) {
+                if (!oldTerms.contains(term)) {
+                    postingsByTerm.computeIfAbsent(term, (t) -> new Postings()).add(documentId);
+                }
+            }
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a document from the index.
+     *
+     * @param documentId The document's ID.
+     * @param text The text the document was indexed with.
+     */
+    public void remove(int documentId, String text) {
+        Set<String> terms = tokenize(text);
+
+        lock.writeLock().lock();
+        try {
+            documentRanks.remove(documentId);
+            checksum ^= documentChecksum(documentId, text);
+
+            for (String term : terms) {
+                removePosting(term, documentId);
+            }
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the documents that contain every term of a query, ordered by rank (highest first), then by ID (highest
+     *  first).
+     *
+     * @param query The text to search for.
+     * @param offset The number of matching documents to skip.
+     * @param limit The maximum number of document IDs to return.
+     * @return The IDs of one page of matching documents, in rank order.
+     */
+    public int[] search(String query, int offset, int limit) {
+        Set<String> terms = tokenize(query);
+
+        if (terms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings[] termPostings = new Postings[terms.size()];
+            int i = 0;
+
+            for (String term : terms) {
+                Postings postings = postingsByTerm.get(term);
+
+                if (postings == null) {
+                    return new int[0];
+                }
+
+                termPostings[i++] = postings;
+            }
+
+            // Intersecting from the rarest term keeps the candidate list as short as possible.
+            Arrays.sort(termPostings, (a, b) -> Integer.compare(a.count, b.count));
+
+            int[] candidates = termPostings[0].decode();
+            int numCandidates = candidates.length;
+
+            for (int t = 1; t < termPostings.length && numCandidates > 0; t++) {
+                numCandidates = intersect(candidates, numCandidates, termPostings[t].decode());
+            }
+
+            return topByRank(candidates, numCandidates, offset, limit);
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every document from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documentRanks.clear();
+            postingsByTerm.clear();
+            maxDocumentId = 0;
+            checksum = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of documents in the index.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentRanks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The highest document ID that has been added to the index, or 0 if none has.
+     */
+    public int getMaxDocumentId() {
+        lock.readLock().lock();
+        try {
+            return maxDocumentId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The XOR of documentChecksum over the ID and text of every document in the index.
+     */
+    public long getChecksum() {
+        lock.readLock().lock();
+        try {
+            return checksum;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param documentId A document's ID.
+     * @param text The document's text.
+     * @return The document's contribution to the index's checksum.
+     */
+    public static long documentChecksum(int documentId, String text) {
+        long hash = ((long) documentId << 32) ^ (text.hashCode() & 0xFFFFFFFFL);
+
+        // The finalizer of MurmurHash3, so that similar documents do not cancel each other out in the XOR.
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Writes the whole index to a snapshot file.  The file is written next to the target and then moved into place,
+     *  so a crash never leaves a partial snapshot behind.
+     *
+     * @param path The snapshot file.
+     * @throws IOException If the file can not be written.
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(maxDocumentId);
+            out.writeLong(checksum);
+            out.writeInt(documentRanks.size());
+
+            IOException[] failure = new IOException[1];
+            documentRanks.forEach(
+                (documentId, rank) -> {
+                    try {
+                        out.writeInt(documentId);
+                        out.writeLong(rank);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+
+            out.writeInt(postingsByTerm.size());
+
+            for (Map.Entry<String, Postings> entry : postingsByTerm.entrySet()) {
+                Postings postings = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(postings.count);
+                out.writeInt(postings.lastId);
+                out.writeInt(postings.length);
+                out.write(postings.bytes, 0, postings.length);
+            }
+
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the contents of the index with a snapshot file written by writeSnapshot.
+     *
+     * @param path The snapshot file.
+     * @throws IOException If the file can not be read or is not a snapshot of a supported version.
+     */
+    public void readSnapshot(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            int version = in.readInt();
+
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException(
+                    String.format(
+                        "Unsupported search index snapshot version %d in %s", version, path));
+            }
+
+            lock.writeLock().lock();
+            try {
+                documentRanks.clear();
+                postingsByTerm.clear();
+
+                maxDocumentId = in.readInt();
+                checksum = in.readLong();
+
+                int numDocuments = in.readInt();
+                for (int i = 0; i < numDocuments; i++) {
+                    documentRanks.put(in.readInt(), in.readLong());
+                }
+
+                int numTerms = in.readInt();
+                for (int i = 0; i < numTerms; i++) {
+                    String term = in.readUTF();
+                    Postings postings = new Postings();
+                    postings.count = in.readInt();
+                    postings.lastId = in.readInt();
+                    postings.length = in.readInt();
+                    postings.bytes = new byte[postings.length];
+                    in.readFully(postings.bytes);
+                    postingsByTerm.put(term, postings);
+                }
+
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Splits text into its distinct, lower-cased runs of letters and digits.
+     *
+     * @param text The text to split.
+     * @return The distinct terms, in order of first appearance.
+     */
+    public static Set<String> tokenize(String text) {
+        Set<String> terms = new LinkedHashSet<>();
+
+        if (text == null) {
+            return terms;
+        }
+
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            boolean isTermCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (isTermCharacter && start < 0) {
+                start = i;
+            } else if (!isTermCharacter && start >= 0) {
+                terms.add(
+                    text.substring(start, Math.min(i, start + MAX_TERM_LENGTH)).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+
+        return terms;
+    }
+
+    private void removePosting(String term, int documentId) {
+        Postings postings = postingsByTerm.get(term);
+
+        if (postings != null) {
+            postings.remove(documentId);
+
+            if (postings.count == 0) {
+                postingsByTerm.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Keeps the candidates that also appear in the other sorted array.
+     *
+     * @return The new number of candidates, which are compacted to the front of the candidates array.
+     */
+    private static int intersect(int[] candidates, int numCandidates, int[] other) {
+        int kept = 0;
+        int j = 0;
+
+        for (int i = 0; i < numCandidates && j < other.length; i++) {
+            while (j < other.length && other[j] < candidates[i]) {
+                j++;
+            }
+
+            if (j < other.length && other[j] == candidates[i]) {
+                candidates[kept++] = candidates[i];
+            }
+        }
+
+        return kept;
+    }
+
+    /**
+     * Selects one page of candidates in rank order, keeping only the best offset + limit candidates in a min-heap.
+     */
+    private int[] topByRank(int[] candidates, int numCandidates, int offset, int limit) {
+        int capacity = (int) Math.min((long) offset + limit, numCandidates);
+
+        if (capacity <= offset) {
+            return new int[0];
+        }
+
+        int[] heapIds = new int[capacity];
+        long[] heapRanks = new long[capacity];
+        int heapSize = 0;
+
+        for (int i = 0; i < numCandidates; i++) {
+            int documentId = candidates[i];
+            long rank = documentRanks.get(documentId);
+
+            if (heapSize < capacity) {
+                heapIds[heapSize] = documentId;
+                heapRanks[heapSize] = rank;
+                siftUp(heapIds, heapRanks, heapSize++);
+            } else if (isBetter(rank, documentId, heapRanks[0], heapIds[0])) {
+                heapIds[0] = documentId;
+                heapRanks[0] = rank;
+                siftDown(heapIds, heapRanks, heapSize);
+            }
+        }
+
+        // Popping the min-heap yields the kept candidates from worst to best, so fill the page from the back.
+        int[] ordered = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ordered[i] = heapIds[0];
+            heapIds[0] = heapIds[i];
+            heapRanks[0] = heapRanks[i];
+            siftDown(heapIds, heapRanks, i);
+        }
+
+        return Arrays.copyOfRange(ordered, offset, heapSize);
+    }
+
+    private static boolean isBetter(long rank, int documentId, long otherRank, int otherDocumentId) {
+        return rank != otherRank ? rank > otherRank : documentId > otherDocumentId;
+    }
+
+    private static void siftUp(int[] ids, long[] ranks, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+
+            if (!isBetter(ranks[parent], ids[parent], ranks[index], ids[index])) {
+                return;
+            }
+
+            swap(ids, ranks, parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int[] ids, long[] ranks, int size) {
+        int index = 0;
+
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+
+            if (left < size && isBetter(ranks[worst], ids[worst], ranks[left], ids[left])) {
+                worst = left;
+            }
+            if (right < size && isBetter(ranks[worst], ids[worst], ranks[right], ids[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+
+            swap(ids, ranks, worst, index);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] ids, long[] ranks, int a, int b) {
+        int id = ids[a];
+        ids[a] = ids[b];
+        ids[b] = id;
+
+        long rank = ranks[a];
+        ranks[a] = ranks[b];
+        ranks[b] = rank;
+    }
+
+    /**
+     * A sorted list of document IDs, compressed as varint-encoded gaps.
+     */
+    private static class Postings {
+        private byte[] bytes = new byte[8];
+        private int length;
+        private int count;
+        private int lastId;
+
+        private void add(int documentId) {
+            if (count > 0 && documentId <= lastId) {
+                int[] ids = decode();
+                int position = Arrays.binarySearch(ids, documentId);
+
+                if (position < 0) {
+                    position = -position - 1;
+                    int[] newIds = new int[ids.length + 1];
+                    System.arraycopy(ids, 0, newIds, 0, position);
+                    newIds[position] = documentId;
+                    System.arraycopy(ids, position, newIds, position + 1, ids.length - position);
+                    encode(newIds, newIds.length);
+                }
+
+                return;
+            }
+
+            writeVarint(documentId - lastId);
+            lastId = documentId;
+            count++;
+        }
+
+        private void remove(int documentId) {
+            int[] ids = decode();
+            int position = Arrays.binarySearch(ids, documentId);
+
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, ids.length - position - 1);
+                encode(ids, ids.length - 1);
+            }
+        }
+
+        private int[] decode() {
+            int[] ids = new int[count];
+            int position = 0;
+            int id = 0;
+
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+
+                do {
+                    b = bytes[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                id += gap;
+                ids[i] = id;
+            }
+
+            return ids;
+        }
+
+        private void encode(int[] ids, int numIds) {
+            length = 0;
+            count = 0;
+            lastId = 0;
+
+            for (int i = 0; i < numIds; i++) {
+                writeVarint(ids[i] - lastId);
+                lastId = ids[i];
+                count++;
+            }
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+            }
+
+            while ((value & ~0x7F) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            bytes[length++] = (byte) value;
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package Util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import Model.Message;
+import Model.MessageField;
+
+/**
+ * Writes messages as JSON with only some of their fields, e.g. {"message_id":1,"message_text":"hi"}, in the same
+ *  format as the full Message JSON.  Fields are written straight from the Message, without building an object tree.
+ */
+public class PartialMessageSerializer {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private PartialMessageSerializer() {
+    }
+
+    /**
+     * @param message The message.
+     * @param fields The fields to write.
+     * @return The message's JSON object.
+     */
+    public static String toJson(Message message, Set<MessageField> fields) {
+        StringWriter writer = new StringWriter();
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            write(generator, message, fields);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * @param messages The messages.
+     * @param fields The fields to write for each message.
+     * @return The JSON array of the messages' objects.
+     */
+    public static String toJson(List<Message> messages, Set<MessageField> fields) {
+        StringWriter writer = new StringWriter();
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartArray();
+            for (Message message : messages) {
+                write(generator, message, fields);
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return writer.toString();
+    }
+
+    private static void write(JsonGenerator generator, Message message, Set<MessageField> fields) throws IOException {
+        generator.writeStartObject();
+
+        for (MessageField field : fields) {
+            switch (field) {
+                case MESSAGE_ID:
+                    generator.writeNumberField(field.getName(), message.getMessage_id());
+                    break;
+                case POSTED_BY:
+                    generator.writeNumberField(field.getName(), message.getPosted_by());
+                    break;
+                case MESSAGE_TEXT:
+                    generator.writeStringField(field.getName(), message.getMessage_text());
+                    break;
+                case TIME_POSTED_EPOCH:
+                    generator.writeNumberField(field.getName(), message.getTime_posted_epoch());
+                    break;
+            }
+        }
+
+        generator.writeEndObject();
+    }
+
+}
@@ -0,0 +1,206 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A set of strings stored as a radix trie, i.e. a trie whose single-child chains are merged into one edge labelled
+ *  with a substring.  Adding a string creates at most one leaf and splits at most one edge, so memory grows linearly
+ *  with the number and length of the strings.  Prefix lookups walk one edge per matched run of characters and then
+ *  collect the first matches in lexicographic order, stopping as soon as enough have been found.
+ *
+ * Matching is case-sensitive.  This class is thread safe.
+ */
+public class RadixTrie {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final Node root = new Node("");
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    /**
+     * Adds a string to the set.
+     *
+     * @param word The string to add.
+     * @return True if the string was not already in the set.
+     */
+    public boolean add(String word) {
+        lock.writeLock().lock();
+        try {
+            Node node = root;
+            int position = 0;
+
+            while (position < word.length()) {
+                int childIndex = findChild(node, word.charAt(position));
+
+                if (childIndex < 0) {
+                    Node leaf = new Node(word.substring(position));
+                    leaf.terminal = true;
+                    insertChild(node, -childIndex - 1, leaf);
+                    size++;
+                    return true;
+                }
+
+                Node child = node.children[childIndex];
+                int common = commonPrefixLength(child.label, word, position);
+
+                if (common < child.label.length()) {
+                    // The word leaves the edge part way, so split the edge at the point where they differ.
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.children = new Node[] { child };
+                    node.children[childIndex] = middle;
+                    child = middle;
+                }
+
+                node = child;
+                position += common;
+            }
+
+            if (node.terminal) {
+                return false;
+            }
+
+            node.terminal = true;
+            size++;
+            return true;
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the strings in the set that start with a prefix.
+     *
+     * @param prefix The prefix to look up.  An empty prefix matches every string.
+     * @param limit The maximum number of strings to return.
+     * @return Up to limit matching strings, in lexicographic order.
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        List<String> matches = new ArrayList<>(Math.min(limit, 64));
+
+        if (limit <= 0) {
+            return matches;
+        }
+
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            StringBuilder path = new StringBuilder(prefix.length() + 16);
+            int position = 0;
+
+            while (position < prefix.length()) {
+                int childIndex = findChild(node, prefix.charAt(position));
+
+                if (childIndex < 0) {
+                    return matches;
+                }
+
+                Node child = node.children[childIndex];
+                int common = commonPrefixLength(child.label, prefix, position);
+
+                if (common < child.label.length() && position + common < prefix.length()) {
+                    return matches;
+                }
+
+                path.append(child.label);
+                node = child;
+                position += common;
+            }
+
+            collect(node, path, matches, limit);
+            return matches;
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of strings in the set.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void collect(Node node, StringBuilder path, List<String> matches, int limit) {
+        if (node.terminal) {
+            matches.add(path.toString());
+        }
+
+        for (Node child : node.children) {
+            if (matches.size() >= limit) {
+                return;
+            }
+
+            int pathLength = path.length();
+            path.append(child.label);
+            collect(child, path, matches, limit);
+            path.setLength(pathLength);
+        }
+    }
+
+    /**
+     * Binary searches a node's children, which are sorted by the first character of their labels.
+     *
+     * @return The index of the child whose label starts with the character, or (-(insertion point) - 1).
+     */
+    private static int findChild(Node node, char firstCharacter) {
+        int low = 0;
+        int high = node.children.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleCharacter = node.children[middle].label.charAt(0);
+
+            if (middleCharacter < firstCharacter) {
+                low = middle + 1;
+            } else if (middleCharacter > firstCharacter) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    private static void insertChild(Node node, int index, Node child) {
+        Node[] children = Arrays.copyOf(node.children, node.children.length + 1);
+        System.arraycopy(children, index, children, index + 1, children.length - index - 1);
+        children[index] = child;
+        node.children = children;
+    }
+
+    private static int commonPrefixLength(String label, String word, int wordStart) {
+        int max = Math.min(label.length(), word.length() - wordStart);
+        int length = 0;
+
+        while (length < max && label.charAt(length) == word.charAt(wordStart + length)) {
+            length++;
+        }
+
+        return length;
+    }
+
+    private static class Node {
+        private String label;
+        private Node[] children = NO_CHILDREN;
+        private boolean terminal;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+}
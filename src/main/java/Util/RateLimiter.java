@@ -0,0 +1,122 @@
+package Util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how often each key, e.g. an account or an IP address, may do something, as a token bucket per key.
+ *
+ * Each bucket is kept as the generic cell rate algorithm's single number, the theoretical arrival time: the time at
+ *  which the bucket would be full again.  A request is allowed if adding one emission interval to it keeps it within
+ *  burst intervals of now, and the new value is stored with compare-and-set, so deciding takes no locks.
+ *
+ * A bucket whose theoretical arrival time has passed is full, which is the same as having no bucket, so idle keys are
+ *  swept out once the map reaches its bound.  If every tracked key is still active, new keys share one overflow
+ *  bucket rather than growing the map, so that a flood of new keys can neither exhaust memory nor escape the limit.
+ */
+public class RateLimiter<K> {
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+    private final ConcurrentHashMap<K, AtomicLong> arrivalTimes = new ConcurrentHashMap<>();
+    private final AtomicLong overflowArrivalTime;
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * @param permitsPerSecond The sustained rate allowed per key.
+     * @param burst The number of requests a key may make at once after being idle.
+     * @param maxKeys The most keys tracked at once.
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maxKeys) {
+        this(permitsPerSecond, burst, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * @param permitsPerSecond The sustained rate allowed per key.
+     * @param burst The number of requests a key may make at once after being idle.
+     * @param maxKeys The most keys tracked at once.
+     * @param nanoClock The source of the current time in nanoseconds.
+     */
+    public RateLimiter(double permitsPerSecond, int burst, int maxKeys, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0 || burst < 1 || maxKeys < 1) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Rate, burst, and max keys must be positive: %s, %d, %d", permitsPerSecond, burst, maxKeys));
+        }
+
+        this.emissionIntervalNanos = Math.max((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond), 1);
+        this.burstNanos = emissionIntervalNanos * burst;
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+        this.overflowArrivalTime = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    /**
+     * Takes one permit from a key's bucket, if there is one.
+     *
+     * @param key The key.
+     * @return Zero if the request is allowed, otherwise how many nanoseconds to wait before a permit is available.
+     */
+    public long tryAcquire(K key) {
+        long now = nanoClock.getAsLong();
+        AtomicLong arrivalTime = getArrivalTime(key, now);
+
+        while (true) {
+            long current = arrivalTime.get();
+            long next = Math.max(current, now) + emissionIntervalNanos;
+            long wait = next - now - burstNanos;
+
+            if (wait > 0) {
+                return wait;
+            }
+            if (arrivalTime.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return The number of keys being tracked.
+     */
+    public int size() {
+        return arrivalTimes.size();
+    }
+
+    private AtomicLong getArrivalTime(K key, long now) {
+        AtomicLong arrivalTime = arrivalTimes.get(key);
+
+        if (arrivalTime != null) {
+            return arrivalTime;
+        }
+
+        if (arrivalTimes.size() >= maxKeys) {
+            sweep(now);
+            if (arrivalTimes.size() >= maxKeys) {
+                return overflowArrivalTime;
+            }
+        }
+
+        AtomicLong newArrivalTime = new AtomicLong(now);
+        arrivalTime = arrivalTimes.putIfAbsent(key, newArrivalTime);
+        return arrivalTime != null ? arrivalTime : newArrivalTime;
+    }
+
+    /**
+     * Removes the buckets that are full again.  Only one thread sweeps at a time; the others carry on.
+     */
+    private void sweep(long now) {
+        if (sweeping.compareAndSet(false, true)) {
+            try {
+                arrivalTimes.values().removeIf((arrivalTime) -> arrivalTime.get() <= now);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,225 @@
+package Util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tells whether a string might have been added, in a few bits per string.  A "no" is certain; a "yes" is wrong with
+ *  a small, bounded probability, the false positive rate.
+ *
+ * A plain Bloom filter is sized for a number of strings up front, and its false positive rate climbs once more are
+ *  added.  This one is scalable, after Almeida et al.: it is a series of Bloom filters, and once the newest is full a
+ *  new one is added, twice as large and with half the false positive rate.  A string is added to the newest filter and
+ *  looked up in all of them, so the overall false positive rate stays below twice the first filter's however many
+ *  strings are added.
+ *
+ * Each filter's bits are an AtomicLongArray, set with compare-and-set, so lookups and adds take no locks.  Adding a
+ *  filter takes a lock, which happens once per doubling.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+    private static final double LN2 = Math.log(2);
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param initialCapacity The number of strings the first filter is sized for.
+     * @param falsePositiveRate The first filter's false positive rate once full, e.g. 0.01.
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        if (initialCapacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Capacity must be positive and false positive rate between 0 and 1: %d, %s",
+                     initialCapacity, falsePositiveRate));
+        }
+
+        stages.add(new Stage(initialCapacity, falsePositiveRate));
+    }
+
+    /**
+     * Adds a string.
+     *
+     * @param value The string.
+     */
+    public void add(String value) {
+        long hash = hash(value);
+
+        if (mightContain(hash)) {
+            return;
+        }
+
+        Stage stage = stages.get(stages.size() - 1);
+        if (stage.count.get() >= stage.capacity) {
+            stage = addStage(stage);
+        }
+
+        stage.add(hash);
+    }
+
+    /**
+     * @param value The string.
+     * @return False if the string was certainly never added, true if it probably was.
+     */
+    public boolean mightContain(String value) {
+        return mightContain(hash(value));
+    }
+
+    /**
+     * @return The number of strings added, not counting strings the filter already seemed to contain.
+     */
+    public long size() {
+        long size = 0;
+        for (Stage stage : stages) {
+            size += stage.count.get();
+        }
+        return size;
+    }
+
+    /**
+     * @return The number of Bloom filters in the series.
+     */
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    /**
+     * @return The bytes taken by the filters' bits.
+     */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (Stage stage : stages) {
+            bytes += stage.words.length() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Estimates the false positive rate from how many bits are set, rather than from the sizing, so that it reflects
+     *  the strings actually added.
+     *
+     * @return The probability that a string never added is reported as probably added.
+     */
+    public double getEstimatedFalsePositiveRate() {
+        double trueNegative = 1;
+        for (Stage stage : stages) {
+            trueNegative *= 1 - Math.pow(stage.getFillRatio(), stage.hashCount);
+        }
+        return 1 - trueNegative;
+    }
+
+    private boolean mightContain(long hash) {
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized Stage addStage(Stage full) {
+        Stage newest = stages.get(stages.size() - 1);
+
+        if (newest != full) {
+            // Another thread added one already.
+            return newest;
+        }
+
+        Stage stage = new Stage(
+            (int) Math.min(Integer.MAX_VALUE / 64, (long) full.capacity * GROWTH),
+            full.falsePositiveRate * TIGHTENING);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Hashes a string to 64 bits with FNV-1a over its UTF-8 bytes, then mixes the result with the finalizer of
+     *  MurmurHash3, so that both halves are well spread for double hashing.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * One Bloom filter of the series, sized for its capacity and false positive rate.
+     */
+    private static final class Stage {
+        private final int capacity;
+        private final double falsePositiveRate;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLongArray words;
+        private final AtomicInteger count = new AtomicInteger();
+
+        Stage(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2));
+            int wordCount = (int) Math.max(1, (bits + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = wordCount * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * LN2));
+        }
+
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+
+                while (true) {
+                    long current = words.get(word);
+                    if ((current & mask) != 0 || words.compareAndSet(word, current, current | mask)) {
+                        break;
+                    }
+                }
+            }
+
+            count.incrementAndGet();
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        double getFillRatio() {
+            long set = 0;
+            for (int i = 0; i < words.length(); i++) {
+                set += Long.bitCount(words.get(i));
+            }
+            return (double) set / bitCount;
+        }
+    }
+
+}
@@ -0,0 +1,196 @@
+package Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import org.h2.tools.RunScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings a database's schema up to date by applying versioned migration scripts, each at most once.
+ *
+ * Migrations are SQL scripts on the classpath, named V{version}__{description}.sql and listed in order in the
+ *  directory's migrations.list file.  Each applied migration is recorded in the schema_version table with a checksum of
+ *  its script, so starting against an up to date database only reads that table, however much data there is.  If an
+ *  applied migration's script has since changed, migrating fails rather than leaving the schema in an unknown state.
+ */
+public class SchemaMigrator {
+
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final String resourceDirectory;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    /**
+     * @param resourceDirectory The classpath directory holding the migrations, e.g. "db/migration".
+     */
+    public SchemaMigrator(String resourceDirectory) {
+        this.resourceDirectory = resourceDirectory;
+    }
+
+    /**
+     * Applies the migrations that have not been applied to the database yet, in version order.  Each migration and its
+     *  schema_version row are committed together.
+     *
+     * @param connection The connection to the database.
+     * @return The number of migrations applied.
+     * @throws SQLException If a migration fails, or an applied migration's script has changed since it was applied.
+     * @throws IOException If the migrations can not be read from the classpath.
+     */
+    public int migrate(Connection connection) throws SQLException, IOException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(
+                "CREATE TABLE IF NOT EXISTS schema_version (" +
+                " version int PRIMARY KEY, description varchar(255), checksum bigint," +
+                " installed_on timestamp DEFAULT CURRENT_TIMESTAMP, execution_millis bigint);");
+        }
+
+        Map<Integer, Long> appliedChecksums = getAppliedChecksums(connection);
+        int applied = 0;
+
+        for (Migration migration : loadMigrations()) {
+            Long appliedChecksum = appliedChecksums.get(migration.version);
+
+            if (appliedChecksum != null) {
+                if (appliedChecksum != migration.checksum) {
+                    LOGGER.error("Migration {} has changed since it was applied", migration.name);
+                    throw new SQLException(
+                        String.format(
+                            "Migration %s has checksum %d, but checksum %d was applied.  Add a new migration instead" +
+                            " of editing an applied one.",
+                             migration.name, migration.checksum, appliedChecksum));
+                }
+                continue;
+            }
+
+            apply(connection, migration);
+            applied++;
+        }
+
+        LOGGER.info("Schema is up to date, applied {} migrations", applied);
+        return applied;
+    }
+
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        LOGGER.info("Applying migration {}", migration.name);
+
+        long start = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement insertVersion = connection.prepareStatement(
+                "INSERT INTO schema_version(version, description, checksum, execution_millis) VALUES (?, ?, ?, ?);")) {
+            RunScript.execute(connection, new StringReader(migration.script));
+
+            insertVersion.setInt(1, migration.version);
+            insertVersion.setString(2, migration.description);
+            insertVersion.setLong(3, migration.checksum);
+            insertVersion.setLong(4, (System.nanoTime() - start) / 1_000_000);
+            insertVersion.executeUpdate();
+
+            connection.commit();
+
+        } catch (SQLException e) {
+            connection.rollback();
+            LOGGER.error("Migration {} failed", migration.name);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static Map<Integer, Long> getAppliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, Long> checksums = new HashMap<>();
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM schema_version;")) {
+            while (resultSet.next()) {
+                checksums.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+            }
+        }
+
+        return checksums;
+    }
+
+    private List<Migration> loadMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        int lastVersion = 0;
+
+        for (String name : readResource("migrations.list").split("\n")) {
+            name = name.trim();
+            if (name.isEmpty() || name.startsWith("#")) {
+                continue;
+            }
+
+            Matcher matcher = MIGRATION_NAME.matcher(name);
+            if (!matcher.matches()) {
+                throw new IOException("Migration name is not V{version}__{description}.sql: " + name);
+            }
+
+            int version = Integer.parseInt(matcher.group(1));
+            if (version <= lastVersion) {
+                throw new IOException("Migrations are not listed in increasing version order: " + name);
+            }
+            lastVersion = version;
+
+            migrations.add(new Migration(version, matcher.group(2), name, readResource(name)));
+        }
+
+        return migrations;
+    }
+
+    /**
+     * Reads a resource from the migrations directory, with line endings normalized so that checksums do not depend on
+     *  how the file was checked out.
+     */
+    private String readResource(String name) throws IOException {
+        String path = resourceDirectory + "/" + name;
+        InputStream inputStream = SchemaMigrator.class.getClassLoader().getResourceAsStream(path);
+
+        if (inputStream == null) {
+            throw new IOException("Migration resource not found on the classpath: " + path);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        }
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final String name;
+        final String script;
+        final long checksum;
+
+        Migration(int version, String description, String name, String script) {
+            this.version = version;
+            this.description = description;
+            this.name = name;
+            this.script = script;
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(script.getBytes(StandardCharsets.UTF_8));
+            this.checksum = crc32.getValue();
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package Util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Coalesces concurrent calls for the same key into one: the first caller (the leader) runs the call, and callers that
+ *  arrive while it is running (followers) wait for and share its result or its exception.  Once the leader's call
+ *  finishes, the next caller for the key starts a new call.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder sharedCalls = new LongAdder();
+
+    /**
+     * @param timeoutMillis How long a follower waits for the leader's result before giving up.  The leader's own call
+     *  is not timed out, so it must bound itself, e.g. with a query timeout.
+     */
+    public SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Runs a call for a key, or waits for the one already running for it.
+     *
+     * @param key The key; calls for equal keys are coalesced.
+     * @param call The call to run if none is running for the key.
+     * @return The call's result, shared with every other caller for the same call.
+     * @throws E The call's exception, whether this caller ran the call or shared it.
+     * @throws TimeoutException If this caller is a follower and waited longer than the timeout.
+     * @throws InterruptedException If this caller is a follower and was interrupted while waiting.
+     */
+    public <E extends Exception> V execute(K key, Call<V, E> call) throws E, TimeoutException, InterruptedException {
+        calls.increment();
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+
+        if (running != null) {
+            sharedCalls.increment();
+            return await(running);
+        }
+
+        try {
+            V result = call.run();
+            future.complete(result);
+            return result;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Stops callers from joining the call running for a key, e.g. because the data it reads has just been changed.
+     *  Callers that already joined still get its result.
+     *
+     * @param key The key.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * Stops callers from joining the calls running for every key that matches a condition.
+     *
+     * @param condition The condition.
+     */
+    public void forgetIf(Predicate<? super K> condition) {
+        inFlight.keySet().removeIf(condition);
+    }
+
+    /**
+     * Stops callers from joining any running call.
+     */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    /**
+     * @return The number of calls made thru execute.
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * @return The number of calls that shared another caller's result instead of running.
+     */
+    public long getSharedCallCount() {
+        return sharedCalls.sum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <E extends Exception> V await(CompletableFuture<V> running)
+     throws E, TimeoutException, InterruptedException {
+        try {
+            return running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            // Only the call's own checked exception type completes the future exceptionally.
+            throw (E) cause;
+        }
+    }
+
+    /**
+     * A call whose result can be shared.
+     */
+    @FunctionalInterface
+    public interface Call<V, E extends Exception> {
+        V run() throws E;
+    }
+
+}
@@ -0,0 +1,229 @@
+package Util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds the int keys counted most often over a sliding window of time, e.g. the most read messages of the last five
+ *  minutes, in fixed memory however many distinct keys are counted.
+ *
+ * The window is a ring of slices of equal length.  Each slice has a CountMinSketch, which estimates any key's count,
+ *  and a Space-Saving summary, which remembers which keys are likely the most counted: a fixed number of (key, count)
+ *  slots, where a key without a slot takes over the slot with the smallest count.  Every key counted more than
+ *  1/slots of a slice's total is guaranteed a slot.  A key's count over the window is the sum of its estimates in the
+ *  slices still in the window; a slice that falls out of the window is cleared and reused for the current one.
+ *
+ * Counting takes no locks.  The sketch counters are atomic, and each Space-Saving slot packs its count and key into one
+ *  long that is replaced with compare-and-set.  A new key that races to two slots at once may hold both, which only
+ *  costs a slot, since counts are read from the sketch.  Counts made while a slice is being cleared may be lost.
+ */
+public class SlidingHeavyHitters {
+
+    private final long sliceNanos;
+    private final LongSupplier nanoClock;
+    private final Slice[] slices;
+
+    /**
+     * @param windowMillis The length of the window.
+     * @param sliceCount The number of slices the window is divided into.  More slices slide the window more smoothly.
+     * @param depth The number of rows of each slice's CountMinSketch.
+     * @param width The number of counters per row of each slice's CountMinSketch.
+     * @param capacity The number of keys each slice's Space-Saving summary remembers.
+     */
+    public SlidingHeavyHitters(long windowMillis, int sliceCount, int depth, int width, int capacity) {
+        this(windowMillis, sliceCount, depth, width, capacity, System::nanoTime);
+    }
+
+    /**
+     * @param windowMillis The length of the window.
+     * @param sliceCount The number of slices the window is divided into.  More slices slide the window more smoothly.
+     * @param depth The number of rows of each slice's CountMinSketch.
+     * @param width The number of counters per row of each slice's CountMinSketch.
+     * @param capacity The number of keys each slice's Space-Saving summary remembers.
+     * @param nanoClock The source of the current time in nanoseconds.
+     */
+    public SlidingHeavyHitters(long windowMillis, int sliceCount, int depth, int width, int capacity,
+     LongSupplier nanoClock) {
+        if (windowMillis < 1 || sliceCount < 1 || capacity < 1) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Window, slice count, and capacity must be positive: %d, %d, %d",
+                     windowMillis, sliceCount, capacity));
+        }
+
+        this.sliceNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(windowMillis) / sliceCount);
+        this.nanoClock = nanoClock;
+        this.slices = new Slice[sliceCount];
+
+        long now = currentSlice();
+        for (int i = 0; i < sliceCount; i++) {
+            // Every slice starts out as already out of the window.
+            slices[i] = new Slice(depth, width, capacity, now - sliceCount);
+        }
+    }
+
+    /**
+     * Counts a key once.
+     *
+     * @param key The key.
+     */
+    public void add(int key) {
+        long current = currentSlice();
+        Slice slice = slices[(int) Math.floorMod(current, (long) slices.length)];
+        long sliceNumber = slice.number.get();
+
+        if (sliceNumber < current && slice.number.compareAndSet(sliceNumber, current)) {
+            slice.clear();
+        } else if (sliceNumber > current) {
+            // The clock went backwards; the slice is already in use for a later time.
+            return;
+        }
+
+        slice.sketch.add(key, 1);
+        slice.offer(key);
+    }
+
+    /**
+     * Gets the keys counted most often in the window.
+     *
+     * @param limit The most keys to return.
+     * @return The keys and their estimated counts, most counted first.
+     */
+    public List<Entry> getTop(int limit) {
+        long current = currentSlice();
+        List<Slice> liveSlices = new ArrayList<>(slices.length);
+
+        for (Slice slice : slices) {
+            long sliceNumber = slice.number.get();
+            if (sliceNumber <= current && current - sliceNumber < slices.length) {
+                liveSlices.add(slice);
+            }
+        }
+
+        Set<Integer> candidates = new HashSet<>();
+        for (Slice slice : liveSlices) {
+            slice.addKeysTo(candidates);
+        }
+
+        List<Entry> entries = new ArrayList<>(candidates.size());
+        for (int key : candidates) {
+            long count = 0;
+            for (Slice slice : liveSlices) {
+                count += slice.sketch.estimate(key);
+            }
+            entries.add(new Entry(key, count));
+        }
+
+        entries.sort((a, b) -> a.count != b.count ? Long.compare(b.count, a.count) : Integer.compare(a.key, b.key));
+        return new ArrayList<>(entries.subList(0, Math.min(limit, entries.size())));
+    }
+
+    private long currentSlice() {
+        return Math.floorDiv(nanoClock.getAsLong(), sliceNanos);
+    }
+
+    /**
+     * One slice of the window: the sketch of its counts, and its Space-Saving summary.
+     */
+    private static final class Slice {
+        private final CountMinSketch sketch;
+        // Each slot is a count in the high 32 bits and a key in the low 32 bits.  A zero count is an empty slot.
+        private final AtomicLongArray slots;
+        private final AtomicLong number;
+
+        Slice(int depth, int width, int capacity, long number) {
+            this.sketch = new CountMinSketch(depth, width);
+            this.slots = new AtomicLongArray(capacity);
+            this.number = new AtomicLong(number);
+        }
+
+        void offer(int key) {
+            while (true) {
+                int minIndex = 0;
+                long minSlot = 0;
+                boolean retry = false;
+
+                for (int i = 0; i < slots.length(); i++) {
+                    long slot = slots.get(i);
+
+                    if (count(slot) > 0 && (int) slot == key) {
+                        if (count(slot) == Integer.MAX_VALUE || slots.compareAndSet(i, slot, slot + (1L << 32))) {
+                            return;
+                        }
+                        retry = true;
+                        break;
+                    }
+                    if (i == 0 || count(slot) < count(minSlot)) {
+                        minIndex = i;
+                        minSlot = slot;
+                    }
+                }
+
+                if (retry) {
+                    continue;
+                }
+
+                long count = Math.min(count(minSlot) + 1, Integer.MAX_VALUE);
+                if (slots.compareAndSet(minIndex, minSlot, (count << 32) | (key & 0xFFFFFFFFL))) {
+                    return;
+                }
+            }
+        }
+
+        void addKeysTo(Set<Integer> keys) {
+            for (int i = 0; i < slots.length(); i++) {
+                long slot = slots.get(i);
+                if (count(slot) > 0) {
+                    keys.add((int) slot);
+                }
+            }
+        }
+
+        void clear() {
+            sketch.clear();
+            for (int i = 0; i < slots.length(); i++) {
+                slots.set(i, 0);
+            }
+        }
+
+        private static long count(long slot) {
+            return slot >>> 32;
+        }
+    }
+
+    /**
+     * A key and its estimated count over the window.
+     */
+    public static final class Entry {
+        private final int key;
+        private final long count;
+
+        public Entry(int key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+
+        public int getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return "SlidingHeavyHitters.Entry{" +
+                    "key=" + key +
+                    ", count=" + count +
+                    '}';
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Where and how the H2 database is stored, which decides its JDBC URL.  "mem" keeps the database in memory for the
+ *  life of the process, "file" keeps it in an MVStore file, and "server" connects to an H2 TCP server, e.g. one shared
+ *  by several application processes.
+ *
+ * H2 settings are appended to the URL, e.g. CACHE_SIZE, WRITE_DELAY, or LOCK_TIMEOUT, so that the same profile can be
+ *  tuned per deployment.
+ */
+public class StorageProfile {
+
+    private final String kind;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    /**
+     * @param kind "mem", "file", or "server".
+     * @param location The database's name for "mem", its path without the .mv.db suffix for "file", or
+     *  "host:port/path" for "server".
+     * @param h2Settings The H2 settings to append to the URL, by name, in order.
+     * @param username The database user.
+     * @param password The database user's password.
+     */
+    public StorageProfile(String kind, String location, Map<String, String> h2Settings, String username,
+     String password) {
+        StringBuilder url = new StringBuilder();
+
+        switch (kind) {
+            case "mem":
+                // Keeps the database while no connection is open, e.g. between the shared connection and a backup.
+                url.append("jdbc:h2:mem:").append(location).append(";DB_CLOSE_DELAY=-1");
+                break;
+            case "file":
+                url.append("jdbc:h2:").append(location);
+                break;
+            case "server":
+                url.append("jdbc:h2:tcp://").append(location);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                    String.format("'%s' is not a recognized storage profile.", kind));
+        }
+
+        h2Settings.forEach((name, value) -> url.append(';').append(name).append('=').append(value));
+
+        this.kind = kind;
+        this.url = url.toString();
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Creates the profile chosen by settings.  "socialmedia.db.profile" is "file" (the default), "mem", or "server",
+     *  and "socialmedia.db.location" is where the database is: "./h2/db" for "file", "socialmedia" for "mem", and
+     *  "localhost:9092/./h2/db" for "server" by default.  "socialmedia.db.username" and "socialmedia.db.password"
+     *  default to "sa".
+     *
+     * These settings tune H2 only if provided: "socialmedia.db.cacheSizeKb" (CACHE_SIZE, the page cache in KiB),
+     *  "socialmedia.db.writeDelayMillis" (WRITE_DELAY, how long a commit may wait to be written to disk),
+     *  "socialmedia.db.lockTimeoutMillis" (LOCK_TIMEOUT, how long a statement waits for a locked row),
+     *  "socialmedia.db.autoCompactFillRate" (AUTO_COMPACT_FILL_RATE, the percentage of live data in the file below
+     *  which the MVStore compacts it), and "socialmedia.db.maxCompactTimeMillis" (MAX_COMPACT_TIME, how long closing
+     *  the database may spend compacting).
+     *
+     * @return The configured profile.
+     * @throws IllegalArgumentException If the profile is not recognized or a tuning setting is not a number.
+     */
+    public static StorageProfile fromSettings() {
+        String kind = AppConfig.getString("db.profile", "file");
+
+        Map<String, String> h2Settings = new LinkedHashMap<>();
+        putIfProvided(h2Settings, "CACHE_SIZE", "db.cacheSizeKb");
+        putIfProvided(h2Settings, "WRITE_DELAY", "db.writeDelayMillis");
+        putIfProvided(h2Settings, "LOCK_TIMEOUT", "db.lockTimeoutMillis");
+        putIfProvided(h2Settings, "AUTO_COMPACT_FILL_RATE", "db.autoCompactFillRate");
+        putIfProvided(h2Settings, "MAX_COMPACT_TIME", "db.maxCompactTimeMillis");
+
+        return new StorageProfile(
+            kind,
+            AppConfig.getString("db.location", getDefaultLocation(kind)),
+            h2Settings,
+            AppConfig.getString("db.username", "sa"),
+            AppConfig.getString("db.password", "sa"));
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageProfile{" +
+                "kind='" + kind + '\'' +
+                ", url='" + url + '\'' +
+                '}';
+    }
+
+    private static String getDefaultLocation(String kind) {
+        switch (kind) {
+            case "mem":
+                return "socialmedia";
+            case "server":
+                return "localhost:9092/./h2/db";
+            default:
+                return "./h2/db";
+        }
+    }
+
+    /**
+     * Adds an H2 setting from a numeric setting if it is provided.  Only numbers are accepted, so a setting can not
+     *  add anything else to the URL.
+     */
+    private static void putIfProvided(Map<String, String> h2Settings, String h2Name, String key) {
+        if (AppConfig.getString(key, null) != null) {
+            h2Settings.put(h2Name, String.valueOf(AppConfig.getLong(key, 0)));
+        }
+    }
+
+}
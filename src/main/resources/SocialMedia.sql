@@ -1,3 +1,5 @@
+drop table if exists idempotency_key;
+drop table if exists follow;
 drop table if exists message;
 drop table if exists account;
 create table account (
@@ -12,6 +14,25 @@ create table message (
     time_posted_epoch bigint,
     foreign key (posted_by) references  account(account_id)
 );
+create index message_posted_by_time_posted on message(posted_by, time_posted_epoch);
+create index message_time_posted on message(time_posted_epoch);
+create table follow (
+    follower_id int,
+    followee_id int,
+    primary key (follower_id, followee_id),
+    foreign key (follower_id) references account(account_id),
+    foreign key (followee_id) references account(account_id)
+);
+create index follow_followee on follow(followee_id, follower_id);
+create table idempotency_key (
+    idempotency_key varchar(512) primary key,
+    request_hash bigint,
+    status int,
+    content_type varchar(255),
+    body blob,
+    created_millis bigint
+);
+create index idempotency_key_created on idempotency_key(created_millis);
 
 insert into account (username, password) values ('testuser1', 'password');
 insert into message (posted_by, message_text, time_posted_epoch) values (1,'test message 1',1669947792);
@@ -0,0 +1,2 @@
+create index if not exists message_posted_by_time_posted on message(posted_by, time_posted_epoch);
+create index if not exists message_time_posted on message(time_posted_epoch);
@@ -0,0 +1,9 @@
+create table if not exists idempotency_key (
+    idempotency_key varchar(512) primary key,
+    request_hash bigint,
+    status int,
+    content_type varchar(255),
+    body blob,
+    created_millis bigint
+);
+create index if not exists idempotency_key_created on idempotency_key(created_millis);
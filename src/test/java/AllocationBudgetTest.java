@@ -0,0 +1,193 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+/**
+ * Guards against changes that make a route allocate much more per request.  Each route is called in a loop, and the
+ *  bytes allocated by the thread that handles each request, from the first before handler to the last after handler,
+ *  are measured with ThreadMXBean.getThreadAllocatedBytes.  The mean over the measured requests must stay within the
+ *  route's budget in allocation-budgets.properties.  A change that is meant to allocate more updates the budget.
+ */
+public class AllocationBudgetTest {
+    private static final int WARM_UP_REQUESTS = 300;
+    private static final int MEASURED_REQUESTS = 200;
+    private static final String[] RATE_LIMITS = {
+        "messages.perAccount", "messages.perIp", "login.perUsername", "login.perIp"};
+
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+    Properties budgets;
+    ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    AtomicLong lastRequestBytes = new AtomicLong();
+
+    /**
+     * Before every test, reset the database and restart the Javalin app without effective rate limits, measuring the
+     * bytes each request allocates, and create a new webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, IOException {
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        budgets = new Properties();
+        try (InputStream inputStream =
+                 AllocationBudgetTest.class.getClassLoader().getResourceAsStream("allocation-budgets.properties")) {
+            budgets.load(inputStream);
+        }
+
+        for (String rateLimit : RATE_LIMITS) {
+            System.setProperty("socialmedia.rateLimit." + rateLimit + ".perSecond", "1e9");
+            System.setProperty("socialmedia.rateLimit." + rateLimit + ".burst", "1000000000");
+        }
+
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        app.before((context) -> context.attribute("allocatedBytes", allocatedBytes()));
+        app.after((context) -> lastRequestBytes.set(allocatedBytes() - context.<Long>attribute("allocatedBytes")));
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        if (app != null) {
+            app.stop();
+        }
+        for (String rateLimit : RATE_LIMITS) {
+            System.clearProperty("socialmedia.rateLimit." + rateLimit + ".perSecond");
+            System.clearProperty("socialmedia.rateLimit." + rateLimit + ".burst");
+        }
+    }
+
+    private long allocatedBytes() {
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private HttpRequest request(String method, String path, String body) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private String message(int i) {
+        return "{\"posted_by\":1, \"message_text\": \"allocation message " + i + "\", \"time_posted_epoch\": "
+            + (1669947793 + i) + "}";
+    }
+
+    /**
+     * Posts messages outside of any measurement, e.g. for the list and delete routes to work on.
+     */
+    private void addMessages(int count) throws IOException, InterruptedException {
+        for (int i = 0; i < count; i++) {
+            webClient.send(request("POST", "/messages", message(i)), HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    /**
+     * Sends the warm-up requests and then the measured requests for a route, and checks the mean bytes allocated per
+     *  measured request against the route's budget.
+     *
+     * @param route The route's name in the budget file.
+     * @param requests Makes the i-th request, for i from 0 to WARM_UP_REQUESTS + MEASURED_REQUESTS.
+     */
+    private void assertWithinBudget(String route, IntFunction<HttpRequest> requests)
+     throws IOException, InterruptedException {
+        long budget = Long.parseLong(budgets.getProperty(route));
+        long totalBytes = 0;
+
+        for (int i = 0; i < WARM_UP_REQUESTS + MEASURED_REQUESTS; i++) {
+            HttpResponse<String> response = webClient.send(requests.apply(i), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(route + ": " + response.body(), 200, response.statusCode());
+
+            if (i >= WARM_UP_REQUESTS) {
+                totalBytes += lastRequestBytes.get();
+            }
+        }
+
+        long meanBytes = totalBytes / MEASURED_REQUESTS;
+        Assert.assertTrue(
+            String.format("%s allocated %d bytes per request, over its budget of %d", route, meanBytes, budget),
+            meanBytes <= budget);
+    }
+
+    @Test
+    public void registerWithinBudget() throws IOException, InterruptedException {
+        assertWithinBudget("register", (i) -> request(
+            "POST", "/register", "{\"username\": \"allocation" + i + "\", \"password\": \"password\"}"));
+    }
+
+    @Test
+    public void loginWithinBudget() throws IOException, InterruptedException {
+        assertWithinBudget("login", (i) -> request(
+            "POST", "/login", "{\"username\": \"testuser1\", \"password\": \"password\"}"));
+    }
+
+    @Test
+    public void createMessageWithinBudget() throws IOException, InterruptedException {
+        assertWithinBudget("createMessage", (i) -> request("POST", "/messages", message(i)));
+    }
+
+    @Test
+    public void listMessagesWithinBudget() throws IOException, InterruptedException {
+        // The plain list route returns every message, so the 21 messages stay the same for every request.
+        addMessages(20);
+        assertWithinBudget("listMessages", (i) -> request("GET", "/messages", null));
+    }
+
+    @Test
+    public void listMessagesInRangeWithinBudget() throws IOException, InterruptedException {
+        addMessages(20);
+        assertWithinBudget("listMessagesInRange", (i) -> request("GET", "/messages?limit=20", null));
+    }
+
+    @Test
+    public void listMessagesFromUserWithinBudget() throws IOException, InterruptedException {
+        addMessages(20);
+        assertWithinBudget("listMessagesFromUser", (i) -> request("GET", "/accounts/1/messages", null));
+    }
+
+    @Test
+    public void getMessageWithinBudget() throws IOException, InterruptedException {
+        assertWithinBudget("getMessage", (i) -> request("GET", "/messages/1", null));
+    }
+
+    @Test
+    public void patchMessageWithinBudget() throws IOException, InterruptedException {
+        assertWithinBudget("patchMessage", (i) -> request(
+            "PATCH", "/messages/1", "{\"message_text\": \"patched message " + i + "\"}"));
+    }
+
+    @Test
+    public void deleteMessageWithinBudget() throws IOException, InterruptedException {
+        addMessages(WARM_UP_REQUESTS + MEASURED_REQUESTS);
+        // Message 1 is the seed message, so the added messages are 2 and up.
+        assertWithinBudget("deleteMessage", (i) -> request("DELETE", "/messages/" + (i + 2), null));
+    }
+}
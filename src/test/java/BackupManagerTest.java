@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.BackupManager;
+import DAO.DaoFactory;
+import DAO.MessageDaoMappedLog;
+import Model.Message;
+import Util.SchemaMigrator;
+
+public class BackupManagerTest {
+    Path directory;
+    String url;
+    Connection connection;
+    MessageDaoMappedLog mappedLog;
+
+    /**
+     * Before every test, create a file H2 database with one account and a mapped log with 1000 messages, in a new
+     *  directory.
+     */
+    @Before
+    public void setUp() throws SQLException, IOException {
+        directory = Files.createTempDirectory("backup-manager-test");
+        url = "jdbc:h2:" + directory.resolve("h2").resolve("db");
+        connection = DriverManager.getConnection(url, "sa", "sa");
+        new SchemaMigrator("db/migration").migrate(connection);
+        connection.createStatement().executeUpdate(
+            "INSERT INTO account(username, password) VALUES ('testuser1', 'password');");
+
+        mappedLog = new MessageDaoMappedLog(directory.resolve("mlog"), 16 * 1024, 0.5, 0);
+        for (int i = 0; i < 1000; i++) {
+            mappedLog.addMessage(new Message(1, "message " + i, 1669947800 + i));
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        mappedLog.close();
+        connection.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * A backup taken while messages keep being posted restores to a database and mapped log that hold everything
+     *  written before the backup started.
+     */
+    @Test
+    public void backupWhileWritingRestores() throws Exception {
+        BackupManager backupManager = new BackupManager(
+            () -> DriverManager.getConnection(url, "sa", "sa"), mappedLog, directory.resolve("backups"), 256 * 1024, 5);
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger written = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            try {
+                while (writing.get()) {
+                    long start = System.nanoTime();
+                    mappedLog.addMessage(new Message(1, "during backup", 1669950000));
+                    backupManager.recordWrite(System.nanoTime() - start);
+                    written.incrementAndGet();
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+
+        BackupManager.Result result = backupManager.backup();
+        writing.set(false);
+        writer.join();
+
+        Assert.assertTrue(result.getBytes() > 0);
+        Assert.assertTrue(result.getWritesDuringBackup() > 0);
+
+        Path restored = directory.resolve("restored");
+        BackupManager.restore(
+            directory.resolve("backups").resolve(result.getName()), restored.resolve("h2"), "db",
+            restored.resolve("mlog"));
+
+        try (Connection restoredConnection = DriverManager.getConnection(
+                "jdbc:h2:" + restored.resolve("h2").resolve("db"), "sa", "sa");
+             ResultSet resultSet = restoredConnection.createStatement().executeQuery(
+                 "SELECT username FROM account;")) {
+            Assert.assertTrue(resultSet.next());
+            Assert.assertEquals("testuser1", resultSet.getString(1));
+        }
+
+        MessageDaoMappedLog restoredLog = new MessageDaoMappedLog(restored.resolve("mlog"), 16 * 1024, 0.5, 0);
+        try {
+            List<Message> messages = restoredLog.getAllMessages();
+            Assert.assertTrue(messages.size() >= 1000);
+            Assert.assertTrue(messages.size() <= 1000 + written.get());
+            Assert.assertEquals("message 999", messages.get(999).getMessage_text());
+        } finally {
+            restoredLog.close();
+        }
+    }
+
+    /**
+     * Only the newest backups are kept.
+     */
+    @Test
+    public void oldBackupsAreDeleted() throws Exception {
+        BackupManager backupManager = new BackupManager(
+            () -> DriverManager.getConnection(url, "sa", "sa"), null, directory.resolve("backups"), 0, 2);
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            names.add(backupManager.backup().getName());
+        }
+
+        try (Stream<Path> backups = Files.list(directory.resolve("backups"))) {
+            Assert.assertEquals(
+                names.subList(1, 3),
+                backups.map((path) -> path.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Backups are refused for the sharded message store, since they would leave its shards out.
+     */
+    @Test
+    public void shardedStoreIsNotBackedUp() {
+        // Forgets the backup manager that earlier tests' controllers may have created.
+        DaoFactory.closeAll(0);
+        System.setProperty("socialmedia.backup.directory", directory.resolve("backups").toString());
+        System.setProperty("socialmedia.messageStore", "sharded");
+
+        try {
+            DaoFactory.getBackupManager();
+            Assert.fail("Expected the sharded store to be refused");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("sharded"));
+        } finally {
+            System.clearProperty("socialmedia.backup.directory");
+            System.clearProperty("socialmedia.messageStore");
+        }
+    }
+}
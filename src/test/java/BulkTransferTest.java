@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.BulkTransfer;
+import Util.ConnectionUtil;
+import Util.SchemaMigrator;
+
+public class BulkTransferTest {
+    Connection source;
+    Connection target;
+    Path directory;
+
+    /**
+     * Before every test, create a source database with 3 accounts and 30000 messages, an empty target database, and a
+     *  directory for the transferred files.
+     */
+    @Before
+    public void setUp() throws SQLException, IOException {
+        source = DriverManager.getConnection("jdbc:h2:mem:bulk-source", "sa", "sa");
+        target = DriverManager.getConnection("jdbc:h2:mem:bulk-target", "sa", "sa");
+        new SchemaMigrator("db/migration").migrate(source);
+        new SchemaMigrator("db/migration").migrate(target);
+        directory = Files.createTempDirectory("bulk-transfer-test");
+
+        source.createStatement().executeUpdate(
+            "INSERT INTO account(username, password) VALUES ('first', 'password'), ('second, \"quoted\"', 'pass')," +
+            " ('third', 'password');");
+        try (PreparedStatement statement = source.prepareStatement(
+                "INSERT INTO message(posted_by, message_text, time_posted_epoch) VALUES (?, ?, ?);")) {
+            for (int i = 0; i < 30_000; i++) {
+                statement.setInt(1, i % 3 + 1);
+                statement.setString(2, "message " + i);
+                statement.setLong(3, 1669947800L + i);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException, IOException {
+        source.createStatement().execute("DROP ALL OBJECTS;");
+        target.createStatement().execute("DROP ALL OBJECTS;");
+        source.close();
+        target.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private void assertTablesMatch(String query) throws SQLException {
+        try (ResultSet expected = source.createStatement().executeQuery(query);
+             ResultSet actual = target.createStatement().executeQuery(query)) {
+            int columns = expected.getMetaData().getColumnCount();
+            while (expected.next()) {
+                Assert.assertTrue(actual.next());
+                for (int i = 1; i <= columns; i++) {
+                    Assert.assertEquals(expected.getObject(i), actual.getObject(i));
+                }
+            }
+            Assert.assertFalse(actual.next());
+        }
+    }
+
+    private void transferAndCompare(String extension) throws SQLException, IOException {
+        BulkTransfer exporter = new BulkTransfer(source, 1000, 10_000);
+        BulkTransfer importer = new BulkTransfer(target, 1000, 10_000);
+
+        Assert.assertEquals(3, exporter.exportTable("account", directory.resolve("account" + extension)).getRows());
+        Assert.assertEquals(
+            30_000, exporter.exportTable("message", directory.resolve("message" + extension)).getRows());
+        Assert.assertEquals(3, importer.importTable("account", directory.resolve("account" + extension)).getRows());
+        Assert.assertEquals(
+            30_000, importer.importTable("message", directory.resolve("message" + extension)).getRows());
+
+        assertTablesMatch("SELECT * FROM account ORDER BY account_id;");
+        assertTablesMatch("SELECT * FROM message ORDER BY message_id;");
+
+        // Rows added after the import get the next IDs instead of colliding with the imported ones.
+        target.createStatement().executeUpdate(
+            "INSERT INTO message(posted_by, message_text, time_posted_epoch) VALUES (1, 'after', 1669990000);");
+        ResultSet resultSet = target.createStatement().executeQuery(
+            "SELECT message_id FROM message WHERE message_text = 'after';");
+        resultSet.next();
+        Assert.assertEquals(30_001, resultSet.getInt(1));
+    }
+
+    /**
+     * Tables exported as NDJSON and imported into an empty database match the originals.
+     */
+    @Test
+    public void ndjsonRoundTrip() throws SQLException, IOException {
+        transferAndCompare(".ndjson");
+    }
+
+    /**
+     * Tables exported as CSV and imported into an empty database match the originals.
+     */
+    @Test
+    public void csvRoundTrip() throws SQLException, IOException {
+        transferAndCompare(".csv");
+    }
+
+    /**
+     * Batch sizes and progress intervals that would divide by zero part way thru a transfer are refused up front.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroBatchSizeIsRefused() {
+        new BulkTransfer(source, 0, 10_000);
+    }
+
+    /**
+     * The command line exports the application's database as it is, on a connection of its own, and leaves the
+     *  application's connection open.
+     */
+    @Test
+    public void commandLineKeepsTheDatabase() throws SQLException, IOException {
+        ConnectionUtil.resetTestDatabase();
+        ConnectionUtil.getConnection().createStatement().executeUpdate(
+            "INSERT INTO account(username, password) VALUES ('exported', 'password');");
+
+        Path file = directory.resolve("account.ndjson");
+        BulkTransfer.main(new String[] {"export", "account", file.toString()});
+
+        Assert.assertTrue(Files.readString(file).contains("\"username\":\"exported\""));
+        Assert.assertFalse(ConnectionUtil.getConnection().isClosed());
+        ConnectionUtil.resetTestDatabase();
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import Util.ConcurrencyLimiter;
+
+public class ConcurrencyLimiterTest {
+
+    /**
+     * Acquires limit permits at once, lets latencyMillis pass, and releases them all.
+     */
+    private static void runBatch(ConcurrencyLimiter concurrencyLimiter, AtomicLong now, long latencyMillis) {
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        ConcurrencyLimiter.Permit permit;
+
+        while ((permit = concurrencyLimiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH)) != null) {
+            permits.add(permit);
+        }
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+        permits.forEach(ConcurrencyLimiter.Permit::release);
+    }
+
+    /**
+     * Low priority requests are shed once half of the limit is in use, normal ones at 90%, high ones at the limit.
+     */
+    @Test
+    public void lowerPrioritiesAreShedFirst() {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(10, 1, 10);
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertNotNull(concurrencyLimiter.tryAcquire(ConcurrencyLimiter.Priority.LOW));
+        }
+        Assert.assertNull(concurrencyLimiter.tryAcquire(ConcurrencyLimiter.Priority.LOW));
+
+        for (int i = 5; i < 9; i++) {
+            Assert.assertNotNull(concurrencyLimiter.tryAcquire(ConcurrencyLimiter.Priority.NORMAL));
+        }
+        Assert.assertNull(concurrencyLimiter.tryAcquire(ConcurrencyLimiter.Priority.NORMAL));
+
+        Assert.assertNotNull(concurrencyLimiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH));
+        Assert.assertNull(concurrencyLimiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH));
+
+        Assert.assertEquals(10, concurrencyLimiter.getInFlight());
+        Assert.assertEquals(3, concurrencyLimiter.getRejectedCount());
+    }
+
+    /**
+     * The limit grows while latency stays steady and shrinks once latency rises.
+     */
+    @Test
+    public void limitFollowsLatency() {
+        AtomicLong now = new AtomicLong();
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(20, 4, 200, now::get);
+
+        for (int i = 0; i < 5; i++) {
+            runBatch(concurrencyLimiter, now, 1);
+        }
+        int grownLimit = concurrencyLimiter.getLimit();
+        Assert.assertTrue(grownLimit > 20);
+
+        for (int i = 0; i < 5; i++) {
+            runBatch(concurrencyLimiter, now, 20);
+        }
+        Assert.assertTrue(concurrencyLimiter.getLimit() < grownLimit);
+        Assert.assertTrue(concurrencyLimiter.getLimit() >= 4);
+        Assert.assertEquals(0, concurrencyLimiter.getInFlight());
+    }
+}
@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class GracefulShutdownTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.  The test shuts the app down itself.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    /**
+     * A message posted before shutting down is in the database once the shutdown is done, the database is closed
+     *  cleanly, and the server no longer accepts connections.
+     */
+    @Test
+    public void acknowledgedPostSurvivesShutdown() throws IOException, InterruptedException, SQLException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"acknowledged\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        Assert.assertTrue(socialMediaController.shutdown(5000));
+
+        try {
+            webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+            Assert.fail("The server still accepts connections after shutting down.");
+        } catch (IOException expected) {
+        }
+
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:./h2/db", "sa", "sa");
+             ResultSet resultSet = connection.createStatement().executeQuery(
+                 "SELECT COUNT(*) FROM message WHERE message_text = 'acknowledged';")) {
+            resultSet.next();
+            Assert.assertEquals(1, resultSet.getInt(1));
+        }
+    }
+}
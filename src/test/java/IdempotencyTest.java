@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.IdempotencyDaoH2;
+import Model.IdempotentResponse;
+import Util.ConnectionUtil;
+import Util.IdempotencyStore;
+import io.javalin.Javalin;
+
+public class IdempotencyTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> post(String path, String key, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", key)
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending the same http request to POST localhost:8080/messages twice with one Idempotency-Key, then a different
+     *  request with the same key
+     *
+     * Expected Response:
+     *  Status Code: 200 both times with the same message, created once; then 422
+     */
+    @Test
+    public void retriedMessageIsCreatedOnce() throws IOException, InterruptedException {
+        String message = "{\"posted_by\":1, \"message_text\": \"once\", \"time_posted_epoch\": 1669947792}";
+
+        HttpResponse<String> first = post("/messages", "key-1", message);
+        HttpResponse<String> retry = post("/messages", "key-1", message);
+
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals(200, retry.statusCode());
+        Assert.assertTrue(first.body().contains("\"message_id\":2"));
+        Assert.assertEquals(first.body(), retry.body());
+        Assert.assertEquals("true", retry.headers().firstValue("Idempotent-Replayed").orElse(null));
+
+        HttpResponse<String> count = webClient.send(
+                HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/count")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals("{\"count\":2}", count.body());
+
+        Assert.assertEquals(422, post("/messages", "key-1", message.replace("once", "twice")).statusCode());
+    }
+
+    /**
+     * Sending the same http request to POST localhost:8080/register twice with one Idempotency-Key
+     *
+     * Expected Response:
+     *  Status Code: 200 both times with the same account, instead of 400 for the retry
+     */
+    @Test
+    public void retriedRegistrationGetsOriginalResponse() throws IOException, InterruptedException {
+        String account = "{\"username\": \"retried\", \"password\": \"password\"}";
+
+        HttpResponse<String> first = post("/register", "key-2", account);
+        HttpResponse<String> retry = post("/register", "key-2", account);
+
+        Assert.assertEquals(200, first.statusCode());
+        Assert.assertEquals(200, retry.statusCode());
+        Assert.assertEquals(first.body(), retry.body());
+        Assert.assertEquals(400, post("/register", "key-3", account).statusCode());
+    }
+
+    /**
+     * Responses stored in the database are replayed by another store, e.g. on another node, until they expire.
+     */
+    @Test
+    public void storedResponsesAreReplayedAcrossStoresUntilExpired() throws SQLException, InterruptedException {
+        AtomicLong now = new AtomicLong();
+        IdempotencyDaoH2 idempotencyDao = new IdempotencyDaoH2(ConnectionUtil.getConnection());
+        IdempotencyStore store = new IdempotencyStore(idempotencyDao, 1000, 10, 100, now::get);
+        IdempotencyStore otherStore = new IdempotencyStore(idempotencyDao, 1000, 10, 100, now::get);
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+
+        IdempotencyStore.Claim claim = store.claim("/messages key", 42);
+        Assert.assertNull(claim.getReplayedResponse());
+        claim.complete(new IdempotentResponse(42, 200, "application/json", body));
+
+        Assert.assertArrayEquals(body, store.claim("/messages key", 42).getReplayedResponse().getBody());
+        Assert.assertArrayEquals(body, otherStore.claim("/messages key", 42).getReplayedResponse().getBody());
+
+        IdempotencyStore.Claim failed = store.claim("/messages other", 7);
+        failed.complete(new IdempotentResponse(7, 503, null, new byte[0]));
+        Assert.assertNull(store.claim("/messages other", 7).getReplayedResponse());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(1, idempotencyDao.deleteResponsesBefore(System.currentTimeMillis() + 1));
+        Assert.assertNull(store.claim("/messages key", 42).getReplayedResponse());
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import DAO.MessageDaoMappedLog;
+import Model.Message;
+
+public class MessageDaoMappedLogTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    Path directory;
+    MessageDaoMappedLog messageDao;
+
+    /**
+     * Before every test, open a mapped log with small segments in an empty directory, so that a few messages are
+     * enough to roll over to new segments.
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = temporaryFolder.newFolder("mlog").toPath();
+        messageDao = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        messageDao.close();
+    }
+
+    private MessageDaoMappedLog open() throws IOException {
+        return new MessageDaoMappedLog(directory, 256, 0.5, 0);
+    }
+
+    private long countSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Added messages get increasing IDs and can be read back individually, in full, and by poster.
+     */
+    @Test
+    public void addAndGetMessages() throws SQLException {
+        Message first = messageDao.addMessage(new Message(1, "first", 1669947792));
+        Message second = messageDao.addMessage(new Message(2, "second \u00e9", 1669947793));
+        Message third = messageDao.addMessage(new Message(1, "third", 1669947794));
+
+        Assert.assertEquals(1, first.getMessage_id());
+        Assert.assertEquals(2, second.getMessage_id());
+        Assert.assertEquals(Optional.of(new Message(2, 2, "second \u00e9", 1669947793)), messageDao.getMessage(2));
+        Assert.assertEquals(List.of(first, second, third), messageDao.getAllMessages());
+        Assert.assertEquals(List.of(first, third), messageDao.getAllMessages(1));
+        Assert.assertEquals(Optional.empty(), messageDao.getMessage(4));
+    }
+
+    /**
+     * Updates and deletes are appended to the log and win over the earlier versions.
+     */
+    @Test
+    public void updateAndDeleteMessages() throws SQLException {
+        messageDao.addMessage(new Message(1, "first", 1669947792));
+        messageDao.addMessage(new Message(1, "second", 1669947793));
+
+        messageDao.updateMessage(1, "first, edited");
+        messageDao.deleteMessage(2);
+
+        Assert.assertEquals(List.of(new Message(1, 1, "first, edited", 1669947792)), messageDao.getAllMessages());
+        Assert.assertEquals(Optional.empty(), messageDao.getMessage(2));
+    }
+
+    /**
+     * Reopening the log replays the segments, including updates and tombstones, and does not reuse message IDs.
+     */
+    @Test
+    public void recoverAfterReopen() throws SQLException, IOException {
+        for (int i = 0; i < 20; i++) {
+            messageDao.addMessage(new Message(i % 3, "message " + i, 1669947792 + i));
+        }
+        messageDao.updateMessage(5, "updated");
+        messageDao.deleteMessage(20);
+        List<Message> expected = messageDao.getAllMessages();
+        messageDao.close();
+
+        messageDao = open();
+
+        Assert.assertTrue(countSegmentFiles() > 1);
+        Assert.assertEquals(expected, messageDao.getAllMessages());
+        Assert.assertEquals(21, messageDao.addMessage(new Message(1, "after reopen", 1669947999)).getMessage_id());
+    }
+
+    /**
+     * Compaction rewrites old, mostly dead segments, keeps every live message, and deletes do not come back after a
+     * reopen.
+     */
+    @Test
+    public void compactionKeepsLiveMessages() throws SQLException, IOException {
+        for (int i = 0; i < 30; i++) {
+            messageDao.addMessage(new Message(1, "message " + i, 1669947792 + i));
+        }
+        for (int i = 1; i <= 25; i++) {
+            messageDao.deleteMessage(i);
+        }
+        List<Message> expected = messageDao.getAllMessages();
+        long segmentsBefore = countSegmentFiles();
+
+        int numCompacted = messageDao.compact();
+
+        Assert.assertTrue(numCompacted > 0);
+        Assert.assertTrue(countSegmentFiles() < segmentsBefore);
+        Assert.assertEquals(expected, messageDao.getAllMessages());
+
+        messageDao.close();
+        messageDao = open();
+
+        List<Integer> ids = messageDao.getAllMessages().stream()
+            .map(Message::getMessage_id)
+            .collect(Collectors.toCollection(ArrayList::new));
+        Assert.assertEquals(List.of(26, 27, 28, 29, 30), ids);
+    }
+
+    /**
+     * Updates and deletes made while segments are being compacted win over the copies compaction appends, including
+     * after a reopen.
+     */
+    @Test
+    public void compactionDuringWritesKeepsLatestVersions() throws Exception {
+        for (int i = 0; i < 60; i++) {
+            messageDao.addMessage(new Message(1, "message " + i, 1669947792 + i));
+        }
+        for (int i = 1; i <= 40; i++) {
+            messageDao.deleteMessage(i);
+        }
+
+        Thread compactor = new Thread(() -> {
+            try {
+                for (int i = 0; i < 50; i++) {
+                    messageDao.compact();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        compactor.start();
+        for (int round = 0; round < 20; round++) {
+            for (int id = 41; id <= 60; id++) {
+                messageDao.updateMessage(id, "round " + round);
+            }
+        }
+        messageDao.deleteMessage(60);
+        compactor.join();
+
+        List<Message> expected = messageDao.getAllMessages();
+        Assert.assertEquals(19, expected.size());
+        Assert.assertTrue(expected.stream().allMatch((message) -> message.getMessage_text().equals("round 19")));
+
+        messageDao.close();
+        messageDao = open();
+
+        Assert.assertEquals(expected, messageDao.getAllMessages());
+    }
+}
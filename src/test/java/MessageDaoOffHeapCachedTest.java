@@ -0,0 +1,79 @@
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDaoH2;
+import DAO.MessageDaoOffHeapCached;
+import Model.Message;
+import Util.ConnectionUtil;
+
+public class MessageDaoOffHeapCachedTest {
+    MessageDaoH2 storedMessages;
+
+    /**
+     * Before every test, reset the database, which holds message 1 'test message 1'.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        storedMessages = new MessageDaoH2(ConnectionUtil.getConnection());
+    }
+
+    private long stat(MessageDaoOffHeapCached cache, String name) {
+        return ((Number) cache.getStats().get(name)).longValue();
+    }
+
+    /**
+     * A message read once is served from the cache after that, and updates and deletes thru the cache are never
+     *  hidden by it.
+     */
+    @Test
+    public void readsAreCachedAndWritesInvalidate() throws SQLException {
+        MessageDaoOffHeapCached cache = new MessageDaoOffHeapCached(storedMessages, 8192, 4096);
+
+        Assert.assertEquals("test message 1", cache.getMessage(1).get().getMessage_text());
+        Assert.assertEquals(new Message(1, 1, "test message 1", 1669947792), cache.getMessage(1).get());
+        Assert.assertEquals(1, stat(cache, "hits"));
+        Assert.assertEquals(1, stat(cache, "misses"));
+
+        cache.updateMessage(1, "edited \u00e9");
+        Assert.assertEquals("edited \u00e9", cache.getMessage(1).get().getMessage_text());
+
+        Message added = cache.addMessage(new Message(1, "added", 1669947793));
+        Assert.assertEquals(List.of(new Message(1, 1, "edited \u00e9", 1669947792), added),
+            cache.getMessages(new int[] {1, added.getMessage_id(), 99}));
+
+        cache.deleteMessage(1);
+        Assert.assertEquals(Optional.empty(), cache.getMessage(1));
+        Assert.assertEquals(1, stat(cache, "messages"));
+    }
+
+    /**
+     * Once every slab is used, the oldest slab is reused and the messages in it are read from storage again.
+     */
+    @Test
+    public void oldestSlabIsEvictedWhenFull() throws SQLException {
+        MessageDaoOffHeapCached cache = new MessageDaoOffHeapCached(storedMessages, 2048, 1024);
+        int[] messageIds = new int[100];
+
+        for (int i = 0; i < messageIds.length; i++) {
+            messageIds[i] = cache.addMessage(new Message(1, "message number " + i, 1669947793 + i)).getMessage_id();
+        }
+
+        Assert.assertTrue(stat(cache, "evictions") > 0);
+        Assert.assertTrue(stat(cache, "messages") < messageIds.length);
+        Assert.assertEquals(2048, stat(cache, "allocatedBytes"));
+
+        List<Message> messages = cache.getMessages(messageIds);
+        Assert.assertEquals(messageIds.length, messages.size());
+        for (int i = 0; i < messageIds.length; i++) {
+            Assert.assertEquals(messageIds[i], messages.get(i).getMessage_id());
+            Assert.assertEquals("message number " + i, messages.get(i).getMessage_text());
+        }
+        Assert.assertTrue(stat(cache, "misses") > 0);
+    }
+}
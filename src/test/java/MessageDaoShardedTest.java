@@ -0,0 +1,201 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDaoSharded;
+import Model.Message;
+import Model.MessageField;
+
+public class MessageDaoShardedTest {
+    List<JdbcConnectionPool> pools;
+    MessageDaoSharded messageDao;
+
+    /**
+     * Before every test, spread the message store across three new in-memory H2 databases.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        pools = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            pools.add(JdbcConnectionPool.create("jdbc:h2:mem:shard-test-" + i, "sa", "sa"));
+        }
+        messageDao = new MessageDaoSharded(pools);
+    }
+
+    @After
+    public void tearDown() {
+        messageDao.close();
+    }
+
+    /**
+     * Message IDs are unique across shards and each ID maps back to the shard that stores the poster's messages.
+     */
+    @Test
+    public void idsRouteToOwningShard() throws SQLException {
+        List<Message> added = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            added.add(messageDao.addMessage(new Message(i % 4 + 1, "message " + i, 1669947800 + i)));
+        }
+
+        Assert.assertEquals(12, added.stream().mapToInt(Message::getMessage_id).distinct().count());
+        for (Message message : added) {
+            Assert.assertEquals(
+                messageDao.shardForAccount(message.getPosted_by()),
+                messageDao.shardForMessage(message.getMessage_id()));
+            Assert.assertEquals(Optional.of(message), messageDao.getMessage(message.getMessage_id()));
+        }
+    }
+
+    /**
+     * Reads across all messages merge the shards' results in message ID order.
+     */
+    @Test
+    public void scatterGatherMergesById() throws SQLException {
+        for (int i = 0; i < 10; i++) {
+            messageDao.addMessage(new Message(i % 3 + 1, "message " + i, 1669947800 + i));
+        }
+
+        List<Message> allMessages = messageDao.getAllMessages();
+        Assert.assertEquals(10, allMessages.size());
+        for (int i = 1; i < allMessages.size(); i++) {
+            Assert.assertTrue(allMessages.get(i - 1).getMessage_id() < allMessages.get(i).getMessage_id());
+        }
+
+        int[] ids = allMessages.stream().mapToInt(Message::getMessage_id).toArray();
+        Assert.assertEquals(allMessages, messageDao.getMessages(ids));
+    }
+
+    /**
+     * Time range reads page thru the shards' messages in time of posting order.
+     */
+    @Test
+    public void timeRangeMergesByTimePosted() throws SQLException {
+        for (int i = 0; i < 9; i++) {
+            messageDao.addMessage(new Message(i % 3 + 1, "message " + i, 1669947800 + (8 - i)));
+        }
+
+        List<Message> page = messageDao.getMessagesInRange(1669947801, 1669947808, 2, 3);
+        Assert.assertEquals(
+            List.of(1669947803L, 1669947804L, 1669947805L),
+            page.stream().map(Message::getTime_posted_epoch).collect(Collectors.toList()));
+
+        Assert.assertEquals(
+            List.of("message 6", "message 3"),
+            messageDao.getMessagesInRange(1, 1669947800, 1669947806, 0, 10).stream()
+                .map(Message::getMessage_text).collect(Collectors.toList()));
+    }
+
+    /**
+     * A poster's messages, updates, and deletes are all served by the poster's shard.
+     */
+    @Test
+    public void perAccountOperations() throws SQLException {
+        Message first = messageDao.addMessage(new Message(2, "first", 1669947800));
+        Message second = messageDao.addMessage(new Message(2, "second", 1669947801));
+        messageDao.addMessage(new Message(3, "other", 1669947802));
+
+        messageDao.updateMessage(first.getMessage_id(), "first, edited");
+        messageDao.deleteMessage(second.getMessage_id());
+
+        Assert.assertEquals(
+            List.of(new Message(first.getMessage_id(), 2, "first, edited", 1669947800)),
+            messageDao.getAllMessages(2));
+        Assert.assertEquals(Optional.empty(), messageDao.getMessage(second.getMessage_id()));
+    }
+
+    /**
+     * IDs increase in the order messages are added, whichever shard they go to, so that a message added to a shard
+     * that has handed out fewer IDs is still found after the newest message of another shard.  IDs are not reused
+     * after a restart, even once the newest message is deleted.
+     */
+    @Test
+    public void idsIncreaseAcrossShards() throws SQLException {
+        Message previous = messageDao.addMessage(new Message(3, "shard 0", 1669947800));
+        for (int i = 0; i < 10; i++) {
+            previous = messageDao.addMessage(new Message(3, "shard 0 again", 1669947801 + i));
+        }
+
+        Message onOtherShard = messageDao.addMessage(new Message(1, "shard 1", 1669947811));
+
+        Assert.assertTrue(onOtherShard.getMessage_id() > previous.getMessage_id());
+        Assert.assertEquals(onOtherShard, messageDao.getAllMessages().get(11));
+        Assert.assertEquals(List.of(onOtherShard), messageDao.getLatestMessages(1, 1));
+
+        messageDao.deleteMessage(onOtherShard.getMessage_id());
+        MessageDaoSharded restarted = new MessageDaoSharded(pools);
+
+        Assert.assertTrue(
+            restarted.addMessage(new Message(1, "after restart", 1669947812)).getMessage_id()
+             > onOtherShard.getMessage_id());
+        restarted.close();
+    }
+
+    /**
+     * Reads of only some fields select only those columns, plus the ones the shards' results are merged by.
+     */
+    @Test
+    public void projectedReadsSkipOtherColumns() throws SQLException {
+        for (int i = 0; i < 6; i++) {
+            messageDao.addMessage(new Message(i % 3 + 1, "message " + i, 1669947800 + i));
+        }
+
+        List<Message> allMessages = messageDao.getAllMessages(EnumSet.of(MessageField.POSTED_BY));
+        Assert.assertEquals(
+            List.of(1, 2, 3, 1, 2, 3), allMessages.stream().map(Message::getPosted_by).collect(Collectors.toList()));
+        Assert.assertTrue(allMessages.stream().allMatch((message) -> message.getMessage_text() == null));
+
+        Message message = messageDao.getMessage(allMessages.get(0).getMessage_id(),
+            EnumSet.of(MessageField.MESSAGE_TEXT)).get();
+        Assert.assertEquals("message 0", message.getMessage_text());
+        Assert.assertEquals(0, message.getTime_posted_epoch());
+
+        List<Message> page = messageDao.getMessagesInRange(
+            1669947801, 1669947805, 1, 2, EnumSet.of(MessageField.MESSAGE_TEXT));
+        Assert.assertEquals(
+            List.of("message 2", "message 3"),
+            page.stream().map(Message::getMessage_text).collect(Collectors.toList()));
+    }
+
+    /**
+     * Posts to shard 0 from more threads than its pool has connections do not hang when a new block of IDs has to be
+     * reserved in shard 0.
+     */
+    @Test(timeout = 20_000)
+    public void concurrentInsertsWithOneConnectionPerShard() throws Exception {
+        messageDao.close();
+        pools = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            JdbcConnectionPool pool = JdbcConnectionPool.create("jdbc:h2:mem:shard-pool-test-" + i, "sa", "sa");
+            pool.setMaxConnections(1);
+            pool.setLoginTimeout(5);
+            pools.add(pool);
+        }
+        messageDao = new MessageDaoSharded(pools);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Message>> futures = new ArrayList<>();
+        // Account 3 posts to shard 0; enough posts to need a second block of IDs.
+        for (int i = 0; i < 1100; i++) {
+            int number = i;
+            futures.add(executor.submit(() -> messageDao.addMessage(new Message(3, "message " + number, 1669947800))));
+        }
+        for (Future<Message> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Assert.assertEquals(1100, messageDao.getAllMessages(3).size());
+    }
+}
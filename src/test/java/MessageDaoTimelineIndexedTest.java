@@ -0,0 +1,132 @@
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.MessageDaoH2;
+import DAO.MessageDaoTimelineIndexed;
+import Model.Message;
+import Util.ConnectionUtil;
+import Util.IntTimelineIndex;
+
+public class MessageDaoTimelineIndexedTest {
+    MessageDaoH2 storedMessages;
+
+    /**
+     * Before every test, reset the database, which holds message 1 'test message 1' posted by account 1.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+        storedMessages = new MessageDaoH2(ConnectionUtil.getConnection());
+    }
+
+    /**
+     * Each owner's IDs stay sorted whatever order they are added in, an ID added for another owner moves to it, and
+     *  removed IDs are gone from their owner.
+     */
+    @Test
+    public void indexKeepsEachOwnersIdsSorted() {
+        IntTimelineIndex index = new IntTimelineIndex();
+        index.add(1, 5);
+        index.add(1, 2);
+        index.add(1, 9);
+        index.add(1, 5);
+        index.add(2, 3);
+
+        Assert.assertArrayEquals(new int[] {2, 5, 9}, index.get(1));
+        Assert.assertArrayEquals(new int[] {5, 9}, index.getLatest(1, 2));
+        Assert.assertArrayEquals(new int[] {2, 5, 9}, index.getLatest(1, 10));
+        Assert.assertEquals(4, index.size());
+
+        index.add(2, 5);
+        Assert.assertArrayEquals(new int[] {2, 9}, index.get(1));
+        Assert.assertArrayEquals(new int[] {3, 5}, index.get(2));
+        Assert.assertEquals(4, index.size());
+
+        Assert.assertTrue(index.remove(9));
+        Assert.assertFalse(index.remove(9));
+        Assert.assertArrayEquals(new int[] {2}, index.get(1));
+        Assert.assertEquals(1, index.count(1));
+
+        Assert.assertArrayEquals(new int[0], index.get(3));
+        Assert.assertArrayEquals(new int[0], index.getLatest(3, 5));
+        Assert.assertEquals(0, index.count(3));
+    }
+
+    /**
+     * Owners past the initial slots, and owners with more IDs than their first array holds, keep every ID.
+     */
+    @Test
+    public void indexGrowsPastItsInitialCapacity() {
+        IntTimelineIndex index = new IntTimelineIndex();
+
+        for (int id = 1000; id > 0; id--) {
+            index.add(id % 50, id);
+        }
+
+        Assert.assertEquals(1000, index.size());
+        for (int owner = 0; owner < 50; owner++) {
+            int[] ids = index.get(owner);
+            Assert.assertEquals(20, ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                Assert.assertEquals(owner == 0 ? 50 * (i + 1) : owner + 50 * i, ids[i]);
+            }
+        }
+
+        index.clear();
+        Assert.assertEquals(0, index.size());
+        Assert.assertArrayEquals(new int[0], index.get(1));
+    }
+
+    /**
+     * Per-user timelines, latest messages, and counts follow the messages added and deleted thru the DAO.
+     */
+    @Test
+    public void timelinesFollowWrites() throws SQLException {
+        ConnectionUtil.getConnection().createStatement().executeUpdate(
+            "INSERT INTO account (username, password) VALUES ('testuser2', 'password');");
+        MessageDaoTimelineIndexed messageDao = new MessageDaoTimelineIndexed(storedMessages);
+
+        Message second = messageDao.addMessage(new Message(1, "second", 1669947793));
+        Message third = messageDao.addMessage(new Message(1, "third", 1669947794));
+        Message other = messageDao.addMessage(new Message(2, "other", 1669947795));
+
+        Assert.assertEquals(
+            List.of(new Message(1, 1, "test message 1", 1669947792), second, third), messageDao.getAllMessages(1));
+        Assert.assertEquals(List.of(third), messageDao.getLatestMessages(1, 1));
+        Assert.assertEquals(3, messageDao.getMessageCount(1));
+        Assert.assertEquals(4, messageDao.getMessageCount());
+        Assert.assertEquals(List.of(other), messageDao.getAllMessages(2));
+
+        messageDao.deleteMessage(second.getMessage_id());
+
+        Assert.assertEquals(List.of(new Message(1, 1, "test message 1", 1669947792), third),
+            messageDao.getAllMessages(1));
+        Assert.assertEquals(2, messageDao.getMessageCount(1));
+        Assert.assertEquals(3, messageDao.getMessageCount());
+        Assert.assertEquals(0, messageDao.getMessageCount(3));
+    }
+
+    /**
+     * The index is built from storage, and rebuilding it picks up messages written around it.
+     */
+    @Test
+    public void rebuildReadsStorage() throws SQLException {
+        MessageDaoTimelineIndexed messageDao = new MessageDaoTimelineIndexed(storedMessages);
+        Assert.assertEquals(1, messageDao.getMessageCount(1));
+
+        Message first = storedMessages.addMessage(new Message(1, "written around the index", 1669947793));
+        Message second = storedMessages.addMessage(new Message(1, "also written around it", 1669947794));
+        storedMessages.deleteMessage(1);
+        Assert.assertEquals(1, messageDao.getMessageCount(1));
+        Assert.assertEquals(List.of(), messageDao.getAllMessages(1));
+
+        messageDao.rebuild();
+
+        Assert.assertEquals(List.of(first, second), messageDao.getAllMessages(1));
+        Assert.assertEquals(2, messageDao.getMessageCount(1));
+    }
+}
@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.RateLimiter;
+import io.javalin.Javalin;
+
+public class RateLimitTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database and restart the Javalin app with a login limit of 2 attempts per IP
+     * address, and create a new webClient for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        System.setProperty("socialmedia.rateLimit.login.perIp.perSecond", "0.01");
+        System.setProperty("socialmedia.rateLimit.login.perIp.burst", "2");
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+        System.clearProperty("socialmedia.rateLimit.login.perIp.perSecond");
+        System.clearProperty("socialmedia.rateLimit.login.perIp.burst");
+    }
+
+    /**
+     * Sending three http requests to POST localhost:8080/login from the same IP address
+     *
+     * Expected Response:
+     *  Status Code: 200 twice, then 429 with a Retry-After header
+     */
+    @Test
+    public void loginRateLimitedPerIp() throws IOException, InterruptedException {
+        HttpRequest postLoginRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"testuser1\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+
+        Assert.assertEquals(200, webClient.send(postLoginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+        Assert.assertEquals(200, webClient.send(postLoginRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        HttpResponse<String> response = webClient.send(postLoginRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(429, response.statusCode());
+        Assert.assertTrue(Long.parseLong(response.headers().firstValue("Retry-After").orElseThrow()) > 0);
+    }
+
+    /**
+     * A key may use its burst at once, then gets one permit per emission interval; other keys are not affected.
+     */
+    @Test
+    public void tokenBucketRefillsAtRate() {
+        AtomicLong now = new AtomicLong();
+        RateLimiter<String> rateLimiter = new RateLimiter<>(10, 3, 100, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(0, rateLimiter.tryAcquire("a"));
+        }
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(100), rateLimiter.tryAcquire("a"));
+        Assert.assertEquals(0, rateLimiter.tryAcquire("b"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertEquals(0, rateLimiter.tryAcquire("a"));
+        Assert.assertTrue(rateLimiter.tryAcquire("a") > 0);
+    }
+
+    /**
+     * Once the limiter tracks its maximum number of keys, idle keys are swept out, and if none are idle, new keys share
+     * one overflow bucket.
+     */
+    @Test
+    public void keysAreBounded() {
+        AtomicLong now = new AtomicLong();
+        RateLimiter<Integer> rateLimiter = new RateLimiter<>(1, 1, 2, now::get);
+
+        Assert.assertEquals(0, rateLimiter.tryAcquire(1));
+        Assert.assertEquals(0, rateLimiter.tryAcquire(2));
+        Assert.assertEquals(0, rateLimiter.tryAcquire(3));
+        Assert.assertTrue(rateLimiter.tryAcquire(4) > 0);
+        Assert.assertEquals(2, rateLimiter.size());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(0, rateLimiter.tryAcquire(5));
+        Assert.assertEquals(1, rateLimiter.size());
+    }
+}
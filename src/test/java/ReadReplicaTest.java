@@ -0,0 +1,169 @@
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.h2.tools.RunScript;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import DAO.AccountDao;
+import DAO.AccountDaoH2;
+import DAO.AccountDaoReplicated;
+import DAO.H2Replica;
+import DAO.MessageDao;
+import DAO.MessageDaoH2;
+import DAO.MessageDaoReplicated;
+import DAO.MessageDaoSingleFlight;
+import DAO.ReplicaSet;
+import Model.Account;
+import Model.Message;
+import Model.MessageField;
+
+public class ReadReplicaTest {
+    Connection primaryConnection;
+    Connection replicaConnection;
+    ReplicaSet replicaSet;
+    AccountDao accountDao;
+    MessageDao messageDao;
+
+    /**
+     * Before every test, set up a primary and a replica as two separate in-memory H2 databases, and copy the primary's
+     * rows to the replica.
+     */
+    @Before
+    public void setUp() throws SQLException, FileNotFoundException {
+        primaryConnection = DriverManager.getConnection("jdbc:h2:mem:replica-test-primary", "sa", "sa");
+        RunScript.execute(primaryConnection, new FileReader("src/main/resources/SocialMedia.sql"));
+        replicaConnection = DriverManager.getConnection("jdbc:h2:mem:replica-test-replica", "sa", "sa");
+
+        replicaSet = new ReplicaSet(
+            List.of(new H2Replica("test", DriverManager.getConnection("jdbc:h2:mem:replica-test-replica", "sa", "sa"))),
+            60_000);
+        replicaSet.synchronize(new AccountDaoH2(primaryConnection), new MessageDaoH2(primaryConnection));
+
+        accountDao = new AccountDaoReplicated(new AccountDaoH2(primaryConnection), replicaSet);
+        messageDao = new MessageDaoReplicated(new MessageDaoH2(primaryConnection), replicaSet);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        ReplicaSet.clearCurrentClient();
+        replicaSet.close();
+        replicaConnection.close();
+        primaryConnection.close();
+    }
+
+    /**
+     * Writes go to the primary and are applied to the replica in order.
+     */
+    @Test
+    public void writesAreReplicated() throws SQLException, InterruptedException {
+        Account account = accountDao.addAccount(new Account("replicated", "password"));
+        messageDao.addMessage(new Message(account.getAccount_id(), "first", 1669947800));
+        messageDao.updateMessage(2, "first, edited");
+        messageDao.deleteMessage(1);
+
+        Assert.assertTrue(replicaSet.awaitReplication(5_000));
+
+        MessageDao replicaMessages = new MessageDaoH2(replicaConnection);
+        Assert.assertEquals(
+            List.of(new Message(2, account.getAccount_id(), "first, edited", 1669947800)),
+            replicaMessages.getAllMessages());
+        Assert.assertEquals(Optional.of(account), new AccountDaoH2(replicaConnection).getAccount("replicated"));
+    }
+
+    /**
+     * Once the replica has caught up, reads are served from it rather than from the primary.
+     */
+    @Test
+    public void readsUseFreshReplica() throws SQLException {
+        replicaConnection.createStatement().executeUpdate(
+            "UPDATE message SET message_text = 'from replica' WHERE message_id = 1;");
+
+        Assert.assertEquals("from replica", messageDao.getMessage(1).get().getMessage_text());
+    }
+
+    /**
+     * Reads of only some fields are served from the replica too, and read only those fields.
+     */
+    @Test
+    public void projectedReadsUseFreshReplica() throws SQLException {
+        replicaConnection.createStatement().executeUpdate(
+            "UPDATE message SET time_posted_epoch = 1 WHERE message_id = 1;");
+
+        Message message = messageDao.getMessage(1, EnumSet.of(MessageField.TIME_POSTED_EPOCH)).get();
+        Assert.assertEquals(1, message.getTime_posted_epoch());
+        Assert.assertNull(message.getMessage_text());
+        Assert.assertEquals(
+            1, messageDao.getAllMessages(EnumSet.of(MessageField.TIME_POSTED_EPOCH)).get(0).getTime_posted_epoch());
+    }
+
+    /**
+     * A client's reads go to the primary until the replica has applied that client's own writes.
+     */
+    @Test
+    public void clientReadsItsOwnWrites() throws SQLException, InterruptedException {
+        ReplicaSet.setCurrentClient("writer");
+        messageDao.addMessage(new Message(1, "mine", 1669947800));
+
+        Assert.assertTrue(messageDao.getMessage(2).isPresent());
+
+        Assert.assertTrue(replicaSet.awaitReplication(5_000));
+        Assert.assertTrue(replicaSet.chooseReplica().isPresent());
+    }
+
+    /**
+     * A client that has just written doesn't share a read started by another client, which may be served by a replica
+     * that hasn't applied the write yet.
+     */
+    @Test(timeout = 20_000)
+    public void sharedReadsKeepOwnWrites() throws Exception {
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLeader = new CountDownLatch(1);
+        MessageDaoSingleFlight singleFlight = new MessageDaoSingleFlight(
+            new MessageDaoReplicated(new MessageDaoH2(primaryConnection), replicaSet) {
+                @Override
+                public Optional<Message> getMessage(int messageId) throws SQLException {
+                    if (getReadVersion() == 0) {
+                        leaderStarted.countDown();
+                        try {
+                            releaseLeader.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return super.getMessage(messageId);
+                }
+            },
+            60_000);
+        ExecutorService otherClient = Executors.newSingleThreadExecutor();
+
+        try {
+            ReplicaSet.setCurrentClient("writer");
+            singleFlight.addMessage(new Message(1, "mine", 1669947800));
+
+            Future<Optional<Message>> otherRead = otherClient.submit(() -> singleFlight.getMessage(2));
+            leaderStarted.await();
+
+            Assert.assertTrue(singleFlight.getMessage(2).isPresent());
+            Assert.assertEquals(0, singleFlight.getSharedCallCount());
+
+            releaseLeader.countDown();
+            otherRead.get();
+        } finally {
+            releaseLeader.countDown();
+            otherClient.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveFeedTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database.  Each test sets its settings, then starts the app.
+     */
+    @Before
+    public void setUp() {
+        ConnectionUtil.resetTestDatabase();
+    }
+
+    /**
+     * Restart the Javalin app, create a new webClient and ObjectMapper for interacting locally on the web, and
+     * register accounts 2 and 3 next to the seeded account 1.
+     */
+    private void startApp() throws IOException, InterruptedException {
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        for (String username : new String[] {"testuser2", "testuser3"}) {
+            Assert.assertEquals(200, send("POST", "/register",
+                    "{\"username\": \"" + username + "\", \"password\": \"password\"}").statusCode());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty("socialmedia.feed.fanOutThreshold");
+        if (app != null) {
+            app.stop();
+        }
+    }
+
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .method(method, body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private int post(int postedBy, String text) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/messages",
+                "{\"posted_by\": " + postedBy + ", \"message_text\": \"" + text + "\"," +
+                " \"time_posted_epoch\": 1669947792}");
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), Message.class).getMessage_id();
+    }
+
+    private List<Integer> getFeedIds(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", path, null);
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Integer> messageIds = new ArrayList<>();
+        for (Message message : objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {})) {
+            messageIds.add(message.getMessage_id());
+        }
+        return messageIds;
+    }
+
+    /**
+     * Account 3 follows accounts 1 and 2, reads its feed, then both post and account 3 unfollows account 1.
+     *
+     * Expected Response:
+     *  The feed holds the followed accounts' messages, newest first, including the ones fanned out after the feed was
+     *  first read, and none of account 3's own or account 1's after the unfollow.
+     */
+    @Test
+    public void feedFollowsFollowsAndPosts() throws IOException, InterruptedException {
+        startApp();
+
+        Assert.assertEquals(200, send("POST", "/accounts/3/following/1", null).statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/3/following/2", null).statusCode());
+        Assert.assertEquals(List.of(1), getFeedIds("/accounts/3/feed"));
+
+        int first = post(2, "first");
+        post(3, "own message");
+        int second = post(1, "second");
+        Assert.assertEquals(List.of(second, first, 1), getFeedIds("/accounts/3/feed"));
+        Assert.assertEquals(List.of(second, first), getFeedIds("/accounts/3/feed?limit=2"));
+
+        Assert.assertEquals(200, send("DELETE", "/accounts/3/following/1", null).statusCode());
+        Assert.assertEquals(List.of(first), getFeedIds("/accounts/3/feed"));
+
+        Assert.assertEquals(200, send("DELETE", "/messages/" + first, null).statusCode());
+        Assert.assertEquals(List.of(), getFeedIds("/accounts/3/feed"));
+    }
+
+    /**
+     * With a fan-out threshold of 1, account 1 has too many followers to be fanned out to, so its messages are merged
+     *  into feeds when read.
+     *
+     * Expected Response:
+     *  Both followers see account 1's messages, merged with account 2's, newest first.
+     */
+    @Test
+    public void popularAccountIsMergedOnRead() throws IOException, InterruptedException {
+        System.setProperty("socialmedia.feed.fanOutThreshold", "1");
+        startApp();
+
+        Assert.assertEquals(200, send("POST", "/accounts/2/following/1", null).statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/3/following/1", null).statusCode());
+        Assert.assertEquals(200, send("POST", "/accounts/3/following/2", null).statusCode());
+        Assert.assertEquals(List.of(1), getFeedIds("/accounts/3/feed"));
+
+        int first = post(1, "first");
+        int second = post(2, "second");
+        int third = post(1, "third");
+        Assert.assertEquals(List.of(third, second, first, 1), getFeedIds("/accounts/3/feed"));
+        Assert.assertEquals(List.of(third, first, 1), getFeedIds("/accounts/2/feed"));
+    }
+
+    /**
+     * Following oneself or a missing account, or asking for too many messages.
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void invalidFollowsAndLimitsAreRejected() throws IOException, InterruptedException {
+        startApp();
+
+        Assert.assertEquals(400, send("POST", "/accounts/1/following/1", null).statusCode());
+        Assert.assertEquals(400, send("POST", "/accounts/1/following/404", null).statusCode());
+        Assert.assertEquals(400, send("DELETE", "/accounts/404/following/1", null).statusCode());
+        Assert.assertEquals(400, send("GET", "/accounts/1/feed?limit=0", null).statusCode());
+        Assert.assertEquals(400, send("GET", "/accounts/1/feed?limit=1000", null).statusCode());
+        Assert.assertEquals(List.of(), getFeedIds("/accounts/1/feed"));
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessageCountTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private long getCount(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        HttpResponse<String> response = webClient.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<Map<String, Long>>() {}).get("count");
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        return webClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages/count and GET localhost:8080/accounts/1/messages/count
+     *  before and after creating and deleting a message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: {"count": N}, following the creates and deletes
+     */
+    @Test
+    public void countsFollowCreatesAndDeletes() throws IOException, InterruptedException {
+        Assert.assertEquals(1, getCount("/messages/count"));
+        Assert.assertEquals(1, getCount("/accounts/1/messages/count"));
+
+        HttpResponse<String> created = send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"hello message\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json"));
+        Assert.assertEquals(200, created.statusCode());
+        Assert.assertEquals(2, getCount("/messages/count"));
+        Assert.assertEquals(2, getCount("/accounts/1/messages/count"));
+
+        Assert.assertEquals(200, send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()).statusCode());
+        Assert.assertEquals(200, send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .DELETE()).statusCode());
+        Assert.assertEquals(1, getCount("/messages/count"));
+        Assert.assertEquals(1, getCount("/accounts/1/messages/count"));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/404/messages/count
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: {"count": 0}
+     */
+    @Test
+    public void countForAccountWithoutMessagesIsZero() throws IOException, InterruptedException {
+        Assert.assertEquals(0, getCount("/accounts/404/messages/count"));
+    }
+}
@@ -0,0 +1,105 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.util.EnumSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import DAO.MessageDaoH2;
+import Model.Message;
+import Model.MessageField;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessageFieldsTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + path))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending http requests to the list and get message routes with a "fields" query parameter
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON with only the requested fields of each message
+     */
+    @Test
+    public void listAndGetReturnOnlyRequestedFields() throws IOException, InterruptedException {
+        HttpResponse<String> all = get("/messages?fields=message_id,message_text");
+        Assert.assertEquals(200, all.statusCode());
+        Assert.assertEquals("[{\"message_id\":1,\"message_text\":\"test message 1\"}]", all.body());
+        Assert.assertEquals("application/json", all.headers().firstValue("Content-Type").orElse(null));
+
+        Assert.assertEquals("{\"message_text\":\"test message 1\"}", get("/messages/1?fields=message_text").body());
+        Assert.assertEquals(
+            "[{\"message_id\":1,\"posted_by\":1}]", get("/accounts/1/messages?fields=posted_by,message_id").body());
+        Assert.assertEquals(
+            "[{\"time_posted_epoch\":1669947792}]", get("/messages?limit=10&fields=time_posted_epoch").body());
+        Assert.assertEquals(
+            "[{\"message_text\":\"test message 1\"}]",
+            get("/accounts/1/messages?since=0&fields=message_text").body());
+    }
+
+    /**
+     * Sending http requests with a "fields" query parameter that names something that is not a Message field
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void unknownFieldIsRejected() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("/messages?fields=message_id,password").statusCode());
+        Assert.assertEquals(400, get("/messages/1?fields=").statusCode());
+        Assert.assertEquals(400, get("/messages?limit=10&fields=posted").statusCode());
+        Assert.assertEquals("[]", get("/accounts/2/messages?fields=message_id").body());
+    }
+
+    /**
+     * The projection is pushed down to the query, so that the fields not asked for are never read.
+     */
+    @Test
+    public void daoReadsOnlyRequestedColumns() throws SQLException {
+        MessageDaoH2 messageDao = new MessageDaoH2(ConnectionUtil.getConnection());
+
+        Message message = messageDao.getMessage(1, EnumSet.of(MessageField.MESSAGE_ID)).get();
+
+        Assert.assertEquals(1, message.getMessage_id());
+        Assert.assertNull(message.getMessage_text());
+        Assert.assertEquals(0, message.getTime_posted_epoch());
+        Assert.assertNull(messageDao.getAllMessages(EnumSet.of(MessageField.POSTED_BY)).get(0).getMessage_text());
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class RetrieveMessagesInTimeRangeTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, add messages posted at 1669947800, 1669947900, and 1669948000 by
+     * testuser1, restart the Javalin app, and create a new webClient and ObjectMapper for interacting locally on the
+     * web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException, SQLException {
+        ConnectionUtil.resetTestDatabase();
+        ConnectionUtil.getConnection().createStatement().executeUpdate(
+            "insert into message (posted_by, message_text, time_posted_epoch) values" +
+            " (1, 'second', 1669947800), (1, 'third', 1669947900), (1, 'fourth', 1669948000);");
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> get(String pathAndQuery) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080" + pathAndQuery))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages?since=1669947800&until=1669948000
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the messages posted in the range, oldest first
+     */
+    @Test
+    public void getMessagesInRange() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/messages?since=1669947800&until=1669948000");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(
+            List.of(new Message(2, 1, "second", 1669947800), new Message(3, 1, "third", 1669947900)),
+            objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {}));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/1/messages?since=1669947800&offset=1&limit=1
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the second message the user posted since the time
+     */
+    @Test
+    public void getUserMessagesInRangePaged() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/accounts/1/messages?since=1669947800&offset=1&limit=1");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(
+            List.of(new Message(3, 1, "third", 1669947900)),
+            objectMapper.readValue(response.body(), new TypeReference<List<Message>>() {}));
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/messages with a non-numeric since, since after until, and a limit
+     *  that is too large
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void getMessagesInRangeRejectsBadParams() throws IOException, InterruptedException {
+        Assert.assertEquals(400, get("/messages?since=yesterday").statusCode());
+        Assert.assertEquals(400, get("/messages?since=1669948000&until=1669947800").statusCode());
+        Assert.assertEquals(400, get("/messages?limit=1001").statusCode());
+    }
+
+    /**
+     * Range queries seek the time of posting indexes instead of scanning the message table.
+     */
+    @Test
+    public void rangeQueriesUseIndexes() throws SQLException {
+        ResultSet plan = ConnectionUtil.getConnection().createStatement().executeQuery(
+            "EXPLAIN SELECT * FROM message WHERE time_posted_epoch >= 1 AND time_posted_epoch < 2" +
+            " ORDER BY time_posted_epoch, message_id LIMIT 10;");
+        plan.next();
+        Assert.assertTrue(plan.getString(1), plan.getString(1).contains("MESSAGE_TIME_POSTED"));
+
+        plan = ConnectionUtil.getConnection().createStatement().executeQuery(
+            "EXPLAIN SELECT * FROM message WHERE posted_by = 1 AND time_posted_epoch >= 1 AND time_posted_epoch < 2" +
+            " ORDER BY time_posted_epoch, message_id LIMIT 10;");
+        plan.next();
+        Assert.assertTrue(plan.getString(1), plan.getString(1).contains("MESSAGE_POSTED_BY_TIME_POSTED"));
+    }
+}
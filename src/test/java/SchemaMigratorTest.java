@@ -0,0 +1,63 @@
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.SchemaMigrator;
+
+public class SchemaMigratorTest {
+    Connection connection;
+    SchemaMigrator schemaMigrator;
+
+    /**
+     * Before every test, open a new, empty in-memory H2 database.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:migration-test", "sa", "sa");
+        schemaMigrator = new SchemaMigrator("db/migration");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * Every migration is applied to an empty database once, and restarting applies nothing and keeps the data.
+     */
+    @Test
+    public void migrationsAreAppliedOnce() throws SQLException, IOException {
+        Assert.assertEquals(4, schemaMigrator.migrate(connection));
+        connection.createStatement().executeUpdate(
+            "INSERT INTO account(username, password) VALUES ('kept', 'password');");
+
+        Assert.assertEquals(0, schemaMigrator.migrate(connection));
+
+        ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM account;");
+        resultSet.next();
+        Assert.assertEquals(1, resultSet.getInt(1));
+
+        resultSet = connection.createStatement().executeQuery(
+            "SELECT COUNT(*) FROM information_schema.indexes WHERE index_name = 'MESSAGE_TIME_POSTED';");
+        resultSet.next();
+        Assert.assertEquals(1, resultSet.getInt(1));
+    }
+
+    /**
+     * Migrating fails if an applied migration's script no longer matches its recorded checksum.
+     */
+    @Test(expected = SQLException.class)
+    public void changedMigrationIsRejected() throws SQLException, IOException {
+        schemaMigrator.migrate(connection);
+        connection.createStatement().executeUpdate("UPDATE schema_version SET checksum = 0 WHERE version = 1;");
+
+        schemaMigrator.migrate(connection);
+    }
+}
@@ -0,0 +1,205 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.tools.RunScript;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import DAO.AccountDaoH2;
+import DAO.FollowDaoH2;
+import DAO.MessageDao;
+import DAO.MessageDaoH2;
+import Model.Message;
+import Service.SocialMediaService;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> search(String queryString) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/search?" + queryString))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void postMessage(String text, long timePostedEpoch) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{"+
+                        "\"posted_by\":1, " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": " + timePostedEpoch + " }"))
+                .header("Content-Type", "application/json")
+                .build();
+        HttpResponse<String> response = webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=TEST%20Message (words of the existing message,
+     *  in another case)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of a list containing the existing message
+     */
+    @Test
+    public void searchMessagesMatchExists() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("q=TEST%20Message");
+
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> expectedResult = new ArrayList<>();
+        expectedResult.add(new Message(1, 1, "test message 1", 1669947792));
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertEquals(expectedResult, actualResult);
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search?q=test%20nothing (one word matches nothing)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of an empty list
+     */
+    @Test
+    public void searchMessagesNoMatch() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("q=test%20nothing");
+
+        Assert.assertEquals(200, response.statusCode());
+
+        List<Message> actualResult = objectMapper.readValue(response.body(), new TypeReference<List<Message>>(){});
+        Assert.assertTrue(actualResult.isEmpty());
+    }
+
+    /**
+     * Newly posted and updated messages are searchable right away, newest first, and results can be paged.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the requested page of matching messages
+     */
+    @Test
+    public void searchMessagesIncludesNewMessagesNewestFirst() throws IOException, InterruptedException {
+        postMessage("hello world", 1669947800);
+        postMessage("hello again", 1669947900);
+
+        HttpRequest patchRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/1"))
+                .method("PATCH", HttpRequest.BodyPublishers.ofString("{\"message_text\": \"hello there\"}"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(patchRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        List<Message> firstPage = objectMapper.readValue(
+                search("q=hello&limit=2").body(), new TypeReference<List<Message>>(){});
+        List<Message> secondPage = objectMapper.readValue(
+                search("q=hello&limit=2&offset=2").body(), new TypeReference<List<Message>>(){});
+
+        Assert.assertEquals(List.of(
+                new Message(3, 1, "hello again", 1669947900),
+                new Message(2, 1, "hello world", 1669947800)), firstPage);
+        Assert.assertEquals(List.of(new Message(1, 1, "hello there", 1669947792)), secondPage);
+        Assert.assertTrue(
+                objectMapper.readValue(search("q=test").body(), new TypeReference<List<Message>>(){}).isEmpty());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/search without a query
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchMessagesMissingQuery() throws IOException, InterruptedException {
+        Assert.assertEquals(400, search("limit=5").statusCode());
+        Assert.assertEquals(400, search("q=test&limit=abc").statusCode());
+    }
+
+    /**
+     * A search index snapshot is only used if it matches the stored messages, and is deleted once loaded.  A message
+     * edited after the snapshot was saved makes the index be rebuilt; messages added after it are indexed on top of it.
+     */
+    @Test
+    public void searchIndexSnapshotIsCheckedAgainstStoredMessages() throws Exception {
+        Path snapshotPath = Files.createTempDirectory("search-snapshot").resolve("search-index.snapshot");
+        System.setProperty("socialmedia.mode", "production");
+        System.setProperty("socialmedia.search.snapshotPath", snapshotPath.toString());
+
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:search-snapshot-test", "sa", "sa")) {
+            RunScript.execute(connection, new FileReader("src/main/resources/SocialMedia.sql"));
+            MessageDao messageDao = new MessageDaoH2(connection);
+
+            SocialMediaService service = newService(connection, messageDao);
+            service.saveSearchIndexSnapshot();
+            service.close();
+            Assert.assertTrue(Files.exists(snapshotPath));
+
+            // Edited behind the snapshot's back, e.g. by a process that crashed before saving a new snapshot.
+            messageDao.updateMessage(1, "edited after the snapshot");
+            service = newService(connection, messageDao);
+
+            Assert.assertFalse(Files.exists(snapshotPath));
+            Assert.assertEquals(1, service.searchMessages("edited", 0, 10).size());
+            Assert.assertEquals(0, service.searchMessages("test", 0, 10).size());
+
+            service.saveSearchIndexSnapshot();
+            service.close();
+            messageDao.addMessage(new Message(1, "added after the snapshot", 1669947793));
+            service = newService(connection, messageDao);
+
+            Assert.assertEquals(2, service.searchMessages("snapshot", 0, 10).size());
+            service.close();
+
+        } finally {
+            System.clearProperty("socialmedia.mode");
+            System.clearProperty("socialmedia.search.snapshotPath");
+        }
+    }
+
+    private static SocialMediaService newService(Connection connection, MessageDao messageDao) throws Exception {
+        return new SocialMediaService(new AccountDaoH2(connection), messageDao, new FollowDaoH2(connection));
+    }
+}
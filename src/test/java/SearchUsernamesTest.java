@@ -0,0 +1,116 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class SearchUsernamesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> search(String queryString) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/search?" + queryString))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void register(String username) throws IOException, InterruptedException {
+        HttpRequest postAccountRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"username\": \"" + username + "\", " +
+                        "\"password\": \"password\" }"))
+                .header("Content-Type", "application/json")
+                .build();
+        Assert.assertEquals(200, webClient.send(postAccountRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/search?prefix=test (existing and newly registered
+     *  accounts match)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of the matching usernames in alphabetical order
+     */
+    @Test
+    public void searchUsernamesMatchesExistingAndNewAccounts() throws IOException, InterruptedException {
+        register("tester");
+        register("testuser0");
+        register("other");
+
+        HttpResponse<String> response = search("prefix=test");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals(List.of("tester", "testuser0", "testuser1"),
+                objectMapper.readValue(response.body(), new TypeReference<List<String>>(){}));
+        Assert.assertEquals(List.of("tester", "testuser0"),
+                objectMapper.readValue(search("prefix=test&limit=2").body(), new TypeReference<List<String>>(){}));
+        Assert.assertEquals(List.of("testuser0", "testuser1"),
+                objectMapper.readValue(search("prefix=testu").body(), new TypeReference<List<String>>(){}));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/search?prefix=nobody (nothing matches)
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: JSON representation of an empty list
+     */
+    @Test
+    public void searchUsernamesNoMatch() throws IOException, InterruptedException {
+        HttpResponse<String> response = search("prefix=nobody");
+
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertTrue(objectMapper.readValue(response.body(), new TypeReference<List<String>>(){}).isEmpty());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/accounts/search without a prefix, or with a bad limit
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void searchUsernamesBadParameters() throws IOException, InterruptedException {
+        Assert.assertEquals(400, search("limit=5").statusCode());
+        Assert.assertEquals(400, search("prefix=test&limit=0").statusCode());
+    }
+}
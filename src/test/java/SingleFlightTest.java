@@ -0,0 +1,143 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Util.SingleFlight;
+
+public class SingleFlightTest {
+    ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts a leader call that blocks until released, then the given number of followers for the same key, and waits
+     * until every follower has joined the running call.
+     */
+    private List<Future<String>> startFlight(SingleFlight<Integer, String> singleFlight, int followers,
+     SingleFlight.Call<String, SQLException> call, CountDownLatch leaderStarted) throws InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute(1, call)));
+        Assert.assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < followers; i++) {
+            results.add(executor.submit(() -> singleFlight.execute(1, call)));
+        }
+        while (singleFlight.getSharedCallCount() < followers) {
+            Thread.sleep(1);
+        }
+        return results;
+    }
+
+    /**
+     * Concurrent calls for the same key run once and share the result.
+     */
+    @Test
+    public void concurrentCallsShareOneRun() throws Exception {
+        SingleFlight<Integer, String> singleFlight = new SingleFlight<>(5_000);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = startFlight(singleFlight, 5, () -> {
+            runs.incrementAndGet();
+            leaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "result";
+        }, leaderStarted);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Assert.assertEquals("result", result.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, runs.get());
+        Assert.assertEquals(5, singleFlight.getSharedCallCount());
+
+        Assert.assertEquals("again", singleFlight.execute(1, () -> "again"));
+    }
+
+    /**
+     * The leader's exception is thrown to every caller that shared its call.
+     */
+    @Test
+    public void errorsPropagateToFollowers() throws Exception {
+        SingleFlight<Integer, String> singleFlight = new SingleFlight<>(5_000);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = startFlight(singleFlight, 3, () -> {
+            leaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new SQLException("query failed");
+        }, leaderStarted);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                Assert.fail("Expected the query's exception");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof SQLException);
+                Assert.assertEquals("query failed", e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * A follower gives up waiting after the timeout, while the leader's call carries on.
+     */
+    @Test
+    public void followersTimeOut() throws Exception {
+        SingleFlight<Integer, String> singleFlight = new SingleFlight<>(50);
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = startFlight(singleFlight, 1, () -> {
+            leaderStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }, leaderStarted);
+
+        try {
+            results.get(1).get(5, TimeUnit.SECONDS);
+            Assert.fail("Expected the follower to time out");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        release.countDown();
+        Assert.assertEquals("slow", results.get(0).get(5, TimeUnit.SECONDS));
+    }
+}
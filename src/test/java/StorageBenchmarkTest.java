@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import Controller.StorageBenchmark;
+import Util.StorageProfile;
+
+public class StorageBenchmarkTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        System.clearProperty("socialmedia.db.profile");
+        System.clearProperty("socialmedia.db.cacheSizeKb");
+        System.clearProperty("socialmedia.db.writeDelayMillis");
+    }
+
+    /**
+     * The storage profile's URL is built from the settings, and defaults to the file the application always used.
+     */
+    @Test
+    public void profileUrlComesFromSettings() {
+        Assert.assertEquals("jdbc:h2:./h2/db", StorageProfile.fromSettings().getUrl());
+
+        System.setProperty("socialmedia.db.profile", "mem");
+        System.setProperty("socialmedia.db.cacheSizeKb", "65536");
+        System.setProperty("socialmedia.db.writeDelayMillis", "0");
+        Assert.assertEquals(
+            "jdbc:h2:mem:socialmedia;DB_CLOSE_DELAY=-1;CACHE_SIZE=65536;WRITE_DELAY=0",
+            StorageProfile.fromSettings().getUrl());
+
+        System.setProperty("socialmedia.db.writeDelayMillis", "0;INIT=RUNSCRIPT FROM 'x'");
+        Assert.assertThrows(IllegalArgumentException.class, StorageProfile::fromSettings);
+    }
+
+    /**
+     * The benchmark runs the whole workload without failures over an in-memory and a tuned file database, and
+     *  measures the file database's size on disk.
+     */
+    @Test
+    public void benchmarkRunsWorkloadOverProfiles() throws SQLException, IOException, InterruptedException {
+        StorageBenchmark.Result mem = StorageBenchmark.run(
+            "mem", new StorageProfile("mem", "benchmarktest", Map.of(), "sa", "sa"), null, 50, 2);
+
+        Path directory = temporaryFolder.newFolder("file").toPath();
+        Map<String, String> h2Settings = new LinkedHashMap<>();
+        h2Settings.put("CACHE_SIZE", "8192");
+        h2Settings.put("WRITE_DELAY", "0");
+        StorageBenchmark.Result file = StorageBenchmark.run(
+            "file",
+            new StorageProfile("file", directory.resolve("db").toString(), h2Settings, "sa", "sa"),
+            directory,
+            50,
+            2);
+
+        Assert.assertEquals(100, mem.getRequests());
+        Assert.assertEquals(0, mem.getFailedRequests());
+        Assert.assertEquals(0, mem.getDiskBytes());
+        Assert.assertEquals(0, file.getFailedRequests());
+        Assert.assertTrue(file.getDiskBytes() > 0);
+        Assert.assertTrue(file.getRequestsPerSecond() > 0);
+        Assert.assertTrue(file.getP99Micros() >= file.getP50Micros());
+    }
+}
@@ -0,0 +1,226 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Model.Message;
+import Model.MessageEvent;
+import Service.MessageStream;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class StreamMessagesTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> postMessage(int postedBy, String text) throws IOException, InterruptedException {
+        HttpRequest postMessageRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages"))
+                .POST(HttpRequest.BodyPublishers.ofString("{" +
+                        "\"posted_by\":" + postedBy + ", " +
+                        "\"message_text\": \"" + text + "\", " +
+                        "\"time_posted_epoch\": 1669947792}"))
+                .header("Content-Type", "application/json")
+                .build();
+        return webClient.send(postMessageRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/stream?posted_by=1 with Accept: text/event-stream, then
+     *  creating a message
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: a "created" event with the new message
+     */
+    @Test
+    public void streamPushesCreatedMessage() throws Exception {
+        HttpRequest streamRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/stream?posted_by=1"))
+                .header("Accept", "text/event-stream")
+                .build();
+        HttpResponse<Stream<String>> streamResponse =
+            webClient.sendAsync(streamRequest, HttpResponse.BodyHandlers.ofLines()).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(200, streamResponse.statusCode());
+
+        Assert.assertEquals(200, postMessage(1, "streamed").statusCode());
+
+        Iterator<String> lines = streamResponse.body().iterator();
+        String line = lines.next();
+        while (!line.startsWith("event:")) {
+            line = lines.next();
+        }
+        Assert.assertEquals("event: created", line);
+
+        while (!line.startsWith("data:")) {
+            line = lines.next();
+        }
+        JsonNode event = objectMapper.readTree(line.substring("data:".length()));
+        Assert.assertEquals("CREATED", event.get("type").asText());
+        Assert.assertEquals(
+            new Message(2, 1, "streamed", 1669947792),
+            objectMapper.treeToValue(event.get("message"), Message.class));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/messages/stream?posted_by=abc
+     *
+     * Expected Response:
+     *  Status Code: 400
+     */
+    @Test
+    public void streamRejectsNonNumericAuthor() throws IOException, InterruptedException {
+        HttpRequest streamRequest = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/messages/stream?posted_by=abc"))
+                .header("Accept", "text/event-stream")
+                .build();
+
+        Assert.assertEquals(400, webClient.send(streamRequest, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    /**
+     * A subscriber that falls further behind than the stream keeps is told how many events it missed, and then
+     *  receives the events that are still kept.
+     */
+    @Test
+    public void slowSubscriberIsToldAboutMissedEvents() throws InterruptedException {
+        MessageStream messageStream = new MessageStream(4, MessageStream.SlowConsumerPolicy.DROP, 1, 60_000);
+        CountDownLatch firstEventReceived = new CountDownLatch(1);
+        CountDownLatch releaseFirstEvent = new CountDownLatch(1);
+        CountDownLatch lastEventReceived = new CountDownLatch(1);
+        List<Long> received = new ArrayList<>();
+        List<Long> missed = new ArrayList<>();
+
+        messageStream.subscribe(null, new MessageStream.Subscriber() {
+            @Override
+            public void onEvent(MessageEvent event) {
+                received.add(event.getSequence());
+                firstEventReceived.countDown();
+                try {
+                    releaseFirstEvent.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (event.getSequence() == 10) {
+                    lastEventReceived.countDown();
+                }
+            }
+
+            @Override
+            public void onEventsMissed(long count) {
+                missed.add(count);
+            }
+
+            @Override
+            public void onDisconnect() {
+            }
+        });
+
+        messageStream.publish(MessageEvent.Type.CREATED, new Message(1, 1, "first", 1669947792));
+        Assert.assertTrue(firstEventReceived.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 10; i++) {
+            messageStream.publish(MessageEvent.Type.CREATED, new Message(i, 1, "message " + i, 1669947792));
+        }
+        releaseFirstEvent.countDown();
+
+        Assert.assertTrue(lastEventReceived.await(5, TimeUnit.SECONDS));
+        messageStream.close();
+
+        Assert.assertEquals(List.of(5L), missed);
+        Assert.assertEquals(List.of(1L, 7L, 8L, 9L, 10L), received);
+    }
+
+    /**
+     * A subscriber that blocks its delivery thread for longer than the send timeout is disconnected and its call
+     *  interrupted, so that the thread goes on to deliver to the other subscribers.
+     */
+    @Test
+    public void blockedSubscriberIsDisconnected() throws InterruptedException {
+        MessageStream messageStream = new MessageStream(16, MessageStream.SlowConsumerPolicy.DROP, 1, 200);
+        CountDownLatch blockedCallInterrupted = new CountDownLatch(1);
+        CountDownLatch blockedSubscriberDisconnected = new CountDownLatch(1);
+        CountDownLatch otherEventReceived = new CountDownLatch(1);
+
+        messageStream.subscribe(null, new MessageStream.Subscriber() {
+            @Override
+            public void onEvent(MessageEvent event) {
+                try {
+                    // Stands in for a write to a socket that the client has stopped reading.
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    blockedCallInterrupted.countDown();
+                }
+            }
+
+            @Override
+            public void onEventsMissed(long count) {
+            }
+
+            @Override
+            public void onDisconnect() {
+                blockedSubscriberDisconnected.countDown();
+            }
+        });
+        messageStream.subscribe(null, new MessageStream.Subscriber() {
+            @Override
+            public void onEvent(MessageEvent event) {
+                otherEventReceived.countDown();
+            }
+
+            @Override
+            public void onEventsMissed(long count) {
+            }
+
+            @Override
+            public void onDisconnect() {
+            }
+        });
+
+        messageStream.publish(MessageEvent.Type.CREATED, new Message(1, 1, "first", 1669947792));
+
+        Assert.assertTrue(blockedSubscriberDisconnected.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(blockedCallInterrupted.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(otherEventReceived.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, messageStream.getSubscriberCount());
+        messageStream.close();
+    }
+}
@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.SlidingHeavyHitters;
+import io.javalin.Javalin;
+
+public class TrendingTest {
+
+    /**
+     * Among many keys counted once, the keys counted often are found with counts no lower than their true counts, and
+     *  are forgotten once the window slides past them.
+     */
+    @Test
+    public void heavyHittersAreFoundAndSlideOut() {
+        AtomicLong now = new AtomicLong();
+        SlidingHeavyHitters heavyHitters = new SlidingHeavyHitters(1000, 10, 4, 256, 32, now::get);
+
+        for (int key = 1000; key < 11_000; key++) {
+            heavyHitters.add(key);
+            if (key % 10 == 0) {
+                heavyHitters.add(7);
+            }
+            if (key % 20 == 0) {
+                heavyHitters.add(3);
+            }
+        }
+
+        List<SlidingHeavyHitters.Entry> top = heavyHitters.getTop(2);
+        Assert.assertEquals(7, top.get(0).getKey());
+        Assert.assertTrue(top.get(0).getCount() >= 1000);
+        Assert.assertEquals(3, top.get(1).getKey());
+        Assert.assertTrue(top.get(1).getCount() >= 500);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        heavyHitters.add(5);
+        heavyHitters.add(5);
+        Assert.assertEquals(7, heavyHitters.getTop(1).get(0).getKey());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        List<SlidingHeavyHitters.Entry> slid = heavyHitters.getTop(10);
+        Assert.assertEquals(1, slid.size());
+        Assert.assertEquals(5, slid.get(0).getKey());
+        Assert.assertEquals(2, slid.get(0).getCount());
+    }
+
+    /**
+     * Sending http requests to read message 1 and post messages, then to GET localhost:8080/messages/trending and
+     *  GET localhost:8080/accounts/top
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: message 1 with its reads, and account 1 with its posts
+     */
+    @Test
+    public void trendingMessagesAndTopAccounts() throws IOException, InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        Javalin app = new SocialMediaController().startAPI();
+        HttpClient webClient = HttpClient.newHttpClient();
+        ObjectMapper objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+
+        try {
+            for (int i = 0; i < 3; i++) {
+                send(webClient, HttpRequest.newBuilder().uri(URI.create("http://localhost:8080/messages/1")));
+                send(webClient, HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8080/messages"))
+                        .POST(HttpRequest.BodyPublishers.ofString("{" +
+                                "\"posted_by\":1, " +
+                                "\"message_text\": \"post " + i + "\", " +
+                                "\"time_posted_epoch\": 1669947792}"))
+                        .header("Content-Type", "application/json"));
+            }
+
+            HttpResponse<String> trending = send(webClient, HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/messages/trending")));
+            List<Map<String, Object>> trendingMessages =
+                    objectMapper.readValue(trending.body(), new TypeReference<List<Map<String, Object>>>() {});
+            Assert.assertEquals(200, trending.statusCode());
+            Assert.assertEquals(1, trendingMessages.size());
+            Assert.assertEquals(3, trendingMessages.get(0).get("count"));
+            Assert.assertEquals("test message 1",
+                    ((Map<?, ?>) trendingMessages.get(0).get("message")).get("message_text"));
+
+            HttpResponse<String> top = send(webClient, HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/accounts/top?limit=5")));
+            Assert.assertEquals(200, top.statusCode());
+            Assert.assertEquals(List.of(Map.of("account_id", 1, "count", 3)),
+                    objectMapper.readValue(top.body(), new TypeReference<List<Map<String, Object>>>() {}));
+
+            Assert.assertEquals(400, send(webClient, HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8080/accounts/top?limit=0"))).statusCode());
+        } finally {
+            app.stop();
+        }
+    }
+
+    private static HttpResponse<String> send(HttpClient webClient, HttpRequest.Builder builder)
+            throws IOException, InterruptedException {
+        return webClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import Controller.SocialMediaController;
+import Util.ConnectionUtil;
+import Util.ScalableBloomFilter;
+import io.javalin.Javalin;
+
+public class UsernameAvailabilityTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    ObjectMapper objectMapper;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient and ObjectMapper
+     * for interacting locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        objectMapper = new ObjectMapper();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder builder) throws IOException, InterruptedException {
+        return webClient.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private Map<String, Object> getJson(String path) throws IOException, InterruptedException {
+        HttpResponse<String> response = send(HttpRequest.newBuilder().uri(URI.create("http://localhost:8080" + path)));
+        Assert.assertEquals(200, response.statusCode());
+        return objectMapper.readValue(response.body(), new TypeReference<Map<String, Object>>() {});
+    }
+
+    /**
+     * Sending http requests to GET localhost:8080/accounts/available for a taken username, a free one, and one
+     *  registered since.
+     *
+     * Expected Response:
+     *  Status Code: 200
+     *  Response Body: {"username": ..., "available": false} for the taken usernames, true for the free one
+     */
+    @Test
+    public void availabilityFollowsRegistrations() throws IOException, InterruptedException {
+        Assert.assertEquals(false, getJson("/accounts/available?username=testuser1").get("available"));
+        Assert.assertEquals(true, getJson("/accounts/available?username=newuser").get("available"));
+
+        Assert.assertEquals(200, send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/register"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"newuser\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")).statusCode());
+
+        Assert.assertEquals(false, getJson("/accounts/available?username=newuser").get("available"));
+        Assert.assertEquals(400, send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/accounts/available"))).statusCode());
+    }
+
+    /**
+     * Sending an http request to POST localhost:8080/login for a username that was never registered
+     *
+     * Expected Response:
+     *  Status Code: 401, and the Bloom filter reports the miss in GET localhost:8080/metrics
+     */
+    @Test
+    public void loginWithUnknownUsernameIsRuledOutByFilter() throws IOException, InterruptedException {
+        long missesBefore = ((Number) getJson("/metrics").get("usernameFilter.definiteMisses")).longValue();
+
+        Assert.assertEquals(401, send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"nobody\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")).statusCode());
+
+        Map<String, Object> metrics = getJson("/metrics");
+        Assert.assertEquals(missesBefore + 1, ((Number) metrics.get("usernameFilter.definiteMisses")).longValue());
+        Assert.assertTrue(((Number) metrics.get("usernameFilter.memoryBytes")).longValue() > 0);
+    }
+
+    /**
+     * Adding an account straight to the database, as another node or a bulk import would, and then sending http
+     *  requests to POST localhost:8080/login and GET localhost:8080/accounts/available for it
+     *
+     * Expected Response:
+     *  Status Code: 200 for the login, and the username is not available, although the Bloom filter missed it
+     */
+    @Test
+    public void accountsAddedElsewhereAreFound() throws IOException, InterruptedException, SQLException {
+        try (Statement statement = ConnectionUtil.getConnection().createStatement()) {
+            statement.executeUpdate("INSERT INTO account (username, password) VALUES ('elsewhere', 'password');");
+        }
+
+        Assert.assertEquals(200, send(HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/login"))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"username\": \"elsewhere\", \"password\": \"password\"}"))
+                .header("Content-Type", "application/json")).statusCode());
+        Assert.assertEquals(false, getJson("/accounts/available?username=elsewhere").get("available"));
+        Assert.assertEquals(1, ((Number) getJson("/metrics").get("usernameFilter.missedAccounts")).longValue());
+    }
+
+    /**
+     * Past its initial capacity the filter grows new stages, never forgets a username, and keeps its false positive
+     *  rate near the one it was sized for.
+     */
+    @Test
+    public void filterGrowsWithoutFalseNegatives() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+
+        for (int i = 0; i < 20_000; i++) {
+            filter.add("user" + i);
+        }
+        for (int i = 0; i < 20_000; i++) {
+            Assert.assertTrue(filter.mightContain("user" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (filter.mightContain("other" + i)) {
+                falsePositives++;
+            }
+        }
+
+        Assert.assertTrue(filter.getStageCount() > 1);
+        Assert.assertTrue(falsePositives / 20_000.0 < 0.03);
+        Assert.assertTrue(filter.getEstimatedFalsePositiveRate() < 0.03);
+    }
+}
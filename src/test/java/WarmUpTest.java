@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import Controller.SocialMediaController;
+import Controller.WarmUp;
+import Util.ConnectionUtil;
+import io.javalin.Javalin;
+
+public class WarmUpTest {
+    SocialMediaController socialMediaController;
+    HttpClient webClient;
+    Javalin app;
+
+    /**
+     * Before every test, reset the database, restart the Javalin app, and create a new webClient for interacting
+     * locally on the web.
+     * @throws InterruptedException
+     */
+    @Before
+    public void setUp() throws InterruptedException {
+        ConnectionUtil.resetTestDatabase();
+        socialMediaController = new SocialMediaController();
+        app = socialMediaController.startAPI();
+        webClient = HttpClient.newHttpClient();
+        app.start(8080);
+        Thread.sleep(1000);
+    }
+
+    @After
+    public void tearDown() {
+        app.stop();
+    }
+
+    private int getReadyStatus() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8080/ready"))
+                .build();
+        return webClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+    }
+
+    /**
+     * Every route succeeds in every warm-up round, and the real database is left untouched.
+     */
+    @Test
+    public void warmUpCallsEveryRouteWithoutFailures() throws SQLException, IOException, InterruptedException {
+        WarmUp.Report report = WarmUp.run(socialMediaController, 25);
+
+        Assert.assertEquals(25, report.getRounds());
+        Assert.assertEquals(0, report.getFailedRequests());
+        Assert.assertTrue(report.getRoundsToSteadyState() >= 1 && report.getRoundsToSteadyState() <= 25);
+
+        ResultSet resultSet = ConnectionUtil.getConnection().createStatement().executeQuery(
+            "SELECT COUNT(*) FROM message;");
+        resultSet.next();
+        Assert.assertEquals(1, resultSet.getInt(1));
+    }
+
+    /**
+     * Sending an http request to GET localhost:8080/ready while warming up, and after
+     *
+     * Expected Response:
+     *  Status Code: 503, then 200
+     */
+    @Test
+    public void readyFlipsWhenWarmUpCompletes() throws IOException, InterruptedException {
+        socialMediaController.setReady(false);
+        Assert.assertEquals(503, getReadyStatus());
+
+        socialMediaController.setReady(true);
+        Assert.assertEquals(200, getReadyStatus());
+    }
+}